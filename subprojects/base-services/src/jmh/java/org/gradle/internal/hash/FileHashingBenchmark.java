@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * Compares reading a file through a stream with reading it through a {@link FileChannelHasher}.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class FileHashingBenchmark {
+
+    @Param({"65536", "1048576", "67108864", "268435456"})
+    int fileSize;
+
+    @Param({"md5", "murmur3"})
+    String hashFunction;
+
+    File file;
+    HashFunction function;
+    FileChannelHasher mappedHasher = new FileChannelHasher(true);
+    FileChannelHasher directHasher = new FileChannelHasher(false);
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        function = "md5".equals(hashFunction) ? Hashing.md5() : Hashing.murmur3();
+        file = File.createTempFile("hashing", ".bin");
+        byte[] chunk = new byte[64 * 1024];
+        new Random(1234L).nextBytes(chunk);
+        OutputStream outputStream = new FileOutputStream(file);
+        try {
+            for (int written = 0; written < fileSize; written += chunk.length) {
+                outputStream.write(chunk, 0, Math.min(chunk.length, fileSize - written));
+            }
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public HashCode stream() throws IOException {
+        Hasher hasher = function.newHasher();
+        byte[] buffer = new byte[8192];
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            int nread;
+            while ((nread = inputStream.read(buffer)) >= 0) {
+                hasher.putBytes(buffer, 0, nread);
+            }
+        } finally {
+            inputStream.close();
+        }
+        return hasher.hash();
+    }
+
+    @Benchmark
+    public HashCode mapped() throws IOException {
+        Hasher hasher = function.newHasher();
+        mappedHasher.hash(file, hasher);
+        return hasher.hash();
+    }
+
+    @Benchmark
+    public HashCode direct() throws IOException {
+        Hasher hasher = function.newHasher();
+        directHasher.hash(file, hasher);
+        return hasher.hash();
+    }
+}
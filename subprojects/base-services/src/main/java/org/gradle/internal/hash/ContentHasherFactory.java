@@ -19,4 +19,9 @@ package org.gradle.internal.hash;
 import org.gradle.internal.Factory;
 
 public interface ContentHasherFactory extends Factory<Hasher> {
+    /**
+     * Identifies the hash function and the version of the hashing scheme used for content.
+     * Hashes created by factories with different names are not comparable, and must not be stored in the same persistent cache.
+     */
+    String getName();
 }
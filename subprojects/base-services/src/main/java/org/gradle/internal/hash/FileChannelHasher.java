@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Feeds the content of a file into a {@link Hasher} through a {@link FileChannel}, without copying the content into the heap.
+ *
+ * <p>The file is either mapped into memory one region at a time, or read into a pooled direct buffer. A file that is mapped cannot be
+ * deleted or replaced on Windows until the mapping has been garbage collected, so memory mapping should not be used there. When a mapped file is
+ * truncated while it is being hashed, the JVM throws an {@link InternalError}, which callers hashing files that may change should handle.</p>
+ */
+public class FileChannelHasher {
+    private static final int MAPPED_REGION_SIZE = 64 * 1024 * 1024;
+    private static final int DIRECT_BUFFER_SIZE = 1024 * 1024;
+
+    private final boolean memoryMapped;
+    private final Queue<ByteBuffer> buffers = new ArrayBlockingQueue<ByteBuffer>(4);
+
+    public FileChannelHasher(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
+    public void hash(File file, Hasher hasher) throws IOException {
+        FileInputStream inputStream = new FileInputStream(file);
+        try {
+            FileChannel channel = inputStream.getChannel();
+            if (memoryMapped) {
+                hashMapped(channel, hasher);
+            } else {
+                hashDirect(channel, hasher);
+            }
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private void hashMapped(FileChannel channel, Hasher hasher) throws IOException {
+        long size = channel.size();
+        for (long position = 0; position < size; position += MAPPED_REGION_SIZE) {
+            MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPED_REGION_SIZE, size - position));
+            hasher.putBytes(region);
+        }
+    }
+
+    private void hashDirect(FileChannel channel, Hasher hasher) throws IOException {
+        ByteBuffer buffer = takeBuffer();
+        try {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                hasher.putBytes(buffer);
+                buffer.clear();
+            }
+        } finally {
+            returnBuffer(buffer);
+        }
+    }
+
+    private void returnBuffer(ByteBuffer buffer) {
+        // Retain buffer if there is capacity in the queue, otherwise discard
+        buffer.clear();
+        buffers.offer(buffer);
+    }
+
+    private ByteBuffer takeBuffer() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(DIRECT_BUFFER_SIZE);
+        }
+        return buffer;
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.gradle.internal.hash;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -30,4 +31,9 @@ public interface StreamHasher {
      * The method will not close either stream.
      */
     HashCode hashCopy(InputStream inputStream, OutputStream outputStream) throws IOException;
+
+    /**
+     * Returns the hash of the content of the given file. Produces the same hash as {@link #hash(InputStream)} would for the file content.
+     */
+    HashCode hash(File file) throws IOException;
 }
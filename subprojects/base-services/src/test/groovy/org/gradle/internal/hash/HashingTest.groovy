@@ -0,0 +1,50 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+@Unroll
+class HashingTest extends Specification {
+    def "murmur3 hash of '#input' is compatible with Guava"() {
+        expect:
+        Hashing.murmur3().hashString(input).toString() == expected
+
+        where:
+        input                                         | expected
+        ""                                            | "00000000000000000000000000000000"
+        "a"                                           | "897859f6655555855a890e51483ab5e6"
+        "The quick brown fox jumps over the lazy dog" | "6c1b07bc7bbc4be347939ac4a93c437a"
+        "0123456789abcdef0123456789abcdef!"           | "3503929145dd631d6d5858a82a70fcb3"
+    }
+
+    def "murmur3 hash does not depend on how input is split into chunks"() {
+        def bytes = new byte[1000]
+        new Random(1234L).nextBytes(bytes)
+        def hasher = Hashing.murmur3().newHasher()
+
+        when:
+        hasher.putBytes(bytes, 0, 7)
+        hasher.putByte(bytes[7])
+        hasher.putBytes(bytes, 8, 500)
+        hasher.putBytes(bytes, 508, 492)
+
+        then:
+        hasher.hash() == Hashing.murmur3().hashBytes(bytes)
+    }
+}
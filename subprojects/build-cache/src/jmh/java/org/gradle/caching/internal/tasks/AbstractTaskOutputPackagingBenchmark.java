@@ -52,9 +52,12 @@ public abstract class AbstractTaskOutputPackagingBenchmark {
         .put("tar", new AntTarPacker(4))
         .put("tar.commons", new CommonsTarPacker(4))
         .put("tar.jtar", new JTarPacker(4))
+        .put("tar.parallel", new ParallelCommonsTarPacker(4, 4))
         .put("tar.small", new AntTarPacker(2))
         .put("tar.large", new AntTarPacker(64))
         .put("tar.gz", new GzipPacker(new AntTarPacker(4)))
+        .put("tar.gz.commons", new GzipPacker(new CommonsTarPacker(4)))
+        .put("tar.gz.parallel", new GzipPacker(new ParallelCommonsTarPacker(4, 4)))
         .put("zip", new ZipPacker(4))
         .build();
 
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Reads entries on pack and writes them on unpack using a pool of threads, while the archive itself is written and read on the calling thread.
+ */
+public class ParallelCommonsTarPacker implements Packer {
+    private static final int MAX_ENTRIES_IN_FLIGHT = 32;
+
+    private final byte[] buffer;
+    private final ExecutorService executor;
+
+    public ParallelCommonsTarPacker(int bufferSizeInKBytes, int parallelism) {
+        this.buffer = new byte[bufferSizeInKBytes * 1024];
+        this.executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "packer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public void pack(List<DataSource> inputs, DataTarget output) throws IOException {
+        TarArchiveOutputStream tarOutput = new TarArchiveOutputStream(output.openOutput());
+        Deque<Future<byte[]>> inFlight = new ArrayDeque<Future<byte[]>>();
+        int next = 0;
+        for (DataSource input : inputs) {
+            inFlight.add(executor.submit(read(input)));
+            if (inFlight.size() >= MAX_ENTRIES_IN_FLIGHT) {
+                writeEntry(inputs.get(next++), get(inFlight.remove()), tarOutput);
+            }
+        }
+        while (!inFlight.isEmpty()) {
+            writeEntry(inputs.get(next++), get(inFlight.remove()), tarOutput);
+        }
+        tarOutput.close();
+    }
+
+    private static Callable<byte[]> read(final DataSource input) {
+        return new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                InputStream inputStream = input.openInput();
+                try {
+                    return IOUtils.toByteArray(inputStream, input.getLength());
+                } finally {
+                    inputStream.close();
+                }
+            }
+        };
+    }
+
+    private static void writeEntry(DataSource input, byte[] content, TarArchiveOutputStream tarOutput) throws IOException {
+        TarArchiveEntry entry = new TarArchiveEntry(input.getName());
+        entry.setSize(content.length);
+        tarOutput.putArchiveEntry(entry);
+        tarOutput.write(content);
+        tarOutput.closeArchiveEntry();
+    }
+
+    @Override
+    public void unpack(DataSource input, DataTargetFactory targetFactory) throws IOException {
+        TarArchiveInputStream tarInput = new TarArchiveInputStream(input.openInput());
+        Deque<Future<byte[]>> inFlight = new ArrayDeque<Future<byte[]>>();
+        while (true) {
+            TarArchiveEntry entry = tarInput.getNextTarEntry();
+            if (entry == null) {
+                break;
+            }
+            byte[] content = IOUtils.toByteArray(tarInput, entry.getSize());
+            inFlight.add(executor.submit(write(entry.getName(), content, targetFactory)));
+            if (inFlight.size() >= MAX_ENTRIES_IN_FLIGHT) {
+                get(inFlight.remove());
+            }
+        }
+        while (!inFlight.isEmpty()) {
+            get(inFlight.remove());
+        }
+        tarInput.close();
+    }
+
+    private static Callable<byte[]> write(final String name, final byte[] content, final DataTargetFactory targetFactory) {
+        return new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                OutputStream outputStream = targetFactory.createDataTarget(name).openOutput();
+                try {
+                    outputStream.write(content);
+                } finally {
+                    outputStream.close();
+                }
+                return content;
+            }
+        };
+    }
+
+    private static byte[] get(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+}
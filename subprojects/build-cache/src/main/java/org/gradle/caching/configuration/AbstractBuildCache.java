@@ -27,6 +27,7 @@ import org.gradle.api.Incubating;
 public abstract class AbstractBuildCache implements BuildCache {
     private boolean enabled = true;
     private boolean push;
+    private String compression = "gzip";
 
     /**
      * {@inheritDoc}
@@ -59,4 +60,25 @@ public abstract class AbstractBuildCache implements BuildCache {
     public void setPush(boolean push) {
         this.push = push;
     }
+
+    /**
+     * Returns the compression applied to the entries stored in this build cache. Defaults to {@code "gzip"}.
+     *
+     * @since 4.4
+     */
+    public String getCompression() {
+        return compression;
+    }
+
+    /**
+     * Sets the compression applied to the entries stored in this build cache.
+     *
+     * <p>Supported values are {@code "gzip"}, {@code "lz4"} and {@code "none"}.
+     * Entries are always readable, regardless of the compression they were stored with.</p>
+     *
+     * @since 4.4
+     */
+    public void setCompression(String compression) {
+        this.compression = compression;
+    }
 }
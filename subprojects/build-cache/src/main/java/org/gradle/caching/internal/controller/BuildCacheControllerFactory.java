@@ -23,9 +23,11 @@ import com.google.common.collect.Iterables;
 import org.gradle.api.internal.GeneratedSubclasses;
 import org.gradle.caching.BuildCacheService;
 import org.gradle.caching.BuildCacheServiceFactory;
+import org.gradle.caching.configuration.AbstractBuildCache;
 import org.gradle.caching.configuration.BuildCache;
 import org.gradle.caching.configuration.internal.BuildCacheConfigurationInternal;
 import org.gradle.caching.internal.FinalizeBuildCacheConfigurationBuildOperationType;
+import org.gradle.caching.internal.controller.codec.BuildCacheEntryCodec;
 import org.gradle.caching.internal.controller.service.BuildCacheServiceRole;
 import org.gradle.caching.internal.controller.service.BuildCacheServicesConfiguration;
 import org.gradle.internal.Cast;
@@ -130,7 +132,14 @@ public final class BuildCacheControllerFactory {
     private static BuildCacheServicesConfiguration toConfiguration(BuildCache local, BuildCacheService localService, BuildCache remote, BuildCacheService remoteService) {
         boolean remotePush = remote != null && remote.isPush();
         boolean localPush = local != null && local.isPush();
-        return new BuildCacheServicesConfiguration(localService, localPush, remoteService, remotePush);
+        return new BuildCacheServicesConfiguration(localService, localPush, toCodec(local), remoteService, remotePush, toCodec(remote));
+    }
+
+    private static BuildCacheEntryCodec toCodec(@Nullable BuildCache configuration) {
+        if (configuration instanceof AbstractBuildCache) {
+            return BuildCacheEntryCodec.forName(((AbstractBuildCache) configuration).getCompression());
+        }
+        return BuildCacheEntryCodec.DEFAULT;
     }
 
 
@@ -23,6 +23,7 @@ import org.gradle.api.GradleException;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.BuildCacheService;
+import org.gradle.caching.internal.controller.codec.BuildCacheEntryCodec;
 import org.gradle.caching.internal.controller.operations.PackOperationDetails;
 import org.gradle.caching.internal.controller.operations.PackOperationResult;
 import org.gradle.caching.internal.controller.operations.UnpackOperationDetails;
@@ -54,7 +55,7 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
 
 public class DefaultBuildCacheController implements BuildCacheController {
 
@@ -67,6 +68,8 @@ public class DefaultBuildCacheController implements BuildCacheController {
     @VisibleForTesting
     final LocalBuildCacheServiceHandle local;
 
+    private final BuildCacheEntryCodec localCodec;
+    private final BuildCacheEntryCodec remoteCodec;
     private final BuildCacheTempFileStore tmp;
     private final BuildOperationExecutor buildOperationExecutor;
 
@@ -79,6 +82,8 @@ public class DefaultBuildCacheController implements BuildCacheController {
         boolean logStackTraces
     ) {
         this.buildOperationExecutor = buildOperationExecutor;
+        this.localCodec = config.localCodec;
+        this.remoteCodec = config.remoteCodec;
 
         if (config.local instanceof LocalBuildCacheService) {
             LocalBuildCacheService castLocal = (LocalBuildCacheService) config.local;
@@ -135,7 +140,7 @@ public class DefaultBuildCacheController implements BuildCacheController {
                             throw new GradleException("Build cache entry " + command.getKey() + " from " + roleDisplayName + " build cache is invalid", e);
                         }
                         if (local.canStore()) {
-                            local.store(command.getKey(), file);
+                            storeLocal(command.getKey(), file, unpack.codec);
                         }
                     }
                 }
@@ -150,10 +155,32 @@ public class DefaultBuildCacheController implements BuildCacheController {
         }
     }
 
+    /**
+     * Stores an entry loaded from the remote cache in the local cache, compressing it with the codec of the local cache first if it was compressed with another one.
+     */
+    private void storeLocal(final BuildCacheKey key, final File file, @Nullable BuildCacheEntryCodec codec) {
+        if (codec == null || codec == localCodec) {
+            local.store(key, file);
+            return;
+        }
+        tmp.allocateTempFile(key, new Action<File>() {
+            @Override
+            public void execute(File transcoded) {
+                try {
+                    localCodec.transcode(file, transcoded);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                local.store(key, transcoded);
+            }
+        });
+    }
+
     private class Unpack<T> implements Action<File> {
         private final BuildCacheLoadCommand<T> command;
 
         private BuildCacheLoadCommand.Result<T> result;
+        private BuildCacheEntryCodec codec;
 
         private Unpack(BuildCacheLoadCommand<T> command) {
             this.command = command;
@@ -164,9 +191,9 @@ public class DefaultBuildCacheController implements BuildCacheController {
             buildOperationExecutor.run(new RunnableBuildOperation() {
                 @Override
                 public void run(BuildOperationContext context) {
-                    InputStream input;
+                    BuildCacheEntryCodec.DecompressingInputStream input;
                     try {
-                        input = new FileInputStream(file);
+                        input = BuildCacheEntryCodec.decompress(new FileInputStream(file));
                     } catch (FileNotFoundException e) {
                         throw new UncheckedIOException(e);
                     }
@@ -178,6 +205,7 @@ public class DefaultBuildCacheController implements BuildCacheController {
                     } finally {
                         IOUtils.closeQuietly(input);
                     }
+                    codec = input.getCodec();
 
                     context.setResult(new UnpackOperationResult(
                         result.getArtifactEntryCount()
@@ -203,11 +231,13 @@ public class DefaultBuildCacheController implements BuildCacheController {
         }
 
         final BuildCacheKey key = command.getKey();
-        final Pack pack = new Pack(command);
+        // The entry is packed once, with the codec of the local cache when there is one to store to, and is compressed again for a remote cache using another codec
+        final BuildCacheEntryCodec codec = local.canStore() || legacyLocal.canStore() ? localCodec : remoteCodec;
+        final Pack pack = new Pack(command, codec);
 
         tmp.allocateTempFile(command.getKey(), new Action<File>() {
             @Override
-            public void execute(File file) {
+            public void execute(final File file) {
                 pack.execute(file);
 
                 if (legacyLocal.canStore()) {
@@ -215,7 +245,21 @@ public class DefaultBuildCacheController implements BuildCacheController {
                 }
 
                 if (remote.canStore()) {
-                    remote.store(key, new StoreTarget(file));
+                    if (remoteCodec == codec) {
+                        remote.store(key, new StoreTarget(file));
+                    } else {
+                        tmp.allocateTempFile(key, new Action<File>() {
+                            @Override
+                            public void execute(File transcoded) {
+                                try {
+                                    remoteCodec.transcode(file, transcoded);
+                                } catch (IOException e) {
+                                    throw new UncheckedIOException(e);
+                                }
+                                remote.store(key, new StoreTarget(transcoded));
+                            }
+                        });
+                    }
                 }
 
                 if (local.canStore()) {
@@ -228,9 +272,11 @@ public class DefaultBuildCacheController implements BuildCacheController {
     private class Pack implements Action<File> {
 
         private final BuildCacheStoreCommand command;
+        private final BuildCacheEntryCodec codec;
 
-        private Pack(BuildCacheStoreCommand command) {
+        private Pack(BuildCacheStoreCommand command, BuildCacheEntryCodec codec) {
             this.command = command;
+            this.codec = codec;
         }
 
         @Override
@@ -239,7 +285,13 @@ public class DefaultBuildCacheController implements BuildCacheController {
                 @Override
                 public void run(BuildOperationContext context) {
                     try {
-                        BuildCacheStoreCommand.Result result = command.store(new FileOutputStream(file));
+                        OutputStream output = codec.compress(new FileOutputStream(file));
+                        BuildCacheStoreCommand.Result result;
+                        try {
+                            result = command.store(output);
+                        } finally {
+                            IOUtils.closeQuietly(output);
+                        }
                         context.setResult(new PackOperationResult(
                             result.getArtifactEntryCount(),
                             file.length()
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller.codec;
+
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.InvalidUserDataException;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The compression applied to build cache entries.
+ *
+ * <p>Entries compressed with gzip have no header, so that they are identical to the entries written by earlier Gradle versions.
+ * The gzip magic number identifies them. Entries compressed with any other codec start with a header identifying the codec,
+ * so that entries written with different codecs can be read from the same cache.</p>
+ */
+public enum BuildCacheEntryCodec {
+    GZIP("gzip", -1) {
+        @Override
+        OutputStream wrap(OutputStream output) throws IOException {
+            return new GZIPOutputStream(output);
+        }
+
+        @Override
+        InputStream unwrap(InputStream input) throws IOException {
+            return new GZIPInputStream(input);
+        }
+    },
+    LZ4("lz4", 1) {
+        @Override
+        OutputStream wrap(OutputStream output) {
+            return new Lz4BlockOutputStream(output);
+        }
+
+        @Override
+        InputStream unwrap(InputStream input) {
+            return new Lz4BlockInputStream(input);
+        }
+    },
+    NONE("none", 0) {
+        @Override
+        OutputStream wrap(OutputStream output) {
+            return output;
+        }
+
+        @Override
+        InputStream unwrap(InputStream input) {
+            return input;
+        }
+    };
+
+    public static final BuildCacheEntryCodec DEFAULT = GZIP;
+
+    private static final int GZIP_MAGIC = 0x1f;
+    private static final byte[] HEADER_MAGIC = {'G', 'B', 'C'};
+
+    private final String name;
+    private final int id;
+
+    BuildCacheEntryCodec(String name, int id) {
+        this.name = name;
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    abstract OutputStream wrap(OutputStream output) throws IOException;
+
+    abstract InputStream unwrap(InputStream input) throws IOException;
+
+    /**
+     * Returns a stream that writes an entry compressed with this codec to the given stream. Closing the returned stream closes the given stream.
+     */
+    public OutputStream compress(OutputStream output) throws IOException {
+        if (id >= 0) {
+            output.write(HEADER_MAGIC);
+            output.write(id);
+        }
+        return wrap(output);
+    }
+
+    /**
+     * Returns a stream that reads an entry compressed with any codec from the given stream.
+     * The codec is detected when the stream is first read from. Closing the returned stream closes the given stream.
+     */
+    public static DecompressingInputStream decompress(InputStream input) {
+        return new DecompressingInputStream(input);
+    }
+
+    /**
+     * Writes the entry read from the given file to the target file, compressed with this codec.
+     */
+    public void transcode(File source, File target) throws IOException {
+        InputStream input = decompress(new FileInputStream(source));
+        try {
+            OutputStream output = compress(new FileOutputStream(target));
+            try {
+                IOUtils.copyLarge(input, output);
+            } finally {
+                output.close();
+            }
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    public static BuildCacheEntryCodec forName(String name) {
+        for (BuildCacheEntryCodec codec : values()) {
+            if (codec.name.equals(name)) {
+                return codec;
+            }
+        }
+        StringBuilder names = new StringBuilder();
+        for (BuildCacheEntryCodec codec : values()) {
+            if (names.length() > 0) {
+                names.append(", ");
+            }
+            names.append('\'').append(codec.name).append('\'');
+        }
+        throw new InvalidUserDataException(String.format("Unknown build cache entry compression '%s'. Supported values are: %s.", name, names));
+    }
+
+    /**
+     * Reads the header of the entry, if there is one, leaving the stream positioned at the start of the compressed content.
+     */
+    private static BuildCacheEntryCodec detect(PushbackInputStream input) throws IOException {
+        int first = input.read();
+        if (first == GZIP_MAGIC) {
+            input.unread(first);
+            return GZIP;
+        }
+        if (first == HEADER_MAGIC[0]) {
+            byte[] header = new byte[HEADER_MAGIC.length];
+            header[0] = (byte) first;
+            if (IOUtils.read(input, header, 1, HEADER_MAGIC.length - 1) == HEADER_MAGIC.length - 1
+                && header[1] == HEADER_MAGIC[1] && header[2] == HEADER_MAGIC[2]) {
+                int id = input.read();
+                for (BuildCacheEntryCodec codec : values()) {
+                    if (codec.id >= 0 && codec.id == id) {
+                        return codec;
+                    }
+                }
+                throw new IOException(String.format("Build cache entry was compressed with an unknown codec (%d).", id));
+            }
+        }
+        throw new IOException("Build cache entry has an unknown format.");
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    public static class DecompressingInputStream extends InputStream {
+        private final PushbackInputStream input;
+        private BuildCacheEntryCodec codec;
+        private InputStream delegate;
+
+        DecompressingInputStream(InputStream input) {
+            this.input = new PushbackInputStream(input, HEADER_MAGIC.length + 1);
+        }
+
+        private InputStream delegate() throws IOException {
+            if (delegate == null) {
+                codec = detect(input);
+                delegate = codec.unwrap(input);
+            }
+            return delegate;
+        }
+
+        /**
+         * Returns the codec the entry was compressed with, or {@code null} when nothing has been read yet.
+         */
+        @Nullable
+        public BuildCacheEntryCodec getCodec() {
+            return codec;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return delegate().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return delegate().read(b, off, len);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return delegate().skip(n);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return delegate().available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (delegate != null) {
+                delegate.close();
+            } else {
+                input.close();
+            }
+        }
+    }
+}
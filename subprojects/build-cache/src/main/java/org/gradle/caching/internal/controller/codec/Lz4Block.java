@@ -0,0 +1,179 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller.codec;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Compresses blocks of bytes using the LZ4 block format. Compression uses a single probe per position, trading ratio for speed.
+ */
+class Lz4Block {
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MATCH_FIND_LIMIT = 12;
+    private static final int MAX_OFFSET = 0xffff;
+    private static final int HASH_LOG = 14;
+    private static final int SKIP_TRIGGER = 6;
+
+    private final int[] table = new int[1 << HASH_LOG];
+
+    static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Compresses the given bytes into the target array, which must hold at least {@link #maxCompressedLength(int)} bytes.
+     *
+     * @return the length of the compressed block.
+     */
+    int compress(byte[] source, int length, byte[] target) {
+        int out = 0;
+        int anchor = 0;
+        if (length > MATCH_FIND_LIMIT) {
+            Arrays.fill(table, -1);
+            int matchFindLimit = length - MATCH_FIND_LIMIT;
+            int matchLimit = length - LAST_LITERALS;
+            int pos = 0;
+            while (pos < matchFindLimit) {
+                int sequence = readInt(source, pos);
+                int hash = hash(sequence);
+                int candidate = table[hash];
+                table[hash] = pos;
+                if (candidate < 0 || pos - candidate > MAX_OFFSET || readInt(source, candidate) != sequence) {
+                    // Step further ahead the longer no match has been found
+                    pos += 1 + ((pos - anchor) >>> SKIP_TRIGGER);
+                    continue;
+                }
+                while (pos > anchor && candidate > 0 && source[pos - 1] == source[candidate - 1]) {
+                    pos--;
+                    candidate--;
+                }
+                int matchLength = MIN_MATCH;
+                while (pos + matchLength < matchLimit && source[pos + matchLength] == source[candidate + matchLength]) {
+                    matchLength++;
+                }
+                out = writeSequence(source, anchor, pos - anchor, pos - candidate, matchLength, target, out);
+                pos += matchLength;
+                anchor = pos;
+                if (pos < matchFindLimit) {
+                    table[hash(readInt(source, pos - 2))] = pos - 2;
+                }
+            }
+        }
+        int literalLength = length - anchor;
+        target[out++] = (byte) (Math.min(literalLength, 15) << 4);
+        out = writeLength(literalLength, target, out);
+        System.arraycopy(source, anchor, target, out, literalLength);
+        return out + literalLength;
+    }
+
+    private static int writeSequence(byte[] source, int literalStart, int literalLength, int offset, int matchLength, byte[] target, int out) {
+        target[out++] = (byte) (Math.min(literalLength, 15) << 4 | Math.min(matchLength - MIN_MATCH, 15));
+        out = writeLength(literalLength, target, out);
+        System.arraycopy(source, literalStart, target, out, literalLength);
+        out += literalLength;
+        target[out++] = (byte) offset;
+        target[out++] = (byte) (offset >>> 8);
+        return writeLength(matchLength - MIN_MATCH, target, out);
+    }
+
+    private static int writeLength(int length, byte[] target, int out) {
+        if (length >= 15) {
+            int remaining = length - 15;
+            while (remaining >= 255) {
+                target[out++] = (byte) 255;
+                remaining -= 255;
+            }
+            target[out++] = (byte) remaining;
+        }
+        return out;
+    }
+
+    /**
+     * Decompresses a block into the target array.
+     *
+     * @throws IOException when the block is corrupt or does not decompress to exactly the given length.
+     */
+    static void decompress(byte[] source, int length, byte[] target, int targetLength) throws IOException {
+        try {
+            int in = 0;
+            int out = 0;
+            while (true) {
+                int token = source[in++] & 0xff;
+                int literalLength = token >>> 4;
+                if (literalLength == 15) {
+                    int b;
+                    do {
+                        b = source[in++] & 0xff;
+                        literalLength += b;
+                    } while (b == 255);
+                }
+                if (literalLength > length - in || literalLength > targetLength - out) {
+                    throw corrupt();
+                }
+                System.arraycopy(source, in, target, out, literalLength);
+                in += literalLength;
+                out += literalLength;
+                if (in == length) {
+                    break;
+                }
+                int offset = (source[in] & 0xff) | (source[in + 1] & 0xff) << 8;
+                in += 2;
+                int matchLength = token & 15;
+                if (matchLength == 15) {
+                    int b;
+                    do {
+                        b = source[in++] & 0xff;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+                matchLength += MIN_MATCH;
+                if (offset == 0 || offset > out || matchLength > targetLength - out) {
+                    throw corrupt();
+                }
+                int match = out - offset;
+                if (offset >= matchLength) {
+                    System.arraycopy(target, match, target, out, matchLength);
+                } else {
+                    // Overlapping copy, repeating the last offset bytes
+                    for (int i = 0; i < matchLength; i++) {
+                        target[out + i] = target[match + i];
+                    }
+                }
+                out += matchLength;
+            }
+            if (out != targetLength) {
+                throw corrupt();
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw corrupt();
+        }
+    }
+
+    private static IOException corrupt() {
+        return new IOException("Corrupt LZ4 block.");
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8 | (bytes[offset + 2] & 0xff) << 16 | (bytes[offset + 3] & 0xff) << 24;
+    }
+}
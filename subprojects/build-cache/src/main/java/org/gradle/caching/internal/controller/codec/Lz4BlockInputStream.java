@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller.codec;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+
+/**
+ * Reads a stream written by {@link Lz4BlockOutputStream}, verifying the checksum of each block.
+ */
+class Lz4BlockInputStream extends InputStream {
+    private final InputStream input;
+    private final byte[] buffer = new byte[Lz4BlockOutputStream.BLOCK_SIZE];
+    private final byte[] compressed = new byte[Lz4Block.maxCompressedLength(Lz4BlockOutputStream.BLOCK_SIZE)];
+    private final byte[] header = new byte[12];
+    private final CRC32 checksum = new CRC32();
+    private int position;
+    private int count;
+    private boolean finished;
+
+    Lz4BlockInputStream(InputStream input) {
+        this.input = input;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position == count && !readBlock()) {
+            return -1;
+        }
+        return buffer[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position == count && !readBlock()) {
+            return -1;
+        }
+        int chunk = Math.min(len, count - position);
+        System.arraycopy(buffer, position, b, off, chunk);
+        position += chunk;
+        return chunk;
+    }
+
+    @Override
+    public int available() {
+        return count - position;
+    }
+
+    private boolean readBlock() throws IOException {
+        if (finished) {
+            return false;
+        }
+        readFully(header, 0, 4);
+        int length = readInt(header, 0);
+        if (length == 0) {
+            finished = true;
+            return false;
+        }
+        readFully(header, 4, 8);
+        int storedLength = readInt(header, 4);
+        if (length < 0 || length > buffer.length || storedLength <= 0 || storedLength > length) {
+            throw new IOException("Corrupt LZ4 block header.");
+        }
+        if (storedLength == length) {
+            readFully(buffer, 0, length);
+        } else {
+            readFully(compressed, 0, storedLength);
+            Lz4Block.decompress(compressed, storedLength, buffer, length);
+        }
+        checksum.reset();
+        checksum.update(buffer, 0, length);
+        if ((int) checksum.getValue() != readInt(header, 8)) {
+            throw new IOException("Corrupt LZ4 block: checksum mismatch.");
+        }
+        position = 0;
+        count = length;
+        return true;
+    }
+
+    private void readFully(byte[] target, int offset, int length) throws IOException {
+        if (IOUtils.read(input, target, offset, length) != length) {
+            throw new IOException("Unexpected end of LZ4 stream.");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) << 24 | (bytes[offset + 1] & 0xff) << 16 | (bytes[offset + 2] & 0xff) << 8 | (bytes[offset + 3] & 0xff);
+    }
+}
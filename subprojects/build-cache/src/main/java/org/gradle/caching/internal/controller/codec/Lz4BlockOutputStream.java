@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+/**
+ * Writes a stream of LZ4 compressed blocks. Each block is preceded by its uncompressed length, its stored length and a CRC32 checksum of its content.
+ * A block that does not compress is stored as is. The stream ends with a block of length zero, so that truncated streams are detected.
+ */
+class Lz4BlockOutputStream extends OutputStream {
+    static final int BLOCK_SIZE = 256 * 1024;
+
+    private final OutputStream output;
+    private final Lz4Block compressor = new Lz4Block();
+    private final byte[] buffer = new byte[BLOCK_SIZE];
+    private final byte[] compressed = new byte[Lz4Block.maxCompressedLength(BLOCK_SIZE)];
+    private final byte[] header = new byte[12];
+    private final CRC32 checksum = new CRC32();
+    private int count;
+    private boolean closed;
+
+    Lz4BlockOutputStream(OutputStream output) {
+        this.output = output;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == BLOCK_SIZE) {
+            writeBlock();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == BLOCK_SIZE) {
+                writeBlock();
+            }
+            int chunk = Math.min(len, BLOCK_SIZE - count);
+            System.arraycopy(b, off, buffer, count, chunk);
+            count += chunk;
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        checksum.reset();
+        checksum.update(buffer, 0, count);
+        int compressedLength = compressor.compress(buffer, count, compressed);
+        boolean store = compressedLength >= count;
+        writeInt(header, 0, count);
+        writeInt(header, 4, store ? count : compressedLength);
+        writeInt(header, 8, (int) checksum.getValue());
+        output.write(header);
+        if (store) {
+            output.write(buffer, 0, count);
+        } else {
+            output.write(compressed, 0, compressedLength);
+        }
+        count = 0;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writeBlock();
+        output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writeBlock();
+            writeInt(header, 0, 0);
+            output.write(header, 0, 4);
+        } finally {
+            output.close();
+        }
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+}
@@ -17,24 +17,40 @@
 package org.gradle.caching.internal.controller.service;
 
 import org.gradle.caching.BuildCacheService;
+import org.gradle.caching.internal.controller.codec.BuildCacheEntryCodec;
 
 public final class BuildCacheServicesConfiguration {
 
     public final BuildCacheService local;
     public final boolean localPush;
+    public final BuildCacheEntryCodec localCodec;
 
     public final BuildCacheService remote;
     public final boolean remotePush;
+    public final BuildCacheEntryCodec remoteCodec;
 
     public BuildCacheServicesConfiguration(
         BuildCacheService local,
         boolean localPush,
         BuildCacheService remote,
         boolean remotePush
+    ) {
+        this(local, localPush, BuildCacheEntryCodec.DEFAULT, remote, remotePush, BuildCacheEntryCodec.DEFAULT);
+    }
+
+    public BuildCacheServicesConfiguration(
+        BuildCacheService local,
+        boolean localPush,
+        BuildCacheEntryCodec localCodec,
+        BuildCacheService remote,
+        boolean remotePush,
+        BuildCacheEntryCodec remoteCodec
     ) {
         this.remote = remote;
         this.remotePush = remotePush;
+        this.remoteCodec = remoteCodec;
         this.local = local;
         this.localPush = localPush;
+        this.localCodec = localCodec;
     }
 }
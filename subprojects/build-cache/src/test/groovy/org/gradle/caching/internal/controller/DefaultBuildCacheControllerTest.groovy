@@ -21,6 +21,7 @@ import org.gradle.caching.BuildCacheEntryReader
 import org.gradle.caching.BuildCacheEntryWriter
 import org.gradle.caching.BuildCacheKey
 import org.gradle.caching.BuildCacheService
+import org.gradle.caching.internal.controller.codec.BuildCacheEntryCodec
 import org.gradle.caching.internal.controller.service.BuildCacheServicesConfiguration
 import org.gradle.caching.local.internal.LocalBuildCacheService
 import org.gradle.internal.operations.TestBuildOperationExecutor
@@ -35,14 +36,17 @@ class DefaultBuildCacheControllerTest extends Specification {
         toString() >> "key"
     }
 
+    def tempFiles = 0
     def local = Mock(Local) {
         allocateTempFile(_, _) >> { key, action ->
-            action.execute(tmpDir.file("file"))
+            action.execute(tmpDir.file("file${tempFiles++}"))
         }
     }
     def localPush = true
+    def localCodec = BuildCacheEntryCodec.DEFAULT
     def remote = Mock(BuildCacheService)
     def remotePush = true
+    def remoteCodec = BuildCacheEntryCodec.DEFAULT
 
     BuildCacheService legacyLocal = null
 
@@ -87,8 +91,8 @@ class DefaultBuildCacheControllerTest extends Specification {
     BuildCacheController getController() {
         new DefaultBuildCacheController(
             new BuildCacheServicesConfiguration(
-                legacyLocal ?: local, localPush,
-                remote, remotePush
+                legacyLocal ?: local, localPush, localCodec,
+                remote, remotePush, remoteCodec
             ),
             operations,
             tmpDir.file("dir"),
@@ -205,6 +209,64 @@ class DefaultBuildCacheControllerTest extends Specification {
         0 * local.store(key, _)
     }
 
+    def "compresses entry again for remote cache using another codec"() {
+        given:
+        remoteCodec = BuildCacheEntryCodec.NONE
+        byte[] localEntry = null
+        byte[] remoteEntry = null
+
+        when:
+        controller.store(storeCommand)
+
+        then:
+        1 * remote.store(key, _) >> { BuildCacheKey key, BuildCacheEntryWriter writer ->
+            def output = new ByteArrayOutputStream()
+            writer.writeTo(output)
+            remoteEntry = output.toByteArray()
+        }
+        1 * local.store(key, _) >> { BuildCacheKey key, File file ->
+            localEntry = file.bytes
+        }
+
+        and:
+        localEntry[0] == (byte) 0x1f
+        remoteEntry as List == "GBC".bytes as List + [(byte) 0]
+    }
+
+    def "remote load stores to local with codec of local cache"() {
+        given:
+        localCodec = BuildCacheEntryCodec.LZ4
+        def entry = new ByteArrayOutputStream()
+        BuildCacheEntryCodec.GZIP.compress(entry).close()
+        def loadCommand = Stub(BuildCacheLoadCommand) {
+            getKey() >> key
+            load(_) >> { InputStream input ->
+                input.bytes
+                input.close()
+                Stub(BuildCacheLoadCommand.Result)
+            }
+        }
+        byte[] localEntry = null
+
+        when:
+        controller.load(loadCommand)
+
+        then:
+        1 * local.load(key, _) // miss
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
+            reader.readFrom(new ByteArrayInputStream(entry.toByteArray()))
+            true
+        }
+        1 * local.store(key, _) >> { BuildCacheKey key, File file ->
+            localEntry = file.bytes
+        }
+
+        and:
+        def input = BuildCacheEntryCodec.decompress(new ByteArrayInputStream(localEntry))
+        input.read() == -1
+        input.codec == BuildCacheEntryCodec.LZ4
+    }
+
     def "stops calling through after read error"() {
         local = null
 
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller.codec
+
+import org.gradle.api.InvalidUserDataException
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.zip.GZIPOutputStream
+
+class BuildCacheEntryCodecTest extends Specification {
+    @Rule
+    final TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
+
+    def content = (1..10000).collect { "line $it" }.join("\n").bytes
+
+    @Unroll
+    def "can read entry compressed with #codec"() {
+        def bytes = compress(codec, content)
+
+        when:
+        def input = BuildCacheEntryCodec.decompress(new ByteArrayInputStream(bytes))
+        def read = input.bytes
+
+        then:
+        read == content
+        input.codec == codec
+
+        where:
+        codec << BuildCacheEntryCodec.values()
+    }
+
+    def "gzip entries are compatible with entries written by earlier versions"() {
+        def legacy = new ByteArrayOutputStream()
+        def gzip = new GZIPOutputStream(legacy)
+        gzip.write(content)
+        gzip.close()
+
+        expect:
+        compress(BuildCacheEntryCodec.GZIP, content) == legacy.toByteArray()
+        BuildCacheEntryCodec.decompress(new ByteArrayInputStream(legacy.toByteArray())).bytes == content
+    }
+
+    def "uncompressed entries start with a header"() {
+        expect:
+        compress(BuildCacheEntryCodec.NONE, content).length == content.length + 4
+    }
+
+    @Unroll
+    def "can transcode entry from #from to #to"() {
+        def source = temporaryFolder.file("source")
+        def target = temporaryFolder.file("target")
+        source.bytes = compress(from, content)
+
+        when:
+        to.transcode(source, target)
+        def input = BuildCacheEntryCodec.decompress(new FileInputStream(target))
+
+        then:
+        input.bytes == content
+        input.codec == to
+
+        cleanup:
+        input?.close()
+
+        where:
+        from                      | to
+        BuildCacheEntryCodec.GZIP | BuildCacheEntryCodec.LZ4
+        BuildCacheEntryCodec.LZ4  | BuildCacheEntryCodec.NONE
+        BuildCacheEntryCodec.NONE | BuildCacheEntryCodec.GZIP
+    }
+
+    def "does not detect codec before the entry is read"() {
+        when:
+        def input = BuildCacheEntryCodec.decompress(new ByteArrayInputStream("foo".bytes))
+
+        then:
+        input.codec == null
+
+        when:
+        input.read()
+
+        then:
+        def e = thrown(IOException)
+        e.message == "Build cache entry has an unknown format."
+    }
+
+    def "fails on unknown codec in header"() {
+        when:
+        BuildCacheEntryCodec.decompress(new ByteArrayInputStream([(byte) 'G', (byte) 'B', (byte) 'C', (byte) 42] as byte[])).read()
+
+        then:
+        def e = thrown(IOException)
+        e.message == "Build cache entry was compressed with an unknown codec (42)."
+    }
+
+    def "looks up codec by name"() {
+        expect:
+        BuildCacheEntryCodec.forName("lz4") == BuildCacheEntryCodec.LZ4
+        BuildCacheEntryCodec.forName("none") == BuildCacheEntryCodec.NONE
+
+        when:
+        BuildCacheEntryCodec.forName("zip")
+
+        then:
+        def e = thrown(InvalidUserDataException)
+        e.message == "Unknown build cache entry compression 'zip'. Supported values are: 'gzip', 'lz4', 'none'."
+    }
+
+    private static byte[] compress(BuildCacheEntryCodec codec, byte[] content) {
+        def bytes = new ByteArrayOutputStream()
+        def output = codec.compress(bytes)
+        output.write(content)
+        output.close()
+        return bytes.toByteArray()
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller.codec
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class Lz4BlockOutputStreamTest extends Specification {
+    @Unroll
+    def "can read back #description"() {
+        when:
+        def compressed = compress(content)
+
+        then:
+        decompress(compressed) == content
+
+        where:
+        description             | content
+        "empty content"         | new byte[0]
+        "short content"         | "abc".bytes
+        "repetitive content"    | ("abcdefgh" * 100000).bytes
+        "runs of a single byte" | ([(byte) 1] * 1000 + [(byte) 2] * 17 + [(byte) 3] * 300) as byte[]
+        "random content"        | randomBytes(Lz4BlockOutputStream.BLOCK_SIZE + 1000)
+        "text spanning blocks"  | (1..100000).collect { "line $it" }.join("\n").bytes
+    }
+
+    def "compresses repetitive content"() {
+        def content = ("abcdefgh" * 100000).bytes
+
+        expect:
+        compress(content).length < content.length / 50
+    }
+
+    def "can write single bytes"() {
+        def content = (1..10000).collect { "line $it" }.join("\n").bytes
+        def bytes = new ByteArrayOutputStream()
+        def output = new Lz4BlockOutputStream(bytes)
+
+        when:
+        content.each { output.write(it) }
+        output.close()
+        def input = new Lz4BlockInputStream(new ByteArrayInputStream(bytes.toByteArray()))
+        def read = new ByteArrayOutputStream()
+        int b
+        while ((b = input.read()) >= 0) {
+            read.write(b)
+        }
+
+        then:
+        read.toByteArray() == content
+    }
+
+    def "detects corrupt content"() {
+        def compressed = compress(("some text " * 100).bytes)
+        compressed[20] = (byte) (compressed[20] ^ 0x5a)
+
+        when:
+        decompress(compressed)
+
+        then:
+        def e = thrown(IOException)
+        e.message.startsWith("Corrupt LZ4 block")
+    }
+
+    def "detects truncated stream"() {
+        def compressed = compress(("some text " * 100).bytes)
+
+        when:
+        decompress(Arrays.copyOf(compressed, compressed.length - 2))
+
+        then:
+        def e = thrown(IOException)
+        e.message == "Unexpected end of LZ4 stream."
+    }
+
+    private static byte[] randomBytes(int count) {
+        def bytes = new byte[count]
+        new Random(1).nextBytes(bytes)
+        return bytes
+    }
+
+    private static byte[] compress(byte[] content) {
+        def bytes = new ByteArrayOutputStream()
+        def output = new Lz4BlockOutputStream(bytes)
+        output.write(content)
+        output.close()
+        return bytes.toByteArray()
+    }
+
+    private static byte[] decompress(byte[] compressed) {
+        return new Lz4BlockInputStream(new ByteArrayInputStream(compressed)).bytes
+    }
+}
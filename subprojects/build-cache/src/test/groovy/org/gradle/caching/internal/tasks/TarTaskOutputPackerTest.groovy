@@ -25,8 +25,9 @@ import org.gradle.api.internal.tasks.OutputType
 import org.gradle.api.internal.tasks.ResolvedTaskOutputFilePropertySpec
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.hash.DefaultContentHasherFactory
 import org.gradle.internal.hash.DefaultStreamHasher
-import org.gradle.internal.hash.Hashing
 import org.gradle.internal.nativeplatform.filesystem.FileSystem
 import org.gradle.test.fixtures.file.CleanupTestDirectory
 import org.gradle.test.fixtures.file.TestFile
@@ -50,7 +51,7 @@ class TarTaskOutputPackerTest extends Specification {
     def writeOrigin = Stub(TaskOutputOriginWriter)
 
     def fileSystem = Mock(FileSystem)
-    def streamHasher = new DefaultStreamHasher({ Hashing.md5().newHasher() })
+    def streamHasher = new DefaultStreamHasher(new DefaultContentHasherFactory())
     def stringInterner = new StringInterner()
     def packer = new TarTaskOutputPacker(fileSystem, streamHasher, stringInterner)
 
@@ -294,6 +295,45 @@ class TarTaskOutputPackerTest extends Specification {
         0 * _
     }
 
+    def "can pack and unpack task output directory using a pool of threads"() {
+        def parallelPacker = new TarTaskOutputPacker(fileSystem, streamHasher, stringInterner, new DefaultExecutorFactory(), 4)
+        def sourceOutputDir = temporaryFolder.file("source").createDir()
+        def random = new Random(1234L)
+        (0..<10).each { dirIndex ->
+            def dir = sourceOutputDir.file("dir-$dirIndex").createDir()
+            (0..<20).each { fileIndex ->
+                def content = new byte[fileIndex == 0 ? 300 * 1024 : random.nextInt(1024)]
+                random.nextBytes(content)
+                dir.file("file-$fileIndex").bytes = content
+            }
+        }
+        def targetOutputDir = temporaryFolder.file("target")
+        def output = new ByteArrayOutputStream()
+        _ * fileSystem.getUnixMode(_) >> 0644
+
+        when:
+        packer = parallelPacker
+        pack output, prop(DIRECTORY, sourceOutputDir)
+        def result = unpack new ByteArrayInputStream(output.toByteArray()), prop(DIRECTORY, targetOutputDir)
+
+        then:
+        def descendants = sourceOutputDir.allDescendants()
+        targetOutputDir.allDescendants() == descendants
+        descendants.every { path -> targetOutputDir.file(path).bytes == sourceOutputDir.file(path).bytes }
+
+        when:
+        def sequentialTargetDir = temporaryFolder.file("sequential-target")
+        packer = new TarTaskOutputPacker(fileSystem, streamHasher, stringInterner)
+        def sequentialResult = unpack new ByteArrayInputStream(output.toByteArray()), prop(DIRECTORY, sequentialTargetDir)
+
+        then:
+        sequentialResult.snapshots.get("test").tail()*.relativePath == result.snapshots.get("test").tail()*.relativePath
+        sequentialResult.snapshots.get("test")*.content*.contentMd5 == result.snapshots.get("test")*.content*.contentMd5
+
+        cleanup:
+        parallelPacker?.stop()
+    }
+
     def pack(OutputStream output, TaskOutputOriginWriter writeOrigin = this.writeOrigin, PropertyDefinition... propertyDefs) {
         def propertySpecs = propertyDefs*.property as SortedSet
         def outputSnapshots = propertyDefs.collectEntries { propertyDef ->
@@ -92,7 +92,9 @@ class TaskOutputCacheCommandFactoryTest extends Specification {
         def result = load.load(input)
 
         then:
-        1 * taskOutputsGenerationListener.beforeTaskOutputsGenerated()
+        1 * task.getLocalState() >> taskLocalState
+        1 * taskLocalState.getFiles() >> localStateFiles
+        1 * taskOutputsGenerationListener.beforeTaskOutputsGenerated([outputDir, outputFile, localStateFile])
         1 * originFactory.createReader(task)
 
         then:
@@ -135,7 +137,9 @@ class TaskOutputCacheCommandFactoryTest extends Specification {
         command.load(input)
 
         then:
-        1 * taskOutputsGenerationListener.beforeTaskOutputsGenerated()
+        1 * task.getLocalState() >> taskLocalState
+        1 * taskLocalState.getFiles() >> localStateFiles
+        1 * taskOutputsGenerationListener.beforeTaskOutputsGenerated([outputFile, localStateFile])
         1 * originFactory.createReader(task)
 
         then:
@@ -171,7 +175,10 @@ class TaskOutputCacheCommandFactoryTest extends Specification {
         command.load(input)
 
         then:
-        1 * taskOutputsGenerationListener.beforeTaskOutputsGenerated()
+        1 * outputProperties.iterator() >> [].iterator()
+        1 * task.getLocalState() >> taskLocalState
+        1 * taskLocalState.getFiles() >> localStateFiles
+        1 * taskOutputsGenerationListener.beforeTaskOutputsGenerated([localStateFile])
         1 * originFactory.createReader(task)
 
         then:
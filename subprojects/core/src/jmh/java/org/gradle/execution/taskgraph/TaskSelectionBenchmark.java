@@ -0,0 +1,206 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Schedules a synthetic task graph to completion, comparing a scan of the remaining plan for each selection with the {@link ReadyTaskQueue}.
+ * Each task depends on a few of the tasks shortly before it in the plan. Task durations are simulated, and a few tasks take much longer than the others,
+ * so that the tasks waiting for them build up in the plan.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.SingleShotTime)
+@State(Scope.Benchmark)
+public class TaskSelectionBenchmark {
+    private static final int WORKERS = 8;
+    private static final int MAX_DEPENDENCIES = 3;
+    private static final int DEPENDENCY_WINDOW = 200;
+    private static final int LONG_TASK_PERCENTAGE = 2;
+
+    @Param({"1000", "10000", "100000"})
+    int taskCount;
+
+    List<TaskInfo> plan;
+
+    @Setup(Level.Invocation)
+    public void createGraph() {
+        Random random = new Random(42);
+        plan = new ArrayList<TaskInfo>(taskCount);
+        for (int i = 0; i < taskCount; i++) {
+            int duration = random.nextInt(100) < LONG_TASK_PERCENTAGE ? 1000 + random.nextInt(9000) : 1 + random.nextInt(100);
+            TaskInfo taskInfo = new SyntheticTaskInfo(i, duration);
+            taskInfo.require();
+            int dependencies = i == 0 ? 0 : random.nextInt(MAX_DEPENDENCIES + 1);
+            for (int j = 0; j < dependencies; j++) {
+                int dependency = Math.max(0, i - 1 - random.nextInt(DEPENDENCY_WINDOW));
+                taskInfo.addDependencySuccessor(plan.get(dependency));
+            }
+            plan.add(taskInfo);
+        }
+    }
+
+    @Benchmark
+    public int scanPlan() {
+        LinkedList<TaskInfo> queue = new LinkedList<TaskInfo>(plan);
+        Set<TaskInfo> dependenciesComplete = new HashSet<TaskInfo>();
+        Workers workers = new Workers();
+        while (true) {
+            while (workers.hasCapacity() && hasIncompleteTask(queue)) {
+                TaskInfo selected = null;
+                for (Iterator<TaskInfo> iterator = queue.iterator(); iterator.hasNext();) {
+                    TaskInfo taskInfo = iterator.next();
+                    if (taskInfo.isReady() && (dependenciesComplete.contains(taskInfo) || taskInfo.allDependenciesComplete())) {
+                        dependenciesComplete.add(taskInfo);
+                        taskInfo.startExecution();
+                        iterator.remove();
+                        selected = taskInfo;
+                        break;
+                    }
+                }
+                if (selected == null) {
+                    break;
+                }
+                workers.start(selected);
+            }
+            TaskInfo completed = workers.nextCompleted();
+            if (completed == null) {
+                return workers.executed;
+            }
+            completed.finishExecution();
+        }
+    }
+
+    @Benchmark
+    public int readyTaskQueue() {
+        ReadyTaskQueue queue = new ReadyTaskQueue();
+        queue.initialize(plan);
+        Workers workers = new Workers();
+        while (true) {
+            while (workers.hasCapacity() && queue.hasPendingTasks()) {
+                Iterator<TaskInfo> iterator = queue.iterator();
+                if (!iterator.hasNext()) {
+                    break;
+                }
+                TaskInfo selected = iterator.next();
+                selected.startExecution();
+                queue.taskSelected(selected);
+                workers.start(selected);
+            }
+            TaskInfo completed = workers.nextCompleted();
+            if (completed == null) {
+                return workers.executed;
+            }
+            completed.finishExecution();
+            queue.taskCompleted(completed);
+        }
+    }
+
+    private static boolean hasIncompleteTask(List<TaskInfo> queue) {
+        for (TaskInfo taskInfo : queue) {
+            if (!taskInfo.isComplete()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Simulates the workers, completing the running task that finishes first.
+     */
+    private static class Workers {
+        private final PriorityQueue<RunningTask> running = new PriorityQueue<RunningTask>();
+        private long time;
+        int executed;
+
+        boolean hasCapacity() {
+            return running.size() < WORKERS;
+        }
+
+        void start(TaskInfo taskInfo) {
+            running.add(new RunningTask(taskInfo, time + ((SyntheticTaskInfo) taskInfo).duration));
+        }
+
+        TaskInfo nextCompleted() {
+            RunningTask next = running.poll();
+            if (next == null) {
+                return null;
+            }
+            time = next.finishTime;
+            executed++;
+            return next.taskInfo;
+        }
+    }
+
+    private static class RunningTask implements Comparable<RunningTask> {
+        final TaskInfo taskInfo;
+        final long finishTime;
+
+        RunningTask(TaskInfo taskInfo, long finishTime) {
+            this.taskInfo = taskInfo;
+            this.finishTime = finishTime;
+        }
+
+        @Override
+        public int compareTo(RunningTask other) {
+            return finishTime < other.finishTime ? -1 : (finishTime == other.finishTime ? 0 : 1);
+        }
+    }
+
+    private static class SyntheticTaskInfo extends TaskInfo {
+        private final int id;
+        private final int duration;
+
+        SyntheticTaskInfo(int id, int duration) {
+            super(null);
+            this.id = id;
+            this.duration = duration;
+        }
+
+        @Override
+        public int compareTo(TaskInfo otherInfo) {
+            int otherId = ((SyntheticTaskInfo) otherInfo).id;
+            return id < otherId ? -1 : (id == otherId ? 0 : 1);
+        }
+
+        @Override
+        public String toString() {
+            return "task" + id;
+        }
+    }
+}
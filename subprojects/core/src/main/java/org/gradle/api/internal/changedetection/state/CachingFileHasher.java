@@ -21,6 +21,7 @@ import org.gradle.api.file.FileTreeElement;
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.internal.file.FileMetadataSnapshot;
+import org.gradle.internal.hash.ContentHasherFactory;
 import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.nativeintegration.filesystem.FileSystem;
@@ -29,12 +30,17 @@ import org.gradle.internal.serialize.Decoder;
 import org.gradle.internal.serialize.Encoder;
 import org.gradle.internal.serialize.HashCodeSerializer;
 
+import javax.annotation.Nullable;
 import java.io.File;
 
 public class CachingFileHasher implements FileHasher {
+    @Nullable
     private final PersistentIndexedCache<String, FileInfo> cache;
+    @Nullable
+    private final MappedFileHashIndex index;
     private final FileHasher delegate;
     private final FileSystem fileSystem;
+    @Nullable
     private final StringInterner stringInterner;
     private final FileTimeStampInspector timestampInspector;
 
@@ -42,37 +48,71 @@ public class CachingFileHasher implements FileHasher {
         this.delegate = delegate;
         this.fileSystem = fileSystem;
         this.cache = store.createCache(cacheName, String.class, new FileInfoSerializer(), 400000, true);
+        this.index = null;
         this.stringInterner = stringInterner;
         this.timestampInspector = timestampInspector;
     }
 
+    /**
+     * Creates a hasher that keeps file hashes in the given off-heap index rather than in a persistent cache.
+     */
+    public CachingFileHasher(FileHasher delegate, MappedFileHashIndex index, FileTimeStampInspector timestampInspector, FileSystem fileSystem) {
+        this.delegate = delegate;
+        this.fileSystem = fileSystem;
+        this.cache = null;
+        this.index = index;
+        this.stringInterner = null;
+        this.timestampInspector = timestampInspector;
+    }
+
+    /**
+     * Returns the name of the cache to use for file hashes created with the given factory. Hashes created with different hash functions are kept apart.
+     */
+    public static String cacheName(ContentHasherFactory contentHasherFactory) {
+        String hashFunction = contentHasherFactory.getName();
+        return "md5".equals(hashFunction) ? "fileHashes" : "fileHashes-" + hashFunction;
+    }
+
     @Override
     public String toString() {
-        return "{hasher cache: " + cache + "}";
+        return "{hasher cache: " + (index != null ? index : cache) + "}";
     }
 
     @Override
     public HashCode hash(File file) {
-        return snapshot(file).getHash();
+        FileMetadataSnapshot fileMetadata = fileSystem.stat(file);
+        return hash(file, fileMetadata.getLength(), fileMetadata.getLastModified());
     }
 
     @Override
     public HashCode hash(FileTreeElement fileDetails) {
-        return snapshot(fileDetails).getHash();
+        return hash(fileDetails.getFile(), fileDetails.getSize(), fileDetails.getLastModified());
     }
 
     @Override
     public HashCode hash(File file, FileMetadataSnapshot fileDetails) {
-        return snapshot(file, fileDetails.getLength(), fileDetails.getLastModified()).getHash();
+        return hash(file, fileDetails.getLength(), fileDetails.getLastModified());
     }
 
-    private FileInfo snapshot(File file) {
-        FileMetadataSnapshot fileMetadata = fileSystem.stat(file);
-        return snapshot(file, fileMetadata.getLength(), fileMetadata.getLastModified());
+    private HashCode hash(File file, long length, long timestamp) {
+        if (index != null) {
+            return indexedHash(file, length, timestamp);
+        }
+        return snapshot(file, length, timestamp).getHash();
     }
 
-    private FileInfo snapshot(FileTreeElement file) {
-        return snapshot(file.getFile(), file.getSize(), file.getLastModified());
+    private HashCode indexedHash(File file, long length, long timestamp) {
+        String absolutePath = file.getAbsolutePath();
+        if (timestampInspector.timestampCanBeUsedToDetectFileChange(absolutePath, timestamp)) {
+            HashCode hash = index.get(absolutePath, length, timestamp);
+            if (hash != null) {
+                return hash;
+            }
+        }
+
+        HashCode hash = delegate.hash(file);
+        index.put(absolutePath, hash, length, timestamp);
+        return hash;
     }
 
     private FileInfo snapshot(File file, long length, long timestamp) {
@@ -92,7 +132,11 @@ public class CachingFileHasher implements FileHasher {
     }
 
     public void discard(String path) {
-        cache.remove(path);
+        if (index != null) {
+            index.remove(path);
+        } else {
+            cache.remove(path);
+        }
     }
 
     @VisibleForTesting
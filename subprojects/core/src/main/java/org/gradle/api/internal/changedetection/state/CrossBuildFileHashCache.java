@@ -23,6 +23,8 @@ import org.gradle.cache.PersistentCache;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.PersistentIndexedCacheParameters;
 import org.gradle.internal.serialize.Serializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import java.io.Closeable;
@@ -32,6 +34,8 @@ import java.io.IOException;
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
 public class CrossBuildFileHashCache implements Closeable, TaskHistoryStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CrossBuildFileHashCache.class);
+
     private final PersistentCache cache;
     private final InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory;
 
@@ -47,10 +51,27 @@ public class CrossBuildFileHashCache implements Closeable, TaskHistoryStore {
     @Override
     public <K, V> PersistentIndexedCache<K, V> createCache(String cacheName, Class<K> keyType, Serializer<V> valueSerializer, int maxEntriesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses) {
         PersistentIndexedCacheParameters<K, V> parameters = new PersistentIndexedCacheParameters<K, V>(cacheName, keyType, valueSerializer)
-                .cacheDecorator(inMemoryCacheDecoratorFactory.decorator(maxEntriesToKeepInMemory, cacheInMemoryForShortLivedProcesses));
+                .cacheDecorator(inMemoryCacheDecoratorFactory.decorator(maxEntriesToKeepInMemory, cacheInMemoryForShortLivedProcesses))
+                .storeFormat(PersistentIndexedCacheParameters.StoreFormat.AppendOnlyLog);
         return cache.createCache(parameters);
     }
 
+    /**
+     * Opens the off-heap index of file hashes with the given name, kept alongside the caches of this store. An index already opened by this process is reused.
+     *
+     * @return the index, or null when it cannot be opened.
+     */
+    @Nullable
+    public MappedFileHashIndex openFileHashIndex(String name, MappedFileHashIndexCache indexCache) {
+        File indexFile = new File(cache.getBaseDir(), name + ".idx");
+        try {
+            return indexCache.open(indexFile, MappedFileHashIndex.DEFAULT_SLOT_COUNT);
+        } catch (IOException e) {
+            LOGGER.info("Could not open file hash index {}, falling back to file hash cache.", indexFile, e);
+            return null;
+        }
+    }
+
     @Override
     public void close() throws IOException {
         cache.close();
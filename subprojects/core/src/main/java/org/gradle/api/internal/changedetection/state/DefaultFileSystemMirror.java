@@ -19,19 +19,36 @@ package org.gradle.api.internal.changedetection.state;
 import org.gradle.api.internal.tasks.execution.TaskOutputsGenerationListener;
 import org.gradle.initialization.RootBuildLifecycleListener;
 import org.gradle.internal.classpath.CachedJarFileStore;
+import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.file.DefaultFileHierarchySet;
 import org.gradle.internal.file.FileHierarchySet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * See {@link DefaultFileSystemSnapshotter} for some more details
+ * See {@link DefaultFileSystemSnapshotter} for some more details.
+ *
+ * <p>When the outputs of a task are generated, the state about the output locations, their descendants and the trees that contain them is discarded.
+ * The paths with known state are kept sorted, so that the descendants of a location can be found without visiting the state about unrelated files.</p>
+ *
+ * <p>When created with a {@link FileWatchingChangeTracker}, state about files that do not live in an append-only cache is retained between builds.
+ * At the end of each build the roots of the retained state are watched, and at the start of the next build the state affected by the changes reported
+ * for those roots is discarded. State about a root that was not yet watched when the build started is discarded at the end of the build.</p>
  */
-public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGenerationListener, RootBuildLifecycleListener {
+public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGenerationListener, RootBuildLifecycleListener, Stoppable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultFileSystemMirror.class);
+
     // Maps from interned absolute path for a file to known details for the file.
     private final Map<String, FileSnapshot> files = new ConcurrentHashMap<String, FileSnapshot>();
     private final Map<String, FileSnapshot> cacheFiles = new ConcurrentHashMap<String, FileSnapshot>();
@@ -41,9 +58,22 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
     // Maps from interned absolute path to a snapshot
     private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<String, Snapshot>();
     private final Map<String, Snapshot> cacheSnapshots = new ConcurrentHashMap<String, Snapshot>();
+    // The sorted paths that may have state in files, trees or snapshots.
+    // Lock is held while adding state to these maps or removing state from them, so that every path with state is in this set
+    private final Object lock = new Object();
+    private final NavigableSet<String> paths = new TreeSet<String>();
     private final FileHierarchySet cachedDirectories;
+    @Nullable
+    private final FileWatchingChangeTracker changeTracker;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
 
     public DefaultFileSystemMirror(List<CachedJarFileStore> fileStores) {
+        this(fileStores, null);
+    }
+
+    public DefaultFileSystemMirror(List<CachedJarFileStore> fileStores, @Nullable FileWatchingChangeTracker changeTracker) {
+        this.changeTracker = changeTracker;
         FileHierarchySet cachedDirectories = DefaultFileHierarchySet.of();
         for (CachedJarFileStore fileStore : fileStores) {
             for (File file : fileStore.getFileStoreRoots()) {
@@ -59,9 +89,9 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
         // Could potentially also look whether we have the details for an ancestor directory tree
         // Could possibly infer that the path refers to a directory, if we have details for a descendant path (and it's not a missing file)
         if (cachedDirectories.contains(path)) {
-            return cacheFiles.get(path);
+            return record(cacheFiles.get(path));
         } else {
-            return files.get(path);
+            return record(files.get(path));
         }
     }
 
@@ -70,7 +100,10 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
         if (cachedDirectories.contains(file.getPath())) {
             cacheFiles.put(file.getPath(), file);
         } else {
-            files.put(file.getPath(), file);
+            synchronized (lock) {
+                paths.add(file.getPath());
+                files.put(file.getPath(), file);
+            }
         }
     }
 
@@ -78,9 +111,9 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
     @Override
     public Snapshot getContent(String path) {
         if (cachedDirectories.contains(path)) {
-            return cacheSnapshots.get(path);
+            return record(cacheSnapshots.get(path));
         } else {
-            return snapshots.get(path);
+            return record(snapshots.get(path));
         }
     }
 
@@ -89,7 +122,10 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
         if (cachedDirectories.contains(path)) {
             cacheSnapshots.put(path, snapshot);
         } else {
-            snapshots.put(path, snapshot);
+            synchronized (lock) {
+                paths.add(path);
+                snapshots.put(path, snapshot);
+            }
         }
     }
 
@@ -99,9 +135,9 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
         // Could potentially also look whether we have the details for an ancestor directory tree
         // Could possibly also short-circuit some scanning if we have details for some sub trees
         if (cachedDirectories.contains(path)) {
-            return cacheTrees.get(path);
+            return record(cacheTrees.get(path));
         } else {
-            return trees.get(path);
+            return record(trees.get(path));
         }
     }
 
@@ -110,31 +146,151 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
         if (cachedDirectories.contains(directory.getPath())) {
             cacheTrees.put(directory.getPath(), directory);
         } else {
-            trees.put(directory.getPath(), directory);
+            synchronized (lock) {
+                paths.add(directory.getPath());
+                trees.put(directory.getPath(), directory);
+            }
+        }
+    }
+
+    private <T> T record(@Nullable T value) {
+        if (value == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
         }
+        return value;
+    }
+
+    /**
+     * Returns the number of lookups in the current build that found some state.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups in the current build that did not find any state.
+     */
+    public long getMissCount() {
+        return misses.get();
     }
 
     @Override
     public void beforeTaskOutputsGenerated() {
-        // When the task outputs are generated, throw away all state for files that do not live in an append-only cache.
-        // This is intentionally very simple, to be improved later
-        files.clear();
-        trees.clear();
-        snapshots.clear();
+        // The outputs may be written anywhere, so throw away all state for files that do not live in an append-only cache.
+        clear();
+    }
+
+    @Override
+    public void beforeTaskOutputsGenerated(Iterable<File> outputLocations) {
+        synchronized (lock) {
+            for (File outputLocation : outputLocations) {
+                String path = outputLocation.getAbsolutePath();
+                if (cachedDirectories.contains(path)) {
+                    continue;
+                }
+                // The location itself and its descendants
+                discard(path);
+                paths.remove(path);
+                for (Iterator<String> iterator = paths.subSet(path + File.separatorChar, (path + (char) (File.separatorChar + 1))).iterator(); iterator.hasNext();) {
+                    discard(iterator.next());
+                    iterator.remove();
+                }
+                // The ancestors of the location, as the task may create them or change the trees they contain
+                for (File ancestor = outputLocation.getAbsoluteFile().getParentFile(); ancestor != null; ancestor = ancestor.getParentFile()) {
+                    String ancestorPath = ancestor.getPath();
+                    if (paths.remove(ancestorPath)) {
+                        discard(ancestorPath);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Discards the state about the given path, leaving it to the caller to remove the path from the set of paths. Lock must be held.
+     */
+    private void discard(String path) {
+        files.remove(path);
+        trees.remove(path);
+        snapshots.remove(path);
+    }
+
+    private void clear() {
+        synchronized (lock) {
+            files.clear();
+            trees.clear();
+            snapshots.clear();
+            paths.clear();
+        }
     }
 
     @Override
     public void afterStart() {
+        if (changeTracker == null) {
+            return;
+        }
+        FileWatchingChangeTracker.FileSystemChanges changes = changeTracker.takeChanges();
+        if (changes == null) {
+            clear();
+        } else if (!changes.isEmpty()) {
+            synchronized (lock) {
+                for (String path : paths) {
+                    if (changes.affectsFile(path)) {
+                        files.remove(path);
+                    }
+                    if (changes.affectsTree(path)) {
+                        trees.remove(path);
+                        snapshots.remove(path);
+                    }
+                }
+            }
+        }
     }
 
     @Override
     public void beforeComplete() {
-        // We throw away all state between builds
-        files.clear();
+        if (LOGGER.isInfoEnabled() && (hits.get() > 0 || misses.get() > 0)) {
+            LOGGER.info("File system state lookups: {} hits, {} misses.", hits.get(), misses.get());
+        }
+        hits.set(0);
+        misses.set(0);
+
         cacheFiles.clear();
-        trees.clear();
         cacheTrees.clear();
-        snapshots.clear();
         cacheSnapshots.clear();
+        if (changeTracker == null) {
+            // We throw away all state between builds
+            clear();
+            return;
+        }
+
+        // Retain the state about watched roots, and start watching the others so their state can be retained after the next build
+        List<String> unwatchedRoots = new ArrayList<String>();
+        FileHierarchySet unwatched = DefaultFileHierarchySet.of();
+        synchronized (lock) {
+            for (Iterator<String> iterator = paths.iterator(); iterator.hasNext();) {
+                String path = iterator.next();
+                if (!changeTracker.isWatched(path)) {
+                    discard(path);
+                    iterator.remove();
+                    if (!unwatched.contains(path)) {
+                        unwatchedRoots.add(path);
+                        unwatched = unwatched.plus(new File(path));
+                    }
+                } else if (!files.containsKey(path) && !trees.containsKey(path) && !snapshots.containsKey(path)) {
+                    iterator.remove();
+                }
+            }
+        }
+        changeTracker.watch(unwatchedRoots);
+    }
+
+    @Override
+    public void stop() {
+        if (changeTracker != null) {
+            changeTracker.stop();
+        }
     }
 }
@@ -34,6 +34,7 @@ import org.gradle.internal.Factory;
 import org.gradle.internal.file.FileMetadataSnapshot;
 import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.ParallelFileHasher;
 import org.gradle.internal.nativeintegration.filesystem.FileSystem;
 import org.gradle.normalization.internal.InputNormalizationStrategy;
 
@@ -57,17 +58,19 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
     private final FileSystem fileSystem;
     private final DirectoryFileTreeFactory directoryFileTreeFactory;
     private final FileSystemMirror fileSystemMirror;
+    private final ParallelFileHasher parallelFileHasher;
     private final ProducerGuard<String> producingSelfSnapshots = ProducerGuard.striped();
     private final ProducerGuard<String> producingTrees = ProducerGuard.striped();
     private final ProducerGuard<String> producingAllSnapshots = ProducerGuard.striped();
     private final DefaultGenericFileCollectionSnapshotter snapshotter;
 
-    public DefaultFileSystemSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, FileSystemMirror fileSystemMirror) {
+    public DefaultFileSystemSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, FileSystemMirror fileSystemMirror, ParallelFileHasher parallelFileHasher) {
         this.hasher = hasher;
         this.stringInterner = stringInterner;
         this.fileSystem = fileSystem;
         this.directoryFileTreeFactory = directoryFileTreeFactory;
         this.fileSystemMirror = fileSystemMirror;
+        this.parallelFileHasher = parallelFileHasher;
         snapshotter = new DefaultGenericFileCollectionSnapshotter(stringInterner, directoryFileTreeFactory, this);
     }
 
@@ -133,9 +136,7 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
         // Could potentially coordinate with a thread that is snapshotting an overlapping directory tree
         // Currently cache only those trees where we want everything from a directory
         if (!dirTree.getPatterns().isEmpty()) {
-            List<FileSnapshot> elements = Lists.newArrayList();
-            dirTree.visit(new FileVisitorImpl(elements));
-            return new DirectoryTreeDetails(dirTree.getDir().getAbsolutePath(), elements);
+            return new DirectoryTreeDetails(dirTree.getDir().getAbsolutePath(), visitDirectoryTree(dirTree));
         }
 
         final String path = dirTree.getDir().getAbsolutePath();
@@ -162,9 +163,13 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
 
     private FileTreeSnapshot doSnapshot(DirectoryFileTree directoryTree) {
         String path = getPath(directoryTree.getDir());
-        List<FileSnapshot> elements = Lists.newArrayList();
-        directoryTree.visit(new FileVisitorImpl(elements));
-        return new DirectoryTreeDetails(path, ImmutableList.copyOf(elements));
+        return new DirectoryTreeDetails(path, ImmutableList.copyOf(visitDirectoryTree(directoryTree)));
+    }
+
+    private List<FileSnapshot> visitDirectoryTree(DirectoryFileTree directoryTree) {
+        DirectoryTreeVisitor visitor = new DirectoryTreeVisitor();
+        directoryTree.visit(visitor);
+        return visitor.getElements();
     }
 
     private String getPath(File file) {
@@ -224,4 +229,38 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
             fileTreeElements.add(new RegularFileSnapshot(getPath(fileDetails.getFile()), fileDetails.getRelativePath(), false, fileSnapshot(fileDetails)));
         }
     }
+
+    /**
+     * Collects the elements of a directory tree. The regular files of the tree are hashed as one batch once the whole tree has been visited.
+     */
+    private class DirectoryTreeVisitor implements FileVisitor {
+        private final List<FileSnapshot> fileTreeElements = Lists.newArrayList();
+        private final List<FileVisitDetails> files = Lists.newArrayList();
+
+        @Override
+        public void visitDir(FileVisitDetails dirDetails) {
+            fileTreeElements.add(new DirectoryFileSnapshot(getPath(dirDetails.getFile()), dirDetails.getRelativePath(), false));
+        }
+
+        @Override
+        public void visitFile(FileVisitDetails fileDetails) {
+            // Added once the file has been hashed
+            fileTreeElements.add(null);
+            files.add(fileDetails);
+        }
+
+        List<FileSnapshot> getElements() {
+            List<HashCode> hashes = parallelFileHasher.hash(hasher, files);
+            int nextFile = 0;
+            for (int i = 0; i < fileTreeElements.size(); i++) {
+                if (fileTreeElements.get(i) == null) {
+                    FileVisitDetails fileDetails = files.get(nextFile);
+                    FileHashSnapshot content = new FileHashSnapshot(hashes.get(nextFile), fileDetails.getLastModified());
+                    fileTreeElements.set(i, new RegularFileSnapshot(getPath(fileDetails.getFile()), fileDetails.getRelativePath(), false, content));
+                    nextFile++;
+                }
+            }
+            return fileTreeElements;
+        }
+    }
 }
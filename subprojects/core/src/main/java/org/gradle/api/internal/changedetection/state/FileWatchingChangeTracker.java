@@ -0,0 +1,352 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.Action;
+import org.gradle.api.internal.file.FileSystemSubset;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.file.DefaultFileHierarchySet;
+import org.gradle.internal.file.FileHierarchySet;
+import org.gradle.internal.filewatch.FileWatcher;
+import org.gradle.internal.filewatch.FileWatcherEvent;
+import org.gradle.internal.filewatch.FileWatcherFactory;
+import org.gradle.internal.filewatch.FileWatcherListener;
+import org.gradle.internal.os.OperatingSystem;
+import org.gradle.util.GFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Watches the roots that {@link DefaultFileSystemMirror} retains state for between builds, and collects the changes made to them.
+ *
+ * <p>Roots are registered with the watcher at the end of a build, so state that was captured before its root was watched must not be retained.
+ * Changes are collected as they are reported and are handed out in a single batch at the start of the next build.</p>
+ *
+ * <p>The watcher reports changes asynchronously, so before handing out the changes the tracker creates a marker file in a directory that it also watches,
+ * and waits for the watcher to report it. Any change made before the marker was created has been reported by then.</p>
+ */
+public class FileWatchingChangeTracker implements Stoppable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileWatchingChangeTracker.class);
+    private static final int MAX_PENDING_CHANGES = 10000;
+    // The JDK watch service can requeue a key that is being processed behind a later one, so sync twice to see all changes made before the first marker
+    private static final int SYNC_ROUNDS = 2;
+    private static final long SYNC_TIMEOUT_MILLIS = 1000;
+
+    private final FileWatcherFactory fileWatcherFactory;
+    private final File syncDirectory;
+    private final String syncMarkerPrefix = UUID.randomUUID().toString();
+    private final Object lock = new Object();
+    private final NavigableSet<String> watchedRootPaths = new TreeSet<String>();
+    private final Set<String> modifiedPaths = new HashSet<String>();
+    private final Set<String> createdOrRemovedPaths = new HashSet<String>();
+    private volatile FileHierarchySet watchedRoots = DefaultFileHierarchySet.of();
+    private FileWatcher watcher;
+    private boolean changesUnknown;
+    private File syncMarker;
+    private boolean syncMarkerSeen;
+    private int syncCount;
+
+    /**
+     * @param syncDirectory a directory used to sync with the watcher. It may be shared with other processes.
+     */
+    public FileWatchingChangeTracker(FileWatcherFactory fileWatcherFactory, File syncDirectory) {
+        this.fileWatcherFactory = fileWatcherFactory;
+        this.syncDirectory = syncDirectory.getAbsoluteFile();
+    }
+
+    /**
+     * Can changes be tracked on the current platform? The JDK watch service is only backed by native notifications on Linux and Windows.
+     * Elsewhere it polls, and changes made immediately before a build could go unnoticed.
+     */
+    public static boolean isSupported() {
+        OperatingSystem operatingSystem = OperatingSystem.current();
+        return operatingSystem.isLinux() || operatingSystem.isWindows();
+    }
+
+    /**
+     * Is the given file, or one of its ancestors, being watched for changes?
+     */
+    public boolean isWatched(String path) {
+        return watchedRoots.contains(path);
+    }
+
+    /**
+     * Starts watching the given roots. Each root may be a file or a directory, and all descendants of a directory are watched.
+     */
+    public void watch(Collection<String> roots) {
+        if (roots.isEmpty()) {
+            return;
+        }
+        synchronized (lock) {
+            boolean newWatcher = watcher == null;
+            if (newWatcher) {
+                watcher = fileWatcherFactory.watch(new Action<Throwable>() {
+                    @Override
+                    public void execute(Throwable throwable) {
+                        LOGGER.info("Stopped tracking changes to the file system due to a failure.", throwable);
+                        discardChanges();
+                    }
+                }, new FileWatcherListener() {
+                    @Override
+                    public void onChange(FileWatcher watcher, FileWatcherEvent event) {
+                        recordChange(event);
+                    }
+                });
+            }
+            FileSystemSubset.Builder builder = FileSystemSubset.builder();
+            if (newWatcher) {
+                GFileUtils.mkdirs(syncDirectory);
+                builder.add(syncDirectory);
+            }
+            for (String root : roots) {
+                builder.add(new File(root));
+            }
+            try {
+                watcher.watch(builder.build());
+            } catch (IOException e) {
+                LOGGER.info("Could not watch the file system for changes.", e);
+                discardChanges();
+                return;
+            }
+            FileHierarchySet watchedRoots = this.watchedRoots;
+            for (String root : roots) {
+                watchedRootPaths.add(root);
+                watchedRoots = watchedRoots.plus(new File(root));
+            }
+            this.watchedRoots = watchedRoots;
+        }
+    }
+
+    /**
+     * Returns the changes reported since the previous call, or {@code null} when the changes are not known and all retained state must be discarded.
+     */
+    @Nullable
+    public FileSystemChanges takeChanges() {
+        if (!awaitReportedChanges()) {
+            discardChanges();
+        }
+        synchronized (lock) {
+            if (changesUnknown) {
+                changesUnknown = false;
+                return null;
+            }
+            FileSystemChanges changes = new FileSystemChanges(modifiedPaths, createdOrRemovedPaths);
+            if (!createdOrRemovedPaths.isEmpty()) {
+                // A root that has been created or removed is no longer watched, so any state for it must be captured again
+                boolean rootsRemoved = false;
+                for (Iterator<String> iterator = watchedRootPaths.iterator(); iterator.hasNext();) {
+                    if (changes.removedPaths.contains(iterator.next())) {
+                        iterator.remove();
+                        rootsRemoved = true;
+                    }
+                }
+                if (rootsRemoved) {
+                    FileHierarchySet watchedRoots = DefaultFileHierarchySet.of();
+                    for (String root : watchedRootPaths) {
+                        watchedRoots = watchedRoots.plus(new File(root));
+                    }
+                    this.watchedRoots = watchedRoots;
+                }
+            }
+            modifiedPaths.clear();
+            createdOrRemovedPaths.clear();
+            return changes;
+        }
+    }
+
+    /**
+     * Waits until the watcher has reported the changes made before this method was called.
+     *
+     * @return false when the watcher has stopped or did not report the changes in time, so the changes are not known.
+     */
+    private boolean awaitReportedChanges() {
+        synchronized (lock) {
+            if (watcher == null) {
+                return true;
+            }
+        }
+        for (int round = 0; round < SYNC_ROUNDS; round++) {
+            File marker;
+            synchronized (lock) {
+                if (watcher == null || !watcher.isRunning()) {
+                    LOGGER.debug("File system watcher has stopped, discarding retained file system state.");
+                    return false;
+                }
+                marker = new File(syncDirectory, syncMarkerPrefix + "-" + (++syncCount));
+                syncMarker = marker;
+                syncMarkerSeen = false;
+            }
+            try {
+                try {
+                    if (!marker.createNewFile()) {
+                        return false;
+                    }
+                } catch (IOException e) {
+                    LOGGER.info("Could not sync with the file system watcher.", e);
+                    return false;
+                }
+                synchronized (lock) {
+                    long deadline = System.currentTimeMillis() + SYNC_TIMEOUT_MILLIS;
+                    while (!syncMarkerSeen) {
+                        long remaining = deadline - System.currentTimeMillis();
+                        if (remaining <= 0) {
+                            LOGGER.debug("File system watcher did not report changes in time, discarding retained file system state.");
+                            return false;
+                        }
+                        try {
+                            lock.wait(remaining);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return false;
+                        }
+                    }
+                }
+            } finally {
+                synchronized (lock) {
+                    syncMarker = null;
+                }
+                GFileUtils.deleteQuietly(marker);
+            }
+        }
+        return true;
+    }
+
+    private void recordChange(FileWatcherEvent event) {
+        synchronized (lock) {
+            if (event.getFile() != null && isInSyncDirectory(event.getFile())) {
+                if (event.getFile().equals(syncMarker)) {
+                    syncMarkerSeen = true;
+                    lock.notifyAll();
+                }
+                return;
+            }
+            if (changesUnknown) {
+                return;
+            }
+            if (event.getType() == FileWatcherEvent.Type.UNDEFINED || event.getFile() == null) {
+                LOGGER.debug("Received an undefined file system change, discarding retained file system state.");
+                changesUnknown = true;
+                return;
+            }
+            String path = event.getFile().getAbsolutePath();
+            if (event.getType() == FileWatcherEvent.Type.MODIFY) {
+                modifiedPaths.add(path);
+            } else {
+                createdOrRemovedPaths.add(path);
+            }
+            if (modifiedPaths.size() + createdOrRemovedPaths.size() > MAX_PENDING_CHANGES) {
+                LOGGER.debug("Too many file system changes, discarding retained file system state.");
+                changesUnknown = true;
+                modifiedPaths.clear();
+                createdOrRemovedPaths.clear();
+            }
+        }
+    }
+
+    private boolean isInSyncDirectory(File file) {
+        return syncDirectory.equals(file) || syncDirectory.equals(file.getParentFile());
+    }
+
+    private void discardChanges() {
+        synchronized (lock) {
+            stopWatcher();
+            changesUnknown = true;
+            modifiedPaths.clear();
+            createdOrRemovedPaths.clear();
+            watchedRootPaths.clear();
+            watchedRoots = DefaultFileHierarchySet.of();
+        }
+    }
+
+    private void stopWatcher() {
+        if (watcher != null) {
+            watcher.stop();
+            watcher = null;
+        }
+    }
+
+    @Override
+    public void stop() {
+        synchronized (lock) {
+            stopWatcher();
+        }
+    }
+
+    /**
+     * The changes made to the watched roots between two builds.
+     */
+    public static class FileSystemChanges {
+        private final Set<String> changedPathsAndAncestors;
+        private final Set<String> modifiedPaths;
+        private final FileHierarchySet removedPaths;
+        private final boolean empty;
+
+        FileSystemChanges(Set<String> modifiedPaths, Set<String> createdOrRemovedPaths) {
+            this.modifiedPaths = new HashSet<String>(modifiedPaths);
+            this.empty = modifiedPaths.isEmpty() && createdOrRemovedPaths.isEmpty();
+            List<File> removed = new ArrayList<File>(createdOrRemovedPaths.size());
+            for (String path : createdOrRemovedPaths) {
+                removed.add(new File(path));
+            }
+            this.removedPaths = DefaultFileHierarchySet.of(removed);
+            this.changedPathsAndAncestors = new HashSet<String>();
+            addWithAncestors(modifiedPaths);
+            addWithAncestors(createdOrRemovedPaths);
+        }
+
+        private void addWithAncestors(Set<String> paths) {
+            for (String path : paths) {
+                for (File file = new File(path); file != null; file = file.getParentFile()) {
+                    if (!changedPathsAndAncestors.add(file.getPath())) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        public boolean isEmpty() {
+            return empty;
+        }
+
+        /**
+         * Do the changes invalidate state about the given file itself, such as its type or timestamp?
+         */
+        public boolean affectsFile(String path) {
+            return modifiedPaths.contains(path) || removedPaths.contains(path);
+        }
+
+        /**
+         * Do the changes invalidate state about the tree rooted at the given file, such as its content hash?
+         */
+        public boolean affectsTree(String path) {
+            return changedPathsAndAncestors.contains(path) || removedPaths.contains(path);
+        }
+    }
+}
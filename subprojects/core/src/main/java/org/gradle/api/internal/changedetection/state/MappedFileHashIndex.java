@@ -0,0 +1,272 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.internal.hash.HashCode;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A fixed size table of file hashes, kept in a memory-mapped file outside of the Java heap. Each slot holds a 128-bit hash of a file path along with the
+ * 128-bit content hash, length and timestamp of the file. Nothing is retained on the heap and a lookup allocates only the returned hash.
+ *
+ * <p>The table is a cache: entries are evicted when the slots available to a path are all taken. It is shared by all processes that open the same file,
+ * without locking. Each slot carries a checksum of its contents instead, and a slot that has been torn by concurrent writes is treated as empty.</p>
+ */
+public class MappedFileHashIndex {
+    public static final String ENABLED_PROPERTY = "org.gradle.internal.offHeapFileHashes";
+    public static final int DEFAULT_SLOT_COUNT = 1 << 19;
+    public static final int HASH_LENGTH = 16;
+
+    private static final long MAGIC = 0x4772646C46486978L;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    // Slots are padded to a cache line
+    private static final int SLOT_SIZE = 64;
+    private static final int PROBE_WINDOW = 8;
+
+    private static final int PATH_HASH_1 = 0;
+    private static final int PATH_HASH_2 = 8;
+    private static final int CONTENT_HASH_1 = 16;
+    private static final int CONTENT_HASH_2 = 24;
+    private static final int LENGTH = 32;
+    private static final int TIMESTAMP = 40;
+    private static final int CHECKSUM = 48;
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    private static final long SEED_1 = 0x9e3779b97f4a7c15L;
+    private static final long SEED_2 = 0xc2b2ae3d27d4eb4fL;
+
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private final int slotMask;
+
+    /**
+     * Opens the table in the given file, creating it when it does not exist or was written with a different layout.
+     *
+     * @param slotCount The number of slots in the table. Must be a power of two.
+     */
+    public MappedFileHashIndex(File file, int slotCount) throws IOException {
+        if (slotCount < PROBE_WINDOW || Integer.bitCount(slotCount) != 1) {
+            throw new IllegalArgumentException(String.format("Invalid slot count: %d", slotCount));
+        }
+        this.file = file;
+        this.slotMask = slotCount - 1;
+        long size = HEADER_SIZE + (long) slotCount * SLOT_SIZE;
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            // Never shrink the file, as it may be mapped by another process
+            if (randomAccessFile.length() < size) {
+                randomAccessFile.setLength(size);
+            }
+            buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            // The mapping remains valid once the file has been closed
+            randomAccessFile.close();
+        }
+        if (buffer.getLong(0) != MAGIC || buffer.getInt(8) != VERSION || buffer.getInt(12) != slotCount) {
+            for (int offset = HEADER_SIZE; offset < size; offset += SLOT_SIZE) {
+                buffer.putLong(offset + CHECKSUM, 0);
+            }
+            buffer.putInt(12, slotCount);
+            buffer.putInt(8, VERSION);
+            buffer.putLong(0, MAGIC);
+        }
+    }
+
+    public int getSlotCount() {
+        return slotMask + 1;
+    }
+
+    /**
+     * Returns the content hash recorded for the given file, or {@code null} when there is none or the file had a different length or timestamp.
+     */
+    @Nullable
+    public HashCode get(String path, long length, long timestamp) {
+        long pathHash1 = hashPath(path, SEED_1);
+        long pathHash2 = hashPath(path, SEED_2);
+        int offset = find(pathHash1, pathHash2);
+        if (offset < 0) {
+            return null;
+        }
+        long contentHash1 = buffer.getLong(offset + CONTENT_HASH_1);
+        long contentHash2 = buffer.getLong(offset + CONTENT_HASH_2);
+        long entryLength = buffer.getLong(offset + LENGTH);
+        long entryTimestamp = buffer.getLong(offset + TIMESTAMP);
+        if (buffer.getLong(offset + CHECKSUM) != checksum(pathHash1, pathHash2, contentHash1, contentHash2, entryLength, entryTimestamp)) {
+            // Overwritten since it was found
+            return null;
+        }
+        if (entryLength != length || entryTimestamp != timestamp) {
+            return null;
+        }
+        byte[] bytes = new byte[HASH_LENGTH];
+        writeLong(bytes, 0, contentHash1);
+        writeLong(bytes, 8, contentHash2);
+        return HashCode.fromBytes(bytes);
+    }
+
+    /**
+     * Records the content hash for the given file, replacing any earlier entry for it.
+     *
+     * @return false if the hash cannot be recorded, because it is not {@value #HASH_LENGTH} bytes long.
+     */
+    public boolean put(String path, HashCode hash, long length, long timestamp) {
+        if (hash.length() != HASH_LENGTH) {
+            return false;
+        }
+        byte[] bytes = hash.toByteArray();
+        long contentHash1 = readLong(bytes, 0);
+        long contentHash2 = readLong(bytes, 8);
+        long pathHash1 = hashPath(path, SEED_1);
+        long pathHash2 = hashPath(path, SEED_2);
+
+        int offset = find(pathHash1, pathHash2);
+        if (offset < 0) {
+            offset = findFreeSlot(pathHash1, pathHash2);
+        }
+        buffer.putLong(offset + PATH_HASH_1, pathHash1);
+        buffer.putLong(offset + PATH_HASH_2, pathHash2);
+        buffer.putLong(offset + CONTENT_HASH_1, contentHash1);
+        buffer.putLong(offset + CONTENT_HASH_2, contentHash2);
+        buffer.putLong(offset + LENGTH, length);
+        buffer.putLong(offset + TIMESTAMP, timestamp);
+        buffer.putLong(offset + CHECKSUM, checksum(pathHash1, pathHash2, contentHash1, contentHash2, length, timestamp));
+        return true;
+    }
+
+    public void remove(String path) {
+        int offset = find(hashPath(path, SEED_1), hashPath(path, SEED_2));
+        if (offset >= 0) {
+            buffer.putLong(offset + CHECKSUM, 0);
+        }
+    }
+
+    /**
+     * Returns the offset of the valid slot for the given path, or -1 when there is none.
+     */
+    private int find(long pathHash1, long pathHash2) {
+        int home = (int) pathHash1 & slotMask;
+        for (int i = 0; i < PROBE_WINDOW; i++) {
+            int offset = slotOffset(home + i);
+            if (buffer.getLong(offset + PATH_HASH_1) == pathHash1 && buffer.getLong(offset + PATH_HASH_2) == pathHash2 && isValid(offset)) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the offset of an empty slot available to the given path, or of the slot to evict when all of them are taken.
+     */
+    private int findFreeSlot(long pathHash1, long pathHash2) {
+        int home = (int) pathHash1 & slotMask;
+        for (int i = 0; i < PROBE_WINDOW; i++) {
+            int offset = slotOffset(home + i);
+            if (!isValid(offset)) {
+                return offset;
+            }
+        }
+        return slotOffset(home + (int) (pathHash2 >>> 61));
+    }
+
+    private boolean isValid(int offset) {
+        long checksum = buffer.getLong(offset + CHECKSUM);
+        return checksum != 0 && checksum == checksum(
+            buffer.getLong(offset + PATH_HASH_1),
+            buffer.getLong(offset + PATH_HASH_2),
+            buffer.getLong(offset + CONTENT_HASH_1),
+            buffer.getLong(offset + CONTENT_HASH_2),
+            buffer.getLong(offset + LENGTH),
+            buffer.getLong(offset + TIMESTAMP));
+    }
+
+    private int slotOffset(int slot) {
+        return HEADER_SIZE + (slot & slotMask) * SLOT_SIZE;
+    }
+
+    /**
+     * Hashes the characters of the path directly, so that no encoded copy of it is needed.
+     */
+    private static long hashPath(String path, long seed) {
+        int length = path.length();
+        long hash = seed ^ length;
+        int i = 0;
+        for (; i + 4 <= length; i += 4) {
+            long block = (long) path.charAt(i)
+                | (long) path.charAt(i + 1) << 16
+                | (long) path.charAt(i + 2) << 32
+                | (long) path.charAt(i + 3) << 48;
+            hash = mix(hash, block);
+        }
+        long tail = 0;
+        for (int shift = 0; i < length; i++, shift += 16) {
+            tail |= (long) path.charAt(i) << shift;
+        }
+        return finish(mix(hash, tail));
+    }
+
+    private static long checksum(long pathHash1, long pathHash2, long contentHash1, long contentHash2, long length, long timestamp) {
+        long hash = mix(mix(mix(mix(mix(mix(SEED_1, pathHash1), pathHash2), contentHash1), contentHash2), length), timestamp);
+        hash = finish(hash);
+        // Zero marks an empty slot
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static long mix(long hash, long block) {
+        block *= C1;
+        block = Long.rotateLeft(block, 31);
+        block *= C2;
+        hash ^= block;
+        return Long.rotateLeft(hash, 27) * 5 + 0x52dce729;
+    }
+
+    private static long finish(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = value << 8 | (bytes[offset + i] & 0xff);
+        }
+        return value;
+    }
+
+    private static void writeLong(byte[] bytes, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "{file hash index: " + file + "}";
+    }
+}
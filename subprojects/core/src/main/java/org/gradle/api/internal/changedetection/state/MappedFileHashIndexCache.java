@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the {@link MappedFileHashIndex} instances opened by this process, so that each build session reuses the mapping of an index file instead of
+ * mapping it again. A mapping is only released when its buffer is garbage collected, so mapping the file for every session keeps adding to the
+ * address space of a long-lived process.
+ */
+public class MappedFileHashIndexCache {
+    private final Map<File, MappedFileHashIndex> indexes = new HashMap<File, MappedFileHashIndex>();
+
+    /**
+     * Returns the index kept in the given file, mapping the file when this process has not mapped it yet, or when it has been deleted since.
+     */
+    public synchronized MappedFileHashIndex open(File file, int slotCount) throws IOException {
+        File indexFile = file.getAbsoluteFile();
+        MappedFileHashIndex index = indexes.get(indexFile);
+        if (index == null || index.getSlotCount() != slotCount || !indexFile.isFile()) {
+            index = new MappedFileHashIndex(indexFile, slotCount);
+            indexes.put(indexFile, index);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.execution;
+
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.changedetection.state.TaskDurationRepository;
+import org.gradle.api.internal.tasks.TaskExecuter;
+import org.gradle.api.internal.tasks.TaskExecutionContext;
+import org.gradle.api.internal.tasks.TaskStateInternal;
+import org.gradle.internal.time.Time;
+import org.gradle.internal.time.Timer;
+
+/**
+ * Records how long the actions of a task took, so that later builds can schedule the tasks on the longest path first.
+ * Nothing is recorded when the actions fail, as they may not have done all of their work.
+ */
+public class RecordTaskDurationExecuter implements TaskExecuter {
+    private final TaskDurationRepository taskDurations;
+    private final TaskExecuter executer;
+
+    public RecordTaskDurationExecuter(TaskDurationRepository taskDurations, TaskExecuter executer) {
+        this.taskDurations = taskDurations;
+        this.executer = executer;
+    }
+
+    @Override
+    public void execute(TaskInternal task, TaskStateInternal state, TaskExecutionContext context) {
+        Timer clock = Time.startTimer();
+        executer.execute(task, state, context);
+        if (state.getFailure() == null) {
+            taskDurations.recordDuration(task, clock.getElapsedMillis());
+        }
+    }
+}
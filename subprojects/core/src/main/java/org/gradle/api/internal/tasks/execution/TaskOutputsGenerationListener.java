@@ -16,10 +16,20 @@
 
 package org.gradle.api.internal.tasks.execution;
 
+import java.io.File;
+
 public interface TaskOutputsGenerationListener {
     /**
-     * Invoked when the outputs for a task are about to be generated.
-     * This is for example just before the task actions are executed or the outputs are loaded from the cache.
+     * Invoked when the outputs for a task are about to be generated and it is not known where they will be written.
+     * This is for example just before the actions of a task without declared outputs are executed.
      */
     void beforeTaskOutputsGenerated();
+
+    /**
+     * Invoked when the outputs for a task are about to be generated in the given locations.
+     * This is for example just before the task actions are executed or the outputs are loaded from the cache.
+     *
+     * @param outputLocations the files and directories that may be created, modified or removed, including all descendants of the directories.
+     */
+    void beforeTaskOutputsGenerated(Iterable<File> outputLocations);
 }
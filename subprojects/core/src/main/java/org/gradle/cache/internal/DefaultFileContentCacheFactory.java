@@ -35,8 +35,8 @@ import org.gradle.internal.serialize.Serializer;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
@@ -75,12 +75,13 @@ public class DefaultFileContentCacheFactory implements FileContentCacheFactory,
     }
 
     /**
-     * Maintains 2 levels of in-memory caching. The first, fast, level indexes on file path and contains the value that is very likely to reflect the current contents of the file. This first cache is invalidated whenever any task actions are run.
+     * Maintains 2 levels of in-memory caching. The first, fast, level indexes on file path and contains the value that is very likely to reflect the current contents of the file. This first cache is invalidated for the output locations of a task whenever its outputs are generated.
      *
      * The second level indexes on the hash of file content and contains the value that was calculated from a file with the given hash.
      */
     private static class DefaultFileContentCache<V> implements FileContentCache<V>, TaskOutputsGenerationListener {
-        private final Map<File, V> cache = new ConcurrentHashMap<File, V>();
+        // Sorted by path, so that the values for the descendants of an output location can be found without visiting the others
+        private final ConcurrentNavigableMap<String, V> cache = new ConcurrentSkipListMap<String, V>();
         private final FileSystemSnapshotter fileSystemSnapshotter;
         private final PersistentIndexedCache<HashCode, V> contentCache;
         private final String name;
@@ -99,10 +100,21 @@ public class DefaultFileContentCacheFactory implements FileContentCacheFactory,
             cache.clear();
         }
 
+        @Override
+        public void beforeTaskOutputsGenerated(Iterable<File> outputLocations) {
+            for (File outputLocation : outputLocations) {
+                // The location itself and its descendants
+                String path = outputLocation.getAbsolutePath();
+                cache.remove(path);
+                cache.subMap(path + File.separatorChar, path + (char) (File.separatorChar + 1)).clear();
+            }
+        }
+
         @Override
         public V get(File file) {
             // TODO - don't calculate the same value concurrently
-            V value = cache.get(file);
+            String path = file.getAbsolutePath();
+            V value = cache.get(path);
             if (value == null) {
                 FileSnapshot fileSnapshot = fileSystemSnapshotter.snapshotSelf(file);
                 FileType fileType = fileSnapshot.getType();
@@ -116,7 +128,7 @@ public class DefaultFileContentCacheFactory implements FileContentCacheFactory,
                 } else {
                     value = calculator.calculate(file, fileType);
                 }
-                cache.put(file, value);
+                cache.put(path, value);
             }
             return value;
         }
@@ -43,11 +43,17 @@ import org.gradle.api.internal.tasks.TaskFilePropertySpec;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginMetadata;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.nativeplatform.filesystem.FileSystem;
 
+import javax.annotation.Nullable;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -56,9 +62,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.Map;
 import java.util.SortedSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -67,14 +78,20 @@ import static org.gradle.caching.internal.tasks.TaskOutputPackerUtils.makeDirect
 
 /**
  * Packages task output to a POSIX TAR file.
+ *
+ * <p>When created with an executor, small files are read on pack and written and hashed on unpack by a pool of threads, while the calling thread
+ * writes or reads the archive itself. The archive is the same in both cases.</p>
  */
 @SuppressWarnings("Since15")
-public class TarTaskOutputPacker implements TaskOutputPacker {
+public class TarTaskOutputPacker implements TaskOutputPacker, Stoppable {
     private static final String METADATA_PATH = "METADATA";
     private static final Pattern PROPERTY_PATH = Pattern.compile("(missing-)?property-([^/]+)(?:/(.*))?");
     @SuppressWarnings("OctalInteger")
     private static final int FILE_PERMISSION_MASK = 0777;
     private static final int BUFFER_SIZE = 64 * 1024;
+    // Files up to this size are read or written by the pool, so at most MAX_FILES_IN_FLIGHT * MAX_PARALLEL_FILE_SIZE bytes are held in memory
+    private static final int MAX_PARALLEL_FILE_SIZE = 256 * 1024;
+    private static final int MAX_FILES_IN_FLIGHT = 32;
     private static final ThreadLocal<byte[]> COPY_BUFFERS = new ThreadLocal<byte[]>() {
         @Override
         protected byte[] initialValue() {
@@ -85,11 +102,23 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
     private final FileSystem fileSystem;
     private final StreamHasher streamHasher;
     private final StringInterner stringInterner;
+    private final ManagedExecutor executor;
 
     public TarTaskOutputPacker(FileSystem fileSystem, StreamHasher streamHasher, StringInterner stringInterner) {
         this.fileSystem = fileSystem;
         this.streamHasher = streamHasher;
         this.stringInterner = stringInterner;
+        this.executor = null;
+    }
+
+    /**
+     * Creates a packer that reads and writes files using a pool of the given number of threads.
+     */
+    public TarTaskOutputPacker(FileSystem fileSystem, StreamHasher streamHasher, StringInterner stringInterner, ExecutorFactory executorFactory, int parallelism) {
+        this.fileSystem = fileSystem;
+        this.streamHasher = streamHasher;
+        this.stringInterner = stringInterner;
+        this.executor = parallelism > 1 ? executorFactory.create("Build cache packing", parallelism) : null;
     }
 
     @Override
@@ -172,29 +201,39 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
         String rootAbsolutePath = directory.getAbsolutePath();
         Path rootPath = directory.toPath();
 
-        for (Map.Entry<String, FileContentSnapshot> entry : outputSnapshots.entrySet()) {
-            String absolutePath = entry.getKey();
-            // We've already created the directory for the property
-            if (absolutePath.equals(rootAbsolutePath)) {
-                continue;
+        Pipeline<PackEntry> pipeline = new Pipeline<PackEntry>(executor);
+        try {
+            for (Map.Entry<String, FileContentSnapshot> entry : outputSnapshots.entrySet()) {
+                String absolutePath = entry.getKey();
+                // We've already created the directory for the property
+                if (absolutePath.equals(rootAbsolutePath)) {
+                    continue;
+                }
+                File file = new File(absolutePath);
+                String relativePath = rootPath.relativize(file.toPath()).toString();
+                String targetPath = propertyRoot + relativePath;
+                switch (entry.getValue().getType()) {
+                    case RegularFile:
+                        pipeline.submit(new PackEntry(file, targetPath, false, executor != null));
+                        break;
+                    case Directory:
+                        pipeline.submit(new PackEntry(file, targetPath, true, false));
+                        break;
+                    case Missing:
+                        throw new IllegalStateException("File should not be missing: " + file);
+                    default:
+                        throw new AssertionError();
+                }
+                if (pipeline.isFull()) {
+                    pipeline.takeOldest().write(tarOutput);
+                }
+                entries++;
             }
-            File file = new File(absolutePath);
-            String relativePath = rootPath.relativize(file.toPath()).toString();
-            String targetPath = propertyRoot + relativePath;
-            int mode = fileSystem.getUnixMode(file);
-            switch (entry.getValue().getType()) {
-                case RegularFile:
-                    storeFileEntry(file, targetPath, file.length(), mode, tarOutput);
-                    break;
-                case Directory:
-                    storeDirectoryEntry(targetPath, mode, tarOutput);
-                    break;
-                case Missing:
-                    throw new IllegalStateException("File should not be missing: " + file);
-                default:
-                    throw new AssertionError();
+            while (!pipeline.isEmpty()) {
+                pipeline.takeOldest().write(tarOutput);
             }
-            entries++;
+        } finally {
+            pipeline.cancel();
         }
         return entries;
     }
@@ -203,7 +242,9 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
         if (!file.isFile()) {
             throw new IllegalArgumentException(String.format("Expected '%s' to be a file", file));
         }
-        storeFileEntry(file, propertyPath, file.length(), fileSystem.getUnixMode(file), tarOutput);
+        PackEntry entry = new PackEntry(file, propertyPath, false, false);
+        entry.call();
+        entry.write(tarOutput);
     }
 
     private void storeMissingProperty(String propertyPath, TarArchiveOutputStream tarOutput) throws IOException {
@@ -227,6 +268,12 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
         tarOutput.closeArchiveEntry();
     }
 
+    private void storeFileEntry(byte[] content, String path, int mode, TarArchiveOutputStream tarOutput) throws IOException {
+        createTarEntry(path, content.length, UnixStat.FILE_FLAG | mode, tarOutput);
+        tarOutput.write(content);
+        tarOutput.closeArchiveEntry();
+    }
+
     private static void createTarEntry(String path, long size, int mode, TarArchiveOutputStream tarOutput) throws IOException {
         TarArchiveEntry entry = new TarArchiveEntry(path, true);
         entry.setSize(size);
@@ -254,32 +301,43 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
         TarArchiveEntry tarEntry;
         TaskOutputOriginMetadata originMetadata = null;
         ImmutableListMultimap.Builder<String, FileSnapshot> propertyFileSnapshots = ImmutableListMultimap.builder();
+        Pipeline<Map.Entry<String, FileSnapshot>> pipeline = new Pipeline<Map.Entry<String, FileSnapshot>>(executor);
 
         long entries = 0;
-        while ((tarEntry = tarInput.getNextTarEntry()) != null) {
-            ++entries;
-            String name = tarEntry.getName();
+        try {
+            while ((tarEntry = tarInput.getNextTarEntry()) != null) {
+                ++entries;
+                String name = tarEntry.getName();
+
+                if (name.equals(METADATA_PATH)) {
+                    // handle origin metadata
+                    originMetadata = readOriginAction.execute(new CloseShieldInputStream(tarInput));
+                } else {
+                    // handle output property
+                    Matcher matcher = PROPERTY_PATH.matcher(name);
+                    if (!matcher.matches()) {
+                        throw new IllegalStateException("Cached result format error, invalid contents: " + name);
+                    }
 
-            if (name.equals(METADATA_PATH)) {
-                // handle origin metadata
-                originMetadata = readOriginAction.execute(new CloseShieldInputStream(tarInput));
-            } else {
-                // handle output property
-                Matcher matcher = PROPERTY_PATH.matcher(name);
-                if (!matcher.matches()) {
-                    throw new IllegalStateException("Cached result format error, invalid contents: " + name);
-                }
+                    String propertyName = matcher.group(2);
+                    ResolvedTaskOutputFilePropertySpec propertySpec = propertySpecsMap.get(propertyName);
+                    if (propertySpec == null) {
+                        throw new IllegalStateException(String.format("No output property '%s' registered", propertyName));
+                    }
 
-                String propertyName = matcher.group(2);
-                ResolvedTaskOutputFilePropertySpec propertySpec = propertySpecsMap.get(propertyName);
-                if (propertySpec == null) {
-                    throw new IllegalStateException(String.format("No output property '%s' registered", propertyName));
+                    boolean outputMissing = matcher.group(1) != null;
+                    String childPath = matcher.group(3);
+                    unpackPropertyEntry(propertySpec, tarInput, tarEntry, childPath, outputMissing, pipeline);
+                    if (pipeline.isFull()) {
+                        addSnapshot(pipeline.takeOldest(), propertyFileSnapshots);
+                    }
                 }
-
-                boolean outputMissing = matcher.group(1) != null;
-                String childPath = matcher.group(3);
-                unpackPropertyEntry(propertySpec, tarInput, tarEntry, childPath, outputMissing, propertyFileSnapshots);
             }
+            while (!pipeline.isEmpty()) {
+                addSnapshot(pipeline.takeOldest(), propertyFileSnapshots);
+            }
+        } finally {
+            pipeline.cancel();
         }
         if (originMetadata == null) {
             throw new IllegalStateException("Cached result format error, no origin metadata was found.");
@@ -288,7 +346,11 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
         return new UnpackResult(originMetadata, entries, propertyFileSnapshots.build());
     }
 
-    private void unpackPropertyEntry(ResolvedTaskOutputFilePropertySpec propertySpec, InputStream input, TarArchiveEntry entry, String childPath, boolean missing, ImmutableMultimap.Builder<String, FileSnapshot> fileSnapshots) throws IOException {
+    private static void addSnapshot(Map.Entry<String, FileSnapshot> snapshot, ImmutableMultimap.Builder<String, FileSnapshot> fileSnapshots) {
+        fileSnapshots.put(snapshot.getKey(), snapshot.getValue());
+    }
+
+    private void unpackPropertyEntry(ResolvedTaskOutputFilePropertySpec propertySpec, InputStream input, TarArchiveEntry entry, String childPath, boolean missing, Pipeline<Map.Entry<String, FileSnapshot>> fileSnapshots) throws IOException {
         File propertyRoot = propertySpec.getOutputFile();
         String propertyName = propertySpec.getPropertyName();
         if (propertyRoot == null) {
@@ -328,10 +390,97 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
 
         String internedPath = stringInterner.intern(outputFile.getAbsolutePath());
         RelativePath relativePath = root ? RelativePath.parse(!isDirEntry, outputFile.getName()) : RelativePath.parse(!isDirEntry, childPath);
+        int mode = entry.getMode() & FILE_PERMISSION_MASK;
         if (isDirEntry) {
             FileUtils.forceMkdir(outputFile);
-            fileSnapshots.put(propertyName, new DirectoryFileSnapshot(internedPath, relativePath, root));
+            fileSystem.chmod(outputFile, mode);
+            fileSnapshots.add(Maps.<String, FileSnapshot>immutableEntry(propertyName, new DirectoryFileSnapshot(internedPath, relativePath, root)));
+        } else if (executor != null && entry.getSize() <= MAX_PARALLEL_FILE_SIZE) {
+            byte[] content = IOUtils.toByteArray(input, entry.getSize());
+            fileSnapshots.submit(new UnpackFile(propertyName, outputFile, internedPath, relativePath, root, mode, new ByteArrayInputStream(content)));
         } else {
+            fileSnapshots.add(new UnpackFile(propertyName, outputFile, internedPath, relativePath, root, mode, input).call());
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (executor != null) {
+            executor.stop();
+        }
+    }
+
+    /**
+     * An entry to pack, whose mode, length and possibly content are read before it is written to the archive.
+     */
+    private class PackEntry implements Callable<PackEntry> {
+        private final File file;
+        private final String path;
+        private final boolean directory;
+        private final boolean readContent;
+        private int mode;
+        private long length;
+        private byte[] content;
+
+        PackEntry(File file, String path, boolean directory, boolean readContent) {
+            this.file = file;
+            this.path = path;
+            this.directory = directory;
+            this.readContent = readContent;
+        }
+
+        @Override
+        public PackEntry call() throws IOException {
+            mode = fileSystem.getUnixMode(file);
+            if (!directory) {
+                length = file.length();
+                if (readContent && length <= MAX_PARALLEL_FILE_SIZE) {
+                    FileInputStream input = new FileInputStream(file);
+                    try {
+                        content = IOUtils.toByteArray(input, length);
+                    } finally {
+                        IOUtils.closeQuietly(input);
+                    }
+                }
+            }
+            return this;
+        }
+
+        void write(TarArchiveOutputStream tarOutput) throws IOException {
+            if (directory) {
+                storeDirectoryEntry(path, mode, tarOutput);
+            } else if (content != null) {
+                storeFileEntry(content, path, mode, tarOutput);
+            } else {
+                storeFileEntry(file, path, length, mode, tarOutput);
+            }
+        }
+    }
+
+    /**
+     * Writes and hashes the content of an unpacked file.
+     */
+    private class UnpackFile implements Callable<Map.Entry<String, FileSnapshot>> {
+        private final String propertyName;
+        private final File outputFile;
+        private final String internedPath;
+        private final RelativePath relativePath;
+        private final boolean root;
+        private final int mode;
+        private final InputStream input;
+
+        UnpackFile(String propertyName, File outputFile, String internedPath, RelativePath relativePath, boolean root, int mode, InputStream input) {
+            this.propertyName = propertyName;
+            this.outputFile = outputFile;
+            this.internedPath = internedPath;
+            this.relativePath = relativePath;
+            this.root = root;
+            this.mode = mode;
+            this.input = input;
+        }
+
+        @Override
+        public Map.Entry<String, FileSnapshot> call() throws IOException {
             OutputStream output = new FileOutputStream(outputFile);
             HashCode hash;
             try {
@@ -340,9 +489,103 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
                 IOUtils.closeQuietly(output);
             }
             FileHashSnapshot contentSnapshot = new FileHashSnapshot(hash, outputFile.lastModified());
-            fileSnapshots.put(propertyName, new RegularFileSnapshot(internedPath, relativePath, root, contentSnapshot));
+            fileSystem.chmod(outputFile, mode);
+            return Maps.<String, FileSnapshot>immutableEntry(propertyName, new RegularFileSnapshot(internedPath, relativePath, root, contentSnapshot));
+        }
+    }
+
+    /**
+     * Runs tasks on an executor while the calling thread consumes their results in submission order, keeping a bounded number of tasks in flight.
+     * The calling thread runs a task itself when no thread from the pool has started it yet. Without an executor, tasks are run when submitted.
+     */
+    private static class Pipeline<T> {
+        private final ManagedExecutor executor;
+        private final Deque<FutureTask<T>> inFlight = new ArrayDeque<FutureTask<T>>();
+        private volatile boolean cancelled;
+
+        Pipeline(@Nullable ManagedExecutor executor) {
+            this.executor = executor;
+        }
+
+        void submit(final Callable<T> task) {
+            FutureTask<T> futureTask = new FutureTask<T>(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    return cancelled ? null : task.call();
+                }
+            });
+            inFlight.add(futureTask);
+            if (executor != null) {
+                executor.execute(futureTask);
+            } else {
+                futureTask.run();
+            }
+        }
+
+        /**
+         * Adds a result that is already available.
+         */
+        void add(final T result) {
+            FutureTask<T> futureTask = new FutureTask<T>(new Callable<T>() {
+                @Override
+                public T call() {
+                    return result;
+                }
+            });
+            futureTask.run();
+            inFlight.add(futureTask);
+        }
+
+        boolean isFull() {
+            return inFlight.size() >= MAX_FILES_IN_FLIGHT;
+        }
+
+        boolean isEmpty() {
+            return inFlight.isEmpty();
+        }
+
+        T takeOldest() throws IOException {
+            FutureTask<T> futureTask = inFlight.remove();
+            futureTask.run();
+            try {
+                return futureTask.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw UncheckedException.throwAsUncheckedException(cause);
+            } catch (InterruptedException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
         }
 
-        fileSystem.chmod(outputFile, entry.getMode() & FILE_PERMISSION_MASK);
+        /**
+         * Discards the tasks still in flight, for example after a failure. Tasks that have not started yet are skipped, and tasks that have started are waited for,
+         * so that none of them still touches the files being packed or unpacked once this method returns.
+         */
+        void cancel() {
+            // FutureTask.cancel() would not wait for a running task, so skip pending tasks via the flag and join all of them instead
+            cancelled = true;
+            boolean interrupted = false;
+            for (FutureTask<T> futureTask : inFlight) {
+                futureTask.run();
+                while (true) {
+                    try {
+                        futureTask.get();
+                        break;
+                    } catch (ExecutionException e) {
+                        // Discarded, the failure that caused the cancellation is reported instead
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+            inFlight.clear();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 }
@@ -53,6 +53,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -115,7 +116,7 @@ public class TaskOutputCacheCommandFactory {
 
         @Override
         public BuildCacheLoadCommand.Result<TaskOutputOriginMetadata> load(InputStream input) {
-            taskOutputsGenerationListener.beforeTaskOutputsGenerated();
+            taskOutputsGenerationListener.beforeTaskOutputsGenerated(getOutputLocations());
             final TaskOutputPacker.UnpackResult unpackResult;
             try {
                 unpackResult = packer.unpack(outputProperties, input, taskOutputOriginFactory.createReader(task));
@@ -148,6 +149,18 @@ public class TaskOutputCacheCommandFactory {
             };
         }
 
+        private List<File> getOutputLocations() {
+            List<File> outputLocations = new ArrayList<File>();
+            for (ResolvedTaskOutputFilePropertySpec property : outputProperties) {
+                File outputFile = property.getOutputFile();
+                if (outputFile != null) {
+                    outputLocations.add(outputFile);
+                }
+            }
+            Iterables.addAll(outputLocations, ((TaskLocalStateInternal) task.getLocalState()).getFiles());
+            return outputLocations;
+        }
+
         private void updateSnapshots(ImmutableListMultimap<String, FileSnapshot> propertiesFileSnapshots) {
             ImmutableSortedMap.Builder<String, FileCollectionSnapshot> propertySnapshotsBuilder = ImmutableSortedMap.naturalOrder();
             for (ResolvedTaskOutputFilePropertySpec property : outputProperties) {
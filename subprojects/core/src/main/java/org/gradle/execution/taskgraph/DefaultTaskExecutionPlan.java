@@ -18,7 +18,6 @@ package org.gradle.execution.taskgraph;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
-import com.google.common.base.StandardSystemProperty;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
@@ -33,6 +32,7 @@ import org.gradle.api.Transformer;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.api.internal.GradleInternal;
 import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.changedetection.state.TaskDurationRepository;
 import org.gradle.api.internal.project.ProjectInternal;
 import org.gradle.api.internal.tasks.CachingTaskDependencyResolveContext;
 import org.gradle.api.internal.tasks.TaskContainerInternal;
@@ -58,7 +58,6 @@ import org.gradle.internal.work.WorkerLeaseRegistry.WorkerLease;
 import org.gradle.internal.work.WorkerLeaseService;
 import org.gradle.util.CollectionUtils;
 import org.gradle.util.Path;
-import org.gradle.util.TextUtil;
 
 import javax.annotation.Nullable;
 import java.io.File;
@@ -74,7 +73,6 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -90,24 +88,34 @@ import static org.gradle.internal.resources.ResourceLockState.Disposition.*;
  * methods.
  */
 public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
+    /**
+     * When set, the recorded durations of the tasks are used to run the tasks on the longest path through the graph first.
+     */
+    public static final String CRITICAL_PATH_SCHEDULING_PROPERTY = "org.gradle.internal.criticalPathScheduling";
+
     private final Set<TaskInfo> tasksInUnknownState = new LinkedHashSet<TaskInfo>();
     private final Set<TaskInfo> entryTasks = new LinkedHashSet<TaskInfo>();
     private final TaskInfoFactory nodeFactory = new TaskInfoFactory();
     private final LinkedHashMap<Task, TaskInfo> executionPlan = new LinkedHashMap<Task, TaskInfo>();
-    private final List<TaskInfo> executionQueue = new LinkedList<TaskInfo>();
+    private final ReadyTaskQueue readyTasks = new ReadyTaskQueue();
     private final Map<Project, ResourceLock> projectLocks = Maps.newHashMap();
     private final List<Throwable> failures = new ArrayList<Throwable>();
     private Spec<? super Task> filter = Specs.satisfyAll();
 
     private TaskFailureHandler failureHandler = new RethrowingFailureHandler();
+    private TaskDurationRepository taskDurations;
+    private int tasksWithRecordedDuration;
+    private long estimatedTotalDuration;
+    private long estimatedCriticalPath;
 
     private final BuildCancellationToken cancellationToken;
     private final Set<TaskInfo> runningTasks = Sets.newIdentityHashSet();
     private final Set<Task> filteredTasks = Sets.newIdentityHashSet();
     private final Map<TaskInfo, TaskMutationInfo> taskMutations = Maps.newIdentityHashMap();
+    private final PathOverlapIndex<TaskInfo> runningTaskMutations = new PathOverlapIndex<TaskInfo>();
+    private final PathOverlapIndex<TaskMutationInfo> consumedOutputs = new PathOverlapIndex<TaskMutationInfo>();
     private final Map<File, String> canonicalizedFileCache = Maps.newIdentityHashMap();
     private final Map<Pair<TaskInfo, TaskInfo>, Boolean> reachableCache = Maps.newHashMap();
-    private final Set<TaskInfo> dependenciesCompleteCache = Sets.newHashSet();
     private final ResourceLockCoordinationService coordinationService;
     private final WorkerLeaseService workerLeaseService;
     private final GradleInternal gradle;
@@ -354,9 +362,49 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 }
             }
         }
-        executionQueue.clear();
-        executionQueue.addAll(executionPlan.values());
+        if (taskDurations != null) {
+            estimatePathDurations();
+        }
+        readyTasks.initialize(executionPlan.values());
+    }
 
+    /**
+     * Estimates the longest path from each task to the end of the build, walking the plan backwards so that the tasks waiting for a task are visited first.
+     * Tasks without a recorded duration are assumed to take as long as the average recorded task.
+     */
+    private void estimatePathDurations() {
+        List<TaskInfo> tasks = new ArrayList<TaskInfo>(executionPlan.values());
+        long[] durations = new long[tasks.size()];
+        long recordedTotal = 0;
+        tasksWithRecordedDuration = 0;
+        for (int i = 0; i < durations.length; i++) {
+            Long duration = taskDurations.getDuration(tasks.get(i).getTask());
+            if (duration == null) {
+                durations[i] = -1;
+            } else {
+                durations[i] = duration;
+                recordedTotal += duration;
+                tasksWithRecordedDuration++;
+            }
+        }
+        long averageDuration = tasksWithRecordedDuration == 0 ? 0 : recordedTotal / tasksWithRecordedDuration;
+
+        estimatedTotalDuration = 0;
+        estimatedCriticalPath = 0;
+        for (int i = durations.length - 1; i >= 0; i--) {
+            TaskInfo taskInfo = tasks.get(i);
+            long duration = durations[i] < 0 ? averageDuration : durations[i];
+            long longestRemainingPath = 0;
+            for (TaskInfo predecessor : taskInfo.getDependencyPredecessors()) {
+                longestRemainingPath = Math.max(longestRemainingPath, predecessor.getEstimatedPathDuration());
+            }
+            for (TaskInfo predecessor : taskInfo.getMustPredecessors()) {
+                longestRemainingPath = Math.max(longestRemainingPath, predecessor.getEstimatedPathDuration());
+            }
+            taskInfo.setEstimatedPathDuration(duration + longestRemainingPath);
+            estimatedTotalDuration += duration;
+            estimatedCriticalPath = Math.max(estimatedCriticalPath, taskInfo.getEstimatedPathDuration());
+        }
     }
 
     private TaskMutationInfo getOrCreateMutationsOf(TaskInfo taskInfo) {
@@ -509,14 +557,15 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 nodeFactory.clear();
                 entryTasks.clear();
                 executionPlan.clear();
-                executionQueue.clear();
+                readyTasks.clear();
                 projectLocks.clear();
                 failures.clear();
                 taskMutations.clear();
                 canonicalizedFileCache.clear();
                 reachableCache.clear();
-                dependenciesCompleteCache.clear();
                 runningTasks.clear();
+                runningTaskMutations.clear();
+                consumedOutputs.clear();
                 return FINISHED;
             }
         });
@@ -539,6 +588,35 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         this.failureHandler = handler;
     }
 
+    /**
+     * Prefers the ready tasks on the longest path through the graph, based on the given task durations. Takes effect the next time the plan is determined.
+     */
+    public void useTaskDurations(TaskDurationRepository taskDurations) {
+        this.taskDurations = taskDurations;
+    }
+
+    public boolean isUsingTaskDurations() {
+        return taskDurations != null;
+    }
+
+    public int getTasksWithRecordedDuration() {
+        return tasksWithRecordedDuration;
+    }
+
+    /**
+     * The sum of the estimated durations of all tasks in the plan, in milliseconds.
+     */
+    public long getEstimatedTotalDuration() {
+        return estimatedTotalDuration;
+    }
+
+    /**
+     * The estimated duration of the longest path through the plan, in milliseconds.
+     */
+    public long getEstimatedCriticalPath() {
+        return estimatedCriticalPath;
+    }
+
     @Override
     public boolean executeWithTask(final WorkerLease workerLease, final Action<TaskInfo> taskExecution) {
         final AtomicReference<TaskInfo> selected = new AtomicReference<TaskInfo>();
@@ -584,34 +662,32 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
 
     private TaskInfo selectNextTask(final WorkerLease workerLease) {
         final AtomicReference<TaskInfo> selected = new AtomicReference<TaskInfo>();
-        final Iterator<TaskInfo> iterator = executionQueue.iterator();
+        final Iterator<TaskInfo> iterator = readyTasks.iterator();
         while (iterator.hasNext()) {
             final TaskInfo taskInfo = iterator.next();
-            if (taskInfo.isReady() && allDependenciesComplete(taskInfo)) {
-                coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
-                    @Override
-                    public ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
-                        ResourceLock projectLock = getProjectLock(taskInfo);
-                        // TODO: convert output file checks to a resource lock
-                        if (!projectLock.tryLock() || !workerLease.tryLock() || !canRunWithCurrentlyExecutedTasks(taskInfo)) {
-                            return FAILED;
-                        }
-
-                        selected.set(taskInfo);
-                        if (taskInfo.allDependenciesSuccessful()) {
-                            recordTaskStarted(taskInfo);
-                            taskInfo.startExecution();
-                        } else {
-                            taskInfo.skipExecution();
-                        }
-                        iterator.remove();
-                        return FINISHED;
+            coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
+                @Override
+                public ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
+                    ResourceLock projectLock = getProjectLock(taskInfo);
+                    // TODO: convert output file checks to a resource lock
+                    if (!projectLock.tryLock() || !workerLease.tryLock() || !canRunWithCurrentlyExecutedTasks(taskInfo)) {
+                        return FAILED;
                     }
-                });
 
-                if (selected.get() != null) {
-                    break;
+                    selected.set(taskInfo);
+                    if (taskInfo.allDependenciesSuccessful()) {
+                        recordTaskStarted(taskInfo);
+                        taskInfo.startExecution();
+                    } else {
+                        taskInfo.skipExecution();
+                    }
+                    return FINISHED;
                 }
+            });
+
+            if (selected.get() != null) {
+                readyTasks.taskSelected(selected.get());
+                break;
             }
         }
         return selected.get();
@@ -630,19 +706,6 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         }
     }
 
-    private boolean allDependenciesComplete(TaskInfo taskInfo) {
-        if (dependenciesCompleteCache.contains(taskInfo)) {
-            return true;
-        }
-
-        boolean dependenciesComplete = taskInfo.allDependenciesComplete();
-        if (dependenciesComplete) {
-            dependenciesCompleteCache.add(taskInfo);
-        }
-
-        return dependenciesComplete;
-    }
-
     private boolean allProjectsLocked() {
         for (ResourceLock lock : projectLocks.values()) {
             if (!lock.isLocked()) {
@@ -676,14 +739,14 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         if (!runningTasks.isEmpty()) {
             Set<String> candidateTaskOutputs = getOutputPaths(taskInfo);
             Set<String> candidateTaskMutations = !candidateTaskOutputs.isEmpty() ? candidateTaskOutputs : candidateTaskDestroyables;
-            Pair<TaskInfo, String> overlap = firstRunningTaskWithOverlappingMutations(candidateTaskMutations);
-            if (overlap != null) {
+            TaskInfo overlappingTask = firstRunningTaskWithOverlappingMutations(candidateTaskMutations);
+            if (overlappingTask != null) {
                 return false;
             }
         }
 
-        Pair<TaskInfo, String> overlap = firstTaskWithDestroyedIntermediateInput(taskInfo, candidateTaskDestroyables);
-        if (overlap != null) {
+        TaskInfo consumingTask = firstTaskWithDestroyedIntermediateInput(taskInfo, candidateTaskDestroyables);
+        if (consumingTask != null) {
             return false;
         }
 
@@ -711,35 +774,27 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     }
 
     @Nullable
-    private Pair<TaskInfo, String> firstRunningTaskWithOverlappingMutations(Set<String> candidateTaskMutations) {
-        if (!candidateTaskMutations.isEmpty()) {
-            for (TaskInfo runningTask : runningTasks) {
-                TaskMutationInfo taskMutationInfo = taskMutations.get(runningTask);
-                Iterable<String> runningTaskMutations = Iterables.concat(taskMutationInfo.outputPaths, taskMutationInfo.destroyablePaths);
-                String firstOverlap = findFirstOverlap(candidateTaskMutations, runningTaskMutations);
-                if (firstOverlap != null) {
-                    return Pair.of(runningTask, firstOverlap);
-                }
+    private TaskInfo firstRunningTaskWithOverlappingMutations(Set<String> candidateTaskMutations) {
+        for (String path : candidateTaskMutations) {
+            TaskInfo runningTask = runningTaskMutations.findFirstOverlapping(path);
+            if (runningTask != null) {
+                return runningTask;
             }
         }
-
         return null;
     }
 
     @Nullable
-    private Pair<TaskInfo, String> firstTaskWithDestroyedIntermediateInput(final TaskInfo taskInfo, Set<String> destroyablePaths) {
-        if (!destroyablePaths.isEmpty()) {
-            Iterator<TaskMutationInfo> iterator = taskMutations.values().iterator();
-            while (iterator.hasNext()) {
-                TaskMutationInfo taskMutationInfo = iterator.next();
-                if (taskMutationInfo.task.isComplete() && !taskMutationInfo.consumingTasks.isEmpty()) {
-                    String firstOverlap = findFirstOverlap(destroyablePaths, taskMutationInfo.outputPaths);
-                    if (firstOverlap != null) {
-                        for (TaskInfo consumingTask : taskMutationInfo.consumingTasks) {
-                            if (consumingTask != taskInfo && !isReachableFrom(consumingTask, taskInfo)) {
-                                return Pair.of(consumingTask, firstOverlap);
-                            }
-                        }
+    private TaskInfo firstTaskWithDestroyedIntermediateInput(final TaskInfo taskInfo, Set<String> destroyablePaths) {
+        if (!destroyablePaths.isEmpty() && !consumedOutputs.isEmpty()) {
+            Set<TaskMutationInfo> producers = Sets.newIdentityHashSet();
+            for (String path : destroyablePaths) {
+                consumedOutputs.collectOverlapping(path, producers);
+            }
+            for (TaskMutationInfo taskMutationInfo : producers) {
+                for (TaskInfo consumingTask : taskMutationInfo.consumingTasks) {
+                    if (consumingTask != taskInfo && !isReachableFrom(consumingTask, taskInfo)) {
+                        return consumingTask;
                     }
                 }
             }
@@ -769,18 +824,6 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         return reachable;
     }
 
-    private String findFirstOverlap(Iterable<String> paths1, Iterable<String> paths2) {
-        for (String path1 : paths1) {
-            for (String path2 : paths2) {
-                if (pathsOverlap(path1, path2)) {
-                    return TextUtil.shorterOf(path1, path2);
-                }
-            }
-        }
-
-        return null;
-    }
-
     private Set<String> getOutputPaths(TaskInfo task) {
         try {
             return canonicalizedPaths(canonicalizedFileCache, Iterables.concat(
@@ -796,36 +839,34 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         return canonicalizedPaths(canonicalizedFileCache, ((TaskDestroyablesInternal) task.getTask().getDestroyables()).getFiles());
     }
 
-    private boolean pathsOverlap(String firstPath, String secondPath) {
-        if (firstPath.equals(secondPath)) {
-            return true;
-        }
-
-        String shorter;
-        String longer;
-        if (firstPath.length() > secondPath.length()) {
-            shorter = secondPath;
-            longer = firstPath;
-        } else {
-            shorter = firstPath;
-            longer = secondPath;
-        }
-        return longer.startsWith(shorter + StandardSystemProperty.FILE_SEPARATOR.value());
-    }
-
     private void recordTaskStarted(TaskInfo taskInfo) {
         runningTasks.add(taskInfo);
         TaskMutationInfo taskMutationInfo = taskMutations.get(taskInfo);
         taskMutationInfo.outputPaths.addAll(getOutputPaths(taskInfo));
         taskMutationInfo.destroyablePaths.addAll(getDestroyablePaths(taskInfo));
+        for (String path : Iterables.concat(taskMutationInfo.outputPaths, taskMutationInfo.destroyablePaths)) {
+            runningTaskMutations.add(path, taskInfo);
+        }
     }
 
     private void recordTaskCompleted(TaskInfo taskInfo) {
         runningTasks.remove(taskInfo);
         TaskMutationInfo taskMutationInfo = taskMutations.get(taskInfo);
+        for (String path : Iterables.concat(taskMutationInfo.outputPaths, taskMutationInfo.destroyablePaths)) {
+            runningTaskMutations.remove(path, taskInfo);
+        }
+        if (!taskMutationInfo.consumingTasks.isEmpty()) {
+            // Keep track of the outputs until all the tasks that consume them have completed
+            for (String path : taskMutationInfo.outputPaths) {
+                consumedOutputs.add(path, taskMutationInfo);
+            }
+        }
         for (TaskInfo producerTask : taskMutationInfo.consumesOutputOf) {
             TaskMutationInfo producerTaskMutationInfo = taskMutations.get(producerTask);
             if (producerTaskMutationInfo.consumingTasks.remove(taskInfo) && canRemoveTaskMutation(producerTaskMutationInfo)) {
+                for (String path : producerTaskMutationInfo.outputPaths) {
+                    consumedOutputs.remove(path, producerTaskMutationInfo);
+                }
                 taskMutations.remove(producerTask);
             }
         }
@@ -850,6 +891,7 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
 
                 taskInfo.finishExecution();
                 recordTaskCompleted(taskInfo);
+                readyTasks.taskCompleted(taskInfo);
                 return FINISHED;
             }
         });
@@ -875,7 +917,9 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 candidateNodes.addAll(node.getDependencySuccessors());
 
                 if (node.isMustNotRun() || node.isRequired()) {
+                    boolean wasComplete = node.isComplete();
                     node.enforceRun();
+                    readyTasks.taskEnforced(node, wasComplete);
                 }
             }
         }
@@ -916,12 +960,14 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             // Allow currently executing and enforced tasks to complete, but skip everything else.
             if (taskInfo.isRequired()) {
                 taskInfo.skipExecution();
+                readyTasks.taskAborted(taskInfo);
                 aborted = true;
             }
 
             // If abortAll is set, also stop enforced tasks.
             if (abortAll && taskInfo.isReady()) {
                 taskInfo.abortExecution();
+                readyTasks.taskAborted(taskInfo);
                 aborted = true;
             }
         }
@@ -967,12 +1013,7 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     }
 
     private boolean workRemaining() {
-        for (TaskInfo taskInfo : executionQueue) {
-            if (!taskInfo.isComplete()) {
-                return true;
-            }
-        }
-        return false;
+        return readyTasks.hasPendingTasks();
     }
 
     private static class GraphEdge {
@@ -28,6 +28,7 @@ import org.gradle.api.execution.internal.ExecuteTaskBuildOperationDetails;
 import org.gradle.api.execution.internal.ExecuteTaskBuildOperationResult;
 import org.gradle.api.internal.GradleInternal;
 import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.changedetection.state.TaskDurationRepository;
 import org.gradle.api.internal.tasks.TaskExecuter;
 import org.gradle.api.internal.tasks.TaskExecutionContext;
 import org.gradle.api.internal.tasks.TaskStateInternal;
@@ -47,6 +48,7 @@ import org.gradle.internal.operations.RunnableBuildOperation;
 import org.gradle.internal.progress.BuildOperationCategory;
 import org.gradle.internal.progress.BuildOperationDescriptor;
 import org.gradle.internal.progress.BuildOperationState;
+import org.gradle.internal.taskgraph.ExecuteTaskGraphBuildOperationType;
 import org.gradle.internal.resources.ResourceLockCoordinationService;
 import org.gradle.internal.time.Time;
 import org.gradle.internal.time.Timer;
@@ -55,6 +57,7 @@ import org.gradle.listener.ClosureBackedMethodInvocationDispatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
@@ -73,15 +76,26 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
     private final ListenerBroadcast<TaskExecutionListener> taskListeners;
     private final DefaultTaskExecutionPlan taskExecutionPlan;
     private final BuildOperationExecutor buildOperationExecutor;
+    private final Factory<? extends TaskDurationRepository> taskDurations;
+    private final GradleInternal gradleInternal;
     private TaskGraphState taskGraphState = TaskGraphState.EMPTY;
 
     private final Set<Task> requestedTasks = Sets.newTreeSet();
     private Spec<? super Task> filter = Specs.SATISFIES_ALL;
 
     public DefaultTaskGraphExecuter(ListenerManager listenerManager, TaskPlanExecutor taskPlanExecutor, Factory<? extends TaskExecuter> taskExecuter, BuildCancellationToken cancellationToken, BuildOperationExecutor buildOperationExecutor, WorkerLeaseService workerLeaseService, ResourceLockCoordinationService coordinationService, GradleInternal gradleInternal) {
+        this(listenerManager, taskPlanExecutor, taskExecuter, cancellationToken, buildOperationExecutor, workerLeaseService, coordinationService, gradleInternal, null);
+    }
+
+    /**
+     * @param taskDurations When not null, provides the recorded task durations used to schedule the tasks on the longest path first.
+     */
+    public DefaultTaskGraphExecuter(ListenerManager listenerManager, TaskPlanExecutor taskPlanExecutor, Factory<? extends TaskExecuter> taskExecuter, BuildCancellationToken cancellationToken, BuildOperationExecutor buildOperationExecutor, WorkerLeaseService workerLeaseService, ResourceLockCoordinationService coordinationService, GradleInternal gradleInternal, @Nullable Factory<? extends TaskDurationRepository> taskDurations) {
         this.taskPlanExecutor = taskPlanExecutor;
         this.taskExecuter = taskExecuter;
         this.buildOperationExecutor = buildOperationExecutor;
+        this.taskDurations = taskDurations;
+        this.gradleInternal = gradleInternal;
         graphListeners = listenerManager.createAnonymousBroadcaster(TaskExecutionGraphListener.class);
         taskListeners = listenerManager.createAnonymousBroadcaster(TaskExecutionListener.class);
         taskExecutionPlan = new DefaultTaskExecutionPlan(cancellationToken, coordinationService, workerLeaseService, gradleInternal);
@@ -125,13 +139,23 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
 
         graphListeners.getSource().graphPopulated(this);
         try {
-            taskPlanExecutor.process(taskExecutionPlan, new EventFiringTaskWorker(taskExecuter.create(), buildOperationExecutor.getCurrentOperation()));
+            // Task operations keep the current operation as their parent, also when the graph is executed inside its own operation
+            BuildOperationState parentOperation = buildOperationExecutor.getCurrentOperation();
+            if (taskExecutionPlan.isUsingTaskDurations()) {
+                buildOperationExecutor.run(new ExecuteTaskGraph(parentOperation));
+            } else {
+                processTaskExecutionPlan(parentOperation);
+            }
             LOGGER.debug("Timing: Executing the DAG took " + clock.getElapsed());
         } finally {
             taskExecutionPlan.clear();
         }
     }
 
+    private void processTaskExecutionPlan(BuildOperationState parentOperation) {
+        taskPlanExecutor.process(taskExecutionPlan, new EventFiringTaskWorker(taskExecuter.create(), parentOperation));
+    }
+
     public void addTaskExecutionGraphListener(TaskExecutionGraphListener listener) {
         graphListeners.add(listener);
     }
@@ -214,6 +238,9 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
                 throw new IllegalStateException(
                     "Task information is not available, as this task execution graph has not been populated.");
             case DIRTY:
+                if (taskDurations != null && !taskExecutionPlan.isUsingTaskDurations()) {
+                    taskExecutionPlan.useTaskDurations(taskDurations.create());
+                }
                 taskExecutionPlan.determineExecutionPlan();
                 taskGraphState = TaskGraphState.POPULATED;
                 return;
@@ -221,6 +248,66 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
         }
     }
 
+    /**
+     * Executes the plan, and reports the makespan estimated from the recorded task durations along with the actual one.
+     */
+    private class ExecuteTaskGraph implements RunnableBuildOperation {
+        private final BuildOperationState parentOperation;
+
+        ExecuteTaskGraph(BuildOperationState parentOperation) {
+            this.parentOperation = parentOperation;
+        }
+
+        @Override
+        public void run(BuildOperationContext context) {
+            final int taskCount = taskExecutionPlan.getTasks().size();
+            final int tasksWithRecordedDuration = taskExecutionPlan.getTasksWithRecordedDuration();
+            final long estimatedCriticalPath = taskExecutionPlan.getEstimatedCriticalPath();
+            int workers = Math.max(1, gradleInternal.getStartParameter().getMaxWorkerCount());
+            final long estimatedMakespan = Math.max(estimatedCriticalPath, taskExecutionPlan.getEstimatedTotalDuration() / workers);
+            Timer clock = Time.startTimer();
+            try {
+                processTaskExecutionPlan(parentOperation);
+            } finally {
+                final long actualMakespan = clock.getElapsedMillis();
+                LOGGER.info("Executed {} tasks in {}ms, estimated {}ms with a critical path of {}ms ({} tasks with a recorded duration).",
+                    taskCount, actualMakespan, estimatedMakespan, estimatedCriticalPath, tasksWithRecordedDuration);
+                context.setResult(new ExecuteTaskGraphBuildOperationType.Result() {
+                    @Override
+                    public int getTaskCount() {
+                        return taskCount;
+                    }
+
+                    @Override
+                    public int getTasksWithRecordedDuration() {
+                        return tasksWithRecordedDuration;
+                    }
+
+                    @Override
+                    public long getEstimatedCriticalPathMillis() {
+                        return estimatedCriticalPath;
+                    }
+
+                    @Override
+                    public long getEstimatedMakespanMillis() {
+                        return estimatedMakespan;
+                    }
+
+                    @Override
+                    public long getActualMakespanMillis() {
+                        return actualMakespan;
+                    }
+                });
+            }
+        }
+
+        @Override
+        public BuildOperationDescriptor.Builder description() {
+            return BuildOperationDescriptor.displayName("Execute task graph").details(new ExecuteTaskGraphBuildOperationType.Details() {
+            });
+        }
+    }
+
     /**
      * This action will set the start and end times on the internal task state, and will make sure
      * that when a task is started, the public listeners are executed after the internal listeners
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A prefix tree of canonical file paths, keyed by path segment, recording the owners of each path. Two paths overlap when they are equal or one of them
+ * is an ancestor of the other. Finding the owners of the paths that overlap a given path walks down the segments of that path once, instead of comparing
+ * it with every path in the index.
+ *
+ * <p>Each node counts the owners held in its subtree, so that descendants can be found without visiting empty branches.</p>
+ */
+class PathOverlapIndex<T> {
+    private final char separator;
+    private final Node<T> root = new Node<T>(null, null);
+
+    PathOverlapIndex() {
+        this(File.separatorChar);
+    }
+
+    PathOverlapIndex(char separator) {
+        this.separator = separator;
+    }
+
+    void add(String path, T owner) {
+        Node<T> node = root;
+        int start = 0;
+        while (start < path.length()) {
+            int end = segmentEnd(path, start);
+            if (end > start) {
+                node = node.getOrCreateChild(path.substring(start, end));
+            }
+            start = end + 1;
+        }
+        if (node.addOwner(owner)) {
+            for (Node<T> current = node; current != null; current = current.parent) {
+                current.ownerCount++;
+            }
+        }
+    }
+
+    void remove(String path, T owner) {
+        Node<T> node = find(path);
+        if (node == null || !node.removeOwner(owner)) {
+            return;
+        }
+        for (Node<T> current = node; current != null; current = current.parent) {
+            current.ownerCount--;
+            if (current.ownerCount == 0 && current.parent != null) {
+                current.parent.children.remove(current.name);
+            }
+        }
+    }
+
+    void clear() {
+        root.children = null;
+        root.owners = null;
+        root.ownerCount = 0;
+    }
+
+    boolean isEmpty() {
+        return root.ownerCount == 0;
+    }
+
+    /**
+     * Returns an owner of a path that overlaps the given path, or {@code null} when there is none.
+     */
+    @Nullable
+    T findFirstOverlapping(String path) {
+        Node<T> node = root;
+        int start = 0;
+        while (true) {
+            if (node.owners != null && !node.owners.isEmpty()) {
+                return node.owners.iterator().next();
+            }
+            if (start >= path.length()) {
+                break;
+            }
+            int end = segmentEnd(path, start);
+            if (end > start) {
+                node = node.getChild(path.substring(start, end));
+                if (node == null) {
+                    return null;
+                }
+            }
+            start = end + 1;
+        }
+        // No ancestor of the path is held, so look for a descendant. Empty branches are pruned, so any child leads to an owner
+        if (node.ownerCount == 0) {
+            return null;
+        }
+        while (node.owners == null || node.owners.isEmpty()) {
+            node = node.children.values().iterator().next();
+        }
+        return node.owners.iterator().next();
+    }
+
+    /**
+     * Adds the owners of all paths that overlap the given path to the given collection.
+     */
+    void collectOverlapping(String path, Collection<? super T> result) {
+        Node<T> node = root;
+        int start = 0;
+        while (true) {
+            if (node.owners != null) {
+                result.addAll(node.owners);
+            }
+            if (start >= path.length()) {
+                break;
+            }
+            int end = segmentEnd(path, start);
+            if (end > start) {
+                node = node.getChild(path.substring(start, end));
+                if (node == null) {
+                    return;
+                }
+            }
+            start = end + 1;
+        }
+        if (node.children != null) {
+            for (Node<T> child : node.children.values()) {
+                collectSubtree(child, result);
+            }
+        }
+    }
+
+    private void collectSubtree(Node<T> node, Collection<? super T> result) {
+        if (node.owners != null) {
+            result.addAll(node.owners);
+        }
+        if (node.children != null) {
+            for (Node<T> child : node.children.values()) {
+                collectSubtree(child, result);
+            }
+        }
+    }
+
+    @Nullable
+    private Node<T> find(String path) {
+        Node<T> node = root;
+        int start = 0;
+        while (start < path.length() && node != null) {
+            int end = segmentEnd(path, start);
+            if (end > start) {
+                node = node.getChild(path.substring(start, end));
+            }
+            start = end + 1;
+        }
+        return node;
+    }
+
+    private int segmentEnd(String path, int start) {
+        int end = path.indexOf(separator, start);
+        return end < 0 ? path.length() : end;
+    }
+
+    private static class Node<T> {
+        private final Node<T> parent;
+        private final String name;
+        private Map<String, Node<T>> children;
+        private Set<T> owners;
+        private int ownerCount;
+
+        Node(@Nullable Node<T> parent, @Nullable String name) {
+            this.parent = parent;
+            this.name = name;
+        }
+
+        @Nullable
+        Node<T> getChild(String name) {
+            return children == null ? null : children.get(name);
+        }
+
+        Node<T> getOrCreateChild(String name) {
+            if (children == null) {
+                children = Maps.newHashMap();
+            }
+            Node<T> child = children.get(name);
+            if (child == null) {
+                child = new Node<T>(this, name);
+                children.put(name, child);
+            }
+            return child;
+        }
+
+        boolean addOwner(T owner) {
+            if (owners == null) {
+                owners = Sets.newIdentityHashSet();
+            }
+            return owners.add(owner);
+        }
+
+        boolean removeOwner(T owner) {
+            return owners != null && owners.remove(owner);
+        }
+    }
+}
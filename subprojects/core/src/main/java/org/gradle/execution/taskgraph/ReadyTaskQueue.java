@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+/**
+ * Holds the tasks of an execution plan that are ready to run and whose dependencies are all complete. Tasks with a longer estimated path to the end
+ * of the build come first, and the remaining ties are broken by plan order. When no durations have been estimated, the tasks are held in plan order.
+ *
+ * <p>Each task keeps a count of its incomplete dependencies and must-run-after successors. The plan notifies the queue whenever a task is selected
+ * or changes between complete and incomplete, and the counts of the tasks that wait for it are updated. A task is queued when its count drops to zero,
+ * so selecting a task no longer requires scanning the whole plan.</p>
+ */
+class ReadyTaskQueue {
+    private static final Comparator<TaskInfo> SELECTION_ORDER = new Comparator<TaskInfo>() {
+        @Override
+        public int compare(TaskInfo o1, TaskInfo o2) {
+            long pathDuration1 = o1.getEstimatedPathDuration();
+            long pathDuration2 = o2.getEstimatedPathDuration();
+            if (pathDuration1 != pathDuration2) {
+                return pathDuration1 > pathDuration2 ? -1 : 1;
+            }
+            return o1.getExecutionOrder() - o2.getExecutionOrder();
+        }
+    };
+
+    private final TreeSet<TaskInfo> readyTasks = new TreeSet<TaskInfo>(SELECTION_ORDER);
+    private int pendingTasks;
+
+    /**
+     * Starts tracking the given tasks, which must be in execution order.
+     */
+    void initialize(Collection<TaskInfo> executionPlan) {
+        clear();
+        int executionOrder = 0;
+        for (TaskInfo taskInfo : executionPlan) {
+            taskInfo.setExecutionOrder(executionOrder++);
+        }
+        for (TaskInfo taskInfo : executionPlan) {
+            int incompleteDependencies = 0;
+            for (TaskInfo dependency : taskInfo.getDependencySuccessors()) {
+                if (!dependency.isComplete()) {
+                    incompleteDependencies++;
+                }
+            }
+            for (TaskInfo dependency : taskInfo.getMustSuccessors()) {
+                if (!dependency.isComplete() && !taskInfo.getDependencySuccessors().contains(dependency)) {
+                    incompleteDependencies++;
+                }
+            }
+            taskInfo.setIncompleteDependencies(incompleteDependencies);
+            if (!taskInfo.isComplete()) {
+                pendingTasks++;
+            }
+            if (taskInfo.isReady() && incompleteDependencies == 0) {
+                readyTasks.add(taskInfo);
+            }
+        }
+    }
+
+    void clear() {
+        readyTasks.clear();
+        pendingTasks = 0;
+    }
+
+    /**
+     * Returns the tasks that can be selected, in the order they should be tried. The iterator must not be used once the queue has been notified of a change.
+     */
+    Iterator<TaskInfo> iterator() {
+        return readyTasks.iterator();
+    }
+
+    /**
+     * Are there any tasks that have not been selected and are not complete?
+     */
+    boolean hasPendingTasks() {
+        return pendingTasks > 0;
+    }
+
+    /**
+     * The given task has been selected, and has either started executing or been skipped.
+     */
+    void taskSelected(TaskInfo taskInfo) {
+        readyTasks.remove(taskInfo);
+        pendingTasks--;
+        if (taskInfo.isComplete()) {
+            taskCompleted(taskInfo);
+        }
+    }
+
+    /**
+     * The given task has been skipped without being selected.
+     */
+    void taskAborted(TaskInfo taskInfo) {
+        readyTasks.remove(taskInfo);
+        pendingTasks--;
+        taskCompleted(taskInfo);
+    }
+
+    /**
+     * The given selected task has finished executing.
+     */
+    void taskCompleted(TaskInfo taskInfo) {
+        for (TaskInfo predecessor : taskInfo.getDependencyPredecessors()) {
+            dependencyCompleted(predecessor);
+        }
+        for (TaskInfo predecessor : taskInfo.getMustPredecessors()) {
+            if (!taskInfo.getDependencyPredecessors().contains(predecessor)) {
+                dependencyCompleted(predecessor);
+            }
+        }
+    }
+
+    /**
+     * The given task has been enforced to run. When it was complete before, the tasks that wait for it can no longer run until it completes again.
+     */
+    void taskEnforced(TaskInfo taskInfo, boolean wasComplete) {
+        if (wasComplete) {
+            pendingTasks++;
+            for (TaskInfo predecessor : taskInfo.getDependencyPredecessors()) {
+                dependencyReopened(predecessor);
+            }
+            for (TaskInfo predecessor : taskInfo.getMustPredecessors()) {
+                if (!taskInfo.getDependencyPredecessors().contains(predecessor)) {
+                    dependencyReopened(predecessor);
+                }
+            }
+        }
+        if (taskInfo.getIncompleteDependencies() == 0) {
+            readyTasks.add(taskInfo);
+        }
+    }
+
+    private void dependencyCompleted(TaskInfo taskInfo) {
+        int incompleteDependencies = taskInfo.getIncompleteDependencies() - 1;
+        taskInfo.setIncompleteDependencies(incompleteDependencies);
+        if (incompleteDependencies == 0 && taskInfo.isReady()) {
+            readyTasks.add(taskInfo);
+        }
+    }
+
+    private void dependencyReopened(TaskInfo taskInfo) {
+        taskInfo.setIncompleteDependencies(taskInfo.getIncompleteDependencies() + 1);
+        readyTasks.remove(taskInfo);
+    }
+}
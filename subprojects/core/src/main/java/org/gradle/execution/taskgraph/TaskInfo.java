@@ -33,8 +33,12 @@ public class TaskInfo implements Comparable<TaskInfo> {
     private final TreeSet<TaskInfo> dependencyPredecessors = new TreeSet<TaskInfo>();
     private final TreeSet<TaskInfo> dependencySuccessors = new TreeSet<TaskInfo>();
     private final TreeSet<TaskInfo> mustSuccessors = new TreeSet<TaskInfo>();
+    private final TreeSet<TaskInfo> mustPredecessors = new TreeSet<TaskInfo>();
     private final TreeSet<TaskInfo> shouldSuccessors = new TreeSet<TaskInfo>();
     private final TreeSet<TaskInfo> finalizers = new TreeSet<TaskInfo>();
+    private int executionOrder = -1;
+    private int incompleteDependencies;
+    private long estimatedPathDuration;
 
     public TaskInfo(TaskInternal task) {
         this.task = task;
@@ -170,6 +174,10 @@ public class TaskInfo implements Comparable<TaskInfo> {
         return mustSuccessors;
     }
 
+    public TreeSet<TaskInfo> getMustPredecessors() {
+        return mustPredecessors;
+    }
+
     public TreeSet<TaskInfo> getFinalizers() {
         return finalizers;
     }
@@ -193,6 +201,7 @@ public class TaskInfo implements Comparable<TaskInfo> {
 
     public void addMustSuccessor(TaskInfo toNode) {
         mustSuccessors.add(toNode);
+        toNode.mustPredecessors.add(this);
     }
 
     public void addFinalizer(TaskInfo finalizerNode) {
@@ -207,6 +216,39 @@ public class TaskInfo implements Comparable<TaskInfo> {
         shouldSuccessors.remove(toNode);
     }
 
+    /**
+     * The position of this task in the execution plan.
+     */
+    public int getExecutionOrder() {
+        return executionOrder;
+    }
+
+    public void setExecutionOrder(int executionOrder) {
+        this.executionOrder = executionOrder;
+    }
+
+    /**
+     * The number of dependencies and must-run-after successors of this task that are not complete.
+     */
+    public int getIncompleteDependencies() {
+        return incompleteDependencies;
+    }
+
+    public void setIncompleteDependencies(int incompleteDependencies) {
+        this.incompleteDependencies = incompleteDependencies;
+    }
+
+    /**
+     * The estimated duration in milliseconds of the longest path from the start of this task to the end of the build, or 0 when not estimated.
+     */
+    public long getEstimatedPathDuration() {
+        return estimatedPathDuration;
+    }
+
+    public void setEstimatedPathDuration(long estimatedPathDuration) {
+        this.estimatedPathDuration = estimatedPathDuration;
+    }
+
     public int compareTo(TaskInfo otherInfo) {
         return task.compareTo(otherInfo.getTask());
     }
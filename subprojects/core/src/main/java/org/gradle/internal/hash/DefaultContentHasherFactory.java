@@ -16,13 +16,48 @@
 
 package org.gradle.internal.hash;
 
+/**
+ * Creates hashers for file content. MD5 is used by default. MurmurHash3 is much faster, but is not a cryptographic hash function.
+ *
+ * <p>The hash function is selected with the {@value #HASH_FUNCTION_PROPERTY} system property. Each selectable name carries a version, and the name is mixed
+ * into every hash. Changing the hash function, or the way it is applied, therefore needs a new name, so that task history and build cache keys created
+ * with different schemes never match.</p>
+ */
 public class DefaultContentHasherFactory implements ContentHasherFactory {
-    private static final byte[] SIGNATURE = Hashing.md5().hashString(DefaultContentHasherFactory.class.getName()).toByteArray();
+    public static final String HASH_FUNCTION_PROPERTY = "org.gradle.internal.contentHashFunction";
+    public static final String MD5 = "md5";
+    public static final String MURMUR3 = "murmur3-v1";
+
+    private final String name;
+    private final HashFunction hashFunction;
+    private final byte[] signature;
+
+    public DefaultContentHasherFactory() {
+        this(MD5);
+    }
+
+    public DefaultContentHasherFactory(String name) {
+        this.name = name;
+        if (MD5.equals(name)) {
+            this.hashFunction = Hashing.md5();
+            this.signature = Hashing.md5().hashString(DefaultContentHasherFactory.class.getName()).toByteArray();
+        } else if (MURMUR3.equals(name)) {
+            this.hashFunction = Hashing.murmur3();
+            this.signature = Hashing.md5().hashString(DefaultContentHasherFactory.class.getName() + ":" + name).toByteArray();
+        } else {
+            throw new IllegalArgumentException(String.format("Unknown content hash function '%s'. Supported values are '%s' and '%s'.", name, MD5, MURMUR3));
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
 
     @Override
     public Hasher create() {
-        Hasher hasher = Hashing.md5().newHasher();
-        hasher.putBytes(SIGNATURE);
+        Hasher hasher = hashFunction.newHasher();
+        hasher.putBytes(signature);
         return hasher;
     }
 }
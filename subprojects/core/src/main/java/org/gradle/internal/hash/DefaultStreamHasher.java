@@ -17,7 +17,10 @@ package org.gradle.internal.hash;
 
 import org.gradle.api.UncheckedIOException;
 import org.gradle.internal.io.NullOutputStream;
+import org.gradle.internal.os.OperatingSystem;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -25,11 +28,18 @@ import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 
 public class DefaultStreamHasher implements StreamHasher {
+    /**
+     * Files of at least this size are read through a {@link FileChannelHasher} rather than a stream.
+     */
+    public static final int LARGE_FILE_THRESHOLD = 1024 * 1024;
+
     private final Queue<byte[]> buffers = new ArrayBlockingQueue<byte[]>(16);
     private final ContentHasherFactory hasherFactory;
+    private final FileChannelHasher fileChannelHasher;
 
     public DefaultStreamHasher(ContentHasherFactory hasherFactory) {
         this.hasherFactory = hasherFactory;
+        this.fileChannelHasher = new FileChannelHasher(!OperatingSystem.current().isWindows());
     }
 
     @Override
@@ -46,6 +56,31 @@ public class DefaultStreamHasher implements StreamHasher {
         return doHash(inputStream, outputStream);
     }
 
+    @Override
+    public HashCode hash(File file) throws IOException {
+        if (file.length() < LARGE_FILE_THRESHOLD) {
+            return hashStream(file);
+        }
+        Hasher hasher = hasherFactory.create();
+        try {
+            fileChannelHasher.hash(file, hasher);
+        } catch (InternalError e) {
+            // The JVM reports an access to a mapped region beyond the end of a file that has been truncated since it was mapped as an InternalError.
+            // Hash the current content of the file through a stream instead
+            return hashStream(file);
+        }
+        return hasher.hash();
+    }
+
+    private HashCode hashStream(File file) throws IOException {
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            return doHash(inputStream, NullOutputStream.INSTANCE);
+        } finally {
+            inputStream.close();
+        }
+    }
+
     private HashCode doHash(InputStream inputStream, OutputStream outputStream) throws IOException {
         byte[] buffer = takeBuffer();
         try {
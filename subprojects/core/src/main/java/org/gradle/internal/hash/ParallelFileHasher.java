@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash;
+
+import org.gradle.api.file.FileTreeElement;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashes batches of files using a bounded pool of threads.
+ *
+ * <p>A batch is split into small chunks of files, which are claimed one at a time by the calling thread and by helper threads from the pool.
+ * The calling thread keeps claiming chunks until none are left, so a batch is completed even when all threads of the pool are busy.</p>
+ */
+public class ParallelFileHasher implements Stoppable {
+    private static final int FILES_PER_CHUNK = 16;
+
+    private final ManagedExecutor executor;
+    private final int parallelism;
+
+    public ParallelFileHasher(ExecutorFactory executorFactory, int parallelism) {
+        this.parallelism = parallelism;
+        this.executor = parallelism > 1 ? executorFactory.create("File hashing", parallelism - 1) : null;
+    }
+
+    /**
+     * Returns the hashes of the given files, in the same order as the files.
+     */
+    public List<HashCode> hash(final FileHasher hasher, final List<? extends FileTreeElement> files) {
+        final HashCode[] hashes = new HashCode[files.size()];
+        final int chunkCount = (files.size() + FILES_PER_CHUNK - 1) / FILES_PER_CHUNK;
+        final AtomicInteger nextChunk = new AtomicInteger();
+        Runnable hashChunks = new Runnable() {
+            @Override
+            public void run() {
+                for (int chunk = nextChunk.getAndIncrement(); chunk < chunkCount; chunk = nextChunk.getAndIncrement()) {
+                    int end = Math.min((chunk + 1) * FILES_PER_CHUNK, hashes.length);
+                    for (int i = chunk * FILES_PER_CHUNK; i < end; i++) {
+                        hashes[i] = hasher.hash(files.get(i));
+                    }
+                }
+            }
+        };
+
+        int helperCount = executor == null ? 0 : Math.min(parallelism, chunkCount) - 1;
+        List<Helper> helpers = new ArrayList<Helper>(Math.max(helperCount, 0));
+        for (int i = 0; i < helperCount; i++) {
+            Helper helper = new Helper(hashChunks);
+            helper.future = executor.submit(helper);
+            helpers.add(helper);
+        }
+        try {
+            hashChunks.run();
+        } finally {
+            // Claim the remaining chunks, so that helpers stop early when hashing has failed
+            nextChunk.set(chunkCount);
+            waitFor(helpers);
+        }
+        return Arrays.asList(hashes);
+    }
+
+    private static void waitFor(List<Helper> helpers) {
+        Throwable failure = null;
+        for (Helper helper : helpers) {
+            if (helper.started.compareAndSet(false, true)) {
+                // Not started yet, and now never will
+                continue;
+            }
+            try {
+                helper.future.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            } catch (InterruptedException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+        if (failure != null) {
+            throw UncheckedException.throwAsUncheckedException(failure);
+        }
+    }
+
+    private static class Helper implements Runnable {
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final Runnable action;
+        private Future<?> future;
+
+        Helper(Runnable action) {
+            this.action = action;
+        }
+
+        @Override
+        public void run() {
+            if (started.compareAndSet(false, true)) {
+                action.run();
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (executor != null) {
+            executor.stop();
+        }
+    }
+}
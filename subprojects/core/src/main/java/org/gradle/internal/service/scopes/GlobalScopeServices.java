@@ -30,6 +30,7 @@ import org.gradle.api.internal.DynamicModulesClassPathProvider;
 import org.gradle.api.internal.InstantiatorFactory;
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.api.internal.changedetection.state.InMemoryCacheDecoratorFactory;
+import org.gradle.api.internal.changedetection.state.MappedFileHashIndexCache;
 import org.gradle.api.internal.classpath.DefaultModuleRegistry;
 import org.gradle.api.internal.classpath.DefaultPluginModuleRegistry;
 import org.gradle.api.internal.classpath.ModuleRegistry;
@@ -241,6 +242,10 @@ public class GlobalScopeServices extends BasicGlobalScopeServices {
         return new InMemoryCacheDecoratorFactory(environment.isLongLivingProcess(), cacheFactory);
     }
 
+    MappedFileHashIndexCache createMappedFileHashIndexCache() {
+        return new MappedFileHashIndexCache();
+    }
+
 
     DirectoryFileTreeFactory createDirectoryFileTreeFactory(Factory<PatternSet> patternSetFactory, FileSystem fileSystem) {
         return new DefaultDirectoryFileTreeFactory(patternSetFactory, fileSystem);
@@ -353,7 +358,7 @@ public class GlobalScopeServices extends BasicGlobalScopeServices {
     }
 
     ContentHasherFactory createHasherFactory() {
-        return new DefaultContentHasherFactory();
+        return new DefaultContentHasherFactory(System.getProperty(DefaultContentHasherFactory.HASH_FUNCTION_PROPERTY, DefaultContentHasherFactory.MD5));
     }
 
     StreamHasher createStreamHasher(ContentHasherFactory hasherFactory) {
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.internal.taskgraph;
+
+import org.gradle.internal.operations.BuildOperationType;
+
+/**
+ * Executing the task graph with the tasks on the longest estimated path scheduled first.
+ * The result compares the makespan estimated from the recorded task durations with the actual one.
+ * The operations executing the tasks are not children of this operation, they keep the parent they have when this operation is not used.
+ *
+ * @since 4.4
+ */
+public final class ExecuteTaskGraphBuildOperationType implements BuildOperationType<ExecuteTaskGraphBuildOperationType.Details, ExecuteTaskGraphBuildOperationType.Result> {
+
+    public interface Details {
+    }
+
+    public interface Result {
+
+        /**
+         * The number of tasks in the graph.
+         */
+        int getTaskCount();
+
+        /**
+         * The number of tasks in the graph with a recorded duration. The duration of the other tasks is estimated as the average recorded duration.
+         */
+        int getTasksWithRecordedDuration();
+
+        /**
+         * The estimated duration of the longest path through the graph.
+         */
+        long getEstimatedCriticalPathMillis();
+
+        /**
+         * The estimated makespan: the longer of the critical path and the total estimated duration spread over all workers.
+         */
+        long getEstimatedMakespanMillis();
+
+        /**
+         * How long the execution of the graph took.
+         */
+        long getActualMakespanMillis();
+
+    }
+
+    private ExecuteTaskGraphBuildOperationType() {
+    }
+
+}
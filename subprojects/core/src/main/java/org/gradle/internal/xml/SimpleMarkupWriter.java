@@ -161,16 +161,41 @@ public class SimpleMarkupWriter extends Writer {
 
     private void writeCDATA(char[] cdata, int offset, int count) throws IOException {
         int end = offset + count;
+        int unencoded = offset;
         for (int i = offset; i < end; i++) {
-            writeCDATA(cdata[i]);
+            char ch = cdata[i];
+            if (!isUnencodedCDATACharacter(ch)) {
+                output.write(cdata, unencoded, i - unencoded);
+                writeCDATA(ch);
+                unencoded = i + 1;
+            }
         }
+        output.write(cdata, unencoded, end - unencoded);
     }
 
     private void writeCDATA(CharSequence cdata) throws IOException {
         int len = cdata.length();
+        int unencoded = 0;
         for (int i = 0; i < len; i++) {
-            writeCDATA(cdata.charAt(i));
+            char ch = cdata.charAt(i);
+            if (!isUnencodedCDATACharacter(ch)) {
+                writeRaw(cdata, unencoded, i);
+                writeCDATA(ch);
+                unencoded = i + 1;
+            }
         }
+        writeRaw(cdata, unencoded, len);
+    }
+
+    /**
+     * Returns true if the given character is written to a CDATA node as is. Runs of such characters are written to the output in one go.
+     */
+    private boolean isUnencodedCDATACharacter(char ch) {
+        if (ch == ']' || ch == '>' || !XmlValidation.isLegalCharacter(ch) || XmlValidation.isRestrictedCharacter(ch)) {
+            return false;
+        }
+        squareBrackets = 0;
+        return true;
     }
 
     private void writeCDATA(char ch) throws IOException {
@@ -254,11 +279,24 @@ public class SimpleMarkupWriter extends Writer {
         output.write(message);
     }
 
+    private void writeRaw(CharSequence message, int start, int end) throws IOException {
+        if (start < end) {
+            output.append(message, start, end);
+        }
+    }
+
     private void writeXmlEncoded(char[] message, int offset, int count) throws IOException {
         int end = offset + count;
+        int unencoded = offset;
         for (int i = offset; i < end; i++) {
-            writeXmlEncoded(message[i]);
+            char ch = message[i];
+            if (!isUnencodedCharacter(ch)) {
+                output.write(message, unencoded, i - unencoded);
+                writeXmlEncoded(ch);
+                unencoded = i + 1;
+            }
         }
+        output.write(message, unencoded, end - unencoded);
     }
 
     private void writeXmlAttributeEncoded(CharSequence message) throws IOException {
@@ -284,9 +322,23 @@ public class SimpleMarkupWriter extends Writer {
     private void writeXmlEncoded(CharSequence message) throws IOException {
         assert message != null;
         int len = message.length();
+        int unencoded = 0;
         for (int i = 0; i < len; i++) {
-            writeXmlEncoded(message.charAt(i));
+            char ch = message.charAt(i);
+            if (!isUnencodedCharacter(ch)) {
+                writeRaw(message, unencoded, i);
+                writeXmlEncoded(ch);
+                unencoded = i + 1;
+            }
         }
+        writeRaw(message, unencoded, len);
+    }
+
+    /**
+     * Returns true if the given character is written to text as is. Runs of such characters are written to the output in one go.
+     */
+    private static boolean isUnencodedCharacter(char ch) {
+        return ch != '<' && ch != '>' && ch != '&' && ch != '"' && XmlValidation.isLegalCharacter(ch) && !XmlValidation.isRestrictedCharacter(ch);
     }
 
     private void writeXmlEncoded(char ch) throws IOException {
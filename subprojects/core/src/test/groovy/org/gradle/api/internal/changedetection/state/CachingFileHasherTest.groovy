@@ -193,4 +193,43 @@ class CachingFileHasherTest extends Specification {
         }
         0 * _._
     }
+
+    def usesOffHeapIndexWhenProvided() {
+        def stat = fileSystem.stat(file)
+        def index = new MappedFileHashIndex(tmpDir.file("fileHashes.idx"), 1024)
+        def indexedHasher = new CachingFileHasher(target, index, timeStampInspector, fileSystem)
+
+        when:
+        def result = indexedHasher.hash(file)
+
+        then:
+        result == hash
+
+        and:
+        1 * timeStampInspector.timestampCanBeUsedToDetectFileChange(file.absolutePath, stat.lastModified) >> true
+        1 * target.hash(file) >> hash
+        0 * _._
+
+        when:
+        result = indexedHasher.hash(file)
+
+        then:
+        result == hash
+
+        and:
+        1 * timeStampInspector.timestampCanBeUsedToDetectFileChange(file.absolutePath, stat.lastModified) >> true
+        0 * _._
+
+        when:
+        indexedHasher.discard(file.absolutePath)
+        result = indexedHasher.hash(file)
+
+        then:
+        result == hash
+
+        and:
+        1 * timeStampInspector.timestampCanBeUsedToDetectFileChange(file.absolutePath, stat.lastModified) >> true
+        1 * target.hash(file) >> hash
+        0 * _._
+    }
 }
@@ -19,6 +19,11 @@ package org.gradle.api.internal.changedetection.state
 import org.gradle.BuildResult
 import org.gradle.api.internal.GradleInternal
 import org.gradle.internal.classpath.CachedJarFileStore
+import org.gradle.internal.file.FileType
+import org.gradle.internal.filewatch.FileWatcher
+import org.gradle.internal.filewatch.FileWatcherEvent
+import org.gradle.internal.filewatch.FileWatcherFactory
+import org.gradle.internal.filewatch.FileWatcherListener
 import org.gradle.test.fixtures.file.TestFile
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.junit.Rule
@@ -30,12 +35,21 @@ class DefaultFileSystemMirrorTest extends Specification {
 
     DefaultFileSystemMirror mirror
     TestFile cacheDir
+    TestFile syncDir
+    volatile boolean stopped
+    Thread syncReporter
 
     def setup() {
         cacheDir = tmpDir.createDir("cache")
         def fileStore = Stub(CachedJarFileStore)
         fileStore.fileStoreRoots >> [cacheDir]
         mirror = new DefaultFileSystemMirror([fileStore])
+        syncDir = tmpDir.file("sync")
+    }
+
+    def cleanup() {
+        stopped = true
+        syncReporter?.join()
     }
 
     def "keeps state about a file until task outputs are generated"() {
@@ -68,6 +82,85 @@ class DefaultFileSystemMirrorTest extends Specification {
         mirror.getContent(file.path) == null
     }
 
+    def "discards state about output locations, their descendants and the trees containing them when task outputs are generated"() {
+        def outputDir = tmpDir.file("build/output")
+        def outputFile = outputDir.file("some/file")
+        def sibling = tmpDir.file("build/output-other/file")
+        def outputFileSnapshot = Stub(FileSnapshot)
+        def siblingSnapshot = Stub(FileSnapshot)
+        def rootTreeSnapshot = Stub(FileTreeSnapshot)
+        def outputTreeSnapshot = Stub(FileTreeSnapshot)
+        def snapshot = Stub(Snapshot)
+
+        given:
+        _ * outputFileSnapshot.path >> outputFile.path
+        _ * siblingSnapshot.path >> sibling.path
+        _ * rootTreeSnapshot.path >> tmpDir.testDirectory.path
+        _ * outputTreeSnapshot.path >> outputDir.path
+
+        when:
+        mirror.putFile(outputFileSnapshot)
+        mirror.putFile(siblingSnapshot)
+        mirror.putDirectory(rootTreeSnapshot)
+        mirror.putContent(tmpDir.testDirectory.path, snapshot)
+        mirror.putDirectory(outputTreeSnapshot)
+        mirror.beforeTaskOutputsGenerated([outputDir])
+
+        then:
+        mirror.getFile(outputFile.path) == null
+        mirror.getDirectoryTree(outputDir.path) == null
+        mirror.getDirectoryTree(tmpDir.testDirectory.path) == null
+        mirror.getContent(tmpDir.testDirectory.path) == null
+        mirror.getFile(sibling.path) == siblingSnapshot
+    }
+
+    def "discards state about the missing parent of an output location when task outputs are generated"() {
+        def parentDir = tmpDir.file("build/classes")
+        def outputDir = parentDir.file("main")
+        def parentSnapshot = Stub(FileSnapshot)
+        def rootSnapshot = Stub(FileSnapshot)
+
+        given:
+        _ * parentSnapshot.path >> parentDir.path
+        _ * parentSnapshot.type >> FileType.Missing
+        _ * rootSnapshot.path >> tmpDir.testDirectory.path
+
+        when:
+        mirror.putFile(parentSnapshot)
+        mirror.putFile(rootSnapshot)
+        mirror.beforeTaskOutputsGenerated([outputDir])
+
+        then:
+        mirror.getFile(parentDir.path) == null
+        mirror.getFile(tmpDir.testDirectory.path) == null
+    }
+
+    def "counts lookups until end of build"() {
+        def file = tmpDir.file("a")
+        def fileSnapshot = Stub(FileSnapshot)
+
+        given:
+        _ * fileSnapshot.path >> file.path
+
+        when:
+        mirror.getFile(file.path)
+        mirror.putFile(fileSnapshot)
+        mirror.getFile(file.path)
+        mirror.getFile(file.path)
+        mirror.getDirectoryTree(file.path)
+
+        then:
+        mirror.hitCount == 2
+        mirror.missCount == 2
+
+        when:
+        mirror.beforeComplete()
+
+        then:
+        mirror.hitCount == 0
+        mirror.missCount == 0
+    }
+
     def "keeps state about a file until end of build"() {
         def file = tmpDir.file("a")
         def fileSnapshot = Stub(FileSnapshot)
@@ -141,4 +234,212 @@ class DefaultFileSystemMirrorTest extends Specification {
         mirror.getDirectoryTree(file.path) == null
         mirror.getContent(file.path) == null
     }
+
+    def "retains state about watched files between builds until they change"() {
+        def listener = watchForChanges()
+        def dir = tmpDir.createDir("dir")
+        def file = dir.file("a")
+        def fileSnapshot = Stub(FileSnapshot)
+        def fileTreeSnapshot = Stub(FileTreeSnapshot)
+        def snapshot = Stub(Snapshot)
+
+        given:
+        _ * fileSnapshot.path >> file.path
+        _ * fileTreeSnapshot.path >> dir.path
+
+        when:
+        mirror.afterStart()
+        putState(fileSnapshot, fileTreeSnapshot, snapshot)
+        mirror.beforeComplete()
+
+        then:
+        // Not watched while the build was running, so cannot be retained
+        mirror.getFile(file.path) == null
+        mirror.getDirectoryTree(dir.path) == null
+        mirror.getContent(dir.path) == null
+
+        when:
+        mirror.afterStart()
+        putState(fileSnapshot, fileTreeSnapshot, snapshot)
+        mirror.beforeComplete()
+        mirror.afterStart()
+
+        then:
+        mirror.getFile(file.path) == fileSnapshot
+        mirror.getDirectoryTree(dir.path) == fileTreeSnapshot
+        mirror.getContent(dir.path) == snapshot
+
+        when:
+        mirror.beforeComplete()
+        listener.onChange(Stub(FileWatcher), FileWatcherEvent.modify(file))
+        mirror.afterStart()
+
+        then:
+        mirror.getFile(file.path) == null
+        mirror.getDirectoryTree(dir.path) == null
+        mirror.getContent(dir.path) == null
+    }
+
+    def "discards retained state about descendants of a removed directory"() {
+        def listener = watchForChanges()
+        def dir = tmpDir.createDir("dir")
+        def file = dir.file("sub/a")
+        def fileSnapshot = Stub(FileSnapshot)
+        def fileTreeSnapshot = Stub(FileTreeSnapshot)
+        def snapshot = Stub(Snapshot)
+        def otherFile = tmpDir.file("other")
+        def otherSnapshot = Stub(FileSnapshot)
+
+        given:
+        _ * fileSnapshot.path >> file.path
+        _ * fileTreeSnapshot.path >> dir.path
+        _ * otherSnapshot.path >> otherFile.path
+
+        when:
+        2.times {
+            mirror.afterStart()
+            putState(fileSnapshot, fileTreeSnapshot, snapshot)
+            mirror.putFile(otherSnapshot)
+            mirror.beforeComplete()
+        }
+        listener.onChange(Stub(FileWatcher), FileWatcherEvent.delete(dir.file("sub")))
+        mirror.afterStart()
+
+        then:
+        mirror.getFile(file.path) == null
+        mirror.getDirectoryTree(dir.path) == null
+        mirror.getContent(dir.path) == null
+        mirror.getFile(otherFile.path) == otherSnapshot
+    }
+
+    def "discards all retained state when changes are unknown"() {
+        def listener = watchForChanges()
+        def file = tmpDir.file("a")
+        def fileSnapshot = Stub(FileSnapshot)
+
+        given:
+        _ * fileSnapshot.path >> file.path
+
+        when:
+        2.times {
+            mirror.afterStart()
+            mirror.putFile(fileSnapshot)
+            mirror.beforeComplete()
+        }
+        listener.onChange(Stub(FileWatcher), FileWatcherEvent.undefined())
+        mirror.afterStart()
+
+        then:
+        mirror.getFile(file.path) == null
+    }
+
+    def "stops watching when stopped"() {
+        def watcher = Mock(FileWatcher)
+        def watcherFactory = Stub(FileWatcherFactory) {
+            watch(_, _) >> watcher
+        }
+        mirror = new DefaultFileSystemMirror([], new FileWatchingChangeTracker(watcherFactory, syncDir))
+        def fileSnapshot = Stub(FileSnapshot)
+
+        given:
+        _ * fileSnapshot.path >> tmpDir.file("a").path
+
+        when:
+        mirror.afterStart()
+        mirror.putFile(fileSnapshot)
+        mirror.beforeComplete()
+        mirror.stop()
+
+        then:
+        1 * watcher.watch(_)
+        1 * watcher.stop()
+    }
+
+    def "discards all retained state when the watcher has stopped"() {
+        def running = true
+        def watcher = Stub(FileWatcher) {
+            isRunning() >> { running }
+        }
+        watchForChanges(watcher)
+        def file = tmpDir.file("a")
+        def fileSnapshot = Stub(FileSnapshot)
+
+        given:
+        _ * fileSnapshot.path >> file.path
+
+        when:
+        2.times {
+            mirror.afterStart()
+            mirror.putFile(fileSnapshot)
+            mirror.beforeComplete()
+        }
+        running = false
+        mirror.afterStart()
+
+        then:
+        mirror.getFile(file.path) == null
+    }
+
+    def "discards all retained state when the watcher does not report changes in time"() {
+        watchForChanges(runningWatcher(), false)
+        def file = tmpDir.file("a")
+        def fileSnapshot = Stub(FileSnapshot)
+
+        given:
+        _ * fileSnapshot.path >> file.path
+
+        when:
+        2.times {
+            mirror.afterStart()
+            mirror.putFile(fileSnapshot)
+            mirror.beforeComplete()
+        }
+        mirror.afterStart()
+
+        then:
+        mirror.getFile(file.path) == null
+    }
+
+    private FileWatcher runningWatcher() {
+        return Stub(FileWatcher) {
+            isRunning() >> true
+        }
+    }
+
+    private FileWatcherListener watchForChanges(FileWatcher watcher = runningWatcher(), boolean reportSyncMarkers = true) {
+        FileWatcherListener listener = null
+        def watcherFactory = Stub(FileWatcherFactory) {
+            watch(_, _) >> { onError, FileWatcherListener l ->
+                listener = l
+                watcher
+            }
+        }
+        mirror = new DefaultFileSystemMirror([], new FileWatchingChangeTracker(watcherFactory, syncDir))
+        if (reportSyncMarkers) {
+            // Report the markers that the tracker creates to sync with the watcher, as the real watcher would
+            syncReporter = Thread.start {
+                def reported = [] as Set
+                while (!stopped) {
+                    syncDir.listFiles()?.each { File marker ->
+                        if (reported.add(marker)) {
+                            listener.onChange(watcher, FileWatcherEvent.create(marker))
+                        }
+                    }
+                    Thread.sleep(5)
+                }
+            }
+        }
+        return new FileWatcherListener() {
+            @Override
+            void onChange(FileWatcher w, FileWatcherEvent event) {
+                listener.onChange(w, event)
+            }
+        }
+    }
+
+    private void putState(FileSnapshot fileSnapshot, FileTreeSnapshot fileTreeSnapshot, Snapshot snapshot) {
+        mirror.putFile(fileSnapshot)
+        mirror.putDirectory(fileTreeSnapshot)
+        mirror.putContent(fileTreeSnapshot.path, snapshot)
+    }
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.hash.Hashing
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.Requires
+import org.gradle.util.TestPrecondition
+import org.junit.Rule
+import spock.lang.Specification
+
+class MappedFileHashIndexTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def indexFile = tmpDir.file("fileHashes.idx")
+    def hash = Hashing.md5().hashString("hello")
+    def index = new MappedFileHashIndex(indexFile, 1024)
+
+    def "returns hash recorded for file with same length and timestamp"() {
+        when:
+        index.put("/some/file", hash, 12, 34)
+
+        then:
+        index.get("/some/file", 12, 34) == hash
+        index.get("/some/file", 13, 34) == null
+        index.get("/some/file", 12, 35) == null
+        index.get("/some/other", 12, 34) == null
+    }
+
+    def "replaces hash recorded for file"() {
+        def newHash = Hashing.md5().hashString("bye")
+
+        when:
+        index.put("/some/file", hash, 12, 34)
+        index.put("/some/file", newHash, 13, 35)
+
+        then:
+        index.get("/some/file", 13, 35) == newHash
+        index.get("/some/file", 12, 34) == null
+    }
+
+    def "removes hash recorded for file"() {
+        when:
+        index.put("/some/file", hash, 12, 34)
+        index.remove("/some/file")
+
+        then:
+        index.get("/some/file", 12, 34) == null
+    }
+
+    def "does not record hashes of other lengths"() {
+        expect:
+        !index.put("/some/file", HashCode.fromInt(123), 12, 34)
+        index.get("/some/file", 12, 34) == null
+    }
+
+    def "hashes survive reopening the index"() {
+        when:
+        index.put("/some/file", hash, 12, 34)
+        def reopened = new MappedFileHashIndex(indexFile, 1024)
+
+        then:
+        reopened.get("/some/file", 12, 34) == hash
+    }
+
+    def "discards hashes when reopened with a different layout"() {
+        when:
+        index.put("/some/file", hash, 12, 34)
+        def reopened = new MappedFileHashIndex(indexFile, 2048)
+
+        then:
+        reopened.get("/some/file", 12, 34) == null
+    }
+
+    def "evicts entries when full and never returns a wrong hash"() {
+        when:
+        2000.times {
+            index.put("/file" + it, Hashing.md5().hashString(it as String), it, it)
+        }
+        def found = (0..<2000).findAll { index.get("/file" + it, it, it) != null }
+
+        then:
+        found.size() == 1024
+        found.every { index.get("/file" + it, it, it) == Hashing.md5().hashString(it as String) }
+    }
+
+    def "ignores slots whose checksum does not match"() {
+        when:
+        index.put("/some/file", hash, 12, 34)
+        def file = new RandomAccessFile(indexFile, "rw")
+        try {
+            for (long offset = 64; offset < file.length(); offset += 64) {
+                file.seek(offset + 16)
+                if (file.readLong() != 0) {
+                    file.seek(offset + 16)
+                    file.writeLong(0)
+                }
+            }
+        } finally {
+            file.close()
+        }
+
+        then:
+        index.get("/some/file", 12, 34) == null
+    }
+
+    @Requires(TestPrecondition.NOT_WINDOWS)
+    def "index cache reuses the mapping of a file until the file is deleted"() {
+        def indexCache = new MappedFileHashIndexCache()
+
+        when:
+        def first = indexCache.open(indexFile, 1024)
+
+        then:
+        indexCache.open(indexFile, 1024).is(first)
+        !indexCache.open(indexFile, 2048).is(first)
+
+        when:
+        def second = indexCache.open(indexFile, 2048)
+        indexFile.delete()
+
+        then:
+        !indexCache.open(indexFile, 2048).is(second)
+    }
+}
@@ -17,11 +17,15 @@ package org.gradle.api.internal.tasks.execution
 
 import org.gradle.api.execution.TaskActionListener
 import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.TaskOutputsInternal
 import org.gradle.api.internal.changedetection.TaskArtifactState
+import org.gradle.api.internal.file.collections.SimpleFileCollection
 import org.gradle.api.internal.project.ProjectInternal
 import org.gradle.api.internal.tasks.ContextAwareTaskAction
+import org.gradle.api.internal.tasks.TaskDestroyablesInternal
 import org.gradle.api.internal.tasks.TaskExecutionContext
 import org.gradle.api.internal.tasks.TaskExecutionOutcome
+import org.gradle.api.internal.tasks.TaskLocalStateInternal
 import org.gradle.api.internal.tasks.TaskStateInternal
 import org.gradle.api.tasks.StopActionException
 import org.gradle.api.tasks.StopExecutionException
@@ -52,10 +56,22 @@ class ExecuteActionsTaskExecutorTest extends Specification {
     def buildOperationExecutor = Mock(BuildOperationExecutor)
     def asyncWorkTracker = Mock(AsyncWorkTracker)
     def executer = new ExecuteActionsTaskExecuter(internalListener, publicListener, buildOperationExecutor, asyncWorkTracker)
+    def outputFiles = new SimpleFileCollection()
+    def destroyables = new SimpleFileCollection()
+    def localState = new SimpleFileCollection()
 
     def setup() {
         ProjectInternal project = Mock(ProjectInternal)
         task.getProject() >> project
+        task.getOutputs() >> Stub(TaskOutputsInternal) {
+            getFiles() >> { outputFiles }
+        }
+        task.getDestroyables() >> Stub(TaskDestroyablesInternal) {
+            getFiles() >> { destroyables }
+        }
+        task.getLocalState() >> Stub(TaskLocalStateInternal) {
+            getFiles() >> { localState }
+        }
         task.getState() >> state
         project.getBuildScriptSource() >> scriptSource
         task.getStandardOutputCapture() >> standardOutputCapture
@@ -97,6 +113,26 @@ class ExecuteActionsTaskExecutorTest extends Specification {
         state.actionable
     }
 
+    def notifiesListenerOfDeclaredOutputLocations() {
+        given:
+        def outputFile = new File("output").absoluteFile
+        def destroyable = new File("destroyable").absoluteFile
+        def localStateFile = new File("local-state").absoluteFile
+        outputFiles = new SimpleFileCollection(outputFile)
+        destroyables = new SimpleFileCollection(destroyable)
+        localState = new SimpleFileCollection(localStateFile)
+        task.getTaskActions() >> [action1]
+
+        when:
+        executer.execute(task, state, executionContext)
+
+        then:
+        1 * publicListener.beforeActions(task)
+        then:
+        1 * internalListener.beforeTaskOutputsGenerated([outputFile, destroyable, localStateFile])
+        0 * internalListener.beforeTaskOutputsGenerated()
+    }
+
     def executesEachActionInOrder() {
         given:
         task.getTaskActions() >> [action1, action2]
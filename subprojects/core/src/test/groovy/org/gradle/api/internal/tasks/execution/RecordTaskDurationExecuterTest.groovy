@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.execution
+
+import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.changedetection.state.TaskDurationRepository
+import org.gradle.api.internal.tasks.TaskExecuter
+import org.gradle.api.internal.tasks.TaskExecutionContext
+import org.gradle.api.internal.tasks.TaskStateInternal
+import spock.lang.Specification
+
+class RecordTaskDurationExecuterTest extends Specification {
+
+    def task = Stub(TaskInternal)
+    def taskState = Mock(TaskStateInternal)
+    def taskContext = Stub(TaskExecutionContext)
+    def taskDurations = Mock(TaskDurationRepository)
+    def delegate = Mock(TaskExecuter)
+    def executer = new RecordTaskDurationExecuter(taskDurations, delegate)
+
+    def "records duration of successful execution"() {
+        given:
+        taskState.getFailure() >> null
+
+        when:
+        executer.execute(task, taskState, taskContext)
+
+        then:
+        1 * delegate.execute(task, taskState, taskContext)
+
+        then:
+        1 * taskDurations.recordDuration(task, { it >= 0 })
+    }
+
+    def "does not record duration of failed execution"() {
+        given:
+        taskState.getFailure() >> new RuntimeException("failed")
+
+        when:
+        executer.execute(task, taskState, taskContext)
+
+        then:
+        1 * delegate.execute(task, taskState, taskContext)
+        0 * taskDurations._
+    }
+}
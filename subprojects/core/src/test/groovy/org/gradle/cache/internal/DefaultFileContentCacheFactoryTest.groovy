@@ -235,4 +235,37 @@ class DefaultFileContentCacheFactoryTest extends Specification {
         1 * calculator.calculate(file, FileType.RegularFile) >> 10
         0 * _
     }
+
+    def "discards values for output locations and their descendants only when task outputs are generated"() {
+        def output = tmpDir.file("output")
+        def file = output.file("thing.txt")
+        def sibling = tmpDir.file("output2/thing.txt")
+        def fileSnapshot = Stub(FileSnapshot)
+        def cache = factory.newCache("cache", 12000, calculator, BaseSerializerFactory.INTEGER_SERIALIZER)
+
+        given:
+        _ * fileSnapshot.type >> FileType.Directory
+
+        when:
+        cache.get(output)
+        cache.get(file)
+        cache.get(sibling)
+
+        then:
+        3 * fileSystemSnapshotter.snapshotSelf(_) >> fileSnapshot
+        3 * calculator.calculate(_, FileType.Directory) >> 0
+
+        when:
+        listenerManager.getBroadcaster(TaskOutputsGenerationListener).beforeTaskOutputsGenerated([output])
+        cache.get(output)
+        cache.get(file)
+        cache.get(sibling)
+
+        then:
+        1 * fileSystemSnapshotter.snapshotSelf(output) >> fileSnapshot
+        1 * fileSystemSnapshotter.snapshotSelf(file) >> fileSnapshot
+        1 * calculator.calculate(output, FileType.Directory) >> 1
+        1 * calculator.calculate(file, FileType.Directory) >> 2
+        0 * _
+    }
 }
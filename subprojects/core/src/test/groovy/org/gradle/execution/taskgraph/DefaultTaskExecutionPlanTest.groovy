@@ -23,6 +23,7 @@ import org.gradle.api.Task
 import org.gradle.api.internal.GradleInternal
 import org.gradle.api.internal.TaskInternal
 import org.gradle.api.internal.TaskOutputsInternal
+import org.gradle.api.internal.changedetection.state.TaskDurationRepository
 import org.gradle.api.internal.project.ProjectInternal
 import org.gradle.api.internal.tasks.TaskDestroyablesInternal
 import org.gradle.api.internal.tasks.TaskLocalStateInternal
@@ -871,6 +872,30 @@ class DefaultTaskExecutionPlanTest extends AbstractProjectBuilderSpec {
         filtered(b)
     }
 
+    def "runs ready tasks on the longest estimated path first when task durations are used"() {
+        given:
+        Task a = task("a")
+        Task b = task("b")
+        Task c = task("c", dependsOn: [b])
+        Task d = task("d")
+        def taskDurations = Mock(TaskDurationRepository) {
+            getDuration(a) >> 100L
+            getDuration(b) >> 10L
+            getDuration(c) >> 200L
+        }
+
+        when:
+        executionPlan.useTaskDurations(taskDurations)
+        addToGraphAndPopulate([a, c, d])
+
+        then:
+        executes(a, b, c, d)
+        executionPlan.tasksWithRecordedDuration == 3
+        executionPlan.estimatedCriticalPath == 210
+        executionPlan.estimatedTotalDuration == 413
+        executedTasks == [b, c, d, a]
+    }
+
     private void addToGraphAndPopulate(List tasks) {
         executionPlan.addToTaskGraph(tasks)
         executionPlan.determineExecutionPlan()
@@ -16,6 +16,7 @@
 
 package org.gradle.execution.taskgraph
 
+import org.gradle.StartParameter
 import org.gradle.api.Action
 import org.gradle.api.BuildCancelledException
 import org.gradle.api.CircularReferenceException
@@ -25,6 +26,7 @@ import org.gradle.api.execution.TaskExecutionListener
 import org.gradle.api.internal.GradleInternal
 import org.gradle.api.internal.TaskInternal
 import org.gradle.api.internal.TaskOutputsInternal
+import org.gradle.api.internal.changedetection.state.TaskDurationRepository
 import org.gradle.api.internal.tasks.TaskDestroyablesInternal
 import org.gradle.api.internal.tasks.TaskExecuter
 import org.gradle.api.internal.tasks.TaskLocalStateInternal
@@ -39,7 +41,10 @@ import org.gradle.internal.concurrent.ExecutorFactory
 import org.gradle.internal.concurrent.ManagedExecutor
 import org.gradle.internal.concurrent.ParallelismConfigurationManagerFixture
 import org.gradle.internal.event.DefaultListenerManager
+import org.gradle.internal.logging.events.OperationIdentifier
+import org.gradle.internal.operations.RunnableBuildOperation
 import org.gradle.internal.operations.TestBuildOperationExecutor
+import org.gradle.internal.progress.BuildOperationState
 import org.gradle.internal.resources.DefaultResourceLockCoordinationService
 import org.gradle.internal.work.DefaultWorkerLeaseService
 import org.gradle.internal.work.WorkerLeaseRegistry
@@ -103,6 +108,25 @@ class DefaultTaskGraphExecuterSpec extends Specification {
         buildOperationExecutor.operations[1].displayName == "Task :b"
     }
 
+    def "task operations keep the current operation as parent when the task graph is executed in its own operation"() {
+        def nestingBuildOperationExecutor = new NestingBuildOperationExecutor()
+        def gradle = Stub(GradleInternal) {
+            getStartParameter() >> new StartParameter()
+        }
+        def graphExecuter = new DefaultTaskGraphExecuter(listenerManager, new DefaultTaskPlanExecutor(parallelismConfiguration, executorFactory, workerLeases), Factories.constant(executer), cancellationToken, nestingBuildOperationExecutor, workerLeases, coordinationService, gradle, Factories.constant(Stub(TaskDurationRepository)))
+        def a = task("a")
+
+        given:
+        graphExecuter.addTasks([a])
+
+        when:
+        graphExecuter.execute()
+
+        then:
+        nestingBuildOperationExecutor.operations*.displayName == ["Execute task graph", "Task :a"]
+        nestingBuildOperationExecutor.operations[1].parentId == new OperationIdentifier(1)
+    }
+
     def "notifies task listener when task fails"() {
         def listener = Mock(TaskExecutionListener)
         def failure = new RuntimeException()
@@ -613,4 +637,27 @@ class DefaultTaskGraphExecuterSpec extends Specification {
         _ * mock.path >> ":${name}"
         return mock
     }
+
+    /**
+     * Reports the innermost running operation as the current one.
+     */
+    static class NestingBuildOperationExecutor extends TestBuildOperationExecutor {
+        int depth
+
+        @Override
+        BuildOperationState getCurrentOperation() {
+            def id = new OperationIdentifier(depth + 1)
+            return [getId: { id }, getParentId: { null }] as BuildOperationState
+        }
+
+        @Override
+        void run(RunnableBuildOperation buildOperation) {
+            depth++
+            try {
+                super.run(buildOperation)
+            } finally {
+                depth--
+            }
+        }
+    }
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class PathOverlapIndexTest extends Specification {
+    def index = new PathOverlapIndex<String>('/' as char)
+
+    @Unroll
+    def "finds owner of #description"() {
+        given:
+        index.add("/root/build/classes", "compile")
+        index.add("/root/other", "other")
+
+        expect:
+        index.findFirstOverlapping(path) == owner
+
+        where:
+        description             | path                            | owner
+        "same path"             | "/root/build/classes"           | "compile"
+        "ancestor path"         | "/root/build/classes/main/A"    | "compile"
+        "descendant path"       | "/root/build"                   | "compile"
+        "path with same prefix" | "/root/build/classes-other"     | null
+        "sibling path"          | "/root/build/resources"         | null
+        "unrelated path"        | "/elsewhere"                    | null
+    }
+
+    def "collects owners of all overlapping paths"() {
+        given:
+        index.add("/root", "clean")
+        index.add("/root/build/classes", "compile")
+        index.add("/root/build/resources", "resources")
+        index.add("/root/build/resources", "copy")
+        index.add("/root/src", "generate")
+
+        when:
+        def owners = [] as Set
+        index.collectOverlapping("/root/build", owners)
+
+        then:
+        owners == ["clean", "compile", "resources", "copy"] as Set
+    }
+
+    def "removed paths no longer overlap"() {
+        given:
+        index.add("/root/build", "a")
+        index.add("/root/build", "b")
+        index.add("/root/build/classes", "c")
+
+        when:
+        index.remove("/root/build", "a")
+
+        then:
+        index.findFirstOverlapping("/root/build") in ["b", "c"]
+
+        when:
+        index.remove("/root/build", "b")
+
+        then:
+        index.findFirstOverlapping("/root/build/resources") == null
+        index.findFirstOverlapping("/root") == "c"
+
+        when:
+        index.remove("/root/build/classes", "c")
+
+        then:
+        index.isEmpty()
+        index.findFirstOverlapping("/root") == null
+    }
+
+    def "removing a path that is not held does nothing"() {
+        given:
+        index.add("/root/build", "a")
+
+        when:
+        index.remove("/root/build", "b")
+        index.remove("/root/build/classes", "a")
+
+        then:
+        index.findFirstOverlapping("/root/build") == "a"
+    }
+}
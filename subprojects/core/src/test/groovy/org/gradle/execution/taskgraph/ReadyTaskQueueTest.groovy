@@ -0,0 +1,180 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph
+
+import org.gradle.api.internal.TaskInternal
+import spock.lang.Specification
+
+class ReadyTaskQueueTest extends Specification {
+    def queue = new ReadyTaskQueue()
+    def a = node('a')
+    def b = node('b')
+    def c = node('c')
+    def d = node('d')
+
+    private TaskInfo node(String name) {
+        def task = Mock(TaskInternal) {
+            getName() >> name
+            compareTo(_) >> { args -> name.compareTo(args[0].name) }
+        }
+        def node = new TaskInfo(task)
+        node.require()
+        return node
+    }
+
+    def "queues tasks without incomplete dependencies in plan order"() {
+        given:
+        c.addDependencySuccessor(a)
+
+        when:
+        queue.initialize([b, a, c, d])
+
+        then:
+        ready() == [b, a, d]
+        queue.hasPendingTasks()
+    }
+
+    def "queues task once all of its dependencies are complete"() {
+        given:
+        c.addDependencySuccessor(a)
+        c.addMustSuccessor(b)
+        queue.initialize([a, b, c])
+
+        when:
+        select(a)
+        a.finishExecution()
+        queue.taskCompleted(a)
+
+        then:
+        ready() == [b]
+
+        when:
+        select(b)
+        b.finishExecution()
+        queue.taskCompleted(b)
+
+        then:
+        ready() == [c]
+    }
+
+    def "counts a dependency that is also a must run after successor once"() {
+        given:
+        b.addDependencySuccessor(a)
+        b.addMustSuccessor(a)
+        queue.initialize([a, b])
+
+        when:
+        select(a)
+        a.finishExecution()
+        queue.taskCompleted(a)
+
+        then:
+        b.incompleteDependencies == 0
+        ready() == [b]
+    }
+
+    def "skipped task completes its predecessors"() {
+        given:
+        b.addDependencySuccessor(a)
+        queue.initialize([a, b])
+
+        when:
+        a.skipExecution()
+        queue.taskSelected(a)
+
+        then:
+        ready() == [b]
+    }
+
+    def "aborted task is removed and no longer pending"() {
+        given:
+        queue.initialize([a])
+
+        when:
+        a.skipExecution()
+        queue.taskAborted(a)
+
+        then:
+        ready() == []
+        !queue.hasPendingTasks()
+    }
+
+    def "enforcing a task that must not run holds back the tasks that wait for it"() {
+        given:
+        a.mustNotRun()
+        b.addDependencySuccessor(a)
+        queue.initialize([a, b])
+
+        expect:
+        ready() == [b]
+
+        when:
+        a.enforceRun()
+        queue.taskEnforced(a, true)
+
+        then:
+        ready() == [a]
+        b.incompleteDependencies == 1
+
+        when:
+        select(a)
+        a.finishExecution()
+        queue.taskCompleted(a)
+
+        then:
+        ready() == [b]
+    }
+
+    def "prefers tasks with the longest estimated path"() {
+        given:
+        a.estimatedPathDuration = 10
+        b.estimatedPathDuration = 30
+        c.estimatedPathDuration = 30
+
+        when:
+        queue.initialize([a, b, c, d])
+
+        then:
+        ready() == [b, c, a, d]
+    }
+
+    def "has no pending tasks once all have been selected"() {
+        given:
+        queue.initialize([a, b])
+
+        when:
+        select(a)
+        select(b)
+
+        then:
+        !queue.hasPendingTasks()
+    }
+
+    private void select(TaskInfo node) {
+        node.startExecution()
+        queue.taskSelected(node)
+    }
+
+    private List<TaskInfo> ready() {
+        def result = []
+        def iterator = queue.iterator()
+        while (iterator.hasNext()) {
+            result << iterator.next()
+        }
+        return result
+    }
+}
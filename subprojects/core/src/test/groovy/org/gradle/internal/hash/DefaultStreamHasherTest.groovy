@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.internal.hash
+
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.Requires
+import org.gradle.util.TestPrecondition
+import org.junit.Rule
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
+
+@Unroll
+class DefaultStreamHasherTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+
+    def hasher = new DefaultStreamHasher(new DefaultContentHasherFactory())
+
+    def "hash of file with #size bytes matches hash of its content"() {
+        def file = tmpDir.file("content.bin")
+        def content = new byte[size]
+        new Random(1234L).nextBytes(content)
+        file.bytes = content
+
+        expect:
+        hasher.hash(file) == hasher.hash(new ByteArrayInputStream(content))
+
+        where:
+        size << [0, 100, DefaultStreamHasher.LARGE_FILE_THRESHOLD - 1, DefaultStreamHasher.LARGE_FILE_THRESHOLD, 3 * DefaultStreamHasher.LARGE_FILE_THRESHOLD + 17]
+    }
+
+    def "file channel hasher produces same hash when #description"() {
+        def file = tmpDir.file("content.bin")
+        def content = new byte[2 * 1024 * 1024 + 5]
+        new Random(1234L).nextBytes(content)
+        file.bytes = content
+        def expected = Hashing.murmur3().hashBytes(content)
+
+        when:
+        def channelHasher = Hashing.murmur3().newHasher()
+        new FileChannelHasher(memoryMapped).hash(file, channelHasher)
+
+        then:
+        channelHasher.hash() == expected
+
+        where:
+        memoryMapped | description
+        true         | "memory mapped"
+        false        | "reading into a direct buffer"
+    }
+
+    @Requires(TestPrecondition.NOT_WINDOWS)
+    def "falls back to hashing a stream when a mapped file is truncated while it is hashed"() {
+        def file = tmpDir.file("content.bin")
+        def content = new byte[2 * DefaultStreamHasher.LARGE_FILE_THRESHOLD]
+        new Random(1234L).nextBytes(content)
+        file.bytes = content
+        def truncatedContent = Arrays.copyOf(content, 100)
+        def truncatingHasher = [putBytes: { ByteBuffer bytes ->
+            new RandomAccessFile(file, "rw").withCloseable { it.setLength(truncatedContent.length) }
+            while (bytes.hasRemaining()) {
+                bytes.get()
+            }
+        }] as Hasher
+        def hasherFactory = Stub(ContentHasherFactory) {
+            create() >>> [truncatingHasher, new DefaultContentHasherFactory().create()]
+        }
+
+        expect:
+        new DefaultStreamHasher(hasherFactory).hash(file) == hasher.hash(new ByteArrayInputStream(truncatedContent))
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.internal.hash
+
+import org.gradle.api.file.FileTreeElement
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import spock.lang.Specification
+
+class ParallelFileHasherTest extends Specification {
+    def fileHasher = Mock(FileHasher)
+    def parallelFileHasher = new ParallelFileHasher(new DefaultExecutorFactory(), 4)
+
+    def cleanup() {
+        parallelFileHasher.stop()
+    }
+
+    def "returns hashes in the order of the files"() {
+        def files = (0..<100).collect { Stub(FileTreeElement) }
+
+        when:
+        def hashes = parallelFileHasher.hash(fileHasher, files)
+
+        then:
+        files.each { file ->
+            1 * fileHasher.hash(file) >> HashCode.fromInt(files.indexOf(file))
+        }
+        hashes == (0..<100).collect { HashCode.fromInt(it) }
+    }
+
+    def "rethrows failure to hash a file"() {
+        def files = (0..<100).collect { Stub(FileTreeElement) }
+        def failure = new RuntimeException("broken")
+
+        when:
+        parallelFileHasher.hash(fileHasher, files)
+
+        then:
+        _ * fileHasher.hash(files[50]) >> { throw failure }
+        _ * fileHasher.hash(_) >> HashCode.fromInt(1)
+        def e = thrown(RuntimeException)
+        e.is(failure)
+    }
+}
@@ -191,6 +191,20 @@ class SimpleXmlWriterSpec extends Specification {
         xml.contains("<root>some &lt;chars&gt; and some <![CDATA[cdata]]></root>")
     }
 
+    def "encodes characters within a range of a char array"() {
+        when:
+        writer.startElement("root")
+        writer.characters("x<a & b>x".toCharArray(), 1, 7)
+        writer.startCDATA()
+        writer.characters("x]]>\u0084]]x".toCharArray(), 1, 6)
+        writer.characters(">x".toCharArray(), 0, 1)
+        writer.endCDATA()
+        writer.endElement()
+
+        then:
+        xml.contains('<root>&lt;a &amp; b&gt;<![CDATA[]]]]><![CDATA[>]]>&#x84;<![CDATA[]]]]><![CDATA[>]]></root>')
+    }
+
     def "cannot end element when stack is empty"() {
         writer.startElement("root")
         writer.endElement()
@@ -20,9 +20,11 @@ import org.gradle.api.internal.file.collections.DirectoryFileTreeFactory;
 import org.gradle.api.tasks.util.PatternSet;
 import org.gradle.api.tasks.util.internal.PatternSets;
 import org.gradle.internal.Factory;
+import org.gradle.internal.concurrent.DefaultExecutorFactory;
 import org.gradle.internal.hash.DefaultContentHasherFactory;
 import org.gradle.internal.hash.DefaultFileHasher;
 import org.gradle.internal.hash.DefaultStreamHasher;
+import org.gradle.internal.hash.ParallelFileHasher;
 import org.gradle.internal.nativeintegration.filesystem.FileSystem;
 import org.gradle.internal.reflect.DirectInstantiator;
 import org.gradle.internal.resource.local.FileResourceConnector;
@@ -81,6 +83,10 @@ public class TestFiles {
         return new DefaultFileHasher(streamHasher());
     }
 
+    public static ParallelFileHasher parallelFileHasher() {
+        return new ParallelFileHasher(new DefaultExecutorFactory(), 1);
+    }
+
     public static FileCollectionFactory fileCollectionFactory() {
         return new DefaultFileCollectionFactory();
     }
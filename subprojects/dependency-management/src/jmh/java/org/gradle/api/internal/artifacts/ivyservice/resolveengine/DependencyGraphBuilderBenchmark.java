@@ -0,0 +1,239 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine;
+
+import com.google.common.collect.ImmutableSet;
+import org.gradle.api.Action;
+import org.gradle.api.artifacts.DependencySubstitution;
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.ModuleVersionSelector;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.internal.artifacts.DefaultImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier;
+import org.gradle.api.internal.artifacts.DefaultModuleVersionSelector;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.ResolveContext;
+import org.gradle.api.internal.artifacts.component.DefaultBuildIdentifier;
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+import org.gradle.api.internal.artifacts.dsl.ModuleReplacementsData;
+import org.gradle.api.internal.artifacts.ivyservice.dependencysubstitution.DefaultDependencySubstitutionApplicator;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionComparator;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionSelectorScheme;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder.DependencyGraphBuilder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.DefaultConflictHandler;
+import org.gradle.api.internal.attributes.EmptySchema;
+import org.gradle.api.internal.attributes.ImmutableAttributes;
+import org.gradle.api.specs.Specs;
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector;
+import org.gradle.internal.component.local.model.DefaultLocalComponentMetadata;
+import org.gradle.internal.component.local.model.DefaultProjectComponentIdentifier;
+import org.gradle.internal.component.model.ComponentOverrideMetadata;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
+import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.component.model.Exclude;
+import org.gradle.internal.component.model.IvyArtifactName;
+import org.gradle.internal.component.model.LocalComponentDependencyMetadata;
+import org.gradle.internal.operations.BuildOperation;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.BuildOperationQueue;
+import org.gradle.internal.operations.BuildOperationWorker;
+import org.gradle.internal.operations.CallableBuildOperation;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.progress.BuildOperationState;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+import org.gradle.internal.resolve.resolver.DependencyToComponentIdResolver;
+import org.gradle.internal.resolve.resolver.ResolveContextToComponentResolver;
+import org.gradle.internal.resolve.result.BuildableComponentIdResolveResult;
+import org.gradle.internal.resolve.result.BuildableComponentResolveResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Resolves a synthetic dependency graph of a varying number of components, with all metadata held in memory, so that only the graph builder itself is measured.
+ * Each component has on average 15 dependencies and a few of the dependencies request an older version of their target, which causes version conflicts.
+ * Run with the GC profiler to see how much the graph builder allocates.
+ */
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.SingleShotTime)
+@State(Scope.Benchmark)
+public class DependencyGraphBuilderBenchmark {
+    private static final String GROUP = "org.gradle.benchmark";
+    private static final int DEPENDENCIES_PER_COMPONENT = 15;
+    private static final int CONFLICT_PERCENTAGE = 5;
+
+    @Param({"1000", "5000", "20000", "50000"})
+    int components;
+
+    ComponentResolveMetadata root;
+    Map<ComponentIdentifier, ComponentResolveMetadata> metadata;
+    DependencyGraphBuilder builder;
+
+    @Setup(Level.Trial)
+    public void createGraph() {
+        Random random = new Random(42);
+        metadata = new HashMap<ComponentIdentifier, ComponentResolveMetadata>();
+        DefaultLocalComponentMetadata[] current = new DefaultLocalComponentMetadata[components];
+        for (int i = 0; i < components; i++) {
+            current[i] = component(DefaultModuleVersionIdentifier.newId(GROUP, "module" + i, "2.0"), DefaultModuleComponentIdentifier.newId(GROUP, "module" + i, "2.0"));
+            metadata.put(current[i].getComponentId(), current[i]);
+            DefaultLocalComponentMetadata old = component(DefaultModuleVersionIdentifier.newId(GROUP, "module" + i, "1.0"), DefaultModuleComponentIdentifier.newId(GROUP, "module" + i, "1.0"));
+            metadata.put(old.getComponentId(), old);
+        }
+
+        DefaultLocalComponentMetadata rootComponent = component(DefaultModuleVersionIdentifier.newId(GROUP, "root", "1.0"), new DefaultProjectComponentIdentifier(new DefaultBuildIdentifier(":", true), ":"));
+        dependsOn(rootComponent, 0, "2.0");
+        root = rootComponent;
+        for (int i = 1; i < components; i++) {
+            // Every component is reachable from the root
+            dependsOn(current[random.nextInt(i)], i, "2.0");
+        }
+        for (int i = 0; i < components - 1; i++) {
+            int dependencies = random.nextInt(2 * DEPENDENCIES_PER_COMPONENT - 1);
+            for (int j = 0; j < dependencies; j++) {
+                int target = i + 1 + random.nextInt(components - i - 1);
+                dependsOn(current[i], target, random.nextInt(100) < CONFLICT_PERCENTAGE ? "1.0" : "2.0");
+            }
+        }
+
+        ImmutableModuleIdentifierFactory moduleIdentifierFactory = new DefaultImmutableModuleIdentifierFactory();
+        DefaultVersionComparator versionComparator = new DefaultVersionComparator();
+        builder = new DependencyGraphBuilder(new InMemoryResolver(), new InMemoryResolver(), new InMemoryResolver(),
+            new DefaultConflictHandler(new LatestModuleConflictResolver(versionComparator), ModuleReplacementsData.NO_OP), Specs.<DependencyMetadata>satisfyAll(),
+            EmptySchema.INSTANCE, moduleIdentifierFactory, new ModuleExclusions(moduleIdentifierFactory), new UnusedBuildOperationExecutor(),
+            ModuleReplacementsData.NO_OP, new DefaultDependencySubstitutionApplicator(new Action<DependencySubstitution>() {
+                @Override
+                public void execute(DependencySubstitution dependencySubstitution) {
+                }
+            }), new DefaultVersionSelectorScheme(versionComparator), 0);
+    }
+
+    @Benchmark
+    public void resolve() {
+        builder.resolve(new RootContext(), DependencyGraphVisitor.NO_OP);
+    }
+
+    private static DefaultLocalComponentMetadata component(ModuleVersionIdentifier id, ComponentIdentifier componentId) {
+        DefaultLocalComponentMetadata component = new DefaultLocalComponentMetadata(id, componentId, "release", EmptySchema.INSTANCE);
+        component.addConfiguration("default", "default", Collections.<String>emptySet(), ImmutableSet.of("default"), true, true, ImmutableAttributes.EMPTY, true, true);
+        return component;
+    }
+
+    private static void dependsOn(DefaultLocalComponentMetadata from, int target, String version) {
+        ModuleVersionSelector requested = DefaultModuleVersionSelector.newSelector(GROUP, "module" + target, version);
+        from.addDependency(new LocalComponentDependencyMetadata(DefaultModuleComponentSelector.newSelector(requested), requested, "default", null, "default",
+            Collections.<IvyArtifactName>emptySet(), Collections.<Exclude>emptyList(), false, false, true));
+    }
+
+    private class RootContext implements ResolveContext {
+        @Override
+        public String getName() {
+            return "default";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "root";
+        }
+
+        @Override
+        public ResolutionStrategyInternal getResolutionStrategy() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ComponentResolveMetadata toRootComponentMetaData() {
+            return root;
+        }
+    }
+
+    /**
+     * Resolves everything from the in-memory metadata of the synthetic graph.
+     */
+    private class InMemoryResolver implements DependencyToComponentIdResolver, ComponentMetaDataResolver, ResolveContextToComponentResolver {
+        @Override
+        public void resolve(DependencyMetadata dependency, ModuleIdentifier targetModuleId, BuildableComponentIdResolveResult result) {
+            ModuleVersionSelector requested = dependency.getRequested();
+            result.resolved(DefaultModuleComponentIdentifier.newId(requested.getGroup(), requested.getName(), requested.getVersion()),
+                DefaultModuleVersionIdentifier.newId(requested.getGroup(), requested.getName(), requested.getVersion()));
+        }
+
+        @Override
+        public void resolve(ComponentIdentifier identifier, ComponentOverrideMetadata componentOverrideMetadata, BuildableComponentResolveResult result) {
+            result.resolved(metadata.get(identifier));
+        }
+
+        @Override
+        public boolean isFetchingMetadataCheap(ComponentIdentifier identifier) {
+            return true;
+        }
+
+        @Override
+        public void resolve(ResolveContext resolveContext, BuildableComponentResolveResult result) {
+            result.resolved(resolveContext.toRootComponentMetaData());
+        }
+    }
+
+    /**
+     * The graph builder only uses build operations to fetch metadata that is expensive to fetch, which is never the case here.
+     */
+    private static class UnusedBuildOperationExecutor implements BuildOperationExecutor {
+        @Override
+        public void run(RunnableBuildOperation buildOperation) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T> T call(CallableBuildOperation<T> buildOperation) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <O extends RunnableBuildOperation> void runAll(Action<BuildOperationQueue<O>> schedulingAction) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <O extends BuildOperation> void runAll(BuildOperationWorker<O> worker, Action<BuildOperationQueue<O>> schedulingAction) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BuildOperationState getCurrentOperation() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
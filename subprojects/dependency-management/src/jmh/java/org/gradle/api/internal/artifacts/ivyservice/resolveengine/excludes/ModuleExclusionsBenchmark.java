@@ -0,0 +1,173 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes;
+
+import com.google.common.collect.ImmutableList;
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.internal.artifacts.DefaultImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.internal.component.external.descriptor.DefaultExclude;
+import org.gradle.internal.component.model.Exclude;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calculates the exclusions of each node of a synthetic, exclusion-heavy dependency graph, the same way the dependency graph builder does:
+ * the exclusions of a node are the union of the exclusions of its incoming edges, intersected with the excludes of the node itself. They are calculated
+ * again each time an incoming edge is added to the node, and checked against those of the previous traversal. The graph is resolved for a varying number of configurations, using
+ * the same {@link ModuleExclusions}, as happens when several configurations of a project share most of their dependencies.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ModuleExclusionsBenchmark {
+    private static final int GROUPS = 50;
+    private static final int MODULES = 2000;
+    private static final int MAX_PARENTS = 4;
+    private static final int EDGES_WITH_EXCLUDES_PERCENTAGE = 30;
+    private static final int MAX_EXCLUDES_PER_EDGE = 3;
+
+    @Param({"2000", "10000"})
+    int nodeCount;
+
+    @Param({"1", "3"})
+    int configurations;
+
+    ImmutableModuleIdentifierFactory moduleIdentifierFactory;
+    List<Node> nodes;
+
+    @Setup(Level.Trial)
+    public void createGraph() {
+        Random random = new Random(42);
+        moduleIdentifierFactory = new DefaultImmutableModuleIdentifierFactory();
+        ModuleIdentifier[] modules = new ModuleIdentifier[MODULES];
+        for (int i = 0; i < MODULES; i++) {
+            modules[i] = moduleIdentifierFactory.module("org.group" + i % GROUPS, "module" + i);
+        }
+
+        nodes = new ArrayList<Node>(nodeCount);
+        nodes.add(new Node(modules[0], new int[0], ImmutableList.<Exclude>of()));
+        for (int i = 1; i < nodeCount; i++) {
+            int[] parents = new int[1 + random.nextInt(Math.min(i, MAX_PARENTS))];
+            for (int j = 0; j < parents.length; j++) {
+                parents[j] = random.nextInt(i);
+            }
+            Node node = new Node(modules[random.nextInt(MODULES)], parents, excludes(random, modules));
+            for (int parent : parents) {
+                nodes.get(parent).dependencies.add(node.module);
+                node.incomingExcludes.add(excludes(random, modules));
+            }
+            nodes.add(node);
+        }
+    }
+
+    private static ImmutableList<Exclude> excludes(Random random, ModuleIdentifier[] modules) {
+        if (random.nextInt(100) >= EDGES_WITH_EXCLUDES_PERCENTAGE) {
+            return ImmutableList.of();
+        }
+        ImmutableList.Builder<Exclude> excludes = ImmutableList.builder();
+        int count = 1 + random.nextInt(MAX_EXCLUDES_PER_EDGE);
+        for (int i = 0; i < count; i++) {
+            ModuleIdentifier module = modules[random.nextInt(modules.length)];
+            int kind = random.nextInt(100);
+            if (kind < 60) {
+                excludes.add(new DefaultExclude(module));
+            } else if (kind < 75) {
+                excludes.add(new DefaultExclude(DefaultModuleIdentifier.newId(module.getGroup(), "*"), new String[0], PatternMatchers.EXACT));
+            } else if (kind < 85) {
+                excludes.add(new DefaultExclude(DefaultModuleIdentifier.newId("*", module.getName()), new String[0], PatternMatchers.EXACT));
+            } else if (kind < 95) {
+                excludes.add(new DefaultExclude(DefaultModuleIdentifier.newId("*", "*"), module.getName(), "jar", "jar", new String[0], PatternMatchers.EXACT));
+            } else {
+                excludes.add(new DefaultExclude(DefaultModuleIdentifier.newId(module.getGroup(), "module" + random.nextInt(10) + ".*"), new String[0], "regexp"));
+            }
+        }
+        return excludes.build();
+    }
+
+    @Benchmark
+    public int resolveExclusions() {
+        ModuleExclusions moduleExclusions = new ModuleExclusions(moduleIdentifierFactory);
+        int excluded = 0;
+        for (int i = 0; i < configurations; i++) {
+            excluded += resolveExclusions(moduleExclusions);
+        }
+        return excluded;
+    }
+
+    private int resolveExclusions(ModuleExclusions moduleExclusions) {
+        ModuleExclusion[] nodeExclusions = new ModuleExclusion[nodes.size()];
+        int excluded = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            ModuleExclusion exclusion = moduleExclusions.intersect(ModuleExclusions.excludeNone(), moduleExclusions.excludeAny(node.excludes));
+            // The node is traversed again each time an incoming edge is added, and its exclusions are calculated again from all of its incoming edges
+            for (int visited = 1; visited <= node.parents.length; visited++) {
+                ModuleExclusion previous = exclusion;
+                exclusion = null;
+                for (int j = 0; j < visited; j++) {
+                    ModuleExclusion edgeExclusion = moduleExclusions.intersect(moduleExclusions.excludeAny(node.incomingExcludes.get(j)), nodeExclusions[node.parents[j]]);
+                    exclusion = exclusion == null ? edgeExclusion : moduleExclusions.union(exclusion, edgeExclusion);
+                }
+                exclusion = moduleExclusions.intersect(exclusion, moduleExclusions.excludeAny(node.excludes));
+                if (visited > 1 && moduleExclusions.excludesSameModules(previous, exclusion)) {
+                    excluded++;
+                }
+            }
+            nodeExclusions[i] = exclusion;
+            for (ModuleIdentifier dependency : node.dependencies) {
+                if (exclusion.excludeModule(dependency)) {
+                    excluded++;
+                }
+            }
+        }
+        return excluded;
+    }
+
+    private static class Node {
+        final ModuleIdentifier module;
+        final int[] parents;
+        final ImmutableList<Exclude> excludes;
+        final List<ImmutableList<Exclude>> incomingExcludes = new ArrayList<ImmutableList<Exclude>>();
+        final List<ModuleIdentifier> dependencies = new ArrayList<ModuleIdentifier>();
+
+        Node(ModuleIdentifier module, int[] parents, ImmutableList<Exclude> excludes) {
+            this.module = module;
+            this.parents = parents;
+            this.excludes = excludes;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.modulecache;
+
+import org.gradle.cache.internal.CrossBuildInMemoryCache;
+import org.gradle.cache.internal.CrossBuildInMemoryCacheFactory;
+import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata;
+
+import javax.annotation.Nullable;
+
+/**
+ * Keeps the module metadata read from the module metadata store in memory across builds, so that each build does not need to read and deserialize
+ * the metadata of every module it resolves again.
+ *
+ * <p>Each entry remembers when its metadata was written to the store, and is only used while the module metadata index still refers to metadata written
+ * at that time. Whether the metadata is still up to date is decided by the cache policy of each resolution, as for metadata read from the store.</p>
+ */
+public class CrossBuildModuleMetadataCache {
+    private final CrossBuildInMemoryCache<ModuleComponentAtRepositoryKey, CachedMetadata> cache;
+
+    public CrossBuildModuleMetadataCache(CrossBuildInMemoryCacheFactory cacheFactory) {
+        this.cache = cacheFactory.newCache();
+    }
+
+    /**
+     * Returns the metadata for the given module in the given repository that was written to the store at the given time, if it is still in memory.
+     */
+    @Nullable
+    ModuleComponentResolveMetadata get(ModuleComponentAtRepositoryKey key, long createTimestamp) {
+        CachedMetadata cached = cache.get(key);
+        if (cached == null || cached.createTimestamp != createTimestamp) {
+            return null;
+        }
+        return cached.metadata;
+    }
+
+    void put(ModuleComponentAtRepositoryKey key, long createTimestamp, ModuleComponentResolveMetadata metadata) {
+        cache.put(key, new CachedMetadata(createTimestamp, metadata));
+    }
+
+    private static class CachedMetadata {
+        private final long createTimestamp;
+        private final ModuleComponentResolveMetadata metadata;
+
+        CachedMetadata(long createTimestamp, ModuleComponentResolveMetadata metadata) {
+            this.createTimestamp = createTimestamp;
+            this.metadata = metadata;
+        }
+    }
+}
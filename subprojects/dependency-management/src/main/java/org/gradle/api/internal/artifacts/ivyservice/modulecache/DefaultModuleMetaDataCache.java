@@ -43,11 +43,13 @@ public class DefaultModuleMetaDataCache implements ModuleMetaDataCache {
     private final CacheLockingManager cacheLockingManager;
 
     private final ModuleMetadataStore moduleMetadataStore;
+    private final CrossBuildModuleMetadataCache crossBuildCache;
     private PersistentIndexedCache<ModuleComponentAtRepositoryKey, ModuleMetadataCacheEntry> cache;
 
-    public DefaultModuleMetaDataCache(BuildCommencedTimeProvider timeProvider, CacheLockingManager cacheLockingManager, ArtifactCacheMetaData artifactCacheMetaData, ImmutableModuleIdentifierFactory moduleIdentifierFactory, ImmutableAttributesFactory attributesFactory, NamedObjectInstantiator instantiator) {
+    public DefaultModuleMetaDataCache(BuildCommencedTimeProvider timeProvider, CacheLockingManager cacheLockingManager, ArtifactCacheMetaData artifactCacheMetaData, ImmutableModuleIdentifierFactory moduleIdentifierFactory, ImmutableAttributesFactory attributesFactory, NamedObjectInstantiator instantiator, CrossBuildModuleMetadataCache crossBuildCache) {
         this.timeProvider = timeProvider;
         this.cacheLockingManager = cacheLockingManager;
+        this.crossBuildCache = crossBuildCache;
 
         moduleMetadataStore = new ModuleMetadataStore(new DefaultPathKeyFileStore(artifactCacheMetaData.getMetaDataStoreDirectory()), new ModuleMetadataSerializer(attributesFactory, instantiator), moduleIdentifierFactory);
     }
@@ -76,13 +78,18 @@ public class DefaultModuleMetaDataCache implements ModuleMetaDataCache {
                 if (entry.isMissing()) {
                     return new DefaultCachedMetaData(entry, null, timeProvider);
                 }
-                MutableModuleComponentResolveMetadata metadata = moduleMetadataStore.getModuleDescriptor(key);
+                ModuleComponentResolveMetadata metadata = crossBuildCache.get(key, entry.createTimestamp);
                 if (metadata == null) {
-                    // Descriptor file has been deleted - ignore the entry
-                    cache.remove(key);
-                    return null;
+                    MutableModuleComponentResolveMetadata storedMetadata = moduleMetadataStore.getModuleDescriptor(key);
+                    if (storedMetadata == null) {
+                        // Descriptor file has been deleted - ignore the entry
+                        cache.remove(key);
+                        return null;
+                    }
+                    metadata = entry.configure(storedMetadata);
+                    crossBuildCache.put(key, entry.createTimestamp, metadata);
                 }
-                return new DefaultCachedMetaData(entry, entry.configure(metadata), timeProvider);
+                return new DefaultCachedMetaData(entry, metadata, timeProvider);
             }
         });
     }
@@ -103,6 +110,7 @@ public class DefaultModuleMetaDataCache implements ModuleMetaDataCache {
                 moduleMetadataStore.putModuleDescriptor(key, metadata);
                 ModuleMetadataCacheEntry entry = createEntry(metadata);
                 getCache().put(key, entry);
+                crossBuildCache.put(key, entry.createTimestamp, metadata);
                 return new DefaultCachedMetaData(entry, metadata, timeProvider);
             }
         });
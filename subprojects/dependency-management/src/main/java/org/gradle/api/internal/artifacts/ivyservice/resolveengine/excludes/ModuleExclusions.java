@@ -50,10 +50,16 @@ import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.exclude
  * <ul> <li>When a module dependency has multiple exclusions, then the resulting exclusion is the _intersection_ of those exclusions (module is excluded if excluded by _any_).</li> <li>When a module
  * is depended on via a transitive path, then the resulting exclusion is the _intersection_ of the exclusions on each leg of the path (module is excluded if excluded by _any_).</li> <li>When a module
  * is depended on via multiple paths in the graph, then the resulting exclusion is the _union_ of the exclusions on each of those paths (module is excluded if excluded by _all_).</li> </ul>
+ *
+ * <p>Specs are hash-consed, so that equal specs are usually the same instance, and the results of union and intersection operations and of {@link #excludesSameModules}
+ * are memoized in bounded caches once the same operation is seen a second time. An instance of this class is shared by all resolutions in a build, so the same
+ * combinations of specs that show up when resolving different configurations of the same graph are only calculated a couple of times.</p>
  */
 public class ModuleExclusions {
     private static final ExcludeNone EXCLUDE_NONE = new ExcludeNone();
     private static final ExcludeAllModulesSpec EXCLUDE_ALL_MODULES_SPEC = new ExcludeAllModulesSpec();
+    private static final int MAX_MEMOIZED_OPERATIONS = 100000;
+    private static final int SEEN_OPERATIONS_MASK = (1 << 16) - 1;
 
     private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
 
@@ -61,6 +67,12 @@ public class ModuleExclusions {
     private final Map<MergeOperation, AbstractModuleExclusion> mergeCache = Maps.newConcurrentMap();
     private final Map<ImmutableList<Exclude>, AbstractModuleExclusion> excludeAnyCache = Maps.newConcurrentMap();
     private final Map<ImmutableSet<AbstractModuleExclusion>, IntersectionExclusion> intersectionCache = Maps.newConcurrentMap();
+    private final Map<ImmutableList<AbstractModuleExclusion>, UnionExclusion> unionCache = Maps.newConcurrentMap();
+    private final Map<ExclusionPair, ModuleExclusion> intersectResults = Maps.newConcurrentMap();
+    private final Map<ExclusionPair, ModuleExclusion> unionResults = Maps.newConcurrentMap();
+    private final Map<ExclusionPair, Boolean> sameModulesResults = Maps.newConcurrentMap();
+    // The hash codes of operations that have been seen once, by their low bits. This is not synchronized: a lost update only delays memoizing an operation
+    private final int[] seenOperations = new int[SEEN_OPERATIONS_MASK + 1];
     private final Map<AbstractModuleExclusion[], Map<AbstractModuleExclusion[], MergeOperation>> mergeOperationCache = Maps.newIdentityHashMap();
     private final Map<ModuleIdentifier, ModuleIdExcludeSpec> moduleIdSpecs = Maps.newConcurrentMap();
     private final Map<String, ModuleNameExcludeSpec> moduleNameSpecs = Maps.newConcurrentMap();
@@ -104,6 +116,15 @@ public class ModuleExclusions {
         return cached;
     }
 
+    private UnionExclusion asUnion(ImmutableList<AbstractModuleExclusion> excludes) {
+        UnionExclusion cached = unionCache.get(excludes);
+        if (cached == null) {
+            cached = new UnionExclusion(excludes);
+            unionCache.put(excludes, cached);
+        }
+        return cached;
+    }
+
     /**
      * Returns a spec that excludes nothing.
      */
@@ -219,6 +240,16 @@ public class ModuleExclusions {
             return two;
         }
 
+        ExclusionPair operation = new ExclusionPair(one, two);
+        ModuleExclusion intersection = intersectResults.get(operation);
+        if (intersection == null) {
+            intersection = doIntersect(one, two);
+            memoize(intersectResults, operation, intersection);
+        }
+        return intersection;
+    }
+
+    private ModuleExclusion doIntersect(ModuleExclusion one, ModuleExclusion two) {
         AbstractModuleExclusion aOne = (AbstractModuleExclusion) one;
         AbstractModuleExclusion aTwo = (AbstractModuleExclusion) two;
 
@@ -251,6 +282,16 @@ public class ModuleExclusions {
             return one;
         }
 
+        ExclusionPair operation = new ExclusionPair(one, two);
+        ModuleExclusion union = unionResults.get(operation);
+        if (union == null) {
+            union = doUnion(one, two);
+            memoize(unionResults, operation, union);
+        }
+        return union;
+    }
+
+    private ModuleExclusion doUnion(ModuleExclusion one, ModuleExclusion two) {
         List<AbstractModuleExclusion> specs = new ArrayList<AbstractModuleExclusion>();
         ((AbstractModuleExclusion) one).unpackUnion(specs);
         ((AbstractModuleExclusion) two).unpackUnion(specs);
@@ -275,7 +316,23 @@ public class ModuleExclusions {
         if (specs.size() == 1) {
             return specs.get(0);
         }
-        return new UnionExclusion(specs);
+        return asUnion(ImmutableList.copyOf(specs));
+    }
+
+    /**
+     * Determines if the given specs exclude the same set of modules, as per {@link ModuleExclusion#excludesSameModulesAs(ModuleExclusion)}.
+     */
+    public boolean excludesSameModules(ModuleExclusion one, ModuleExclusion two) {
+        if (one == two) {
+            return true;
+        }
+        ExclusionPair operation = new ExclusionPair(one, two);
+        Boolean sameModules = sameModulesResults.get(operation);
+        if (sameModules == null) {
+            sameModules = one.excludesSameModulesAs(two);
+            memoize(sameModulesResults, operation, sameModules);
+        }
+        return sameModules;
     }
 
     /**
@@ -473,6 +530,54 @@ public class ModuleExclusions {
         }
     }
 
+    /**
+     * Memoizes the result of an operation once it is seen a second time. Most operations of a single resolution are only seen once, and memoizing those costs
+     * more than it saves. Once the results are bounded, they are kept rather than cleared, so that a large resolution does not lose the results it reuses.
+     */
+    private <T> void memoize(Map<ExclusionPair, T> results, ExclusionPair operation, T result) {
+        int hashCode = operation.hashCode();
+        int slot = hashCode & SEEN_OPERATIONS_MASK;
+        if (seenOperations[slot] != hashCode) {
+            seenOperations[slot] = hashCode;
+            return;
+        }
+        if (results.size() < MAX_MEMOIZED_OPERATIONS) {
+            results.put(operation, result);
+        }
+    }
+
+    /**
+     * The operands of a memoized operation. Specs cache their hash code, and hash-consed specs are compared by identity first, so this is a cheap key.
+     */
+    private static final class ExclusionPair {
+        private final ModuleExclusion one;
+        private final ModuleExclusion two;
+        private final int hashCode;
+
+        private ExclusionPair(ModuleExclusion one, ModuleExclusion two) {
+            this.one = one;
+            this.two = two;
+            this.hashCode = 31 * one.hashCode() + two.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ExclusionPair that = (ExclusionPair) o;
+            return hashCode == that.hashCode && one.equals(that.one) && two.equals(that.two);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
     private static final class MergeSet extends HashSet<AbstractModuleExclusion> {
         private final BitSet remaining;
         private int idx;
@@ -31,7 +31,9 @@ import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
 import org.gradle.internal.resolve.result.ComponentIdResolveResult;
 import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult;
 
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -40,7 +42,7 @@ import java.util.Set;
 public class ComponentState implements ComponentResolutionState, ComponentResult, DependencyGraphComponent {
     private final ModuleVersionIdentifier id;
     private final ComponentMetaDataResolver resolver;
-    private final Set<NodeState> nodes = new LinkedHashSet<NodeState>();
+    private final List<NodeState> nodes = new ArrayList<NodeState>(1);
     private final Long resultId;
     private final ModuleResolveState module;
     private volatile ComponentResolveMetadata metaData;
@@ -96,7 +98,7 @@ public class ComponentState implements ComponentResolutionState, ComponentResult
         this.visitState = visitState;
     }
 
-    public Set<NodeState> getNodes() {
+    public List<NodeState> getNodes() {
         return nodes;
     }
 
@@ -180,6 +182,7 @@ public class ComponentState implements ComponentResolutionState, ComponentResult
     }
 
     public void addConfiguration(NodeState node) {
+        // Called once for each node, as nodes are only created once for each component and configuration
         nodes.add(node);
     }
 
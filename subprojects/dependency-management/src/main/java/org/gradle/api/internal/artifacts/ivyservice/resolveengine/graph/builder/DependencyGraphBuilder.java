@@ -23,11 +23,13 @@ import org.gradle.api.Action;
 import org.gradle.api.artifacts.ModuleIdentifier;
 import org.gradle.api.artifacts.ModuleVersionIdentifier;
 import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
 import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
 import org.gradle.api.internal.artifacts.ResolveContext;
 import org.gradle.api.internal.artifacts.dsl.ModuleReplacementsData;
 import org.gradle.api.internal.artifacts.ivyservice.dependencysubstitution.DependencySubstitutionApplicator;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelector;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphSelector;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
@@ -36,6 +38,7 @@ import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflict
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.VersionSelectionReasons;
 import org.gradle.api.internal.attributes.AttributesSchemaInternal;
 import org.gradle.api.specs.Spec;
+import org.gradle.internal.UncheckedException;
 import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
 import org.gradle.internal.component.model.DependencyMetadata;
 import org.gradle.internal.id.IdGenerator;
@@ -71,6 +74,8 @@ public class DependencyGraphBuilder {
     private final BuildOperationExecutor buildOperationExecutor;
     private final ModuleReplacementsData moduleReplacementsData;
     private final DependencySubstitutionApplicator dependencySubstitutionApplicator;
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final int metadataPrefetchConcurrency;
 
     public DependencyGraphBuilder(DependencyToComponentIdResolver componentIdResolver, ComponentMetaDataResolver componentMetaDataResolver,
                                   ResolveContextToComponentResolver resolveContextToComponentResolver,
@@ -78,7 +83,8 @@ public class DependencyGraphBuilder {
                                   AttributesSchemaInternal attributesSchema,
                                   ImmutableModuleIdentifierFactory moduleIdentifierFactory, ModuleExclusions moduleExclusions,
                                   BuildOperationExecutor buildOperationExecutor, ModuleReplacementsData moduleReplacementsData,
-                                  DependencySubstitutionApplicator dependencySubstitutionApplicator) {
+                                  DependencySubstitutionApplicator dependencySubstitutionApplicator, VersionSelectorScheme versionSelectorScheme,
+                                  int metadataPrefetchConcurrency) {
         this.idResolver = componentIdResolver;
         this.metaDataResolver = componentMetaDataResolver;
         this.moduleResolver = resolveContextToComponentResolver;
@@ -90,6 +96,8 @@ public class DependencyGraphBuilder {
         this.buildOperationExecutor = buildOperationExecutor;
         this.moduleReplacementsData = moduleReplacementsData;
         this.dependencySubstitutionApplicator = dependencySubstitutionApplicator;
+        this.versionSelectorScheme = versionSelectorScheme;
+        this.metadataPrefetchConcurrency = metadataPrefetchConcurrency;
     }
 
     public void resolve(final ResolveContext resolveContext, final DependencyGraphVisitor modelVisitor) {
@@ -98,10 +106,15 @@ public class DependencyGraphBuilder {
         DefaultBuildableComponentResolveResult rootModule = new DefaultBuildableComponentResolveResult();
         moduleResolver.resolve(resolveContext, rootModule);
 
-        final ResolveState resolveState = new ResolveState(idGenerator, rootModule, resolveContext.getName(), idResolver, metaDataResolver, edgeFilter, attributesSchema, moduleIdentifierFactory, moduleExclusions, moduleReplacementsData, dependencySubstitutionApplicator);
+        MetadataPrefetcher prefetcher = metadataPrefetchConcurrency > 0 ? new MetadataPrefetcher(metaDataResolver, versionSelectorScheme, metadataPrefetchConcurrency) : null;
+        final ResolveState resolveState = new ResolveState(idGenerator, rootModule, resolveContext.getName(), idResolver, prefetcher != null ? prefetcher : metaDataResolver, edgeFilter, attributesSchema, moduleIdentifierFactory, moduleExclusions, moduleReplacementsData, dependencySubstitutionApplicator);
         conflictHandler.registerResolver(new DirectDependencyForcingResolver(resolveState.getRoot().getComponent()));
 
-        traverseGraph(resolveState);
+        if (prefetcher != null) {
+            traverseGraphWhilePrefetching(resolveState, prefetcher);
+        } else {
+            traverseGraph(resolveState, null);
+        }
 
         resolveState.getRoot().getComponent().setSelectionReason(VersionSelectionReasons.ROOT);
 
@@ -109,10 +122,34 @@ public class DependencyGraphBuilder {
 
     }
 
+    /**
+     * Traverses the dependency graph while the given prefetcher fetches metadata ahead of the traversal, using a build operation queue that lives as long as the traversal.
+     */
+    private void traverseGraphWhilePrefetching(final ResolveState resolveState, final MetadataPrefetcher prefetcher) {
+        final List<Throwable> failures = Lists.newArrayListWithCapacity(1);
+        buildOperationExecutor.runAll(new Action<BuildOperationQueue<RunnableBuildOperation>>() {
+            @Override
+            public void execute(BuildOperationQueue<RunnableBuildOperation> buildOperationQueue) {
+                prefetcher.start(buildOperationQueue);
+                try {
+                    traverseGraph(resolveState, prefetcher);
+                } catch (Throwable t) {
+                    // Rethrown below, so that the failure is not reported as a failure to populate the queue
+                    failures.add(t);
+                } finally {
+                    prefetcher.stop();
+                }
+            }
+        });
+        if (!failures.isEmpty()) {
+            throw UncheckedException.throwAsUncheckedException(failures.get(0));
+        }
+    }
+
     /**
      * Traverses the dependency graph, resolving conflicts and building the paths from the root configuration.
      */
-    private void traverseGraph(final ResolveState resolveState) {
+    private void traverseGraph(final ResolveState resolveState, @Nullable MetadataPrefetcher prefetcher) {
         resolveState.onMoreSelected(resolveState.getRoot());
         final List<EdgeState> dependencies = Lists.newArrayList();
         final List<EdgeState> dependenciesMissingLocalMetadata = Lists.newArrayList();
@@ -132,7 +169,7 @@ public class DependencyGraphBuilder {
                 dependenciesMissingLocalMetadata.clear();
                 node.visitOutgoingDependencies(dependencies, optionalDependenciesHandler);
 
-                resolveEdges(node, dependencies, dependenciesMissingLocalMetadata, resolveState, componentIdentifierCache);
+                resolveEdges(node, dependencies, dependenciesMissingLocalMetadata, resolveState, componentIdentifierCache, prefetcher);
             } else {
                 // We have some batched up conflicts. Resolve the first, and continue traversing the graph
                 conflictHandler.resolveNextConflict(resolveState.getReplaceSelectionWithConflictResultAction());
@@ -211,13 +248,18 @@ public class DependencyGraphBuilder {
                               final List<EdgeState> dependencies,
                               final List<EdgeState> dependenciesMissingMetadataLocally,
                               final ResolveState resolveState,
-                              final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache) {
+                              final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache,
+                              @Nullable MetadataPrefetcher prefetcher) {
         if (dependencies.isEmpty()) {
             return;
         }
         performSelectionSerially(dependencies, resolveState);
         computePreemptiveDownloadList(dependencies, dependenciesMissingMetadataLocally, componentIdentifierCache);
-        downloadMetadataConcurrently(node, dependenciesMissingMetadataLocally);
+        if (prefetcher != null) {
+            prefetchMetadata(dependenciesMissingMetadataLocally, prefetcher, componentIdentifierCache);
+        } else {
+            downloadMetadataConcurrently(node, dependenciesMissingMetadataLocally);
+        }
         attachToTargetRevisionsSerially(dependencies);
 
     }
@@ -234,7 +276,8 @@ public class DependencyGraphBuilder {
     }
 
     private void downloadMetadataConcurrently(NodeState node, final List<EdgeState> dependencies) {
-        if (dependencies.isEmpty()) {
+        if (dependencies.size() < 2) {
+            // don't bother doing anything in parallel if there's a single edge
             return;
         }
         LOGGER.debug("Submitting {} metadata files to resolve in parallel for {}", dependencies.size(), node);
@@ -248,6 +291,12 @@ public class DependencyGraphBuilder {
         });
     }
 
+    private static void prefetchMetadata(List<EdgeState> dependencies, MetadataPrefetcher prefetcher, Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache) {
+        for (EdgeState dependency : dependencies) {
+            prefetcher.prefetch((ModuleComponentIdentifier) toComponentId(dependency.getTargetComponent().getId(), componentIdentifierCache));
+        }
+    }
+
     private void performSelectionSerially(List<EdgeState> dependencies, ResolveState resolveState) {
         for (EdgeState dependency : dependencies) {
             ComponentState moduleRevision = dependency.resolveModuleRevisionId();
@@ -273,10 +322,6 @@ public class DependencyGraphBuilder {
                 }
             }
         }
-        if (dependenciesToBeResolvedInParallel.size() == 1) {
-            // don't bother doing anything in parallel if there's a single edge
-            dependenciesToBeResolvedInParallel.clear();
-        }
     }
 
     private static ComponentIdentifier toComponentId(ModuleVersionIdentifier id, Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache) {
@@ -35,7 +35,8 @@ import org.gradle.internal.component.model.DependencyMetadata;
 import org.gradle.internal.component.model.Exclude;
 import org.gradle.internal.resolve.ModuleVersionResolveException;
 
-import java.util.LinkedHashSet;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
@@ -48,7 +49,7 @@ class EdgeState implements DependencyGraphEdge {
     private final SelectorState selector;
     private final ResolveState resolveState;
     private final ModuleExclusion moduleExclusion;
-    private final Set<NodeState> targetNodes = new LinkedHashSet<NodeState>();
+    private List<NodeState> targetNodes = Collections.emptyList();
 
     private ComponentState targetModuleRevision;
     private ModuleVersionResolveException targetNodeSelectionFailure;
@@ -116,7 +117,7 @@ class EdgeState implements DependencyGraphEdge {
         for (NodeState targetConfiguration : targetNodes) {
             targetConfiguration.removeIncomingEdge(this);
         }
-        targetNodes.clear();
+        targetNodes = Collections.emptyList();
         targetNodeSelectionFailure = null;
         if (targetModuleRevision != null) {
             selector.getSelectedModule().removeUnattachedDependency(this);
@@ -130,7 +131,7 @@ class EdgeState implements DependencyGraphEdge {
     }
 
     private void calculateTargetConfigurations() {
-        targetNodes.clear();
+        targetNodes = Collections.emptyList();
         targetNodeSelectionFailure = null;
         ComponentResolveMetadata targetModuleVersion = targetModuleRevision.getMetaData();
         if (targetModuleVersion == null) {
@@ -147,10 +148,16 @@ class EdgeState implements DependencyGraphEdge {
             targetNodeSelectionFailure = new ModuleVersionResolveException(dependencyMetadata.getSelector(), t);
             return;
         }
+        // Most edges target a single node, so avoid allocating a collection per edge for those
+        if (targetConfigurations.size() == 1) {
+            targetNodes = Collections.singletonList(resolveState.getNode(targetModuleRevision, targetConfigurations.iterator().next()));
+            return;
+        }
+        List<NodeState> targetNodes = new ArrayList<NodeState>(targetConfigurations.size());
         for (ConfigurationMetadata targetConfiguration : targetConfigurations) {
-            NodeState targetNodeState = resolveState.getNode(targetModuleRevision, targetConfiguration);
-            this.targetNodes.add(targetNodeState);
+            targetNodes.add(resolveState.getNode(targetModuleRevision, targetConfiguration));
         }
+        this.targetNodes = targetNodes;
     }
 
     public ModuleExclusion toExclusions(DependencyMetadata md, ConfigurationMetadata from) {
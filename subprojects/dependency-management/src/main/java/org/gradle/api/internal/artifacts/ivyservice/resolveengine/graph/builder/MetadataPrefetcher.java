@@ -0,0 +1,299 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder;
+
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.component.external.descriptor.MavenScope;
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
+import org.gradle.internal.component.external.model.MavenDependencyMetadata;
+import org.gradle.internal.component.model.ComponentOverrideMetadata;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
+import org.gradle.internal.component.model.DefaultComponentOverrideMetadata;
+import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationQueue;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.progress.BuildOperationDescriptor;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+import org.gradle.internal.resolve.result.BuildableComponentResolveResult;
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Fetches the metadata of module components ahead of the graph traversal, so that the metadata of a deep graph is not fetched one level at a time.
+ *
+ * <p>Components are requested when the traversal selects them and, speculatively, as soon as the metadata of a component is available, for each of its
+ * dependencies that selects a fixed version. At most the given number of components are fetched concurrently, using operations added to a {@link BuildOperationQueue}.
+ * The fetched metadata is handed out when the traversal resolves the component through this resolver. Components that are never requested by the
+ * traversal, because a conflict, an exclude or a substitution rule applies, are fetched for nothing.</p>
+ *
+ * <p>When the traversal needs a component that has been requested but whose fetch has not started yet, the traversal fetches it itself rather than
+ * waiting for a fetcher. This way the traversal never waits for work that cannot start because no worker lease is available.</p>
+ */
+public class MetadataPrefetcher implements ComponentMetaDataResolver {
+    /**
+     * Enables prefetching of metadata during dependency resolution.
+     */
+    public static final String ENABLED_PROPERTY = "org.gradle.internal.resolution.prefetchMetadata";
+    /**
+     * The maximum number of components whose metadata is fetched concurrently when prefetching is enabled.
+     */
+    public static final String CONCURRENCY_PROPERTY = "org.gradle.internal.resolution.prefetchMetadata.concurrency";
+    public static final int DEFAULT_CONCURRENCY = 8;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetadataPrefetcher.class);
+
+    private final ComponentMetaDataResolver delegate;
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final int concurrency;
+    private final ConcurrentMap<ComponentIdentifier, PrefetchedMetadata> prefetched = new ConcurrentHashMap<ComponentIdentifier, PrefetchedMetadata>();
+
+    // Lock protects the following state
+    private final Object lock = new Object();
+    private final Deque<PrefetchedMetadata> pending = new ArrayDeque<PrefetchedMetadata>();
+    private BuildOperationQueue<RunnableBuildOperation> queue;
+    private int activeFetchers;
+
+    public MetadataPrefetcher(ComponentMetaDataResolver delegate, VersionSelectorScheme versionSelectorScheme, int concurrency) {
+        this.delegate = delegate;
+        this.versionSelectorScheme = versionSelectorScheme;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Starts fetching metadata using the given queue. Components requested before this is called, or after {@link #stop()} is called, are not fetched ahead.
+     */
+    public void start(BuildOperationQueue<RunnableBuildOperation> queue) {
+        synchronized (lock) {
+            this.queue = queue;
+        }
+    }
+
+    /**
+     * Stops fetching metadata. Fetches that have already started are allowed to complete, those that have not are discarded.
+     */
+    public void stop() {
+        synchronized (lock) {
+            queue = null;
+            pending.clear();
+        }
+    }
+
+    /**
+     * Requests that the metadata for the given component is fetched ahead.
+     */
+    public void prefetch(ModuleComponentIdentifier componentId) {
+        PrefetchedMetadata entry = new PrefetchedMetadata(componentId, FetchState.Pending);
+        if (prefetched.putIfAbsent(componentId, entry) != null) {
+            return;
+        }
+        BuildOperationQueue<RunnableBuildOperation> startFetcherOn = null;
+        synchronized (lock) {
+            if (queue == null) {
+                return;
+            }
+            pending.add(entry);
+            if (activeFetchers < concurrency) {
+                activeFetchers++;
+                startFetcherOn = queue;
+            }
+        }
+        if (startFetcherOn != null) {
+            startFetcherOn.add(new FetchMetadataOperation());
+        }
+    }
+
+    @Override
+    public void resolve(ComponentIdentifier identifier, ComponentOverrideMetadata componentOverrideMetadata, BuildableComponentResolveResult result) {
+        if (!isDefault(componentOverrideMetadata)) {
+            delegate.resolve(identifier, componentOverrideMetadata, result);
+            return;
+        }
+
+        PrefetchedMetadata entry = prefetched.get(identifier);
+        if (entry == null) {
+            // Claim the component, so that it is not fetched ahead once the traversal has resolved it
+            entry = prefetched.putIfAbsent(identifier, new PrefetchedMetadata(identifier, FetchState.Claimed));
+        }
+        DefaultBuildableComponentResolveResult prefetchedResult = entry == null || entry.claim() ? null : entry.awaitResult();
+        if (prefetchedResult == null) {
+            delegate.resolve(identifier, componentOverrideMetadata, result);
+            if (result.hasResult() && result.getFailure() == null) {
+                try {
+                    prefetchDependencies(result.getMetaData());
+                } catch (RuntimeException e) {
+                    // Only speculative, the traversal reports the failure when it visits the dependencies
+                    LOGGER.debug("Could not prefetch the dependencies of {}.", identifier, e);
+                }
+            }
+            return;
+        }
+
+        prefetchedResult.applyTo(result);
+        if (prefetchedResult.getFailure() != null) {
+            result.failed(prefetchedResult.getFailure());
+        } else {
+            result.resolved(prefetchedResult.getMetaData());
+        }
+    }
+
+    @Override
+    public boolean isFetchingMetadataCheap(ComponentIdentifier identifier) {
+        return delegate.isFetchingMetadataCheap(identifier);
+    }
+
+    private void fetch(PrefetchedMetadata entry) {
+        DefaultBuildableComponentResolveResult fetched = null;
+        try {
+            DefaultBuildableComponentResolveResult result = new DefaultBuildableComponentResolveResult();
+            delegate.resolve(entry.componentId, new DefaultComponentOverrideMetadata(), result);
+            if (result.hasResult()) {
+                if (result.getFailure() == null) {
+                    // Request the dependencies before handing out the result, so that the traversal finds them requested
+                    prefetchDependencies(result.getMetaData());
+                }
+                fetched = result;
+            }
+        } catch (Throwable t) {
+            // Leave it to the traversal to resolve the component again and report the failure
+            LOGGER.debug("Could not prefetch metadata for {}.", entry.componentId, t);
+        } finally {
+            // Always complete the entry, as the traversal may be waiting for it
+            entry.complete(fetched);
+        }
+    }
+
+    private void prefetchDependencies(ComponentResolveMetadata metadata) {
+        for (DependencyMetadata dependency : metadata.getDependencies()) {
+            if (dependency.isOptional() || dependency.isChanging() || !dependency.getArtifacts().isEmpty() || !(dependency.getSelector() instanceof ModuleComponentSelector)) {
+                continue;
+            }
+            if (dependency instanceof MavenDependencyMetadata) {
+                MavenScope scope = ((MavenDependencyMetadata) dependency).getScope();
+                if (scope != MavenScope.Compile && scope != MavenScope.Runtime) {
+                    continue;
+                }
+            }
+            ModuleComponentSelector selector = (ModuleComponentSelector) dependency.getSelector();
+            String version = selector.getVersion();
+            if (version == null || version.isEmpty() || versionSelectorScheme.parseSelector(version).isDynamic()) {
+                continue;
+            }
+            prefetch(DefaultModuleComponentIdentifier.newId(selector.getGroup(), selector.getModule(), version));
+        }
+    }
+
+    private static boolean isDefault(ComponentOverrideMetadata overrideMetadata) {
+        return !overrideMetadata.isChanging() && overrideMetadata.getArtifacts().isEmpty() && overrideMetadata.getClientModule() == null;
+    }
+
+    private class FetchMetadataOperation implements RunnableBuildOperation {
+        @Override
+        public void run(BuildOperationContext context) {
+            try {
+                while (true) {
+                    PrefetchedMetadata next;
+                    synchronized (lock) {
+                        next = queue == null ? null : pending.poll();
+                        if (next == null) {
+                            return;
+                        }
+                    }
+                    if (next.start()) {
+                        fetch(next);
+                    }
+                }
+            } finally {
+                synchronized (lock) {
+                    activeFetchers--;
+                }
+            }
+        }
+
+        @Override
+        public BuildOperationDescriptor.Builder description() {
+            return BuildOperationDescriptor.displayName("Prefetch dependency metadata");
+        }
+    }
+
+    private enum FetchState {
+        Pending, Fetching, Fetched, Claimed
+    }
+
+    private static class PrefetchedMetadata {
+        private final ComponentIdentifier componentId;
+        private FetchState state;
+        private DefaultBuildableComponentResolveResult result;
+
+        PrefetchedMetadata(ComponentIdentifier componentId, FetchState state) {
+            this.componentId = componentId;
+            this.state = state;
+        }
+
+        /**
+         * Starts fetching, unless the traversal has claimed the component.
+         */
+        synchronized boolean start() {
+            if (state != FetchState.Pending) {
+                return false;
+            }
+            state = FetchState.Fetching;
+            return true;
+        }
+
+        /**
+         * Claims the component for the traversal to fetch, if fetching has not started yet.
+         */
+        synchronized boolean claim() {
+            if (state != FetchState.Pending) {
+                return false;
+            }
+            state = FetchState.Claimed;
+            return true;
+        }
+
+        synchronized void complete(DefaultBuildableComponentResolveResult result) {
+            this.result = result;
+            state = FetchState.Fetched;
+            notifyAll();
+        }
+
+        /**
+         * Waits for a started fetch to complete, returning null when nothing could be fetched.
+         */
+        synchronized DefaultBuildableComponentResolveResult awaitResult() {
+            while (state == FetchState.Fetching) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -45,12 +45,13 @@ class NodeState implements DependencyGraphNode {
     private final Long resultId;
     private final ComponentState component;
     private final Set<EdgeState> incomingEdges = new LinkedHashSet<EdgeState>();
-    private final List<EdgeState> outgoingEdges = Lists.newLinkedList();
+    private final List<EdgeState> outgoingEdges = Lists.newArrayList();
     private final ResolvedConfigurationIdentifier id;
 
     private final ConfigurationMetadata metaData;
     private final ResolveState resolveState;
     private ModuleExclusion previousTraversalExclusions;
+    private boolean queued;
 
     NodeState(Long resultId, ResolvedConfigurationIdentifier id, ComponentState component, ResolveState resolveState) {
         this(resultId, id, component, resolveState, component.getMetadata().getConfiguration(id.getConfiguration()));
@@ -122,6 +123,21 @@ class NodeState implements DependencyGraphNode {
         return String.format("%s(%s)", component, id.getConfiguration());
     }
 
+    /**
+     * Marks this node as queued for traversal, returning false if it is already queued.
+     */
+    boolean markQueued() {
+        if (queued) {
+            return false;
+        }
+        queued = true;
+        return true;
+    }
+
+    void markDequeued() {
+        queued = false;
+    }
+
     public boolean isTransitive() {
         return metaData.isTransitive();
     }
@@ -156,7 +172,7 @@ class NodeState implements DependencyGraphNode {
 
         ModuleExclusion resolutionFilter = getModuleResolutionFilter(transitiveIncoming);
         if (previousTraversalExclusions != null) {
-            if (previousTraversalExclusions.excludesSameModulesAs(resolutionFilter)) {
+            if (resolveState.getModuleExclusions().excludesSameModules(previousTraversalExclusions, resolutionFilter)) {
                 LOGGER.debug("Changed edges for {} selects same versions as previous traversal. ignoring", this);
                 // Don't need to traverse again, but hang on to the new filter as the set of artifacts may have changed
                 previousTraversalExclusions = resolutionFilter;
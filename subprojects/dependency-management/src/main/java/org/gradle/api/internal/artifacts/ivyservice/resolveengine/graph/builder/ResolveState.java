@@ -16,7 +16,6 @@
 
 package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder;
 
-import com.google.common.collect.Sets;
 import org.gradle.api.artifacts.ModuleIdentifier;
 import org.gradle.api.artifacts.ModuleVersionIdentifier;
 import org.gradle.api.artifacts.ModuleVersionSelector;
@@ -34,11 +33,11 @@ import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
 import org.gradle.internal.resolve.resolver.DependencyToComponentIdResolver;
 import org.gradle.internal.resolve.result.ComponentResolveResult;
 
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * Global resolution state.
@@ -52,8 +51,7 @@ class ResolveState {
     private final IdGenerator<Long> idGenerator;
     private final DependencyToComponentIdResolver idResolver;
     private final ComponentMetaDataResolver metaDataResolver;
-    private final Set<NodeState> queued = Sets.newHashSet();
-    private final LinkedList<NodeState> queue = new LinkedList<NodeState>();
+    private final Deque<NodeState> queue = new ArrayDeque<NodeState>();
     private final AttributesSchemaInternal attributesSchema;
     private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
     private final ModuleExclusions moduleExclusions;
@@ -144,7 +142,7 @@ class ResolveState {
 
     public NodeState pop() {
         NodeState next = queue.removeFirst();
-        queued.remove(next);
+        next.markDequeued();
         return next;
     }
 
@@ -154,7 +152,7 @@ class ResolveState {
     public void onMoreSelected(NodeState node) {
         // Add to the end of the queue, so that we traverse the graph in breadth-wise order to pick up as many conflicts as
         // possible before attempting to resolve them
-        if (queued.add(node)) {
+        if (node.markQueued()) {
             queue.addLast(node);
         }
     }
@@ -164,7 +162,7 @@ class ResolveState {
      */
     public void onFewerSelected(NodeState node) {
         // Add to the front of the queue, to flush out configurations that are no longer required.
-        if (queued.add(node)) {
+        if (node.markQueued()) {
             queue.addFirst(node);
         }
     }
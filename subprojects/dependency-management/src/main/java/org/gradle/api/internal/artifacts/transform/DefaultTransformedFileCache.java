@@ -24,6 +24,7 @@ import org.gradle.api.internal.changedetection.state.InMemoryCacheDecoratorFacto
 import org.gradle.api.internal.changedetection.state.Snapshot;
 import org.gradle.cache.CacheBuilder;
 import org.gradle.cache.CacheRepository;
+import org.gradle.cache.FileLock;
 import org.gradle.cache.FileLockManager;
 import org.gradle.cache.PersistentCache;
 import org.gradle.cache.PersistentIndexedCache;
@@ -43,6 +44,7 @@ import org.gradle.internal.serialize.HashCodeSerializer;
 import org.gradle.internal.serialize.ListSerializer;
 import org.gradle.internal.util.BiFunction;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.util.List;
 import java.util.Map;
@@ -59,11 +61,14 @@ public class DefaultTransformedFileCache implements TransformedFileCache, Stoppa
     private final ProducerGuard<HashCode> producing = ProducerGuard.adaptive();
     private final Map<HashCode, List<File>> resultHashToResult = new ConcurrentHashMap<HashCode, List<File>>();
     private final FileSystemSnapshotter fileSystemSnapshotter;
+    private final FileLockManager fileLockManager;
+    private final File filesOutputDirectory;
 
-    public DefaultTransformedFileCache(ArtifactCacheMetaData artifactCacheMetaData, CacheRepository cacheRepository, InMemoryCacheDecoratorFactory cacheDecoratorFactory, FileSystemSnapshotter fileSystemSnapshotter) {
+    public DefaultTransformedFileCache(ArtifactCacheMetaData artifactCacheMetaData, CacheRepository cacheRepository, InMemoryCacheDecoratorFactory cacheDecoratorFactory, FileSystemSnapshotter fileSystemSnapshotter, FileLockManager fileLockManager) {
         this.fileSystemSnapshotter = fileSystemSnapshotter;
+        this.fileLockManager = fileLockManager;
         File transformsStoreDirectory = artifactCacheMetaData.getTransformsStoreDirectory();
-        File filesOutputDirectory = new File(transformsStoreDirectory, TRANSFORMS_STORE.getKey());
+        filesOutputDirectory = new File(transformsStoreDirectory, TRANSFORMS_STORE.getKey());
         fileStore = new DefaultPathKeyFileStore(filesOutputDirectory);
         cache = cacheRepository
                 .cache(transformsStoreDirectory)
@@ -101,7 +106,7 @@ public class DefaultTransformedFileCache implements TransformedFileCache, Stoppa
         inputFileSnapshot.appendToHasher(hasher);
         final HashCode resultHash = hasher.hash();
 
-        // Apply locking so that only this process is writing to the file store and only a single thread is running this particular transform
+        // Apply locking so that only a single thread is running this particular transform
         return producing.guardByKey(resultHash, new Factory<List<File>>() {
             @Override
             public List<File> create() {
@@ -110,37 +115,10 @@ public class DefaultTransformedFileCache implements TransformedFileCache, Stoppa
                     return files;
                 }
 
-                files = cache.withFileLock(new Factory<List<File>>() {
-                    @Override
-                    public List<File> create() {
-                        List<File> files = indexedCache.get(resultHash);
-                        if (files != null) {
-                            boolean allExist = true;
-                            for (File file : files) {
-                                if (!file.exists()) {
-                                    allExist = false;
-                                    break;
-                                }
-                            }
-                            if (allExist) {
-                                return files;
-                            }
-                            // Else, recreate outputs
-                        }
-
-                        // File store takes care of cleaning up on failure/crash
-                        String key = inputFile.getName() + "/" + resultHash;
-                        TransformAction action = new TransformAction(transformer, inputFile);
-                        try {
-                            fileStore.add(key, action);
-                        } catch (FileStoreAddActionException e) {
-                            throw UncheckedException.throwAsUncheckedException(e.getCause());
-                        }
-
-                        indexedCache.put(resultHash, action.result);
-                        return action.result;
-                    }
-                });
+                files = loadResult(resultHash);
+                if (files == null) {
+                    files = transform(inputFile, resultHash, transformer);
+                }
 
                 resultHashToResult.put(resultHash, files);
                 return files;
@@ -148,6 +126,63 @@ public class DefaultTransformedFileCache implements TransformedFileCache, Stoppa
         });
     }
 
+    /**
+     * Runs the transform while holding a lock for the result only, so that other processes can use the cache meanwhile.
+     */
+    private List<File> transform(File inputFile, final HashCode resultHash, BiFunction<List<File>, File, File> transformer) {
+        String key = inputFile.getName() + "/" + resultHash;
+        File lockTarget = new File(filesOutputDirectory, key + ".transform");
+        FileLock resultLock = fileLockManager.lock(lockTarget, mode(FileLockManager.LockMode.Exclusive), "Artifact transform result " + key);
+        try {
+            // Another process may have produced the result while this process was waiting for the lock
+            List<File> files = loadResult(resultHash);
+            if (files != null) {
+                return files;
+            }
+
+            // File store takes care of cleaning up on failure/crash
+            final TransformAction action = new TransformAction(transformer, inputFile);
+            try {
+                fileStore.add(key, action);
+            } catch (FileStoreAddActionException e) {
+                throw UncheckedException.throwAsUncheckedException(e.getCause());
+            }
+
+            cache.withFileLock(new Runnable() {
+                @Override
+                public void run() {
+                    indexedCache.put(resultHash, action.result);
+                }
+            });
+            return action.result;
+        } finally {
+            resultLock.close();
+        }
+    }
+
+    /**
+     * Returns the result recorded for the given hash, or null when there is none or some of its files have been removed.
+     */
+    @Nullable
+    private List<File> loadResult(final HashCode resultHash) {
+        return cache.withFileLock(new Factory<List<File>>() {
+            @Override
+            public List<File> create() {
+                List<File> files = indexedCache.get(resultHash);
+                if (files == null) {
+                    return null;
+                }
+                for (File file : files) {
+                    if (!file.exists()) {
+                        // Recreate outputs
+                        return null;
+                    }
+                }
+                return files;
+            }
+        });
+    }
+
     private static class TransformAction implements Action<File> {
         private final BiFunction<List<File>, File, File> transformer;
         private final File inputFile;
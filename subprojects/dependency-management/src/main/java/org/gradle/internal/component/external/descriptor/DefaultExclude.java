@@ -30,12 +30,14 @@ public class DefaultExclude implements Exclude {
     private final IvyArtifactName artifact;
     private final Set<String> configurations;
     private final String patternMatcher;
+    private final int hashCode;
 
     public DefaultExclude(ModuleIdentifier id, String artifact, String type, String extension, String[] configurations, String patternMatcher) {
         this.moduleId = id;
         this.artifact = new DefaultIvyArtifactName(artifact, type, extension);
         this.configurations = ImmutableSet.copyOf(configurations);
         this.patternMatcher = patternMatcher;
+        this.hashCode = calculateHashCode();
     }
 
     public DefaultExclude(ModuleIdentifier id, String[] configurations, String patternMatcher) {
@@ -43,6 +45,7 @@ public class DefaultExclude implements Exclude {
         this.artifact = new DefaultIvyArtifactName(PatternMatchers.ANY_EXPRESSION, PatternMatchers.ANY_EXPRESSION, PatternMatchers.ANY_EXPRESSION);
         this.configurations = ImmutableSet.copyOf(configurations);
         this.patternMatcher = patternMatcher;
+        this.hashCode = calculateHashCode();
     }
 
     public DefaultExclude(ModuleIdentifier id) {
@@ -50,6 +53,7 @@ public class DefaultExclude implements Exclude {
         this.artifact = new DefaultIvyArtifactName(PatternMatchers.ANY_EXPRESSION, PatternMatchers.ANY_EXPRESSION, PatternMatchers.ANY_EXPRESSION);
         this.configurations = ImmutableSet.of();
         this.patternMatcher = PatternMatchers.EXACT;
+        this.hashCode = calculateHashCode();
     }
 
     @Override
@@ -102,6 +106,10 @@ public class DefaultExclude implements Exclude {
 
     @Override
     public int hashCode() {
+        return hashCode;
+    }
+
+    private int calculateHashCode() {
         int result = moduleId.hashCode();
         result = 31 * result + artifact.hashCode();
         result = 31 * result + configurations.hashCode();
@@ -29,6 +29,7 @@ public class DefaultIvyArtifactName implements IvyArtifactName {
     private final String type;
     private final String extension;
     private final String classifier;
+    private final int hashCode;
 
     public static DefaultIvyArtifactName forPublishArtifact(PublishArtifact publishArtifact) {
         String name = publishArtifact.getName();
@@ -48,6 +49,7 @@ public class DefaultIvyArtifactName implements IvyArtifactName {
         this.type = type;
         this.extension = extension;
         this.classifier = classifier;
+        this.hashCode = Objects.hashCode(name, type, extension, classifier);
     }
 
     @Override
@@ -67,7 +69,7 @@ public class DefaultIvyArtifactName implements IvyArtifactName {
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(name, type, extension, classifier);
+        return hashCode;
     }
 
     @Override
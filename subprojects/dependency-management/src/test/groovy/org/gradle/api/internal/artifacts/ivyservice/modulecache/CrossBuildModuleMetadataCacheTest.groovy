@@ -0,0 +1,47 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.modulecache
+
+import org.gradle.cache.internal.CrossBuildInMemoryCacheFactory
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata
+import org.gradle.internal.event.DefaultListenerManager
+import spock.lang.Specification
+
+class CrossBuildModuleMetadataCacheTest extends Specification {
+    def cache = new CrossBuildModuleMetadataCache(new CrossBuildInMemoryCacheFactory(new DefaultListenerManager()))
+    def key = new ModuleComponentAtRepositoryKey("repo", DefaultModuleComponentIdentifier.newId("org", "foo", "1.0"))
+    def metadata = Stub(ModuleComponentResolveMetadata)
+
+    def "returns metadata that was written to the store at the same time"() {
+        when:
+        cache.put(key, 100, metadata)
+
+        then:
+        cache.get(key, 100) == metadata
+        cache.get(new ModuleComponentAtRepositoryKey("repo", DefaultModuleComponentIdentifier.newId("org", "foo", "1.0")), 100) == metadata
+    }
+
+    def "does not return metadata that has since been replaced in the store"() {
+        when:
+        cache.put(key, 100, metadata)
+
+        then:
+        cache.get(key, 200) == null
+        cache.get(new ModuleComponentAtRepositoryKey("other", key.componentId), 100) == null
+    }
+}
@@ -757,6 +757,43 @@ class DefaultModuleExclusionTest extends Specification {
         union(intersection, simpleExclude)
     }
 
+    def "reuses the result of a union or intersection of the same specs"() {
+        def spec1 = excludeAny(excludeRule("org", "module"), excludeRule("org", "module2"))
+        def spec2 = excludeAny(excludeRule("org", "module"))
+        def spec3 = excludeAny(regexpExcludeRule("org", "module3"))
+
+        expect:
+        union(spec1, spec3) instanceof UnionExclusion
+        union(spec1, spec3).is(union(spec1, spec3))
+        union(spec1, spec2).is(union(spec1, spec2))
+        intersect(spec2, spec3).is(intersect(spec2, spec3))
+        intersect(spec2, spec3) == excludeAny(excludeRule("org", "module"), regexpExcludeRule("org", "module3"))
+    }
+
+    def "union specs with the same specs are the same instance"() {
+        def spec1 = excludeAny(regexpExcludeRule("org", "module"))
+        def spec2 = excludeAny(regexpExcludeRule("org", "module2"))
+        def spec3 = excludeAny(regexpExcludeRule("org", "module3"))
+
+        expect:
+        union(union(spec1, spec2), spec3).is(union(spec1, union(spec2, spec3)))
+    }
+
+    def "determines whether specs exclude the same modules"() {
+        def rule1 = regexpExcludeRule("org", "module")
+        def rule2 = regexpExcludeRule("org", "module2")
+        def spec1 = union(excludeAny(rule1), excludeAny(rule2))
+        def spec2 = union(excludeAny(rule2), excludeAny(rule1))
+        def spec3 = excludeAny(rule1)
+
+        expect:
+        moduleExclusions.excludesSameModules(spec1, spec2)
+        moduleExclusions.excludesSameModules(spec1, spec2)
+        !moduleExclusions.excludesSameModules(spec1, spec3)
+        !moduleExclusions.excludesSameModules(spec1, spec3)
+        moduleExclusions.excludesSameModules(excludeNone(), excludeAny())
+    }
+
     ModuleExclusion union(ModuleExclusion spec, ModuleExclusion otherRule) {
         moduleExclusions.union(spec, otherRule)
     }
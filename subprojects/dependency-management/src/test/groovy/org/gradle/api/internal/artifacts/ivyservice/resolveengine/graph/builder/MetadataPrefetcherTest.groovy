@@ -0,0 +1,200 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder
+
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionComparator
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionSelectorScheme
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector
+import org.gradle.internal.component.model.ComponentOverrideMetadata
+import org.gradle.internal.component.model.ComponentResolveMetadata
+import org.gradle.internal.component.model.DefaultComponentOverrideMetadata
+import org.gradle.internal.component.model.DependencyMetadata
+import org.gradle.internal.operations.BuildOperationQueue
+import org.gradle.internal.operations.RunnableBuildOperation
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult
+import spock.lang.Specification
+
+class MetadataPrefetcherTest extends Specification {
+    def delegate = Mock(ComponentMetaDataResolver)
+    def operations = []
+    def queue = Stub(BuildOperationQueue) {
+        add(_) >> { args -> operations << args[0] }
+    }
+    def prefetcher = new MetadataPrefetcher(delegate, new DefaultVersionSelectorScheme(new DefaultVersionComparator()), 2)
+    def a = DefaultModuleComponentIdentifier.newId("org", "a", "1.0")
+    def b = DefaultModuleComponentIdentifier.newId("org", "b", "1.0")
+    def c = DefaultModuleComponentIdentifier.newId("org", "c", "1.0")
+
+    def setup() {
+        prefetcher.start(queue)
+    }
+
+    def "fetches the metadata of a requested component and of the dependencies that select a fixed version"() {
+        def metadataA = component(dependency("b", "1.0"), dependency("d", "[1.0,2.0)"))
+        def metadataB = component()
+
+        when:
+        prefetcher.prefetch(a)
+        runOperations()
+
+        then:
+        1 * delegate.resolve(a, _, _) >> { args -> args[2].resolved(metadataA) }
+        1 * delegate.resolve(b, _, _) >> { args -> args[2].resolved(metadataB) }
+        0 * delegate._
+
+        when:
+        def resultA = resolve(a)
+        def resultB = resolve(b)
+
+        then:
+        resultA.metaData == metadataA
+        resultB.metaData == metadataB
+        0 * delegate._
+    }
+
+    def "runs at most the given number of fetchers"() {
+        when:
+        prefetcher.prefetch(a)
+        prefetcher.prefetch(b)
+        prefetcher.prefetch(c)
+
+        then:
+        operations.size() == 2
+
+        when:
+        runOperations()
+
+        then:
+        3 * delegate.resolve(_, _, _) >> { args -> args[2].resolved(component()) }
+    }
+
+    def "traversal fetches a requested component itself when the fetch has not started"() {
+        def metadata = component()
+
+        given:
+        prefetcher.prefetch(a)
+
+        when:
+        def result = resolve(a)
+
+        then:
+        result.metaData == metadata
+        1 * delegate.resolve(a, _, _) >> { args -> args[2].resolved(metadata) }
+
+        when:
+        runOperations()
+
+        then:
+        0 * delegate._
+    }
+
+    def "fetches the dependencies of a component that the traversal resolved itself"() {
+        when:
+        resolve(a)
+
+        then:
+        1 * delegate.resolve(a, _, _) >> { args -> args[2].resolved(component(dependency("b", "1.0"))) }
+        operations.size() == 1
+
+        when:
+        runOperations()
+
+        then:
+        1 * delegate.resolve(b, _, _) >> { args -> args[2].resolved(component()) }
+    }
+
+    def "does not use prefetched metadata when the dependency overrides the metadata"() {
+        def override = new DefaultComponentOverrideMetadata().withChanging()
+
+        given:
+        delegate.resolve(a, _, _) >> { args -> args[2].resolved(component()) }
+        prefetcher.prefetch(a)
+        runOperations()
+
+        when:
+        resolve(a, override)
+
+        then:
+        1 * delegate.resolve(a, override, _) >> { args -> args[2].resolved(component()) }
+    }
+
+    def "traversal resolves a component itself when looking up the dependencies of its prefetched metadata fails"() {
+        def broken = Stub(ComponentResolveMetadata) {
+            getDependencies() >> { throw new RuntimeException("broken") }
+        }
+        def metadata = component()
+
+        when:
+        prefetcher.prefetch(a)
+        runOperations()
+
+        then:
+        1 * delegate.resolve(a, _, _) >> { args -> args[2].resolved(broken) }
+        noExceptionThrown()
+
+        when:
+        def result = resolve(a)
+
+        then:
+        result.metaData == metadata
+        1 * delegate.resolve(a, _, _) >> { args -> args[2].resolved(metadata) }
+
+        when:
+        prefetcher.prefetch(b)
+        prefetcher.prefetch(c)
+
+        then:
+        operations.size() == 2
+    }
+
+    def "does not fetch components requested after the prefetcher has stopped"() {
+        when:
+        prefetcher.stop()
+        prefetcher.prefetch(a)
+
+        then:
+        operations.empty
+    }
+
+    private void runOperations() {
+        while (!operations.empty) {
+            RunnableBuildOperation operation = operations.remove(0)
+            operation.run(null)
+        }
+    }
+
+    private DefaultBuildableComponentResolveResult resolve(def id, ComponentOverrideMetadata override = new DefaultComponentOverrideMetadata()) {
+        def result = new DefaultBuildableComponentResolveResult()
+        prefetcher.resolve(id, override, result)
+        return result
+    }
+
+    private ComponentResolveMetadata component(DependencyMetadata... dependencies) {
+        return Stub(ComponentResolveMetadata) {
+            getDependencies() >> (dependencies as List)
+        }
+    }
+
+    private DependencyMetadata dependency(String module, String version) {
+        return Stub(DependencyMetadata) {
+            getSelector() >> DefaultModuleComponentSelector.newSelector("org", module, version)
+            getArtifacts() >> ([] as Set)
+        }
+    }
+}
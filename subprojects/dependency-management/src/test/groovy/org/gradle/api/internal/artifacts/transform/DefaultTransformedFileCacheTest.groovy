@@ -21,6 +21,7 @@ import org.gradle.api.internal.changedetection.state.FileCollectionSnapshot
 import org.gradle.api.internal.changedetection.state.FileSystemSnapshotter
 import org.gradle.api.internal.changedetection.state.InMemoryCacheDecoratorFactory
 import org.gradle.cache.internal.CacheScopeMapping
+import org.gradle.cache.internal.DefaultFileLockManagerTestHelper
 import org.gradle.cache.internal.DefaultCacheRepository
 import org.gradle.caching.internal.BuildCacheHasher
 import org.gradle.internal.hash.HashCode
@@ -40,13 +41,14 @@ class DefaultTransformedFileCacheTest extends ConcurrentSpec {
     def cacheRepo = new DefaultCacheRepository(scopeMapping, new InMemoryCacheFactory())
     def decorator = Stub(InMemoryCacheDecoratorFactory)
     def snapshotter = Mock(FileSystemSnapshotter)
+    def lockManager = DefaultFileLockManagerTestHelper.createDefaultFileLockManager()
     def cache
 
     def setup() {
         scopeMapping.getBaseDirectory(_, _, _) >> tmpDir.testDirectory
         scopeMapping.getRootDirectory(_) >> tmpDir.testDirectory
         artifactCacheMetaData.transformsStoreDirectory >> tmpDir.file("output")
-        cache = new DefaultTransformedFileCache(artifactCacheMetaData, cacheRepo, decorator, snapshotter)
+        cache = new DefaultTransformedFileCache(artifactCacheMetaData, cacheRepo, decorator, snapshotter, lockManager)
     }
 
     def "reuses result for given inputs and transform"() {
@@ -105,6 +107,28 @@ class DefaultTransformedFileCacheTest extends ConcurrentSpec {
         0 * snapshotter._
     }
 
+    def "reuses result produced by another instance"() {
+        def transform = Mock(BiFunction)
+        def inputFile = tmpDir.file("a")
+
+        given:
+        1 * snapshotter.snapshotAll(inputFile) >> snapshot(HashCode.fromInt(234))
+        1 * transform.apply(inputFile, _) >>  { File file, File dir -> def r = new File(dir, "a.1"); r.text = "result"; [r] }
+
+        def result = cache.getResult(inputFile, HashCode.fromInt(123), transform)
+
+        when:
+        def otherCache = new DefaultTransformedFileCache(artifactCacheMetaData, cacheRepo, decorator, snapshotter, lockManager)
+        def result2 = otherCache.getResult(inputFile, HashCode.fromInt(123), transform)
+
+        then:
+        result2 == result
+
+        and:
+        1 * snapshotter.snapshotAll(inputFile) >> snapshot(HashCode.fromInt(234))
+        0 * transform._
+    }
+
     def "applies transform once when requested concurrently by multiple threads"() {
         def transform = Mock(BiFunction)
         def inputFile = tmpDir.file("a")
@@ -291,7 +315,7 @@ class DefaultTransformedFileCacheTest extends ConcurrentSpec {
         def result = cache.getResult(inputFile, HashCode.fromInt(123), transform)
 
         when:
-        def cache = new DefaultTransformedFileCache(artifactCacheMetaData, cacheRepo, decorator, snapshotter)
+        def cache = new DefaultTransformedFileCache(artifactCacheMetaData, cacheRepo, decorator, snapshotter, lockManager)
         result.first().delete()
         def result2 = cache.getResult(inputFile, HashCode.fromInt(123), transform)
 
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.compile;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.gradle.internal.concurrent.CompositeStoppable;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the file managers of finished compilations in the compiler process, so that a later compilation against the same jars can reuse the jar indexes
+ * that javac has already built. A file manager is only reused when none of the jars on the classpath has changed since it was last used, and each file
+ * manager is used by one compilation at a time. Idle file managers are softly referenced, so the JVM discards them when memory runs low.
+ */
+public class JavaFileManagerPool {
+    /**
+     * The system property that enables reusing file managers across compilations.
+     */
+    public static final String ENABLED_PROPERTY = "org.gradle.internal.java.compile.reuseFileManagers";
+
+    static final JavaFileManagerPool INSTANCE = new JavaFileManagerPool(16);
+
+    // The locations that javac sets from the compiler arguments. They are reset before a file manager is reused, so that no setting leaks from one compilation into the next.
+    private static final List<StandardLocation> LOCATIONS_SET_BY_ARGUMENTS = ImmutableList.of(
+        StandardLocation.CLASS_OUTPUT, StandardLocation.SOURCE_OUTPUT, StandardLocation.CLASS_PATH, StandardLocation.SOURCE_PATH, StandardLocation.ANNOTATION_PROCESSOR_PATH, StandardLocation.PLATFORM_CLASS_PATH);
+
+    // The options that only set the locations above. Every other option is part of the key, because javac can keep state in the file manager for options
+    // such as -bootclasspath, -extdirs, -endorseddirs and -Xbootclasspath/p: that resetting the locations does not undo.
+    private static final Set<String> OPTIONS_SETTING_RESET_LOCATIONS = ImmutableSet.of(
+        "-d", "-s", "-classpath", "-cp", "--class-path", "-sourcepath", "--source-path", "-processorpath", "--processor-path");
+
+    private final Map<Key, SoftReference<StandardJavaFileManager>> idleFileManagers;
+
+    JavaFileManagerPool(final int maxIdleFileManagers) {
+        this.idleFileManagers = new LinkedHashMap<Key, SoftReference<StandardJavaFileManager>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, SoftReference<StandardJavaFileManager>> eldest) {
+                if (size() > maxIdleFileManagers) {
+                    close(eldest.getValue().get());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns a file manager for a compilation against the given classpath, reusing an idle one when possible. The file manager must be handed back using {@link #release(Key, StandardJavaFileManager)}.
+     */
+    StandardJavaFileManager acquire(Key key, JavaCompiler compiler) {
+        StandardJavaFileManager fileManager = takeIdleFileManager(key);
+        if (fileManager == null) {
+            return compiler.getStandardFileManager(null, null, key.charset);
+        }
+        try {
+            for (StandardLocation location : LOCATIONS_SET_BY_ARGUMENTS) {
+                fileManager.setLocation(location, null);
+            }
+        } catch (IOException e) {
+            close(fileManager);
+            return compiler.getStandardFileManager(null, null, key.charset);
+        }
+        return fileManager;
+    }
+
+    void release(Key key, StandardJavaFileManager fileManager) {
+        SoftReference<StandardJavaFileManager> replaced;
+        synchronized (idleFileManagers) {
+            replaced = idleFileManagers.put(key, new SoftReference<StandardJavaFileManager>(fileManager));
+        }
+        if (replaced != null) {
+            close(replaced.get());
+        }
+    }
+
+    private StandardJavaFileManager takeIdleFileManager(Key key) {
+        synchronized (idleFileManagers) {
+            SoftReference<StandardJavaFileManager> reference = idleFileManagers.remove(key);
+            return reference == null ? null : reference.get();
+        }
+    }
+
+    private static void close(StandardJavaFileManager fileManager) {
+        if (fileManager != null) {
+            CompositeStoppable.stoppable(fileManager).stop();
+        }
+    }
+
+    /**
+     * Identifies the file managers that can be used for a compilation: those of the same compiler, encoding and file manager options, whose jars have not changed.
+     */
+    static class Key {
+        private final Class<?> compilerType;
+        private final Charset charset;
+        private final List<String> options;
+        private final List<JarState> jars;
+
+        Key(JavaCompiler compiler, Charset charset, List<String> options, Iterable<File> classpath) {
+            this.compilerType = compiler.getClass();
+            this.charset = charset;
+            this.options = fileManagerOptions(options);
+            ImmutableList.Builder<JarState> jars = ImmutableList.builder();
+            if (classpath != null) {
+                for (File file : classpath) {
+                    if (file.isFile()) {
+                        jars.add(new JarState(file));
+                    }
+                }
+            }
+            this.jars = jars.build();
+        }
+
+        private static List<String> fileManagerOptions(List<String> options) {
+            ImmutableList.Builder<String> fileManagerOptions = ImmutableList.builder();
+            for (Iterator<String> iterator = options.iterator(); iterator.hasNext();) {
+                String option = iterator.next();
+                if (OPTIONS_SETTING_RESET_LOCATIONS.contains(option)) {
+                    if (iterator.hasNext()) {
+                        iterator.next();
+                    }
+                } else {
+                    fileManagerOptions.add(option);
+                }
+            }
+            return fileManagerOptions.build();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != getClass()) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return compilerType.equals(other.compilerType) && Objects.equal(charset, other.charset) && options.equals(other.options) && jars.equals(other.jars);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(compilerType, charset, options, jars);
+        }
+    }
+
+    /**
+     * The path, length and modification time of a jar, which together change whenever the content of the jar changes.
+     */
+    private static class JarState {
+        private final String path;
+        private final long length;
+        private final long lastModified;
+
+        JarState(File jar) {
+            this.path = jar.getAbsolutePath();
+            this.length = jar.length();
+            this.lastModified = jar.lastModified();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != getClass()) {
+                return false;
+            }
+            JarState other = (JarState) obj;
+            return path.equals(other.path) && length == other.length && lastModified == other.lastModified;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(path, length, lastModified);
+        }
+    }
+}
@@ -29,7 +29,11 @@ import java.io.InputStream;
 public class DefaultClassDependenciesAnalyzer implements ClassDependenciesAnalyzer {
 
     public ClassAnalysis getClassAnalysis(InputStream input) throws IOException {
-        ClassReader reader = new ClassReader(ByteStreams.toByteArray(input));
+        return getClassAnalysis(ByteStreams.toByteArray(input));
+    }
+
+    private ClassAnalysis getClassAnalysis(byte[] classFileContent) {
+        ClassReader reader = new ClassReader(classFileContent);
         String className = reader.getClassName().replace("/", ".");
         return ClassDependenciesVisitor.analyze(className, reader);
     }
@@ -47,4 +51,9 @@ public class DefaultClassDependenciesAnalyzer implements ClassDependenciesAnalyz
             throw new RuntimeException("Problems loading class analysis for " + classFile.toString());
         }
     }
+
+    @Override
+    public ClassAnalysis getClassAnalysis(HashCode classFileHash, byte[] classFileContent) {
+        return getClassAnalysis(classFileContent);
+    }
 }
@@ -18,6 +18,9 @@ package org.gradle.api.internal.tasks.compile.incremental.deps;
 
 import com.google.common.collect.Sets;
 
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -61,7 +64,7 @@ public class ClassSetAnalysis {
         }
         Set<String> result = new HashSet<String>();
         if (deps != null && !deps.isDependencyToAll()) {
-            recurseDependents(new HashSet<String>(), result, deps.getDependentClasses());
+            collectDependents(data.getClassId(className), result);
         }
         result.remove(className);
         return new DefaultDependentsSet(result);
@@ -73,17 +76,30 @@ public class ClassSetAnalysis {
         return deps != null && deps.isDependencyToAll();
     }
 
-    private void recurseDependents(Set<String> visited, Set<String> result, Set<String> dependentClasses) {
-        for (String d : dependentClasses) {
-            if (!visited.add(d)) {
-                continue;
+    private void collectDependents(int classId, Set<String> result) {
+        BitSet visited = new BitSet();
+        Deque<Integer> queue = new ArrayDeque<Integer>();
+        enqueue(data.getDependentIds(classId), visited, queue);
+        while (!queue.isEmpty()) {
+            int dependent = queue.poll();
+            String dependentClass = data.getClassName(dependent);
+            if (!dependentClass.contains("$")) { //filter out the inner classes
+                result.add(dependentClass);
             }
-            if (!d.contains("$")) { //filter out the inner classes
-                result.add(d);
+            if (!data.isDependencyToAll(dependent)) {
+                enqueue(data.getDependentIds(dependent), visited, queue);
             }
-            DependentsSet currentDependents = data.getDependents(d);
-            if (currentDependents != null && !currentDependents.isDependencyToAll()) {
-                recurseDependents(visited, result, currentDependents.getDependentClasses());
+        }
+    }
+
+    private static void enqueue(int[] dependents, BitSet visited, Deque<Integer> queue) {
+        if (dependents == null) {
+            return;
+        }
+        for (int dependent : dependents) {
+            if (!visited.get(dependent)) {
+                visited.set(dependent);
+                queue.add(dependent);
             }
         }
     }
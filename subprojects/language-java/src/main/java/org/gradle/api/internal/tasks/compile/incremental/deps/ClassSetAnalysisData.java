@@ -19,44 +19,141 @@ package org.gradle.api.internal.tasks.compile.incremental.deps;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
+import com.google.common.primitives.Ints;
 import org.gradle.internal.serialize.AbstractSerializer;
 import org.gradle.internal.serialize.Decoder;
 import org.gradle.internal.serialize.Encoder;
-import org.gradle.internal.serialize.SetSerializer;
 
 import java.io.IOException;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
-import static org.gradle.internal.serialize.BaseSerializerFactory.INTEGER_SERIALIZER;
-
+/**
+ * The dependency analysis of a set of classes.
+ *
+ * <p>Every class name mentioned in the analysis is stored once, in a sorted table, and the relations between classes are stored as sorted arrays of indexes into that table.
+ * This keeps the analysis of large class sets small in memory and cheap to read and write.</p>
+ */
 public class ClassSetAnalysisData {
-    final Map<String, String> filePathToClassName;
-    final Map<String, DependentsSet> dependents;
-    final Map<String, Set<Integer>> classesToConstants;
-    final Map<Integer, Set<String>> literalsToClasses;
-    final Map<String, Set<String>> classesToChildren;
+    private final String[] classNames;
+    private final Map<String, String> filePathToClassName;
+    private final int[][] dependents;
+    private final DependencyToAll[] dependenciesToAll;
+    private final int[][] classesToConstants;
+    private final int[] literals;
+    private final int[][] literalsToClasses;
+    private final int[][] classesToChildren;
 
     public ClassSetAnalysisData(Map<String, String> filePathToClassName, Map<String, DependentsSet> dependents, Multimap<String, Integer> classesToConstants, Multimap<Integer, String> literalsToClasses, Multimap<String, String> classesToChildren) {
-        this(filePathToClassName, dependents, asMap(classesToConstants), asMap(literalsToClasses), asMap(classesToChildren));
+        this(filePathToClassName, dependents, classesToConstants.asMap(), literalsToClasses.asMap(), classesToChildren.asMap());
+    }
+
+    public ClassSetAnalysisData(Map<String, String> filePathToClassName, Map<String, DependentsSet> dependents, Map<String, ? extends Collection<Integer>> classesToConstants, Map<Integer, ? extends Collection<String>> literalsToClasses, Map<String, ? extends Collection<String>> classesToChildren) {
+        SortedSet<String> names = new TreeSet<String>();
+        names.addAll(filePathToClassName.values());
+        for (Map.Entry<String, DependentsSet> entry : dependents.entrySet()) {
+            names.add(entry.getKey());
+            if (!entry.getValue().isDependencyToAll()) {
+                names.addAll(entry.getValue().getDependentClasses());
+            }
+        }
+        names.addAll(classesToConstants.keySet());
+        for (Collection<String> classes : literalsToClasses.values()) {
+            names.addAll(classes);
+        }
+        for (Map.Entry<String, ? extends Collection<String>> entry : classesToChildren.entrySet()) {
+            names.add(entry.getKey());
+            names.addAll(entry.getValue());
+        }
+        this.classNames = names.toArray(new String[0]);
+
+        ImmutableMap.Builder<String, String> filePathToClassNameBuilder = ImmutableMap.builder();
+        for (Map.Entry<String, String> entry : filePathToClassName.entrySet()) {
+            filePathToClassNameBuilder.put(entry.getKey(), classNames[getClassId(entry.getValue())]);
+        }
+        this.filePathToClassName = filePathToClassNameBuilder.build();
+
+        this.dependents = new int[classNames.length][];
+        this.dependenciesToAll = new DependencyToAll[classNames.length];
+        for (Map.Entry<String, DependentsSet> entry : dependents.entrySet()) {
+            int id = getClassId(entry.getKey());
+            DependentsSet dependentsSet = entry.getValue();
+            if (dependentsSet.isDependencyToAll()) {
+                dependenciesToAll[id] = dependentsSet instanceof DependencyToAll ? (DependencyToAll) dependentsSet : new DependencyToAll(dependentsSet.getDescription());
+            } else {
+                this.dependents[id] = getClassIds(dependentsSet.getDependentClasses());
+            }
+        }
+
+        this.classesToConstants = new int[classNames.length][];
+        for (Map.Entry<String, ? extends Collection<Integer>> entry : classesToConstants.entrySet()) {
+            int[] constants = Ints.toArray(entry.getValue());
+            Arrays.sort(constants);
+            this.classesToConstants[getClassId(entry.getKey())] = constants;
+        }
+
+        this.literals = Ints.toArray(literalsToClasses.keySet());
+        Arrays.sort(literals);
+        this.literalsToClasses = new int[literals.length][];
+        for (int i = 0; i < literals.length; i++) {
+            this.literalsToClasses[i] = getClassIds(literalsToClasses.get(literals[i]));
+        }
+
+        this.classesToChildren = new int[classNames.length][];
+        for (Map.Entry<String, ? extends Collection<String>> entry : classesToChildren.entrySet()) {
+            this.classesToChildren[getClassId(entry.getKey())] = getClassIds(entry.getValue());
+        }
     }
 
-    public ClassSetAnalysisData(Map<String, String> filePathToClassName, Map<String, DependentsSet> dependents, Map<String, Set<Integer>> classesToConstants, Map<Integer, Set<String>> literalsToClasses, Map<String, Set<String>> classesToChildren) {
+    private ClassSetAnalysisData(String[] classNames, Map<String, String> filePathToClassName, int[][] dependents, DependencyToAll[] dependenciesToAll, int[][] classesToConstants, int[] literals, int[][] literalsToClasses, int[][] classesToChildren) {
+        this.classNames = classNames;
         this.filePathToClassName = filePathToClassName;
         this.dependents = dependents;
+        this.dependenciesToAll = dependenciesToAll;
         this.classesToConstants = classesToConstants;
+        this.literals = literals;
         this.literalsToClasses = literalsToClasses;
         this.classesToChildren = classesToChildren;
     }
 
-    private static <K, V> Map<K, Set<V>> asMap(Multimap<K, V> multimap) {
-        ImmutableMap.Builder<K, Set<V>> builder = ImmutableMap.builder();
-        for (K key : multimap.keySet()) {
-            builder.put(key, ImmutableSet.copyOf(multimap.get(key)));
+    private int[] getClassIds(Collection<String> names) {
+        int[] ids = new int[names.size()];
+        int i = 0;
+        for (String name : names) {
+            ids[i++] = getClassId(name);
         }
-        return builder.build();
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Returns the index of the given class in the class name table, or a negative value when the class is not part of this analysis.
+     */
+    int getClassId(String className) {
+        return Arrays.binarySearch(classNames, className);
+    }
+
+    String getClassName(int classId) {
+        return classNames[classId];
+    }
+
+    boolean isDependencyToAll(int classId) {
+        return dependenciesToAll[classId] != null;
+    }
+
+    /**
+     * Returns the sorted indexes of the dependents of the given class, or null when there are none recorded or the class is a dependency to all.
+     */
+    int[] getDependentIds(int classId) {
+        return dependents[classId];
     }
 
     public String getClassNameForFile(String filePath) {
@@ -64,171 +161,225 @@ public class ClassSetAnalysisData {
     }
 
     public DependentsSet getDependents(String className) {
-        return dependents.get(className);
+        int id = getClassId(className);
+        if (id < 0) {
+            return null;
+        }
+        if (dependenciesToAll[id] != null) {
+            return dependenciesToAll[id];
+        }
+        if (dependents[id] == null) {
+            return null;
+        }
+        return new DefaultDependentsSet(new ClassNameSet(dependents[id]));
     }
 
     public Set<Integer> getConstants(String className) {
-        Set<Integer> integers = classesToConstants.get(className);
-        if (integers == null) {
+        int id = getClassId(className);
+        if (id < 0 || classesToConstants[id] == null) {
             return Collections.emptySet();
         }
-        return integers;
+        return ImmutableSet.copyOf(Ints.asList(classesToConstants[id]));
+    }
+
+    Set<String> getClassesWithLiteral(int literal) {
+        int index = Arrays.binarySearch(literals, literal);
+        return index < 0 ? Collections.<String>emptySet() : new ClassNameSet(literalsToClasses[index]);
     }
 
     public Set<String> getChildren(String className) {
-        Set<String> children = classesToChildren.get(className);
-        return children == null ? Collections.<String>emptySet() : children;
+        int id = getClassId(className);
+        if (id < 0 || classesToChildren[id] == null) {
+            return Collections.emptySet();
+        }
+        return new ClassNameSet(classesToChildren[id]);
+    }
+
+    /**
+     * A read-only view of a sorted array of class indexes as a set of class names.
+     */
+    private class ClassNameSet extends AbstractSet<String> {
+        private final int[] ids;
+
+        ClassNameSet(int[] ids) {
+            this.ids = ids;
+        }
+
+        @Override
+        public int size() {
+            return ids.length;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof String)) {
+                return false;
+            }
+            int id = getClassId((String) o);
+            return id >= 0 && Arrays.binarySearch(ids, id) >= 0;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<String>() {
+                private int next;
+
+                @Override
+                public boolean hasNext() {
+                    return next < ids.length;
+                }
+
+                @Override
+                public String next() {
+                    if (next == ids.length) {
+                        throw new NoSuchElementException();
+                    }
+                    return classNames[ids[next++]];
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
     }
 
     public static class Serializer extends AbstractSerializer<ClassSetAnalysisData> {
-        private static final SetSerializer<Integer> INTEGER_SET_SERIALIZER = new SetSerializer<Integer>(INTEGER_SERIALIZER, false);
+        private static final byte NO_DEPENDENTS = 0;
+        private static final byte DEPENDENCY_TO_ALL = 1;
+        private static final byte DEPENDENT_CLASSES = 2;
 
         @Override
         public ClassSetAnalysisData read(Decoder decoder) throws Exception {
-            // Class names are de-duplicated when encoded
-            Map<Integer, String> classNameMap = new HashMap<Integer, String>();
+            // The class name table is written in sorted order, so it can be used as it is
+            int classCount = decoder.readSmallInt();
+            String[] classNames = new String[classCount];
+            for (int i = 0; i < classCount; i++) {
+                classNames[i] = decoder.readString();
+            }
 
             int count = decoder.readSmallInt();
             ImmutableMap.Builder<String, String> filePathToClassNameBuilder = ImmutableMap.builder();
             for (int i = 0; i < count; i++) {
                 String filePath = decoder.readString();
-                String className = readClassName(decoder, classNameMap);
-                filePathToClassNameBuilder.put(filePath, className);
+                filePathToClassNameBuilder.put(filePath, classNames[decoder.readSmallInt()]);
             }
 
-            count = decoder.readSmallInt();
-            ImmutableMap.Builder<String, DependentsSet> dependentsBuilder = ImmutableMap.builder();
-            for (int i = 0; i < count; i++) {
-                String className = readClassName(decoder, classNameMap);
-                DependentsSet dependents = readDependentsSet(decoder, classNameMap);
-                dependentsBuilder.put(className, dependents);
-            }
-
-            count = decoder.readSmallInt();
-            ImmutableMap.Builder<String, Set<Integer>> classesToConstantsBuilder = ImmutableMap.builder();
-            for (int i = 0; i < count; i++) {
-                String className = readClassName(decoder, classNameMap);
-                Set<Integer> constants = INTEGER_SET_SERIALIZER.read(decoder);
-                classesToConstantsBuilder.put(className, constants);
-            }
-
-            count = decoder.readSmallInt();
-            ImmutableMap.Builder<Integer, Set<String>> literalsToClassesBuilder = ImmutableMap.builder();
-            for (int i = 0; i < count; i++) {
-                int literal = decoder.readInt();
-                int nameCount = decoder.readSmallInt();
-                ImmutableSet.Builder<String> namesBuilder = ImmutableSet.builder();
-                for (int j = 0; j < nameCount; j++) {
-                    namesBuilder.add(readClassName(decoder, classNameMap));
+            int[][] dependents = new int[classCount][];
+            DependencyToAll[] dependenciesToAll = new DependencyToAll[classCount];
+            int[][] classesToConstants = new int[classCount][];
+            int[][] classesToChildren = new int[classCount][];
+            for (int id = 0; id < classCount; id++) {
+                byte kind = decoder.readByte();
+                if (kind == DEPENDENCY_TO_ALL) {
+                    dependenciesToAll[id] = new DependencyToAll(decoder.readNullableString());
+                } else if (kind == DEPENDENT_CLASSES) {
+                    dependents[id] = readSortedInts(decoder);
                 }
-                literalsToClassesBuilder.put(literal, namesBuilder.build());
+                classesToConstants[id] = readNullableInts(decoder);
+                classesToChildren[id] = readNullableSortedInts(decoder);
             }
 
-            count = decoder.readSmallInt();
-            ImmutableMap.Builder<String, Set<String>> classNameToChildren = ImmutableMap.builder();
-            for (int i = 0; i < count; i++) {
-                String parent = readClassName(decoder, classNameMap);
-                int nameCount = decoder.readSmallInt();
-                ImmutableSet.Builder<String> namesBuilder = ImmutableSet.builder();
-                for (int j = 0; j < nameCount; j++) {
-                    namesBuilder.add(readClassName(decoder, classNameMap));
-                }
-                classNameToChildren.put(parent, namesBuilder.build());
+            int literalCount = decoder.readSmallInt();
+            int[] literals = new int[literalCount];
+            int[][] literalsToClasses = new int[literalCount][];
+            for (int i = 0; i < literalCount; i++) {
+                literals[i] = decoder.readInt();
+                literalsToClasses[i] = readSortedInts(decoder);
             }
 
-            return new ClassSetAnalysisData(filePathToClassNameBuilder.build(), dependentsBuilder.build(), classesToConstantsBuilder.build(), literalsToClassesBuilder.build(), classNameToChildren.build());
+            return new ClassSetAnalysisData(classNames, filePathToClassNameBuilder.build(), dependents, dependenciesToAll, classesToConstants, literals, literalsToClasses, classesToChildren);
         }
 
         @Override
         public void write(Encoder encoder, ClassSetAnalysisData value) throws Exception {
-            // Deduplicate class names when encoding.
-            // This would be more efficient with a better data structure in ClassSetAnalysisData
-            Map<String, Integer> classNameMap = new HashMap<String, Integer>();
+            encoder.writeSmallInt(value.classNames.length);
+            for (String className : value.classNames) {
+                encoder.writeString(className);
+            }
 
             encoder.writeSmallInt(value.filePathToClassName.size());
             for (Map.Entry<String, String> entry : value.filePathToClassName.entrySet()) {
                 encoder.writeString(entry.getKey());
-                writeClassName(entry.getValue(), classNameMap, encoder);
+                encoder.writeSmallInt(value.getClassId(entry.getValue()));
             }
 
-            encoder.writeSmallInt(value.dependents.size());
-            for (Map.Entry<String, DependentsSet> entry : value.dependents.entrySet()) {
-                writeClassName(entry.getKey(), classNameMap, encoder);
-                writeDependentSet(entry.getValue(), classNameMap, encoder);
+            for (int id = 0; id < value.classNames.length; id++) {
+                if (value.dependenciesToAll[id] != null) {
+                    encoder.writeByte(DEPENDENCY_TO_ALL);
+                    encoder.writeNullableString(value.dependenciesToAll[id].getDescription());
+                } else if (value.dependents[id] != null) {
+                    encoder.writeByte(DEPENDENT_CLASSES);
+                    writeSortedInts(encoder, value.dependents[id]);
+                } else {
+                    encoder.writeByte(NO_DEPENDENTS);
+                }
+                writeNullableInts(encoder, value.classesToConstants[id]);
+                writeNullableSortedInts(encoder, value.classesToChildren[id]);
             }
 
-            encoder.writeSmallInt(value.classesToConstants.size());
-            for (Map.Entry<String, Set<Integer>> entry : value.classesToConstants.entrySet()) {
-                writeClassName(entry.getKey(), classNameMap, encoder);
-                INTEGER_SET_SERIALIZER.write(encoder, entry.getValue());
+            encoder.writeSmallInt(value.literals.length);
+            for (int i = 0; i < value.literals.length; i++) {
+                encoder.writeInt(value.literals[i]);
+                writeSortedInts(encoder, value.literalsToClasses[i]);
             }
+        }
 
-            encoder.writeSmallInt(value.literalsToClasses.size());
-            for (Map.Entry<Integer, Set<String>> entry : value.literalsToClasses.entrySet()) {
-                encoder.writeInt(entry.getKey());
-                encoder.writeSmallInt(entry.getValue().size());
-                for (String className : entry.getValue()) {
-                    writeClassName(className, classNameMap, encoder);
-                }
+        private static int[] readNullableInts(Decoder decoder) throws IOException {
+            if (!decoder.readBoolean()) {
+                return null;
+            }
+            int[] values = new int[decoder.readSmallInt()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = decoder.readInt();
             }
+            return values;
+        }
 
-            encoder.writeSmallInt(value.classesToChildren.size());
-            for (Map.Entry<String, Set<String>> entry : value.classesToChildren.entrySet()) {
-                writeClassName(entry.getKey(), classNameMap, encoder);
-                encoder.writeSmallInt(entry.getValue().size());
-                for (String className : entry.getValue()) {
-                    writeClassName(className, classNameMap, encoder);
+        private static void writeNullableInts(Encoder encoder, int[] values) throws IOException {
+            encoder.writeBoolean(values != null);
+            if (values != null) {
+                encoder.writeSmallInt(values.length);
+                for (int value : values) {
+                    encoder.writeInt(value);
                 }
             }
         }
 
-        private DependentsSet readDependentsSet(Decoder decoder, Map<Integer, String> classNameMap) throws IOException {
-            byte b = decoder.readByte();
-            if (b == 1) {
-                return new DependencyToAll(decoder.readNullableString());
-            }
-            int count = decoder.readSmallInt();
-            ImmutableSet.Builder<String> builder = ImmutableSet.builder();
-            for (int i = 0; i < count; i++) {
-                builder.add(readClassName(decoder, classNameMap));
-            }
-            return new DefaultDependentsSet(builder.build());
+        private static int[] readNullableSortedInts(Decoder decoder) throws IOException {
+            return decoder.readBoolean() ? readSortedInts(decoder) : null;
         }
 
-        private void writeDependentSet(DependentsSet dependentsSet, Map<String, Integer> classNameMap, Encoder encoder) throws IOException {
-            if (dependentsSet.isDependencyToAll()) {
-                encoder.writeByte((byte) 1);
-                encoder.writeNullableString(dependentsSet.getDescription());
-            } else {
-                encoder.writeByte((byte) 2);
-                encoder.writeSmallInt(dependentsSet.getDependentClasses().size());
-                for (String className : dependentsSet.getDependentClasses()) {
-                    writeClassName(className, classNameMap, encoder);
-                }
+        private static void writeNullableSortedInts(Encoder encoder, int[] values) throws IOException {
+            encoder.writeBoolean(values != null);
+            if (values != null) {
+                writeSortedInts(encoder, values);
             }
         }
 
-        private String readClassName(Decoder decoder, Map<Integer, String> classNameMap) throws IOException {
-            int id = decoder.readSmallInt();
-            if (id == 0) {
-                id = decoder.readSmallInt();
-                String className = decoder.readString();
-                classNameMap.put(id, className);
-                return className;
+        /**
+         * Reads class indexes written by {@link #writeSortedInts(Encoder, int[])}.
+         */
+        private static int[] readSortedInts(Decoder decoder) throws IOException {
+            int[] values = new int[decoder.readSmallInt()];
+            int previous = 0;
+            for (int i = 0; i < values.length; i++) {
+                previous += decoder.readSmallInt();
+                values[i] = previous;
             }
-            return classNameMap.get(id);
+            return values;
         }
 
-        private void writeClassName(String className, Map<String, Integer> classIdMap, Encoder encoder) throws IOException {
-            Integer id = classIdMap.get(className);
-            if (id == null) {
-                id = classIdMap.size() + 1;
-                classIdMap.put(className, id);
-                encoder.writeSmallInt(0);
-                encoder.writeSmallInt(id);
-                encoder.writeString(className);
-            } else {
-                encoder.writeSmallInt(id);
+        /**
+         * Writes a sorted array of class indexes as the differences between consecutive values, which keeps them small.
+         */
+        private static void writeSortedInts(Encoder encoder, int[] values) throws IOException {
+            encoder.writeSmallInt(values.length);
+            int previous = 0;
+            for (int value : values) {
+                encoder.writeSmallInt(value - previous);
+                previous = value;
             }
         }
     }
@@ -15,7 +15,10 @@
  */
 package org.gradle.api.internal.tasks.compile.incremental.jar;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import org.gradle.api.Action;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.file.FileVisitor;
@@ -24,52 +27,160 @@ import org.gradle.api.internal.tasks.compile.incremental.deps.ClassAnalysis;
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassDependentsAccumulator;
 import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.hash.StreamHasher;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.BuildOperationQueue;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.progress.BuildOperationDescriptor;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 class DefaultJarSnapshotter {
+    private static final int CLASSES_PER_OPERATION = 100;
+    // Bounds the number of class files held in memory while a jar is analyzed
+    private static final int MAX_QUEUED_OPERATIONS = 8;
+
     private final StreamHasher hasher;
     private final ClassDependenciesAnalyzer analyzer;
+    private final BuildOperationExecutor buildOperationExecutor;
 
-    public DefaultJarSnapshotter(StreamHasher hasher, ClassDependenciesAnalyzer analyzer) {
+    public DefaultJarSnapshotter(StreamHasher hasher, ClassDependenciesAnalyzer analyzer, BuildOperationExecutor buildOperationExecutor) {
         this.hasher = hasher;
         this.analyzer = analyzer;
+        this.buildOperationExecutor = buildOperationExecutor;
     }
 
-    public JarSnapshot createSnapshot(HashCode hash, JarArchive jarArchive) {
-        final Map<String, HashCode> hashes = Maps.newHashMap();
-        final ClassDependentsAccumulator accumulator = new ClassDependentsAccumulator();
+    public JarSnapshot createSnapshot(HashCode hash, final JarArchive jarArchive) {
+        final List<AnalyzeClasses> operations = Lists.newArrayList();
 
-        jarArchive.contents.visit(new FileVisitor() {
-            public void visitDir(FileVisitDetails dirDetails) {
+        // The jar is read and the class files hashed on this thread, while the classes are analyzed in batches on the build operation workers.
+        // When the workers fall behind, this thread analyzes the batches itself rather than reading more of the jar into memory.
+        // The analyzer looks up each class file by its hash, so only the classes that have not been seen before are actually visited.
+        buildOperationExecutor.runAll(new Action<BuildOperationQueue<AnalyzeClasses>>() {
+            @Override
+            public void execute(final BuildOperationQueue<AnalyzeClasses> queue) {
+                ClassFileCollector collector = new ClassFileCollector(jarArchive.file, queue, operations);
+                jarArchive.contents.visit(collector);
+                collector.flush();
             }
+        });
 
-            public void visitFile(FileVisitDetails fileDetails) {
-                if (!fileDetails.getName().endsWith(".class")) {
-                    return;
-                }
+        Map<String, HashCode> hashes = Maps.newHashMap();
+        ClassDependentsAccumulator accumulator = new ClassDependentsAccumulator();
+        for (AnalyzeClasses operation : operations) {
+            for (int i = 0; i < operation.analyses.size(); i++) {
+                ClassAnalysis analysis = operation.analyses.get(i);
+                accumulator.addClass(analysis);
+                hashes.put(analysis.getClassName(), operation.hashes.get(i));
+            }
+        }
+
+        return new JarSnapshot(new JarSnapshotData(hash, hashes, accumulator.getAnalysis()));
+    }
+
+    private class ClassFileCollector implements FileVisitor {
+        private final File jar;
+        private final BuildOperationQueue<AnalyzeClasses> queue;
+        private final List<AnalyzeClasses> operations;
+        private final AtomicInteger queuedOperations = new AtomicInteger();
+        private AnalyzeClasses current;
+
+        ClassFileCollector(File jar, BuildOperationQueue<AnalyzeClasses> queue, List<AnalyzeClasses> operations) {
+            this.jar = jar;
+            this.queue = queue;
+            this.operations = operations;
+        }
+
+        public void visitDir(FileVisitDetails dirDetails) {
+        }
 
-                HashCode classFileHash;
-                InputStream inputStream = fileDetails.open();
+        public void visitFile(FileVisitDetails fileDetails) {
+            if (!fileDetails.getName().endsWith(".class")) {
+                return;
+            }
+
+            byte[] content;
+            InputStream inputStream = fileDetails.open();
+            try {
+                content = ByteStreams.toByteArray(inputStream);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
                 try {
-                    classFileHash = hasher.hash(inputStream);
-                } finally {
-                    try {
-                        inputStream.close();
-                    } catch (IOException e) {
-                        throw new UncheckedIOException(e);
-                    }
+                    inputStream.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
+            }
+            HashCode classFileHash = hasher.hash(new ByteArrayInputStream(content));
 
-                ClassAnalysis analysis = analyzer.getClassAnalysis(classFileHash, fileDetails);
-                accumulator.addClass(analysis);
+            if (current == null) {
+                current = new AnalyzeClasses(jar, queuedOperations);
+                operations.add(current);
+            }
+            current.add(classFileHash, content);
+            if (current.hashes.size() == CLASSES_PER_OPERATION) {
+                flush();
+            }
+        }
 
-                hashes.put(analysis.getClassName(), classFileHash);
+        void flush() {
+            if (current == null) {
+                return;
             }
-        });
+            if (queuedOperations.incrementAndGet() <= MAX_QUEUED_OPERATIONS) {
+                queue.add(current);
+            } else {
+                queuedOperations.decrementAndGet();
+                current.analyze();
+            }
+            current = null;
+        }
+    }
 
-        return new JarSnapshot(new JarSnapshotData(hash, hashes, accumulator.getAnalysis()));
+    private class AnalyzeClasses implements RunnableBuildOperation {
+        private final File jar;
+        private final AtomicInteger queuedOperations;
+        private final List<HashCode> hashes = Lists.newArrayListWithCapacity(CLASSES_PER_OPERATION);
+        private List<byte[]> classFiles = Lists.newArrayListWithCapacity(CLASSES_PER_OPERATION);
+        private final List<ClassAnalysis> analyses = Lists.newArrayListWithCapacity(CLASSES_PER_OPERATION);
+
+        AnalyzeClasses(File jar, AtomicInteger queuedOperations) {
+            this.jar = jar;
+            this.queuedOperations = queuedOperations;
+        }
+
+        void add(HashCode classFileHash, byte[] classFileContent) {
+            hashes.add(classFileHash);
+            classFiles.add(classFileContent);
+        }
+
+        void analyze() {
+            for (int i = 0; i < hashes.size(); i++) {
+                analyses.add(analyzer.getClassAnalysis(hashes.get(i), classFiles.get(i)));
+            }
+            // Let go of the class file content as soon as it has been analyzed
+            classFiles = null;
+        }
+
+        @Override
+        public void run(BuildOperationContext context) {
+            try {
+                analyze();
+            } finally {
+                queuedOperations.decrementAndGet();
+            }
+        }
+
+        @Override
+        public BuildOperationDescriptor.Builder description() {
+            return BuildOperationDescriptor.displayName("Analyze classes in " + jar.getName());
+        }
     }
 }
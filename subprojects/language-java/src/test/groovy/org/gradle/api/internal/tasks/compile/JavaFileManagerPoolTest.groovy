@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.compile
+
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import javax.tools.JavaCompiler
+import javax.tools.StandardJavaFileManager
+import javax.tools.StandardLocation
+
+class JavaFileManagerPoolTest extends Specification {
+    @Rule TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def compiler = Mock(JavaCompiler)
+    def pool = new JavaFileManagerPool(2)
+
+    def "reuses the file manager of a compilation against the same jars"() {
+        def jar = tmpDir.file("lib.jar").createFile()
+        def classes = tmpDir.file("classes").createDir()
+        def fileManager = Mock(StandardJavaFileManager)
+
+        when:
+        def first = pool.acquire(key([jar, classes]), compiler)
+        pool.release(key([jar, classes]), first)
+        def second = pool.acquire(key([jar, classes]), compiler)
+
+        then:
+        1 * compiler.getStandardFileManager(null, null, null) >> fileManager
+        first == fileManager
+        second == fileManager
+        1 * fileManager.setLocation(StandardLocation.CLASS_PATH, null)
+        1 * fileManager.setLocation(StandardLocation.CLASS_OUTPUT, null)
+    }
+
+    def "does not reuse a file manager that is in use"() {
+        def jar = tmpDir.file("lib.jar").createFile()
+
+        when:
+        def first = pool.acquire(key([jar]), compiler)
+        def second = pool.acquire(key([jar]), compiler)
+
+        then:
+        2 * compiler.getStandardFileManager(null, null, null) >>> [Mock(StandardJavaFileManager), Mock(StandardJavaFileManager)]
+        !first.is(second)
+    }
+
+    def "does not reuse a file manager once a jar has changed"() {
+        def jar = tmpDir.file("lib.jar").createFile()
+        def fileManager = Mock(StandardJavaFileManager)
+
+        when:
+        pool.release(key([jar]), fileManager)
+        jar << "changed"
+        def acquired = pool.acquire(key([jar]), compiler)
+
+        then:
+        1 * compiler.getStandardFileManager(null, null, null) >> Mock(StandardJavaFileManager)
+        !acquired.is(fileManager)
+    }
+
+    def "closes file managers that are no longer kept"() {
+        def fileManager1 = Mock(StandardJavaFileManager)
+        def fileManager2 = Mock(StandardJavaFileManager)
+        def fileManager3 = Mock(StandardJavaFileManager)
+
+        when:
+        pool.release(key([tmpDir.file("1.jar").createFile()]), fileManager1)
+        pool.release(key([tmpDir.file("2.jar").createFile()]), fileManager2)
+
+        then:
+        0 * _.close()
+
+        when:
+        pool.release(key([tmpDir.file("3.jar").createFile()]), fileManager3)
+
+        then:
+        1 * fileManager1.close()
+        0 * _.close()
+    }
+
+    def "does not reuse a file manager for compilations with different file manager options"() {
+        def jar = tmpDir.file("lib.jar").createFile()
+        def fileManager = Mock(StandardJavaFileManager)
+
+        when:
+        pool.release(key([jar], ["-bootclasspath", "rt.jar", "-d", "classes"]), fileManager)
+        def acquired = pool.acquire(key([jar], ["-bootclasspath", "other-rt.jar", "-d", "classes"]), compiler)
+
+        then:
+        1 * compiler.getStandardFileManager(null, null, null) >> Mock(StandardJavaFileManager)
+        !acquired.is(fileManager)
+    }
+
+    def "reuses a file manager for compilations that differ only in the locations that are reset"() {
+        def jar = tmpDir.file("lib.jar").createFile()
+        def fileManager = Mock(StandardJavaFileManager)
+
+        when:
+        pool.release(key([jar], ["-Xbootclasspath/p:patch.jar", "-d", "classes", "-classpath", "lib.jar"]), fileManager)
+        def acquired = pool.acquire(key([jar], ["-Xbootclasspath/p:patch.jar", "-d", "other-classes", "-classpath", "lib.jar:other"]), compiler)
+
+        then:
+        0 * compiler.getStandardFileManager(_, _, _)
+        acquired == fileManager
+    }
+
+    private JavaFileManagerPool.Key key(List<File> classpath, List<String> options = []) {
+        new JavaFileManagerPool.Key(compiler, null, options, classpath)
+    }
+}
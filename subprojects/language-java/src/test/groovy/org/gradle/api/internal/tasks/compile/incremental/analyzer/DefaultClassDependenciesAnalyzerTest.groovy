@@ -32,6 +32,7 @@ import org.gradle.api.internal.tasks.compile.incremental.test.SomeClass
 import org.gradle.api.internal.tasks.compile.incremental.test.SomeOtherClass
 import org.gradle.api.internal.tasks.compile.incremental.test.UsedByNonPrivateConstantsClass
 import org.gradle.api.internal.tasks.compile.incremental.test.YetAnotherClass
+import org.gradle.internal.hash.HashCode
 import spock.lang.Specification
 import spock.lang.Subject
 
@@ -50,6 +51,11 @@ class DefaultClassDependenciesAnalyzerTest extends Specification {
         analyze(HasInnerClass.InnerThing).className == HasInnerClass.InnerThing.name
     }
 
+    def "analyzes class file content that has already been read"() {
+        expect:
+        analyzer.getClassAnalysis(HashCode.fromInt(123), classStream(SomeOtherClass).bytes).classDependencies == [YetAnotherClass.name, SomeClass.name] as Set
+    }
+
     def "knows dependencies of a java class"() {
         expect:
         analyze(SomeOtherClass).classDependencies == [YetAnotherClass.name, SomeClass.name] as Set
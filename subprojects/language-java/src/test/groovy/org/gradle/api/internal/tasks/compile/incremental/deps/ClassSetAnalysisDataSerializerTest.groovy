@@ -43,17 +43,38 @@ class ClassSetAnalysisDataSerializerTest extends Specification {
         ClassSetAnalysisData read = serializer.read(new InputStreamBackedDecoder(new ByteArrayInputStream(os.toByteArray())))
 
         then:
-        read.dependents.keySet() == data.dependents.keySet()
-
         ["A", "B", "C"].each {
-            assert read.dependents[it].dependentClasses == data.dependents[it].dependentClasses
-            assert read.dependents[it].dependencyToAll == data.dependents[it].dependencyToAll
+            assert read.getDependents(it).dependentClasses == data.getDependents(it).dependentClasses
+            assert read.getDependents(it).dependencyToAll == data.getDependents(it).dependencyToAll
         }
 
-        read.dependents["D"] instanceof DependencyToAll
-        read.filePathToClassName == ["A.class": "A", "B.class": "B"]
-        read.classesToConstants == [C: [1,2] as Set, D: [] as Set]
-        read.literalsToClasses == [3: ['A', 'B'] as Set, 4: ['D'] as Set]
-        read.classesToChildren == ['A': ['SA'] as Set, B: ['SB1', 'SB2'] as Set]
+        read.getDependents("D") instanceof DependencyToAll
+        read.getDependents("SA") == null
+        read.getDependents("unknown") == null
+        read.getClassNameForFile("A.class") == "A"
+        read.getClassNameForFile("B.class") == "B"
+        read.getClassNameForFile("C.class") == null
+        read.getConstants("C") == [1, 2] as Set
+        read.getConstants("D") == [] as Set
+        read.getConstants("A") == [] as Set
+        read.getClassesWithLiteral(3) == ['A', 'B'] as Set
+        read.getClassesWithLiteral(4) == ['D'] as Set
+        read.getClassesWithLiteral(5) == [] as Set
+        read.getChildren("A") == ['SA'] as Set
+        read.getChildren("B") == ['SB1', 'SB2'] as Set
+        read.getChildren("C") == [] as Set
+    }
+
+    def "keeps the reason a class is a dependency to all"() {
+        def data = new ClassSetAnalysisData([:], ["A": new DependencyToAll("some reason")], [:], [:], [:])
+        def os = new ByteArrayOutputStream()
+
+        when:
+        serializer.write(new OutputStreamBackedEncoder(os), data)
+        ClassSetAnalysisData read = serializer.read(new InputStreamBackedDecoder(new ByteArrayInputStream(os.toByteArray())))
+
+        then:
+        read.getDependents("A").dependencyToAll
+        read.getDependents("A").description == "some reason"
     }
 }
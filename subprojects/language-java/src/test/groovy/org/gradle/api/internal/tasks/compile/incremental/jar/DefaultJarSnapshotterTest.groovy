@@ -27,6 +27,7 @@ import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenc
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassAnalysis
 import org.gradle.internal.hash.HashCode
 import org.gradle.internal.hash.StreamHasher
+import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.gradle.util.UsesNativeServices
 import org.junit.Rule
@@ -40,7 +41,7 @@ class DefaultJarSnapshotterTest extends Specification {
 
     def hasher = Mock(StreamHasher)
     def classDependenciesAnalyzer = Mock(ClassDependenciesAnalyzer)
-    @Subject snapshotter = new DefaultJarSnapshotter(hasher, classDependenciesAnalyzer)
+    @Subject snapshotter = new DefaultJarSnapshotter(hasher, classDependenciesAnalyzer, new TestBuildOperationExecutor())
 
     def "creates snapshot for an empty jar"() {
         expect:
@@ -71,11 +72,11 @@ class DefaultJarSnapshotterTest extends Specification {
             visitor.visitFile(new DefaultFileVisitDetails(f3, null, null))
         }
         1 * hasher.hash(_) >> f1Hash
-        1 * classDependenciesAnalyzer.getClassAnalysis(f1Hash, f1Details) >> Stub(ClassAnalysis) {
+        1 * classDependenciesAnalyzer.getClassAnalysis(f1Hash, _ as byte[]) >> Stub(ClassAnalysis) {
             getClassName() >> "Foo"
         }
         1 * hasher.hash(_) >> f2Hash
-        1 * classDependenciesAnalyzer.getClassAnalysis(f2Hash, f2Details) >> Stub(ClassAnalysis) {
+        1 * classDependenciesAnalyzer.getClassAnalysis(f2Hash, _ as byte[]) >> Stub(ClassAnalysis) {
             getClassName() >> "com.Foo2"
         }
         0 * _._
@@ -84,4 +85,28 @@ class DefaultJarSnapshotterTest extends Specification {
         snapshot.hashes == ["Foo": f1Hash, "com.Foo2": f2Hash]
         snapshot.analysis
     }
+
+    def "analyzes the classes of a large jar in batches"() {
+        def jarFileTree = Mock(FileTree)
+        def classFiles = (1..250).collect { temp.createFile("foo/Foo${it}.class") }
+
+        when:
+        def snapshot = snapshotter.createSnapshot(HashCode.fromInt(123), new JarArchive(temp.file("foo"), jarFileTree))
+
+        then:
+        1 * jarFileTree.visit(_) >> { FileVisitor visitor ->
+            classFiles.each { visitor.visitFile(new DefaultFileVisitDetails(it, null, null)) }
+        }
+        250 * hasher.hash(_) >>> (1..250).collect { HashCode.fromInt(it) }
+        250 * classDependenciesAnalyzer.getClassAnalysis(_, _ as byte[]) >> { HashCode hash, byte[] content ->
+            Stub(ClassAnalysis) {
+                getClassName() >> "Foo" + hash
+            }
+        }
+
+        and:
+        snapshot.hashes.size() == 250
+        snapshot.hashes["Foo" + HashCode.fromInt(1)] == HashCode.fromInt(1)
+        snapshot.hashes["Foo" + HashCode.fromInt(250)] == HashCode.fromInt(250)
+    }
 }
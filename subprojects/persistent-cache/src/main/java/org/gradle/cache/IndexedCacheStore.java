@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache;
+
+/**
+ * The on-disk store that backs a {@link PersistentIndexedCache}. An instance is used by a single thread at a time, while the cache's file lock is held.
+ */
+public interface IndexedCacheStore<K, V> {
+    V get(K key);
+
+    void put(K key, V value);
+
+    void remove(K key);
+
+    /**
+     * Discards any in-memory state and re-reads the store from disk.
+     */
+    void reset();
+
+    /**
+     * Writes any pending changes to disk and closes the files of this store, before the cache's file lock is released. The store can keep in-memory state,
+     * such as an index, so that {@link #resume(boolean)} is cheaper than opening the store again.
+     */
+    void suspend();
+
+    /**
+     * Opens the files of this store again after {@link #suspend()}, once the cache's file lock has been acquired again.
+     *
+     * @param changedByOtherProcess whether another process may have written to the store while it was suspended.
+     */
+    void resume(boolean changedByOtherProcess);
+
+    /**
+     * Closes this store, which may be suspended.
+     */
+    void close();
+
+    boolean isOpen();
+}
@@ -21,11 +21,24 @@ import org.gradle.internal.serialize.Serializer;
 import javax.annotation.Nullable;
 
 public class PersistentIndexedCacheParameters<K, V> {
+    public enum StoreFormat {
+        /**
+         * A b-tree of fixed size blocks, which are updated in place. This is the default.
+         */
+        BTree,
+        /**
+         * An append-only log of entries, with an in-memory index. Writes are sequential and reads need a single seek,
+         * at the cost of keeping the index in memory while the cache is in use, and of periodically compacting the log.
+         */
+        AppendOnlyLog
+    }
+
     private static final BaseSerializerFactory SERIALIZER_FACTORY = new BaseSerializerFactory();
     private final String cacheName;
     private final Serializer<K> keySerializer;
     private final Serializer<V> valueSerializer;
     private CacheDecorator cacheDecorator;
+    private StoreFormat storeFormat = StoreFormat.BTree;
 
     public PersistentIndexedCacheParameters(String cacheName, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
         this.cacheName = cacheName;
@@ -67,4 +80,16 @@ public class PersistentIndexedCacheParameters<K, V> {
         this.cacheDecorator = cacheDecorator;
         return this;
     }
+
+    public StoreFormat getStoreFormat() {
+        return storeFormat;
+    }
+
+    /**
+     * Specifies the format used to store the entries of the cache on disk.
+     */
+    public PersistentIndexedCacheParameters<K, V> storeFormat(StoreFormat storeFormat) {
+        this.storeFormat = storeFormat;
+        return this;
+    }
 }
@@ -24,6 +24,8 @@ import org.gradle.internal.concurrent.ExecutorPolicy;
 import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.time.CountdownTimer;
 import org.gradle.internal.time.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -35,12 +37,24 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Runs cache operations on a single thread, holding the cache lock for batches of operations.
+ *
+ * <p>By default, the lock is taken as soon as an operation is queued and is held while more operations arrive, until the queue has been idle for a short
+ * while. In group commit mode, operations are instead collected without holding the lock for at most the given latency, and the lock is then held only
+ * while the collected batch runs. A read or flush ends the collection early, as the calling thread waits for it.</p>
+ */
 class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheAccessWorker.class);
+
     private final BlockingQueue<Runnable> workQueue;
     private final String displayName;
     private final CacheAccess cacheAccess;
     private final long batchWindowMillis;
     private final long maximumLockingTimeMillis;
+    private final long groupCommitLatencyMillis;
+    private final int maximumBatchSize;
+    private final Statistics statistics = new Statistics();
     private boolean closed;
     private boolean workerCompleted;
     private boolean stopSeen;
@@ -48,12 +62,21 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
     private final ExecutorPolicy.CatchAndRecordFailures failureHandler = new ExecutorPolicy.CatchAndRecordFailures();
 
     CacheAccessWorker(String displayName, CacheAccess cacheAccess) {
+        this(displayName, cacheAccess, 0);
+    }
+
+    /**
+     * @param groupCommitLatencyMillis The maximum time to collect operations for before running them as one batch, or 0 to disable group commit.
+     */
+    CacheAccessWorker(String displayName, CacheAccess cacheAccess, long groupCommitLatencyMillis) {
         this.displayName = displayName;
         this.cacheAccess = cacheAccess;
         this.batchWindowMillis = 200;
         this.maximumLockingTimeMillis = 5000;
+        this.groupCommitLatencyMillis = groupCommitLatencyMillis;
         HeapProportionalCacheSizer heapProportionalCacheSizer = new HeapProportionalCacheSizer();
         int queueCapacity = Math.min(4000, heapProportionalCacheSizer.scaleCacheSize(40000));
+        this.maximumBatchSize = queueCapacity;
         workQueue = new ArrayBlockingQueue<Runnable>(queueCapacity, true);
     }
 
@@ -139,6 +162,9 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
                         // not holding the cache lock, flush is done so notify flush thread and continue
                         FlushOperationsCommand flushOperationsCommand = (FlushOperationsCommand) runnable;
                         flushOperationsCommand.completed();
+                    } else if (groupCommitLatencyMillis > 0) {
+                        // collect a batch of operations before taking the cache lock
+                        commitGroup(runnable);
                     } else {
                         // need to run operation under cache lock
                         flushOperations(runnable);
@@ -170,18 +196,23 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
 
     private void flushOperations(final Runnable updateOperation) {
         final List<FlushOperationsCommand> flushOperations = new ArrayList<FlushOperationsCommand>();
+        statistics.queueDepth(workQueue.size() + 1);
         try {
             cacheAccess.useCache(new Runnable() {
                 @Override
                 public void run() {
+                    long lockAcquiredAt = System.nanoTime();
+                    int batchSize = 0;
                     CountdownTimer timer = Time.startCountdownTimer(maximumLockingTimeMillis, TimeUnit.MILLISECONDS);
                     if (updateOperation != null) {
                         failureHandler.onExecute(updateOperation);
+                        batchSize++;
                     }
                     Runnable otherOperation;
                     try {
                         while ((otherOperation = workQueue.poll(batchWindowMillis, TimeUnit.MILLISECONDS)) != null) {
                             failureHandler.onExecute(otherOperation);
+                            batchSize++;
                             final Class<? extends Runnable> runnableClass = otherOperation.getClass();
                             if (runnableClass == FlushOperationsCommand.class) {
                                 flushOperations.add((FlushOperationsCommand) otherOperation);
@@ -197,6 +228,54 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
                         }
                     } catch (InterruptedException e) {
                         throw UncheckedException.throwAsUncheckedException(e);
+                    } finally {
+                        statistics.batch(batchSize, System.nanoTime() - lockAcquiredAt);
+                    }
+                }
+            });
+        } finally {
+            for (FlushOperationsCommand flushOperation : flushOperations) {
+                flushOperation.completed();
+            }
+        }
+    }
+
+    private void commitGroup(Runnable firstOperation) throws InterruptedException {
+        statistics.queueDepth(workQueue.size() + 1);
+        final List<Runnable> batch = new ArrayList<Runnable>();
+        List<FlushOperationsCommand> flushOperations = new ArrayList<FlushOperationsCommand>();
+        batch.add(firstOperation);
+        CountdownTimer timer = Time.startCountdownTimer(groupCommitLatencyMillis, TimeUnit.MILLISECONDS);
+        // A thread is waiting for the result of a read, so run it right away
+        boolean commitNow = firstOperation.getClass() == FutureTask.class;
+        while (!commitNow && batch.size() < maximumBatchSize) {
+            Runnable operation = workQueue.poll(timer.getRemainingMillis(), TimeUnit.MILLISECONDS);
+            if (operation == null) {
+                break;
+            }
+            Class<? extends Runnable> runnableClass = operation.getClass();
+            if (runnableClass == FlushOperationsCommand.class) {
+                flushOperations.add((FlushOperationsCommand) operation);
+                break;
+            }
+            if (runnableClass == ShutdownOperationsCommand.class) {
+                stopSeen = true;
+                break;
+            }
+            batch.add(operation);
+            commitNow = runnableClass == FutureTask.class;
+        }
+        try {
+            cacheAccess.useCache(new Runnable() {
+                @Override
+                public void run() {
+                    long lockAcquiredAt = System.nanoTime();
+                    try {
+                        for (Runnable operation : batch) {
+                            failureHandler.onExecute(operation);
+                        }
+                    } finally {
+                        statistics.batch(batch.size(), System.nanoTime() - lockAcquiredAt);
                     }
                 }
             });
@@ -207,6 +286,10 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
         }
     }
 
+    Statistics getStatistics() {
+        return statistics;
+    }
+
     public synchronized void stop() {
         if (!closed && !workerCompleted) {
             closed = true;
@@ -220,6 +303,9 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
             } catch (InterruptedException e) {
                 // ignore
             }
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Cache operations on {}: {}", displayName, statistics);
+            }
         }
         rethrowFailure();
     }
@@ -230,4 +316,60 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
             // do nothing
         }
     }
+
+    /**
+     * Statistics about the batches of operations run by a worker.
+     */
+    static class Statistics {
+        private long batches;
+        private long operations;
+        private int maximumBatchSize;
+        private long queueDepths;
+        private int maximumQueueDepth;
+        private long lockHeldNanos;
+
+        private synchronized void queueDepth(int queueDepth) {
+            queueDepths += queueDepth;
+            maximumQueueDepth = Math.max(maximumQueueDepth, queueDepth);
+        }
+
+        private synchronized void batch(int batchSize, long lockHeldNanos) {
+            batches++;
+            operations += batchSize;
+            maximumBatchSize = Math.max(maximumBatchSize, batchSize);
+            this.lockHeldNanos += lockHeldNanos;
+        }
+
+        public synchronized long getBatchCount() {
+            return batches;
+        }
+
+        public synchronized long getOperationCount() {
+            return operations;
+        }
+
+        public synchronized int getMaximumBatchSize() {
+            return maximumBatchSize;
+        }
+
+        /**
+         * The maximum number of queued operations seen when starting a batch.
+         */
+        public synchronized int getMaximumQueueDepth() {
+            return maximumQueueDepth;
+        }
+
+        public synchronized long getLockHeldMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(lockHeldNanos);
+        }
+
+        @Override
+        public synchronized String toString() {
+            if (batches == 0) {
+                return "no batches";
+            }
+            return String.format("%d batches, %d operations, average batch size %.1f, maximum batch size %d, average queue depth %.1f, maximum queue depth %d, lock held for %dms",
+                batches, operations, (double) operations / batches, maximumBatchSize, (double) queueDepths / batches, maximumQueueDepth, getLockHeldMillis());
+        }
+    }
 }
@@ -24,12 +24,14 @@ import org.gradle.cache.CacheDecorator;
 import org.gradle.cache.FileAccess;
 import org.gradle.cache.FileLock;
 import org.gradle.cache.FileLockManager;
+import org.gradle.cache.IndexedCacheStore;
 import org.gradle.cache.LockOptions;
 import org.gradle.cache.LockTimeoutException;
 import org.gradle.cache.MultiProcessSafePersistentIndexedCache;
 import org.gradle.cache.PersistentIndexedCacheParameters;
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
 import org.gradle.cache.internal.cacheops.CacheAccessOperationsStack;
+import org.gradle.cache.internal.logstore.AppendOnlyLogPersistentIndexedCache;
 import org.gradle.internal.Cast;
 import org.gradle.internal.Factories;
 import org.gradle.internal.Factory;
@@ -56,6 +58,11 @@ import static org.gradle.cache.FileLockManager.LockMode.Exclusive;
 
 @ThreadSafe
 public class DefaultCacheAccess implements CacheCoordinator {
+    /**
+     * The maximum time in milliseconds that cache writes are collected for before being written in one batch. Group commit is disabled when not set.
+     */
+    public static final String GROUP_COMMIT_LATENCY_PROPERTY = "org.gradle.internal.cacheGroupCommitLatency";
+
     private final static Logger LOG = LoggerFactory.getLogger(DefaultCacheAccess.class);
     private final static Runnable NO_OP = new Runnable() {
         @Override
@@ -84,6 +91,7 @@ public class DefaultCacheAccess implements CacheCoordinator {
     private FileLock.State stateAtOpen;
     private Runnable fileLockHeldByOwner;
     private int cacheClosedCount;
+    private boolean closing;
 
     public DefaultCacheAccess(String cacheDisplayName, File lockTarget, LockOptions lockOptions, File baseDir, FileLockManager lockManager, CacheInitializationAction initializationAction, CacheCleanupAction cleanupAction, ExecutorFactory executorFactory) {
         this.cacheDisplayName = cacheDisplayName;
@@ -122,7 +130,7 @@ public class DefaultCacheAccess implements CacheCoordinator {
 
     private synchronized AsyncCacheAccess getCacheAccessWorker() {
         if (cacheAccessWorker == null) {
-            cacheAccessWorker = new CacheAccessWorker(cacheDisplayName, this);
+            cacheAccessWorker = new CacheAccessWorker(cacheDisplayName, this, Long.getLong(GROUP_COMMIT_LATENCY_PROPERTY, 0));
             cacheUpdateExecutor = executorFactory.create("Cache worker for " + cacheDisplayName);
             cacheUpdateExecutor.execute(cacheAccessWorker);
         }
@@ -174,6 +182,8 @@ public class DefaultCacheAccess implements CacheCoordinator {
                     LOG.debug("Cache {} could not run cleanup action {}", cacheDisplayName, cleanupAction);
                 }
             }
+            // Close the stores when the lock is released, while they can still write to the cache files
+            closing = true;
             if (fileLockHeldByOwner != null) {
                 fileLockHeldByOwner.run();
             }
@@ -282,15 +292,19 @@ public class DefaultCacheAccess implements CacheCoordinator {
         IndexedCacheEntry<K, V> entry = Cast.uncheckedCast(caches.get(parameters.getCacheName()));
         try {
             if (entry == null) {
-                final File cacheFile = new File(baseDir, parameters.getCacheName() + ".bin");
+                final File cacheFile = getCacheFile(parameters);
                 LOG.info("Creating new cache for {}, path {}, access {}", parameters.getCacheName(), cacheFile, this);
-                Factory<BTreePersistentIndexedCache<K, V>> indexedCacheFactory = new Factory<BTreePersistentIndexedCache<K, V>>() {
-                    public BTreePersistentIndexedCache<K, V> create() {
+                Factory<IndexedCacheStore<K, V>> indexedCacheFactory = new Factory<IndexedCacheStore<K, V>>() {
+                    public IndexedCacheStore<K, V> create() {
+                        if (parameters.getStoreFormat() == PersistentIndexedCacheParameters.StoreFormat.AppendOnlyLog) {
+                            return doCreateLogCache(cacheFile, new File(baseDir, parameters.getCacheName() + ".index"), parameters.getKeySerializer(), parameters.getValueSerializer());
+                        }
                         return doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
                     }
                 };
 
-                MultiProcessSafePersistentIndexedCache<K, V> indexedCache = new DefaultMultiProcessSafePersistentIndexedCache<K, V>(indexedCacheFactory, fileAccess);
+                DefaultMultiProcessSafePersistentIndexedCache<K, V> persistentCache = new DefaultMultiProcessSafePersistentIndexedCache<K, V>(indexedCacheFactory, fileAccess);
+                MultiProcessSafePersistentIndexedCache<K, V> indexedCache = persistentCache;
                 CacheDecorator decorator = parameters.getCacheDecorator();
                 if (decorator != null) {
                     indexedCache = decorator.decorate(cacheFile.getAbsolutePath(), parameters.getCacheName(), indexedCache, crossProcessCacheAccess, getCacheAccessWorker());
@@ -298,7 +312,7 @@ public class DefaultCacheAccess implements CacheCoordinator {
                         useCache(NO_OP);
                     }
                 }
-                entry = new IndexedCacheEntry<K, V>(parameters, indexedCache);
+                entry = new IndexedCacheEntry<K, V>(parameters, indexedCache, persistentCache);
                 caches.put(parameters.getCacheName(), entry);
                 if (fileLock != null) {
                     indexedCache.afterLockAcquire(stateAtOpen);
@@ -312,10 +326,19 @@ public class DefaultCacheAccess implements CacheCoordinator {
         }
     }
 
-    <K, V> BTreePersistentIndexedCache<K, V> doCreateCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+    private File getCacheFile(PersistentIndexedCacheParameters<?, ?> parameters) {
+        String extension = parameters.getStoreFormat() == PersistentIndexedCacheParameters.StoreFormat.AppendOnlyLog ? ".log" : ".bin";
+        return new File(baseDir, parameters.getCacheName() + extension);
+    }
+
+    <K, V> IndexedCacheStore<K, V> doCreateCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
         return new BTreePersistentIndexedCache<K, V>(cacheFile, keySerializer, valueSerializer);
     }
 
+    <K, V> IndexedCacheStore<K, V> doCreateLogCache(File logFile, File indexFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        return new AppendOnlyLogPersistentIndexedCache<K, V>(logFile, indexFile, keySerializer, valueSerializer);
+    }
+
     /**
      * Called just after the file lock has been acquired.
      */
@@ -346,6 +369,11 @@ public class DefaultCacheAccess implements CacheCoordinator {
                 for (IndexedCacheEntry<?, ?> entry : caches.values()) {
                     entry.getCache().finishWork();
                 }
+                if (closing) {
+                    for (IndexedCacheEntry<?, ?> entry : caches.values()) {
+                        entry.getPersistentCache().close();
+                    }
+                }
 
                 // Snapshot the state and notify the caches
                 FileLock.State state = fileLock.getState();
@@ -422,17 +450,26 @@ public class DefaultCacheAccess implements CacheCoordinator {
 
     private static class IndexedCacheEntry<K, V> {
         private final MultiProcessSafePersistentIndexedCache<K, V> cache;
+        private final DefaultMultiProcessSafePersistentIndexedCache<K, V> persistentCache;
         private final PersistentIndexedCacheParameters<K, V> parameters;
 
-        IndexedCacheEntry(PersistentIndexedCacheParameters<K, V> parameters, MultiProcessSafePersistentIndexedCache<K, V> cache) {
+        IndexedCacheEntry(PersistentIndexedCacheParameters<K, V> parameters, MultiProcessSafePersistentIndexedCache<K, V> cache, DefaultMultiProcessSafePersistentIndexedCache<K, V> persistentCache) {
             this.parameters = parameters;
             this.cache = cache;
+            this.persistentCache = persistentCache;
         }
 
         public MultiProcessSafePersistentIndexedCache<K, V> getCache() {
             return cache;
         }
 
+        /**
+         * Returns the undecorated cache, which owns the store.
+         */
+        public DefaultMultiProcessSafePersistentIndexedCache<K, V> getPersistentCache() {
+            return persistentCache;
+        }
+
         public PersistentIndexedCacheParameters<K, V> getParameters() {
             return parameters;
         }
@@ -444,6 +481,7 @@ public class DefaultCacheAccess implements CacheCoordinator {
             checkCompatibleKeySerializer(faultMessages, parameters.getKeySerializer());
             checkCompatibleValueSerializer(faultMessages, parameters.getValueSerializer());
             checkCompatibleCacheDecorator(faultMessages, parameters.getCacheDecorator());
+            checkCompatibleStoreFormat(faultMessages, parameters.getStoreFormat());
 
             if (!faultMessages.isEmpty()) {
                 String lineSeparator = SystemProperties.getInstance().getLineSeparator();
@@ -486,6 +524,14 @@ public class DefaultCacheAccess implements CacheCoordinator {
                         cacheDecorator, parameters.getCacheDecorator()));
             }
         }
+
+        private void checkCompatibleStoreFormat(Collection<String> faultMessages, PersistentIndexedCacheParameters.StoreFormat storeFormat) {
+            if (storeFormat != parameters.getStoreFormat()) {
+                faultMessages.add(
+                    String.format(" * Requested store format (%s) doesn't match current store format (%s)",
+                        storeFormat, parameters.getStoreFormat()));
+            }
+        }
     }
 
     private static class InvalidCacheReuseException extends GradleException {
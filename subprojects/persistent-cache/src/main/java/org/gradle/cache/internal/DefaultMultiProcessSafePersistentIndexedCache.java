@@ -19,16 +19,19 @@ import org.gradle.api.Transformer;
 import org.gradle.cache.FileAccess;
 import org.gradle.cache.FileIntegrityViolationException;
 import org.gradle.cache.FileLock;
+import org.gradle.cache.IndexedCacheStore;
 import org.gradle.cache.MultiProcessSafePersistentIndexedCache;
-import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
 import org.gradle.internal.Factory;
 
 public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements MultiProcessSafePersistentIndexedCache<K, V> {
     private final FileAccess fileAccess;
-    private final Factory<BTreePersistentIndexedCache<K, V>> factory;
-    private BTreePersistentIndexedCache<K, V> cache;
+    private final Factory<IndexedCacheStore<K, V>> factory;
+    private IndexedCacheStore<K, V> cache;
+    private boolean suspended;
+    private FileLock.State stateAtSuspend;
+    private FileLock.State stateAtResume;
 
-    public DefaultMultiProcessSafePersistentIndexedCache(Factory<BTreePersistentIndexedCache<K, V>> factory, FileAccess fileAccess) {
+    public DefaultMultiProcessSafePersistentIndexedCache(Factory<IndexedCacheStore<K, V>> factory, FileAccess fileAccess) {
         this.factory = factory;
         this.fileAccess = fileAccess;
     }
@@ -40,7 +43,7 @@ public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements Mult
 
     @Override
     public V get(final K key) {
-        final BTreePersistentIndexedCache<K, V> cache = getCache();
+        final IndexedCacheStore<K, V> cache = getCache();
         try {
             return fileAccess.readFile(new Factory<V>() {
                 public V create() {
@@ -64,7 +67,7 @@ public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements Mult
 
     @Override
     public void put(final K key, final V value) {
-        final BTreePersistentIndexedCache<K, V> cache = getCache();
+        final IndexedCacheStore<K, V> cache = getCache();
         // Use writeFile because the cache can internally recover from datafile
         // corruption, so we don't care at this level if it's corrupt
         fileAccess.writeFile(new Runnable() {
@@ -76,7 +79,7 @@ public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements Mult
 
     @Override
     public void remove(final K key) {
-        final BTreePersistentIndexedCache<K, V> cache = getCache();
+        final IndexedCacheStore<K, V> cache = getCache();
         // Use writeFile because the cache can internally recover from datafile
         // corruption, so we don't care at this level if it's corrupt
         fileAccess.writeFile(new Runnable() {
@@ -88,28 +91,53 @@ public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements Mult
 
     @Override
     public void afterLockAcquire(FileLock.State currentCacheState) {
+        stateAtResume = currentCacheState;
     }
 
+    /**
+     * Suspends the store rather than closing it, so that it can keep its in-memory state until the file lock is acquired again.
+     */
     @Override
     public void finishWork() {
-        if (cache != null) {
+        if (cache != null && !suspended) {
             try {
                 fileAccess.writeFile(new Runnable() {
                     public void run() {
-                        cache.close();
+                        cache.suspend();
                     }
                 });
-            } finally {
+                suspended = true;
+            } catch (RuntimeException e) {
                 cache = null;
+                throw e;
             }
         }
     }
 
     @Override
     public void beforeLockRelease(FileLock.State currentCacheState) {
+        stateAtSuspend = currentCacheState;
+    }
+
+    /**
+     * Closes the store. Must be called after {@link #finishWork()}, while the file lock is still held.
+     */
+    public void close() {
+        if (cache != null) {
+            try {
+                fileAccess.writeFile(new Runnable() {
+                    public void run() {
+                        cache.close();
+                    }
+                });
+            } finally {
+                cache = null;
+                suspended = false;
+            }
+        }
     }
 
-    private BTreePersistentIndexedCache<K, V> getCache() {
+    private IndexedCacheStore<K, V> getCache() {
         if (cache == null) {
             // Use writeFile because the cache can internally recover from datafile
             // corruption, so we don't care at this level if it's corrupt
@@ -118,6 +146,14 @@ public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements Mult
                     cache = factory.create();
                 }
             });
+        } else if (suspended) {
+            final boolean changedByOtherProcess = stateAtSuspend == null || stateAtResume == null || !stateAtResume.canDetectChanges() || stateAtResume.hasBeenUpdatedSince(stateAtSuspend);
+            fileAccess.writeFile(new Runnable() {
+                public void run() {
+                    cache.resume(changedByOtherProcess);
+                }
+            });
+            suspended = false;
         }
         return cache;
     }
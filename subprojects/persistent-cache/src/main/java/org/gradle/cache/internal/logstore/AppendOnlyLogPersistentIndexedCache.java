@@ -0,0 +1,581 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal.logstore;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.IndexedCacheStore;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.io.RandomAccessFileInputStream;
+import org.gradle.internal.io.RandomAccessFileOutputStream;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+/**
+ * A store for a persistent indexed cache that appends every change to a log file, and keeps an index from key to the position of
+ * the latest record for that key in memory.
+ *
+ * <p>Each record holds the hash of the serialized key, the serialized key and, for an update, the serialized value. A read looks up the
+ * hash in the index, reads the single record and checks its key. When the store is suspended or closed, the index is written to a separate file
+ * if the log has changed since it was last written, so that the next open only needs to replay the records appended since. The log is compacted
+ * when the store is suspended or closed, once most of it is made up of records that have been replaced or removed.</p>
+ *
+ * <p>The index is kept in memory while the store is suspended, so resuming the store only replays the records that other processes have appended
+ * in the meantime.</p>
+ *
+ * <p>Records carry a checksum. A partially written record at the end of the log, left by a crash, is discarded when the log is opened.</p>
+ */
+public class AppendOnlyLogPersistentIndexedCache<K, V> implements IndexedCacheStore<K, V> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AppendOnlyLogPersistentIndexedCache.class);
+    private static final int LOG_MAGIC = 0x47434c47;
+    private static final int INDEX_MAGIC = 0x47434c49;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int PAYLOAD_HEADER_SIZE = 13;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final long MIN_GARBAGE_TO_COMPACT = 1024 * 1024;
+
+    private final File logFile;
+    private final File indexFile;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final ByteArrayOutputStream keyBytes = new ByteArrayOutputStream();
+    private final KryoBackedEncoder keyEncoder = new KryoBackedEncoder(keyBytes);
+    private final ByteArrayOutputStream valueBytes = new ByteArrayOutputStream();
+    private final KryoBackedEncoder valueEncoder = new KryoBackedEncoder(valueBytes);
+    private final ByteArrayOutputStream pendingWrites = new ByteArrayOutputStream();
+    private final CRC32 checksum = new CRC32();
+    private final Random random = new Random();
+
+    private RandomAccessFile file;
+    private KeyIndex index;
+    private long logId;
+    private long flushedLength;
+    private long garbageBytes;
+    private long indexedLogId;
+    private long indexedLength = -1;
+
+    public AppendOnlyLogPersistentIndexedCache(File logFile, File indexFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this.logFile = logFile;
+        this.indexFile = indexFile;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        try {
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not open %s.", this), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "cache " + logFile.getName() + " (" + logFile + ")";
+    }
+
+    private void open() throws IOException {
+        LOGGER.debug("Opening {}", this);
+        file = new RandomAccessFile(logFile, "rw");
+        if (file.length() < HEADER_SIZE) {
+            initialize();
+            return;
+        }
+        file.seek(0);
+        if (file.readInt() != LOG_MAGIC || file.readInt() != VERSION) {
+            LOGGER.warn("{} is corrupt. Discarding.", this);
+            initialize();
+            return;
+        }
+        logId = file.readLong();
+        long replayFrom = loadIndex(file.length());
+        replay(replayFrom);
+    }
+
+    private void initialize() throws IOException {
+        file.setLength(0);
+        logId = random.nextLong();
+        file.seek(0);
+        file.writeInt(LOG_MAGIC);
+        file.writeInt(VERSION);
+        file.writeLong(logId);
+        flushedLength = HEADER_SIZE;
+        garbageBytes = 0;
+        index = new KeyIndex();
+        indexFile.delete();
+        indexedLength = -1;
+    }
+
+    /**
+     * Loads the index written when the log was last closed, if it belongs to this log. Returns the position from which the log must be replayed.
+     */
+    private long loadIndex(long logLength) {
+        index = new KeyIndex();
+        garbageBytes = 0;
+        indexedLength = -1;
+        if (!indexFile.isFile()) {
+            return HEADER_SIZE;
+        }
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+            try {
+                if (input.readInt() != INDEX_MAGIC || input.readInt() != VERSION || input.readLong() != logId) {
+                    return HEADER_SIZE;
+                }
+                long indexedLength = input.readLong();
+                if (indexedLength > logLength) {
+                    return HEADER_SIZE;
+                }
+                long indexedGarbage = input.readLong();
+                int count = input.readInt();
+                KeyIndex loaded = new KeyIndex(count);
+                for (int i = 0; i < count; i++) {
+                    loaded.put(input.readLong(), input.readLong(), input.readInt());
+                }
+                index = loaded;
+                garbageBytes = indexedGarbage;
+                this.indexedLogId = logId;
+                this.indexedLength = indexedLength;
+                return indexedLength;
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Could not read index for {}. Rebuilding it from the log.", this, e);
+            index = new KeyIndex();
+            garbageBytes = 0;
+            return HEADER_SIZE;
+        }
+    }
+
+    private void replay(long from) throws IOException {
+        long length = file.length();
+        long position = from;
+        file.seek(from);
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new RandomAccessFileInputStream(file)));
+        try {
+            while (position < length) {
+                if (length - position < RECORD_HEADER_SIZE) {
+                    break;
+                }
+                int payloadLength = input.readInt();
+                int expectedChecksum = input.readInt();
+                if (payloadLength < PAYLOAD_HEADER_SIZE || payloadLength > length - position - RECORD_HEADER_SIZE) {
+                    break;
+                }
+                byte[] payload = new byte[payloadLength];
+                input.readFully(payload);
+                if (checksumOf(payload) != expectedChecksum) {
+                    break;
+                }
+                int recordSize = RECORD_HEADER_SIZE + payloadLength;
+                long hash = readLong(payload, 1);
+                if (payload[0] != PUT && payload[0] != REMOVE) {
+                    break;
+                }
+                if (payload[0] == PUT) {
+                    int replaced = index.put(hash, position, recordSize);
+                    if (replaced >= 0) {
+                        garbageBytes += replaced;
+                    }
+                } else {
+                    int removed = index.remove(hash);
+                    if (removed >= 0) {
+                        garbageBytes += removed;
+                    }
+                    garbageBytes += recordSize;
+                }
+                position += recordSize;
+            }
+        } catch (EOFException e) {
+            // Partially written record, discard below
+        }
+        if (position < length) {
+            LOGGER.debug("Discarding incomplete entries at the end of {}.", this);
+            file.setLength(position);
+        }
+        flushedLength = position;
+    }
+
+    @Override
+    public V get(K key) {
+        try {
+            byte[] serializedKey = serializeKey(key);
+            long position = index.getPosition(hash(serializedKey));
+            if (position < 0) {
+                return null;
+            }
+            byte[] payload = readPayload(position);
+            if (payload == null) {
+                LOGGER.warn("Entry '{}' in {} is corrupt. Discarding.", key, this);
+                discard(serializedKey);
+                return null;
+            }
+            int keyLength = readInt(payload, 9);
+            if (keyLength != serializedKey.length || !regionMatches(payload, PAYLOAD_HEADER_SIZE, serializedKey)) {
+                // Another key with the same hash
+                return null;
+            }
+            int valueOffset = PAYLOAD_HEADER_SIZE + keyLength;
+            return valueSerializer.read(new KryoBackedDecoder(new ByteArrayInputStream(payload, valueOffset, payload.length - valueOffset)));
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not read entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void put(K key, V value) {
+        try {
+            byte[] serializedKey = serializeKey(key);
+            valueBytes.reset();
+            valueSerializer.write(valueEncoder, value);
+            valueEncoder.flush();
+            long hash = hash(serializedKey);
+            long position = append(PUT, hash, serializedKey, valueBytes);
+            int replaced = index.put(hash, position, (int) (flushedLength + pendingWrites.size() - position));
+            if (replaced >= 0) {
+                garbageBytes += replaced;
+            }
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not add entry '%s' to %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void remove(K key) {
+        try {
+            discard(serializeKey(key));
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not remove entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    private void discard(byte[] serializedKey) throws IOException {
+        long hash = hash(serializedKey);
+        int removed = index.remove(hash);
+        if (removed < 0) {
+            return;
+        }
+        long position = append(REMOVE, hash, serializedKey, null);
+        garbageBytes += removed + flushedLength + pendingWrites.size() - position;
+    }
+
+    private long append(byte type, long hash, byte[] serializedKey, ByteArrayOutputStream value) throws IOException {
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(PAYLOAD_HEADER_SIZE + serializedKey.length + (value == null ? 0 : value.size()));
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        payload.writeByte(type);
+        payload.writeLong(hash);
+        payload.writeInt(serializedKey.length);
+        payload.write(serializedKey);
+        if (value != null) {
+            value.writeTo(payload);
+        }
+        payload.flush();
+        byte[] payloadArray = payloadBytes.toByteArray();
+
+        long position = flushedLength + pendingWrites.size();
+        DataOutputStream record = new DataOutputStream(pendingWrites);
+        record.writeInt(payloadArray.length);
+        record.writeInt(checksumOf(payloadArray));
+        record.write(payloadArray);
+        record.flush();
+        if (pendingWrites.size() >= WRITE_BUFFER_SIZE) {
+            flush();
+        }
+        return position;
+    }
+
+    private void flush() throws IOException {
+        if (pendingWrites.size() == 0) {
+            return;
+        }
+        file.seek(flushedLength);
+        pendingWrites.writeTo(new RandomAccessFileOutputStream(file));
+        flushedLength += pendingWrites.size();
+        pendingWrites.reset();
+    }
+
+    /**
+     * Returns the payload of the record at the given position, or null when the record is corrupt.
+     */
+    private byte[] readPayload(long position) throws IOException {
+        if (position >= flushedLength) {
+            flush();
+        }
+        file.seek(position);
+        int payloadLength = file.readInt();
+        int expectedChecksum = file.readInt();
+        if (payloadLength < PAYLOAD_HEADER_SIZE || payloadLength > flushedLength - position - RECORD_HEADER_SIZE) {
+            return null;
+        }
+        byte[] payload = new byte[payloadLength];
+        file.readFully(payload);
+        return checksumOf(payload) == expectedChecksum ? payload : null;
+    }
+
+    private byte[] serializeKey(K key) throws Exception {
+        keyBytes.reset();
+        keySerializer.write(keyEncoder, key);
+        keyEncoder.flush();
+        return keyBytes.toByteArray();
+    }
+
+    private static long hash(byte[] serializedKey) {
+        return readLong(Hashing.murmur3().hashBytes(serializedKey).toByteArray(), 0);
+    }
+
+    private int checksumOf(byte[] payload) {
+        checksum.reset();
+        checksum.update(payload, 0, payload.length);
+        return (int) checksum.getValue();
+    }
+
+    private static boolean regionMatches(byte[] payload, int offset, byte[] expected) {
+        for (int i = 0; i < expected.length; i++) {
+            if (payload[offset + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) << 24
+            | (bytes[offset + 1] & 0xff) << 16
+            | (bytes[offset + 2] & 0xff) << 8
+            | (bytes[offset + 3] & 0xff);
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        return (long) readInt(bytes, offset) << 32 | (readInt(bytes, offset + 4) & 0xffffffffL);
+    }
+
+    @Override
+    public void reset() {
+        close();
+        try {
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void suspend() {
+        if (file == null) {
+            return;
+        }
+        LOGGER.debug("Suspending {}", this);
+        try {
+            try {
+                flush();
+                if (shouldCompact()) {
+                    compact();
+                }
+                // The lock may be released because another process asked for it, so the index must be current whenever the store is suspended
+                writeIndexIfChanged();
+            } finally {
+                file.close();
+                file = null;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void resume(boolean changedByOtherProcess) {
+        if (file != null) {
+            return;
+        }
+        LOGGER.debug("Resuming {}", this);
+        try {
+            if (index == null) {
+                open();
+                return;
+            }
+            file = new RandomAccessFile(logFile, "rw");
+            if (!changedByOtherProcess) {
+                return;
+            }
+            if (file.length() >= flushedLength && hasLogId(logId)) {
+                replay(flushedLength);
+            } else {
+                // Compacted or discarded by another process
+                file.close();
+                file = null;
+                open();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not open %s.", this), e);
+        }
+    }
+
+    private boolean hasLogId(long expectedLogId) throws IOException {
+        if (file.length() < HEADER_SIZE) {
+            return false;
+        }
+        file.seek(0);
+        return file.readInt() == LOG_MAGIC && file.readInt() == VERSION && file.readLong() == expectedLogId;
+    }
+
+    @Override
+    public void close() {
+        if (index == null) {
+            return;
+        }
+        LOGGER.debug("Closing {}", this);
+        try {
+            try {
+                if (file != null) {
+                    flush();
+                    if (shouldCompact()) {
+                        compact();
+                    }
+                }
+                writeIndexIfChanged();
+            } finally {
+                if (file != null) {
+                    file.close();
+                    file = null;
+                }
+                index = null;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean shouldCompact() {
+        return garbageBytes >= MIN_GARBAGE_TO_COMPACT && garbageBytes * 2 > flushedLength;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return file != null;
+    }
+
+    /**
+     * Rewrites the log with only the latest record for each key, in the order in which they were written.
+     */
+    private void compact() throws IOException {
+        LOGGER.debug("Compacting {}, discarding {} bytes of {}.", this, garbageBytes, flushedLength);
+        File compactedFile = new File(logFile.getPath() + ".tmp");
+        long compactedId = random.nextLong();
+        long[] positions = index.getSortedPositions();
+        KeyIndex compactedIndex = new KeyIndex(positions.length);
+        long compactedLength = HEADER_SIZE;
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(compactedFile)));
+        try {
+            output.writeInt(LOG_MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(compactedId);
+            for (long position : positions) {
+                file.seek(position);
+                byte[] record = new byte[RECORD_HEADER_SIZE + file.readInt()];
+                file.seek(position);
+                file.readFully(record);
+                output.write(record);
+                compactedIndex.put(readLong(record, RECORD_HEADER_SIZE + 1), compactedLength, record.length);
+                compactedLength += record.length;
+            }
+        } finally {
+            output.close();
+        }
+        file.close();
+        try {
+            Files.move(compactedFile.toPath(), logFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // Keep the log as it is, it is compacted again the next time
+            LOGGER.debug("Could not replace {} with its compacted copy.", this, e);
+            compactedFile.delete();
+            file = new RandomAccessFile(logFile, "rw");
+            return;
+        }
+        file = new RandomAccessFile(logFile, "rw");
+        logId = compactedId;
+        index = compactedIndex;
+        flushedLength = compactedLength;
+        garbageBytes = 0;
+    }
+
+    private void writeIndexIfChanged() throws IOException {
+        if (indexedLength == flushedLength && indexedLogId == logId) {
+            return;
+        }
+        writeIndex();
+        indexedLogId = logId;
+        indexedLength = flushedLength;
+    }
+
+    private void writeIndex() throws IOException {
+        File tmpFile = new File(indexFile.getPath() + ".tmp");
+        final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+        try {
+            output.writeInt(INDEX_MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(logId);
+            output.writeLong(flushedLength);
+            output.writeLong(garbageBytes);
+            output.writeInt(index.size());
+            final IOException[] failure = new IOException[1];
+            index.visit(new KeyIndex.Visitor() {
+                @Override
+                public void visit(long hash, long position, int recordSize) {
+                    if (failure[0] != null) {
+                        return;
+                    }
+                    try {
+                        output.writeLong(hash);
+                        output.writeLong(position);
+                        output.writeInt(recordSize);
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        } finally {
+            output.close();
+        }
+        indexFile.delete();
+        if (!tmpFile.renameTo(indexFile)) {
+            throw new IOException(String.format("Could not write index for %s.", this));
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal.logstore;
+
+import java.util.Arrays;
+
+/**
+ * Maps the hash of a key to the position and size of the latest record for that key. Uses open addressing with linear probing over
+ * primitive arrays, so that an entry costs 20 bytes of memory rather than several objects.
+ */
+class KeyIndex {
+    private static final int MIN_CAPACITY = 16;
+    private static final long EMPTY = -1;
+
+    private long[] hashes;
+    private long[] positions;
+    private int[] sizes;
+    private int size;
+
+    KeyIndex() {
+        this(0);
+    }
+
+    KeyIndex(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 2 < expectedSize * 3) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private void allocate(int capacity) {
+        hashes = new long[capacity];
+        positions = new long[capacity];
+        sizes = new int[capacity];
+        Arrays.fill(positions, EMPTY);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the position of the record for the given hash, or -1 when there is none.
+     */
+    public long getPosition(long hash) {
+        int slot = find(hash);
+        return slot < 0 ? EMPTY : positions[slot];
+    }
+
+    /**
+     * Returns the size of the record that was replaced, or -1 when there was none.
+     */
+    public int put(long hash, long position, int recordSize) {
+        int slot = find(hash);
+        if (slot >= 0) {
+            int previous = sizes[slot];
+            positions[slot] = position;
+            sizes[slot] = recordSize;
+            return previous;
+        }
+        if ((size + 1) * 3 > hashes.length * 2) {
+            grow();
+        }
+        slot = slotFor(hash);
+        while (positions[slot] != EMPTY) {
+            slot = next(slot);
+        }
+        hashes[slot] = hash;
+        positions[slot] = position;
+        sizes[slot] = recordSize;
+        size++;
+        return -1;
+    }
+
+    /**
+     * Returns the size of the record that was removed, or -1 when there was none.
+     */
+    public int remove(long hash) {
+        int slot = find(hash);
+        if (slot < 0) {
+            return -1;
+        }
+        int removed = sizes[slot];
+        size--;
+        // Shift later entries of the probe sequence back, so that lookups do not stop at the gap
+        int gap = slot;
+        for (int current = next(gap); positions[current] != EMPTY; current = next(current)) {
+            int home = slotFor(hashes[current]);
+            boolean canMove = gap <= current ? (home <= gap || home > current) : (home <= gap && home > current);
+            if (canMove) {
+                hashes[gap] = hashes[current];
+                positions[gap] = positions[current];
+                sizes[gap] = sizes[current];
+                gap = current;
+            }
+        }
+        positions[gap] = EMPTY;
+        return removed;
+    }
+
+    /**
+     * Returns the positions of all records, in ascending order.
+     */
+    public long[] getSortedPositions() {
+        long[] result = new long[size];
+        int count = 0;
+        for (long position : positions) {
+            if (position != EMPTY) {
+                result[count++] = position;
+            }
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    public void visit(Visitor visitor) {
+        for (int slot = 0; slot < positions.length; slot++) {
+            if (positions[slot] != EMPTY) {
+                visitor.visit(hashes[slot], positions[slot], sizes[slot]);
+            }
+        }
+    }
+
+    private int find(long hash) {
+        for (int slot = slotFor(hash); positions[slot] != EMPTY; slot = next(slot)) {
+            if (hashes[slot] == hash) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int slotFor(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & (hashes.length - 1);
+    }
+
+    private int next(int slot) {
+        return (slot + 1) & (hashes.length - 1);
+    }
+
+    private void grow() {
+        long[] oldHashes = hashes;
+        long[] oldPositions = positions;
+        int[] oldSizes = sizes;
+        allocate(hashes.length * 2);
+        size = 0;
+        for (int slot = 0; slot < oldPositions.length; slot++) {
+            if (oldPositions[slot] != EMPTY) {
+                put(oldHashes[slot], oldPositions[slot], oldSizes[slot]);
+            }
+        }
+    }
+
+    interface Visitor {
+        void visit(long hash, long position, int recordSize);
+    }
+}
@@ -198,4 +198,98 @@ class CacheAccessWorkerTest extends ConcurrentSpec {
         def e = thrown(RuntimeException)
         e == failure
     }
+
+    def "records statistics about batches"() {
+        given:
+        def counter = 0
+        cacheAccessWorker.enqueue { counter++ }
+        cacheAccessWorker.enqueue { counter++ }
+
+        when:
+        start(cacheAccessWorker)
+        cacheAccessWorker.flush()
+
+        then:
+        counter == 2
+        cacheAccessWorker.statistics.operationCount >= 2
+        cacheAccessWorker.statistics.maximumQueueDepth >= 1
+
+        cleanup:
+        cacheAccessWorker?.stop()
+    }
+
+    def "group commit runs queued operations in a single batch without holding the lock while waiting"() {
+        given:
+        def useCacheCalls = 0
+        cacheAccess = Stub(CacheAccess) {
+            useCache(_) >> { Runnable action ->
+                useCacheCalls++
+                action.run()
+            }
+        }
+        cacheAccessWorker = new CacheAccessWorker("<cache>", cacheAccess, 60000)
+        def counter = 0
+        cacheAccessWorker.enqueue { counter++ }
+        cacheAccessWorker.enqueue { counter++ }
+        cacheAccessWorker.enqueue { counter++ }
+
+        when:
+        start(cacheAccessWorker)
+        cacheAccessWorker.flush()
+
+        then:
+        counter == 3
+        useCacheCalls == 1
+        cacheAccessWorker.statistics.batchCount == 1
+        cacheAccessWorker.statistics.maximumBatchSize == 3
+
+        cleanup:
+        cacheAccessWorker?.stop()
+    }
+
+    def "group commit runs batch once latency has expired"() {
+        given:
+        cacheAccessWorker = new CacheAccessWorker("<cache>", cacheAccess, 50)
+        start(cacheAccessWorker)
+
+        when:
+        cacheAccessWorker.enqueue { instant.executed }
+        thread.blockUntil.executed
+        cacheAccessWorker.stop()
+
+        then:
+        cacheAccessWorker.statistics.batchCount == 1
+    }
+
+    def "group commit does not delay reads"() {
+        given:
+        cacheAccessWorker = new CacheAccessWorker("<cache>", cacheAccess, 60000)
+        def counter = 0
+        start(cacheAccessWorker)
+
+        when:
+        cacheAccessWorker.enqueue { ++counter }
+        def result = cacheAccessWorker.read { counter }
+
+        then:
+        result == 1
+
+        cleanup:
+        cacheAccessWorker?.stop()
+    }
+
+    def "group commit stops after running collected operations"() {
+        given:
+        cacheAccessWorker = new CacheAccessWorker("<cache>", cacheAccess, 60000)
+        def counter = 0
+        cacheAccessWorker.enqueue { counter++ }
+        cacheAccessWorker.enqueue { counter++ }
+
+        when:
+        start(cacheAccessWorker)
+        cacheAccessWorker.stop()
+
+        then:
+        counter == 2
+    }
 }
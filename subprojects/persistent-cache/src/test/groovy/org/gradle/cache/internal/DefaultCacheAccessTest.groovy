@@ -24,8 +24,10 @@ import org.gradle.cache.LockOptions
 import org.gradle.cache.MultiProcessSafePersistentIndexedCache
 import org.gradle.cache.PersistentIndexedCacheParameters
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache
+import org.gradle.cache.internal.logstore.AppendOnlyLogPersistentIndexedCache
 import org.gradle.internal.Factory
 import org.gradle.internal.serialize.BaseSerializerFactory
+import org.gradle.internal.serialize.DefaultSerializer
 import org.gradle.internal.serialize.Serializer
 import org.gradle.test.fixtures.concurrent.ConcurrentSpec
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
@@ -581,6 +583,76 @@ class DefaultCacheAccessTest extends ConcurrentSpec {
         0 * lock._
     }
 
+    def "suspends the store of a cache when the lock is released and closes it when the cache is closed"() {
+        def access = newAccess(None)
+        def contendedAction
+        def state = Stub(FileLock.State) {
+            canDetectChanges() >> true
+            hasBeenUpdatedSince(_) >> false
+        }
+
+        given:
+        lockManager.lock(lockFile, mode(Exclusive), "<display-name>", "", _ as Runnable) >> {
+            File target, LockOptions options, String targetDisplayName, String operationDisplayName, Runnable whenContended -> contendedAction = whenContended; return lock }
+        lock.writeFile(_) >> { Runnable r -> r.run() }
+        lock.state >> state
+        access.open()
+        def cache = access.newCache(new PersistentIndexedCacheParameters('cache', String.class, Integer.class))
+        access.useCache { cache.get("key") }
+
+        when:
+        contendedAction.run()
+
+        then:
+        1 * backingCache.suspend()
+        0 * backingCache.close()
+
+        when:
+        access.useCache { cache.get("key") }
+
+        then:
+        1 * backingCache.resume(false)
+        1 * backingCache.get("key")
+
+        when:
+        access.close()
+
+        then:
+        1 * backingCache.suspend()
+        1 * backingCache.close()
+    }
+
+    def "writes the index of a log store when the lock is released because another process asked for it"() {
+        def access = newAccess(None)
+        def contendedAction
+        def parameters = new PersistentIndexedCacheParameters('cache', String.class, Integer.class).storeFormat(PersistentIndexedCacheParameters.StoreFormat.AppendOnlyLog)
+
+        given:
+        cacheDir.createDir()
+        lockManager.lock(lockFile, mode(Exclusive), "<display-name>", "", _ as Runnable) >> {
+            File target, LockOptions options, String targetDisplayName, String operationDisplayName, Runnable whenContended -> contendedAction = whenContended; return lock }
+        lock.writeFile(_) >> { Runnable r -> r.run() }
+        access.open()
+        def cache = access.newCache(parameters)
+        access.useCache { cache.put("key", 12) }
+
+        when:
+        contendedAction.run()
+
+        then:
+        new File(cacheDir, "cache.index").exists()
+
+        when:
+        def reopened = new AppendOnlyLogPersistentIndexedCache<String, Integer>(new File(cacheDir, "cache.log"), new File(cacheDir, "cache.index"), new DefaultSerializer<String>(), new DefaultSerializer<Integer>())
+
+        then:
+        reopened.get("key") == 12
+
+        cleanup:
+        reopened?.close()
+        access?.close()
+    }
+
     def "releases lock acquired by cache decorator when contended"() {
         def decorator = Mock(CacheDecorator)
         def access = newAccess(None)
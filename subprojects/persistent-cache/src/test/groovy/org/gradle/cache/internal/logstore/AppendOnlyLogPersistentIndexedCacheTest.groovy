@@ -0,0 +1,230 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.logstore
+
+import org.gradle.internal.serialize.DefaultSerializer
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class AppendOnlyLogPersistentIndexedCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def logFile = tmpDir.file("cache.log")
+    def indexFile = tmpDir.file("cache.index")
+    AppendOnlyLogPersistentIndexedCache<String, Integer> cache
+
+    def setup() {
+        open()
+    }
+
+    def cleanup() {
+        cache.close()
+    }
+
+    private void open() {
+        cache = new AppendOnlyLogPersistentIndexedCache<String, Integer>(logFile, indexFile, new DefaultSerializer<String>(), new DefaultSerializer<Integer>())
+    }
+
+    private void reopen() {
+        cache.close()
+        open()
+    }
+
+    def "can add, update and remove entries"() {
+        expect:
+        cache.get("a") == null
+
+        when:
+        cache.put("a", 1)
+        cache.put("b", 2)
+        cache.put("a", 3)
+        cache.remove("b")
+
+        then:
+        cache.get("a") == 3
+        cache.get("b") == null
+    }
+
+    def "entries are visible after reopening with index #description"() {
+        (0..<1000).each { cache.put("key-$it".toString(), it) }
+        (0..<1000).step(2) { cache.remove("key-$it".toString()) }
+        cache.put("key-1", 42)
+
+        when:
+        cache.close()
+        if (!useIndex) {
+            indexFile.delete()
+        }
+        open()
+
+        then:
+        cache.get("key-0") == null
+        cache.get("key-1") == 42
+        cache.get("key-3") == 3
+        cache.get("key-998") == null
+        cache.get("key-999") == 999
+
+        where:
+        useIndex | description
+        true     | "loaded from disk"
+        false    | "rebuilt from the log"
+    }
+
+    def "replays entries appended after the index was written"() {
+        cache.put("a", 1)
+        reopen()
+        def staleIndex = indexFile.bytes
+        cache.put("b", 2)
+        cache.remove("a")
+        cache.close()
+        // Simulate a crash that prevented the latest index from being written
+        indexFile.bytes = staleIndex
+        open()
+
+        expect:
+        cache.get("a") == null
+        cache.get("b") == 2
+    }
+
+    def "discards partially written entry at the end of the log"() {
+        cache.put("a", 1)
+        cache.put("b", 2)
+        cache.close()
+        def length = logFile.length()
+        logFile << ([0, 0, 0, 20, 1, 2, 3] as byte[])
+
+        when:
+        open()
+
+        then:
+        cache.get("a") == 1
+        cache.get("b") == 2
+        logFile.length() == length
+    }
+
+    def "compacts the log when most records have been replaced"() {
+        def largeValueCache = new AppendOnlyLogPersistentIndexedCache<String, String>(tmpDir.file("large.log"), tmpDir.file("large.index"), new DefaultSerializer<String>(), new DefaultSerializer<String>())
+        def padding = "x" * 200
+
+        when:
+        5.times { round ->
+            (0..<2000).each { largeValueCache.put("key-$it".toString(), "$padding-$round-$it".toString()) }
+        }
+        largeValueCache.close()
+
+        then:
+        tmpDir.file("large.log").length() < 2000 * 400
+
+        when:
+        largeValueCache = new AppendOnlyLogPersistentIndexedCache<String, String>(tmpDir.file("large.log"), tmpDir.file("large.index"), new DefaultSerializer<String>(), new DefaultSerializer<String>())
+
+        then:
+        largeValueCache.get("key-0") == "$padding-4-0"
+        largeValueCache.get("key-1999") == "$padding-4-1999"
+
+        cleanup:
+        largeValueCache?.close()
+    }
+
+    def "writes the index when suspended and the log has changed"() {
+        cache.put("a", 1)
+
+        when:
+        cache.suspend()
+
+        then:
+        indexFile.exists()
+
+        when:
+        indexFile.delete()
+        cache.resume(false)
+        cache.suspend()
+
+        then:
+        !indexFile.exists()
+
+        when:
+        cache.resume(false)
+        cache.put("b", 2)
+        cache.suspend()
+        def other = new AppendOnlyLogPersistentIndexedCache<String, Integer>(logFile, indexFile, new DefaultSerializer<String>(), new DefaultSerializer<Integer>())
+
+        then:
+        indexFile.exists()
+        other.get("a") == 1
+        other.get("b") == 2
+
+        cleanup:
+        other?.close()
+    }
+
+    def "replays entries appended by another process while suspended"() {
+        cache.put("a", 1)
+        cache.suspend()
+        def other = new AppendOnlyLogPersistentIndexedCache<String, Integer>(logFile, indexFile, new DefaultSerializer<String>(), new DefaultSerializer<Integer>())
+        other.put("b", 2)
+        other.remove("a")
+        other.suspend()
+
+        when:
+        cache.resume(true)
+
+        then:
+        cache.get("a") == null
+        cache.get("b") == 2
+
+        cleanup:
+        other.close()
+    }
+
+    def "reads the log again when another process has compacted it while suspended"() {
+        def padding = "x" * 200
+        def largeValueCache = new AppendOnlyLogPersistentIndexedCache<String, String>(tmpDir.file("large.log"), tmpDir.file("large.index"), new DefaultSerializer<String>(), new DefaultSerializer<String>())
+        largeValueCache.put("a", "a")
+        largeValueCache.suspend()
+        def other = new AppendOnlyLogPersistentIndexedCache<String, String>(tmpDir.file("large.log"), tmpDir.file("large.index"), new DefaultSerializer<String>(), new DefaultSerializer<String>())
+        5.times { round ->
+            (0..<2000).each { other.put("key-$it".toString(), "$padding-$round-$it".toString()) }
+        }
+        other.suspend()
+
+        when:
+        largeValueCache.resume(true)
+
+        then:
+        tmpDir.file("large.log").length() < 2000 * 400
+        largeValueCache.get("a") == "a"
+        largeValueCache.get("key-1999") == "$padding-4-1999"
+
+        cleanup:
+        other?.close()
+        largeValueCache?.close()
+    }
+
+    def "discards log with unknown format"() {
+        cache.put("a", 1)
+        cache.close()
+        logFile.bytes = "not a log file".bytes
+
+        when:
+        open()
+
+        then:
+        cache.get("a") == null
+    }
+}
@@ -20,6 +20,7 @@ import org.gradle.api.internal.changedetection.state.InMemoryCacheDecoratorFacto
 import org.gradle.api.internal.jvm.JvmBinaryRenderer;
 import org.gradle.api.internal.tasks.compile.incremental.cache.DefaultGeneralCompileCaches;
 import org.gradle.api.internal.tasks.compile.incremental.cache.GeneralCompileCaches;
+import org.gradle.api.internal.tasks.compile.incremental.cache.UserHomeScopedCompileCaches;
 import org.gradle.api.invocation.Gradle;
 import org.gradle.cache.CacheRepository;
 import org.gradle.initialization.JdkToolsInitializer;
@@ -31,18 +32,28 @@ public class CompileServices extends AbstractPluginServiceRegistry {
         registration.add(JvmBinaryRenderer.class);
     }
 
+    public void registerGradleUserHomeServices(ServiceRegistration registration) {
+        registration.addProvider(new UserHomeScopeCompileServices());
+    }
+
     public void registerGradleServices(ServiceRegistration registration) {
         registration.addProvider(new GradleScopeCompileServices());
     }
 
+    private static class UserHomeScopeCompileServices {
+        UserHomeScopedCompileCaches createUserHomeScopedCompileCaches(CacheRepository cacheRepository, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory) {
+            return new UserHomeScopedCompileCaches(cacheRepository, inMemoryCacheDecoratorFactory);
+        }
+    }
+
     private static class GradleScopeCompileServices {
         void configure(ServiceRegistration registration, JdkToolsInitializer initializer) {
             // Hackery
             initializer.initializeJdkTools();
         }
 
-        GeneralCompileCaches createGeneralCompileCaches(CacheRepository cacheRepository, Gradle gradle, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory) {
-            return new DefaultGeneralCompileCaches(cacheRepository, gradle, inMemoryCacheDecoratorFactory);
+        GeneralCompileCaches createGeneralCompileCaches(UserHomeScopedCompileCaches userHomeScopedCompileCaches, CacheRepository cacheRepository, Gradle gradle, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory) {
+            return new DefaultGeneralCompileCaches(userHomeScopedCompileCaches, cacheRepository, gradle, inMemoryCacheDecoratorFactory);
         }
     }
 }
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.report;
+
+import org.gradle.api.Action;
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent;
+import org.gradle.api.internal.tasks.testing.junit.result.Binary2JUnitXmlReportGenerator;
+import org.gradle.api.internal.tasks.testing.junit.result.InMemoryTestResultsProvider;
+import org.gradle.api.internal.tasks.testing.junit.result.TestClassResult;
+import org.gradle.api.internal.tasks.testing.junit.result.TestMethodResult;
+import org.gradle.api.internal.tasks.testing.junit.result.TestOutputAssociation;
+import org.gradle.api.internal.tasks.testing.junit.result.TestOutputStore;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.api.tasks.testing.TestResult;
+import org.gradle.initialization.DefaultParallelismConfigurationManager;
+import org.gradle.internal.concurrent.DefaultExecutorFactory;
+import org.gradle.internal.concurrent.DefaultParallelismConfiguration;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.event.DefaultListenerManager;
+import org.gradle.internal.operations.BuildOperation;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.BuildOperationQueue;
+import org.gradle.internal.operations.BuildOperationWorker;
+import org.gradle.internal.operations.CallableBuildOperation;
+import org.gradle.internal.operations.DefaultBuildOperationQueueFactory;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.progress.BuildOperationState;
+import org.gradle.internal.resources.DefaultResourceLockCoordinationService;
+import org.gradle.internal.work.DefaultWorkerLeaseService;
+import org.gradle.util.GFileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates the HTML and JUnit XML test reports for a synthetic result set of 50,000 tests, with a varying number of report workers.
+ * Tests write output to stdout, some of them a lot, and a few fail.
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.SingleShotTime)
+@State(Scope.Benchmark)
+public class TestReportGenerationBenchmark {
+    private static final int CLASS_COUNT = 2500;
+    private static final int TESTS_PER_CLASS = 20;
+    private static final int FAILURE_PERCENTAGE = 1;
+    private static final int VERBOSE_TEST_PERCENTAGE = 5;
+
+    @Param({"1", "4", "8"})
+    int workers;
+
+    File resultsDir;
+    List<TestClassResult> results;
+    TestOutputStore outputStore;
+    InMemoryTestResultsProvider resultsProvider;
+    DefaultExecutorFactory executorFactory;
+    DefaultWorkerLeaseService workerLeaseService;
+    BuildOperationExecutor buildOperationExecutor;
+
+    @Setup(Level.Trial)
+    public void createResults() throws IOException {
+        resultsDir = File.createTempFile("test-results", "");
+        GFileUtils.forceDelete(resultsDir);
+        GFileUtils.mkdirs(resultsDir);
+
+        Random random = new Random(42);
+        results = new ArrayList<TestClassResult>(CLASS_COUNT);
+        outputStore = new TestOutputStore(resultsDir);
+        TestOutputStore.Writer writer = outputStore.writer();
+        long testId = 0;
+        for (int classId = 1; classId <= CLASS_COUNT; classId++) {
+            TestClassResult classResult = new TestClassResult(classId, "org.gradle.benchmark.package" + classId % 50 + ".SomeTest" + classId, 0);
+            for (int i = 0; i < TESTS_PER_CLASS; i++) {
+                testId++;
+                boolean failed = random.nextInt(100) < FAILURE_PERCENTAGE;
+                TestMethodResult methodResult = new TestMethodResult(testId, "test" + i, failed ? TestResult.ResultType.FAILURE : TestResult.ResultType.SUCCESS, random.nextInt(1000), 0);
+                if (failed) {
+                    methodResult.addFailure("expected:<1> but was:<2>", "java.lang.AssertionError: expected:<1> but was:<2>\n\tat org.gradle.benchmark.SomeTest.test(SomeTest.java:42)\n", "java.lang.AssertionError");
+                }
+                classResult.add(methodResult);
+                int lines = random.nextInt(100) < VERBOSE_TEST_PERCENTAGE ? 1000 : 5;
+                for (int line = 0; line < lines; line++) {
+                    writer.onOutput(classId, testId, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "Some <output> from test " + testId + " & line " + line + "\n"));
+                }
+            }
+            results.add(classResult);
+        }
+        writer.close();
+        resultsProvider = new InMemoryTestResultsProvider(results, outputStore);
+
+        executorFactory = new DefaultExecutorFactory();
+        DefaultParallelismConfigurationManager parallelismConfigurationManager = new DefaultParallelismConfigurationManager(new DefaultListenerManager());
+        parallelismConfigurationManager.setParallelismConfiguration(new DefaultParallelismConfiguration(false, workers));
+        workerLeaseService = new DefaultWorkerLeaseService(new DefaultResourceLockCoordinationService(), parallelismConfigurationManager);
+        buildOperationExecutor = new QueueBackedBuildOperationExecutor(new DefaultBuildOperationQueueFactory(workerLeaseService), executorFactory.create("report generation", workers));
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteResults() throws IOException {
+        resultsProvider.close();
+        workerLeaseService.stop();
+        executorFactory.stop();
+        GFileUtils.forceDelete(resultsDir);
+    }
+
+    @Benchmark
+    public void htmlReport() {
+        new DefaultTestReport(buildOperationExecutor).generateReport(resultsProvider, new File(resultsDir, "html"));
+    }
+
+    @Benchmark
+    public void junitXmlReport() {
+        File xmlDir = new File(resultsDir, "xml");
+        GFileUtils.mkdirs(xmlDir);
+        new Binary2JUnitXmlReportGenerator(xmlDir, resultsProvider, TestOutputAssociation.WITH_SUITE, buildOperationExecutor, "localhost").generate();
+    }
+
+    /**
+     * Runs operations on a {@link BuildOperationQueue} without any of the progress and listener infrastructure.
+     */
+    private static class QueueBackedBuildOperationExecutor implements BuildOperationExecutor {
+        private final DefaultBuildOperationQueueFactory queueFactory;
+        private final ManagedExecutor executor;
+
+        QueueBackedBuildOperationExecutor(DefaultBuildOperationQueueFactory queueFactory, ManagedExecutor executor) {
+            this.queueFactory = queueFactory;
+            this.executor = executor;
+        }
+
+        @Override
+        public void run(RunnableBuildOperation buildOperation) {
+            buildOperation.run(NoOpBuildOperationContext.INSTANCE);
+        }
+
+        @Override
+        public <T> T call(CallableBuildOperation<T> buildOperation) {
+            return buildOperation.call(NoOpBuildOperationContext.INSTANCE);
+        }
+
+        @Override
+        public <O extends RunnableBuildOperation> void runAll(Action<BuildOperationQueue<O>> schedulingAction) {
+            runAll(new BuildOperationWorker<O>() {
+                @Override
+                public String getDisplayName() {
+                    return "runnable build operation";
+                }
+
+                @Override
+                public void execute(O buildOperation, BuildOperationContext context) {
+                    buildOperation.run(context);
+                }
+            }, schedulingAction);
+        }
+
+        @Override
+        public <O extends BuildOperation> void runAll(final BuildOperationWorker<O> worker, Action<BuildOperationQueue<O>> schedulingAction) {
+            BuildOperationQueue<O> queue = queueFactory.create(executor, new BuildOperationQueue.QueueWorker<O>() {
+                @Override
+                public String getDisplayName() {
+                    return worker.getDisplayName();
+                }
+
+                @Override
+                public void execute(O buildOperation) {
+                    worker.execute(buildOperation, NoOpBuildOperationContext.INSTANCE);
+                }
+            });
+            schedulingAction.execute(queue);
+            queue.waitForCompletion();
+        }
+
+        @Override
+        public BuildOperationState getCurrentOperation() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private enum NoOpBuildOperationContext implements BuildOperationContext {
+        INSTANCE;
+
+        @Override
+        public void failed(Throwable failure) {
+        }
+
+        @Override
+        public void setResult(Object result) {
+        }
+
+        @Override
+        public void setStatus(String status) {
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing;
+
+/**
+ * Notified when a {@link TestClassProcessor} has finished with the test classes given to it.
+ */
+public interface TestClassProcessedListener {
+    /**
+     * The processor has finished with the given test class and can accept another. Test frameworks that run all tests when the processor is stopped
+     * finish with each test class as soon as it is received.
+     */
+    void testClassProcessed(String testClassName);
+
+    /**
+     * The processor will never finish with the given test class, for example because its worker process has stopped unexpectedly.
+     */
+    void testClassAbandoned(String testClassName);
+}
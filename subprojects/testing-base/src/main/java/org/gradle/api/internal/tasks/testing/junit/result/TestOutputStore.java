@@ -16,28 +16,58 @@
 
 package org.gradle.api.internal.tasks.testing.junit.result;
 
-import com.esotericsoftware.kryo.io.Input;
-import com.esotericsoftware.kryo.io.Output;
-import com.google.common.collect.ImmutableMap;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.api.tasks.testing.TestOutputEvent;
-import org.gradle.internal.io.RandomAccessFileInputStream;
-import org.gradle.internal.UncheckedException;
-import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
-import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
-
-import java.io.*;
+import org.gradle.internal.os.OperatingSystem;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Stores the output of tests in a data file and an index file.
+ *
+ * <p>The data file holds one record per output event. Each record holds the test id, the offset of the next record for the same test class and destination,
+ * and the message. The records of each test class and destination form a chain, so that the output of a test class can be read without visiting the output
+ * of other test classes. The index file holds the offsets of the first record of each chain, sorted by test class id.</p>
+ *
+ * <p>A reader can be shared by several threads. The data file is memory-mapped unless this store has been created without memory mapping.
+ * A file that is mapped cannot be deleted on Windows until the mapping has been garbage collected, so memory mapping is not used there by default.</p>
+ */
 public class TestOutputStore {
+    private static final int TEST_ID = 0;
+    private static final int NEXT = 8;
+    private static final int LENGTH = 16;
+    private static final int RECORD_HEADER_SIZE = 20;
+    private static final int INDEX_HEADER_SIZE = 4;
+    private static final int INDEX_ENTRY_SIZE = 24;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final int MAPPED_REGION_SHIFT = 30;
+    private static final long MAPPED_REGION_SIZE = 1L << MAPPED_REGION_SHIFT;
 
     private final File resultsDir;
     private final Charset messageStorageCharset;
+    private final boolean memoryMapped;
 
     public TestOutputStore(File resultsDir) {
+        this(resultsDir, !OperatingSystem.current().isWindows());
+    }
+
+    public TestOutputStore(File resultsDir, boolean memoryMapped) {
         this.resultsDir = resultsDir;
+        this.memoryMapped = memoryMapped;
         this.messageStorageCharset = Charset.forName("UTF-8");
     }
 
@@ -49,42 +79,36 @@ public class TestOutputStore {
         return new File(resultsDir, getOutputsFile().getName() + ".idx");
     }
 
-    private static class Region {
-        long start;
-        long stop;
-
-        private Region() {
-            start = -1;
-            stop = -1;
-        }
-
-        private Region(long start, long stop) {
-            this.start = start;
-            this.stop = stop;
-        }
-    }
-
-    private static class TestCaseRegion {
-        Region stdOutRegion = new Region();
-        Region stdErrRegion = new Region();
-    }
-
     public class Writer implements Closeable {
-        private final KryoBackedEncoder output;
+        private final RandomAccessFile outputFile;
+        private final FileChannel output;
+        private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        private long bufferStart;
 
-        private final Map<Long, Map<Long, TestCaseRegion>> index = new LinkedHashMap<Long, Map<Long, TestCaseRegion>>();
+        // The offsets of the first and last stdout records and the first and last stderr records of each test class
+        private final Map<Long, long[]> chains = new HashMap<Long, long[]>();
 
         public Writer() {
             try {
-                output = new KryoBackedEncoder(new FileOutputStream(getOutputsFile()));
-            } catch (FileNotFoundException e) {
+                outputFile = new RandomAccessFile(getOutputsFile(), "rw");
+                outputFile.setLength(0);
+            } catch (IOException e) {
                 throw new UncheckedIOException(e);
             }
+            output = outputFile.getChannel();
         }
 
         @Override
         public void close() {
-            output.close();
+            try {
+                try {
+                    flush();
+                } finally {
+                    outputFile.close();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
             writeIndex();
         }
 
@@ -94,75 +118,97 @@ public class TestOutputStore {
 
         public void onOutput(long classId, long testId, TestOutputEvent outputEvent) {
             boolean stdout = outputEvent.getDestination() == TestOutputEvent.Destination.StdOut;
-            mark(classId, testId, stdout);
-
-            output.writeBoolean(stdout);
-            output.writeSmallLong(classId);
-            output.writeSmallLong(testId);
-
-            byte[] bytes;
+            byte[] bytes = outputEvent.getMessage().getBytes(messageStorageCharset);
             try {
-                bytes = outputEvent.getMessage().getBytes(messageStorageCharset.name());
-            } catch (UnsupportedEncodingException e) {
-                throw UncheckedException.throwAsUncheckedException(e);
+                if (buffer.remaining() < RECORD_HEADER_SIZE) {
+                    flush();
+                }
+                link(classId, stdout, bufferStart + buffer.position());
+                buffer.putLong(testId);
+                buffer.putLong(-1);
+                buffer.putInt(bytes.length);
+                write(bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-            output.writeSmallInt(bytes.length);
-            output.writeBytes(bytes, 0, bytes.length);
         }
 
-        private void mark(long classId, long testId, boolean isStdout) {
-            if (!index.containsKey(classId)) {
-                index.put(classId, new LinkedHashMap<Long, TestCaseRegion>());
+        private void link(long classId, boolean stdout, long offset) throws IOException {
+            long[] chain = chains.get(classId);
+            if (chain == null) {
+                chain = new long[]{-1, -1, -1, -1};
+                chains.put(classId, chain);
             }
+            int first = stdout ? 0 : 2;
+            if (chain[first] < 0) {
+                chain[first] = offset;
+            } else {
+                patchNext(chain[first + 1], offset);
+            }
+            chain[first + 1] = offset;
+        }
 
-            Map<Long, TestCaseRegion> testCaseRegions = index.get(classId);
-            if (!testCaseRegions.containsKey(testId)) {
-                TestCaseRegion region = new TestCaseRegion();
-                testCaseRegions.put(testId, region);
+        private void patchNext(long record, long next) throws IOException {
+            long position = record + NEXT;
+            if (position >= bufferStart) {
+                buffer.putLong((int) (position - bufferStart), next);
+            } else {
+                ByteBuffer value = ByteBuffer.allocate(8);
+                value.putLong(next);
+                value.flip();
+                writeFully(value, position);
             }
+        }
 
-            TestCaseRegion region = testCaseRegions.get(testId);
+        private void write(byte[] bytes) throws IOException {
+            if (bytes.length > buffer.remaining()) {
+                flush();
+                if (bytes.length > buffer.capacity()) {
+                    writeFully(ByteBuffer.wrap(bytes), bufferStart);
+                    bufferStart += bytes.length;
+                    return;
+                }
+            }
+            buffer.put(bytes);
+        }
 
-            Region streamRegion = isStdout ? region.stdOutRegion : region.stdErrRegion;
+        private void flush() throws IOException {
+            buffer.flip();
+            writeFully(buffer, bufferStart);
+            bufferStart += buffer.limit();
+            buffer.clear();
+        }
 
-            int total = output.getWritePosition();
-            if (streamRegion.start < 0) {
-                streamRegion.start = total;
+        private void writeFully(ByteBuffer source, long position) throws IOException {
+            int start = source.position();
+            while (source.hasRemaining()) {
+                output.write(source, position + source.position() - start);
             }
-            streamRegion.stop = total;
         }
 
         private void writeIndex() {
-            Output indexOutput;
-            try {
-                indexOutput = new Output(new FileOutputStream(getIndexFile()));
-            } catch (FileNotFoundException e) {
-                throw new UncheckedIOException(e);
+            long[] classIds = new long[chains.size()];
+            int i = 0;
+            for (Long classId : chains.keySet()) {
+                classIds[i++] = classId;
             }
-
+            Arrays.sort(classIds);
 
             try {
-                indexOutput.writeInt(index.size(), true);
-
-                for (Map.Entry<Long, Map<Long, TestCaseRegion>> classEntry : index.entrySet()) {
-                    Long classId = classEntry.getKey();
-                    Map<Long, TestCaseRegion> regions = classEntry.getValue();
-
-                    indexOutput.writeLong(classId, true);
-                    indexOutput.writeInt(regions.size(), true);
-
-                    for (Map.Entry<Long, TestCaseRegion> testCaseEntry : regions.entrySet()) {
-                        long id = testCaseEntry.getKey();
-                        TestCaseRegion region = testCaseEntry.getValue();
-                        indexOutput.writeLong(id, true);
-                        indexOutput.writeLong(region.stdOutRegion.start);
-                        indexOutput.writeLong(region.stdOutRegion.stop);
-                        indexOutput.writeLong(region.stdErrRegion.start);
-                        indexOutput.writeLong(region.stdErrRegion.stop);
+                DataOutputStream indexOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(getIndexFile())));
+                try {
+                    indexOutput.writeInt(classIds.length);
+                    for (long classId : classIds) {
+                        long[] chain = chains.get(classId);
+                        indexOutput.writeLong(classId);
+                        indexOutput.writeLong(chain[0]);
+                        indexOutput.writeLong(chain[2]);
                     }
+                } finally {
+                    indexOutput.close();
                 }
-            } finally {
-                indexOutput.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
         }
     }
@@ -171,55 +217,11 @@ public class TestOutputStore {
         return new Writer();
     }
 
-    private static class Index {
-        final ImmutableMap<Long, Index> children;
-        final Region stdOut;
-        final Region stdErr;
-
-        private Index(Region stdOut, Region stdErr) {
-            this.children = ImmutableMap.of();
-            this.stdOut = stdOut;
-            this.stdErr = stdErr;
-        }
-
-        private Index(ImmutableMap<Long, Index> children, Region stdOut, Region stdErr) {
-            this.children = children;
-            this.stdOut = stdOut;
-            this.stdErr = stdErr;
-        }
-    }
-
-    private static class IndexBuilder {
-        final Region stdOut = new Region();
-        final Region stdErr = new Region();
-
-        private final ImmutableMap.Builder<Long, Index> children = ImmutableMap.builder();
-
-        void add(long key, Index index) {
-            if (stdOut.start < 0) {
-                stdOut.start = index.stdOut.start;
-            }
-            if (stdErr.start < 0) {
-                stdErr.start = index.stdErr.start;
-            }
-            if (index.stdOut.stop > stdOut.stop) {
-                stdOut.stop = index.stdOut.stop;
-            }
-            if (index.stdErr.stop > stdErr.stop) {
-                stdErr.stop = index.stdErr.stop;
-            }
-
-            children.put(key, index);
-        }
-
-        Index build() {
-            return new Index(children.build(), stdOut, stdErr);
-        }
-    }
-
     public class Reader implements Closeable {
-        private final Index index;
+        private final ByteBuffer index;
         private final RandomAccessFile dataFile;
+        private final FileChannel data;
+        private final ByteBuffer[] mappedRegions;
 
         public Reader() {
             File indexFile = getIndexFile();
@@ -230,41 +232,21 @@ public class TestOutputStore {
                     throw new IllegalStateException(String.format("Test outputs data file '%s' exists but the index file '%s' does not", outputsFile, indexFile));
                 }
 
-                Input input;
                 try {
-                    input = new Input(new FileInputStream(indexFile));
-                } catch (FileNotFoundException e) {
+                    index = readIndex(indexFile);
+                    dataFile = new RandomAccessFile(outputsFile, "r");
+                } catch (IOException e) {
                     throw new UncheckedIOException(e);
                 }
-
-                IndexBuilder rootBuilder = null;
+                data = dataFile.getChannel();
                 try {
-                    int numClasses = input.readInt(true);
-                    rootBuilder = new IndexBuilder();
-
-                    for (int classCounter = 0; classCounter < numClasses; ++classCounter) {
-                        long classId = input.readLong(true);
-                        IndexBuilder classBuilder = new IndexBuilder();
-
-                        int numEntries = input.readInt(true);
-                        for (int entryCounter = 0; entryCounter < numEntries; ++entryCounter) {
-                            long testId = input.readLong(true);
-                            Region stdOut = new Region(input.readLong(), input.readLong());
-                            Region stdErr = new Region(input.readLong(), input.readLong());
-                            classBuilder.add(testId, new Index(stdOut, stdErr));
-                        }
-
-                        rootBuilder.add(classId, classBuilder.build());
+                    mappedRegions = memoryMapped ? map(data) : null;
+                } catch (IOException e) {
+                    try {
+                        dataFile.close();
+                    } catch (IOException ignored) {
+                        // Report the original failure
                     }
-                } finally {
-                    input.close();
-                }
-
-                index = rootBuilder.build();
-
-                try {
-                    dataFile = new RandomAccessFile(getOutputsFile(), "r");
-                } catch (FileNotFoundException e) {
                     throw new UncheckedIOException(e);
                 }
             } else { // no outputs file
@@ -274,7 +256,34 @@ public class TestOutputStore {
 
                 index = null;
                 dataFile = null;
+                data = null;
+                mappedRegions = null;
+            }
+        }
+
+        private ByteBuffer readIndex(File indexFile) throws IOException {
+            RandomAccessFile file = new RandomAccessFile(indexFile, "r");
+            try {
+                byte[] bytes = new byte[(int) file.length()];
+                file.readFully(bytes);
+                ByteBuffer index = ByteBuffer.wrap(bytes);
+                if (bytes.length < INDEX_HEADER_SIZE || bytes.length != INDEX_HEADER_SIZE + index.getInt(0) * INDEX_ENTRY_SIZE) {
+                    throw new IllegalStateException(String.format("Test outputs index file '%s' is corrupt", indexFile));
+                }
+                return index;
+            } finally {
+                file.close();
+            }
+        }
+
+        private ByteBuffer[] map(FileChannel channel) throws IOException {
+            long size = channel.size();
+            ByteBuffer[] regions = new ByteBuffer[(int) ((size + MAPPED_REGION_SIZE - 1) >>> MAPPED_REGION_SHIFT)];
+            for (int i = 0; i < regions.length; i++) {
+                long position = (long) i << MAPPED_REGION_SHIFT;
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPED_REGION_SIZE, size - position));
             }
+            return regions;
         }
 
         @Override
@@ -285,17 +294,7 @@ public class TestOutputStore {
         }
 
         public boolean hasOutput(long classId, TestOutputEvent.Destination destination) {
-            if (dataFile == null) {
-                return false;
-            }
-
-            Index classIndex = index.children.get(classId);
-            if (classIndex == null) {
-                return false;
-            } else {
-                Region region = destination == TestOutputEvent.Destination.StdOut ? classIndex.stdOut : classIndex.stdErr;
-                return region.start >= 0;
-            }
+            return firstRecord(classId, destination) >= 0;
         }
 
         public void writeAllOutput(long classId, TestOutputEvent.Destination destination, java.io.Writer writer) {
@@ -310,75 +309,79 @@ public class TestOutputStore {
             doRead(classId, testId, false, destination, writer);
         }
 
-        private void doRead(long classId, long testId, boolean allClassOutput, TestOutputEvent.Destination destination, java.io.Writer writer) {
-            if (dataFile == null) {
-                return;
-            }
-
-            Index targetIndex = index.children.get(classId);
-            if (targetIndex != null && testId != 0) {
-                targetIndex = targetIndex.children.get(testId);
-            }
-
-            if (targetIndex == null) {
-                return;
+        /**
+         * Returns the offset of the first record of the given test class and destination, or -1 when there is none.
+         */
+        private long firstRecord(long classId, TestOutputEvent.Destination destination) {
+            if (index == null) {
+                return -1;
             }
-
-            boolean stdout = destination == TestOutputEvent.Destination.StdOut;
-            Region region = stdout ? targetIndex.stdOut : targetIndex.stdErr;
-
-            if (region.start < 0) {
-                return;
+            int low = 0;
+            int high = index.getInt(0) - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int entry = INDEX_HEADER_SIZE + middle * INDEX_ENTRY_SIZE;
+                long entryClassId = index.getLong(entry);
+                if (entryClassId < classId) {
+                    low = middle + 1;
+                } else if (entryClassId > classId) {
+                    high = middle - 1;
+                } else {
+                    return index.getLong(entry + (destination == TestOutputEvent.Destination.StdOut ? 8 : 16));
+                }
             }
+            return -1;
+        }
 
-            boolean ignoreClassLevel = !allClassOutput && testId != 0;
-            boolean ignoreTestLevel = !allClassOutput && testId == 0;
-
+        private void doRead(long classId, long testId, boolean allClassOutput, TestOutputEvent.Destination destination, java.io.Writer writer) {
+            long record = firstRecord(classId, destination);
+            byte[] header = new byte[RECORD_HEADER_SIZE];
+            ByteBuffer headerBuffer = ByteBuffer.wrap(header);
             try {
-                dataFile.seek(region.start);
-                long maxPos = region.stop - region.start;
-                KryoBackedDecoder decoder = new KryoBackedDecoder(new RandomAccessFileInputStream(dataFile));
-                while (decoder.getReadPosition() <= maxPos) {
-                    boolean readStdout = decoder.readBoolean();
-                    long readClassId = decoder.readSmallLong();
-                    long readTestId = decoder.readSmallLong();
-                    int readLength = decoder.readSmallInt();
-
-                    boolean isClassLevel = readTestId == 0;
-
-                    if (stdout != readStdout || classId != readClassId) {
-                        decoder.skipBytes(readLength);
-                        continue;
+                while (record >= 0) {
+                    read(record, header, RECORD_HEADER_SIZE);
+                    long readTestId = headerBuffer.getLong(TEST_ID);
+                    int length = headerBuffer.getInt(LENGTH);
+                    // Class level output has no test id
+                    boolean include = allClassOutput || (testId == 0 ? readTestId == 0 : readTestId == testId);
+                    if (include) {
+                        byte[] message = new byte[length];
+                        read(record + RECORD_HEADER_SIZE, message, length);
+                        writer.write(new String(message, messageStorageCharset));
                     }
+                    record = headerBuffer.getLong(NEXT);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
 
-                    if (ignoreClassLevel && isClassLevel) {
-                        decoder.skipBytes(readLength);
-                        continue;
+        private void read(long position, byte[] target, int length) throws IOException {
+            if (mappedRegions != null) {
+                int offset = 0;
+                while (offset < length) {
+                    int regionIndex = (int) (position >>> MAPPED_REGION_SHIFT);
+                    if (regionIndex >= mappedRegions.length) {
+                        throw new EOFException();
                     }
-
-                    if (ignoreTestLevel && !isClassLevel) {
-                        decoder.skipBytes(readLength);
-                        continue;
+                    // Read through a duplicate, as the position of a buffer is shared by all threads
+                    ByteBuffer region = mappedRegions[regionIndex].duplicate();
+                    region.position((int) (position & (MAPPED_REGION_SIZE - 1)));
+                    int count = Math.min(length - offset, region.remaining());
+                    if (count == 0) {
+                        throw new EOFException();
                     }
-
-                    if (testId == 0 || testId == readTestId) {
-                        byte[] stringBytes = new byte[readLength];
-                        decoder.readBytes(stringBytes);
-                        String message;
-                        try {
-                            message = new String(stringBytes, messageStorageCharset.name());
-                        } catch (UnsupportedEncodingException e) {
-                            // shouldn't happen
-                            throw UncheckedException.throwAsUncheckedException(e);
-                        }
-
-                        writer.write(message);
-                    } else {
-                        decoder.skipBytes(readLength);
+                    region.get(target, offset, count);
+                    offset += count;
+                    position += count;
+                }
+            } else {
+                ByteBuffer buffer = ByteBuffer.wrap(target, 0, length);
+                while (buffer.hasRemaining()) {
+                    if (data.read(buffer, position + buffer.position()) < 0) {
+                        throw new EOFException();
                     }
                 }
-            } catch (IOException e1) {
-                throw new UncheckedIOException(e1);
             }
         }
     }
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.processors;
+
+import org.gradle.api.Transformer;
+import org.gradle.api.internal.tasks.testing.TestClassProcessedListener;
+import org.gradle.api.internal.tasks.testing.TestClassProcessor;
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.actor.Actor;
+import org.gradle.internal.actor.ActorFactory;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.dispatch.DispatchException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Manages a set of parallel TestClassProcessors. Each processor is given one test class at a time, and is given the next one only once it has finished
+ * with the previous one. The test classes waiting for a processor are handed out longest first, using the durations of the test classes in a previous
+ * run, so that the processors finish at around the same time. Test classes without a previous duration are assumed to take the average time.
+ *
+ * <p>The processors must notify the {@link TestClassProcessedListener} passed to the factory when they have finished with each test class.</p>
+ */
+public class DurationBalancedTestClassProcessor implements TestClassProcessor, TestClassProcessedListener {
+    /**
+     * The system property that enables this processor for test tasks that run tests in parallel.
+     */
+    public static final String ENABLED_PROPERTY = "org.gradle.internal.durationBalancedTestForks";
+
+    private final int maxProcessors;
+    private final Transformer<TestClassProcessor, TestClassProcessedListener> factory;
+    private final ActorFactory actorFactory;
+    private final Map<String, Long> previousDurations;
+    private final long defaultDuration;
+    private final Lock lock = new ReentrantLock();
+    private final Condition processorAvailable = lock.newCondition();
+    private final PriorityQueue<PendingTestClass> pendingTestClasses = new PriorityQueue<PendingTestClass>();
+    private final Deque<TestClassProcessor> idleProcessors = new ArrayDeque<TestClassProcessor>();
+    private final Map<String, TestClassProcessor> runningTestClasses = new HashMap<String, TestClassProcessor>();
+    private final List<TestClassProcessor> processors = new ArrayList<TestClassProcessor>();
+    private final List<Actor> actors = new ArrayList<Actor>();
+    private TestResultProcessor resultProcessor;
+    private Actor resultProcessorActor;
+    private int failedProcessors;
+    private long received;
+
+    /**
+     * @param previousDurations the durations in milliseconds of the test classes in a previous run, keyed by test class name.
+     */
+    public DurationBalancedTestClassProcessor(int maxProcessors, Transformer<TestClassProcessor, TestClassProcessedListener> factory, ActorFactory actorFactory, Map<String, Long> previousDurations) {
+        this.maxProcessors = maxProcessors;
+        this.factory = factory;
+        this.actorFactory = actorFactory;
+        this.previousDurations = previousDurations;
+        this.defaultDuration = average(previousDurations);
+    }
+
+    private static long average(Map<String, Long> durations) {
+        if (durations.isEmpty()) {
+            return 0;
+        }
+        long total = 0;
+        for (Long duration : durations.values()) {
+            total += duration;
+        }
+        return total / durations.size();
+    }
+
+    @Override
+    public void startProcessing(TestResultProcessor resultProcessor) {
+        // Create a processor that processes events in its own thread
+        resultProcessorActor = actorFactory.createActor(resultProcessor);
+        this.resultProcessor = resultProcessorActor.getProxy(TestResultProcessor.class);
+    }
+
+    @Override
+    public void processTestClass(TestClassRunInfo testClass) {
+        Long duration = previousDurations.get(testClass.getTestClassName());
+        lock.lock();
+        try {
+            pendingTestClasses.add(new PendingTestClass(testClass, duration != null ? duration : defaultDuration, received++));
+            dispatchPendingTestClasses();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void testClassProcessed(String testClassName) {
+        lock.lock();
+        try {
+            TestClassProcessor processor = runningTestClasses.remove(testClassName);
+            if (processor != null) {
+                idleProcessors.add(processor);
+                dispatchPendingTestClasses();
+            }
+            processorAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void testClassAbandoned(String testClassName) {
+        lock.lock();
+        try {
+            // The processor has failed, and the failure is reported when it is stopped. Leave the remaining test classes to the other processors
+            if (runningTestClasses.remove(testClassName) != null) {
+                failedProcessors++;
+            }
+            processorAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void dispatchPendingTestClasses() {
+        while (!pendingTestClasses.isEmpty()) {
+            TestClassProcessor processor = idleProcessors.poll();
+            if (processor == null) {
+                if (processors.size() >= maxProcessors) {
+                    return;
+                }
+                processor = startProcessor();
+            }
+            TestClassRunInfo testClass = pendingTestClasses.poll().testClass;
+            runningTestClasses.put(testClass.getTestClassName(), processor);
+            processor.processTestClass(testClass);
+        }
+    }
+
+    private TestClassProcessor startProcessor() {
+        TestClassProcessor processor = new AbandoningTestClassProcessor(factory.transform(this));
+        Actor actor = actorFactory.createActor(processor);
+        processor = actor.getProxy(TestClassProcessor.class);
+        actors.add(actor);
+        processors.add(processor);
+        processor.startProcessing(resultProcessor);
+        return processor;
+    }
+
+    @Override
+    public void stop() {
+        lock.lock();
+        try {
+            while (!pendingTestClasses.isEmpty() && failedProcessors < processors.size()) {
+                processorAvailable.await();
+            }
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } finally {
+            lock.unlock();
+        }
+        try {
+            CompositeStoppable.stoppable(processors).add(actors).add(resultProcessorActor).stop();
+        } catch (DispatchException e) {
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        }
+    }
+
+    /**
+     * Abandons a test class that the target processor fails to accept, so that it is not waited for.
+     */
+    private class AbandoningTestClassProcessor implements TestClassProcessor {
+        private final TestClassProcessor delegate;
+
+        AbandoningTestClassProcessor(TestClassProcessor delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void startProcessing(TestResultProcessor resultProcessor) {
+            delegate.startProcessing(resultProcessor);
+        }
+
+        @Override
+        public void processTestClass(TestClassRunInfo testClass) {
+            try {
+                delegate.processTestClass(testClass);
+            } catch (RuntimeException e) {
+                testClassAbandoned(testClass.getTestClassName());
+                throw e;
+            }
+        }
+
+        @Override
+        public void stop() {
+            delegate.stop();
+        }
+    }
+
+    private static class PendingTestClass implements Comparable<PendingTestClass> {
+        final TestClassRunInfo testClass;
+        final long duration;
+        final long order;
+
+        PendingTestClass(TestClassRunInfo testClass, long duration, long order) {
+            this.testClass = testClass;
+            this.duration = duration;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(PendingTestClass other) {
+            if (duration != other.duration) {
+                return duration > other.duration ? -1 : 1;
+            }
+            return order < other.order ? -1 : (order == other.order ? 0 : 1);
+        }
+    }
+}
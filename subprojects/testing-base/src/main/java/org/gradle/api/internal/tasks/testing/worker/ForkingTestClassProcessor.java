@@ -18,10 +18,12 @@ package org.gradle.api.internal.tasks.testing.worker;
 
 import org.gradle.api.Action;
 import org.gradle.api.internal.classpath.ModuleRegistry;
+import org.gradle.api.internal.tasks.testing.TestClassProcessedListener;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
+import org.gradle.internal.dispatch.StreamCompletion;
 import org.gradle.internal.remote.ObjectConnection;
 import org.gradle.internal.work.WorkerLeaseRegistry;
 import org.gradle.process.JavaForkOptions;
@@ -30,9 +32,13 @@ import org.gradle.process.internal.worker.WorkerProcessBuilder;
 import org.gradle.process.internal.worker.WorkerProcessFactory;
 import org.gradle.util.CollectionUtils;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 public class ForkingTestClassProcessor implements TestClassProcessor {
     private final WorkerLeaseRegistry.WorkerLease currentWorkerLease;
@@ -42,12 +48,20 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
     private final Iterable<File> classPath;
     private final Action<WorkerProcessBuilder> buildConfigAction;
     private final ModuleRegistry moduleRegistry;
+    private final ProcessedTestClasses processedTestClasses;
     private RemoteTestClassProcessor remoteProcessor;
     private WorkerProcess workerProcess;
     private TestResultProcessor resultProcessor;
     private WorkerLeaseRegistry.WorkerLeaseCompletion completion;
 
     public ForkingTestClassProcessor(WorkerLeaseRegistry.WorkerLease parentWorkerLease, WorkerProcessFactory workerFactory, WorkerTestClassProcessorFactory processorFactory, JavaForkOptions options, Iterable<File> classPath, Action<WorkerProcessBuilder> buildConfigAction, ModuleRegistry moduleRegistry) {
+        this(parentWorkerLease, workerFactory, processorFactory, options, classPath, buildConfigAction, moduleRegistry, null);
+    }
+
+    /**
+     * @param processedListener notified when the worker process has finished with each test class, or null when no notifications are required.
+     */
+    public ForkingTestClassProcessor(WorkerLeaseRegistry.WorkerLease parentWorkerLease, WorkerProcessFactory workerFactory, WorkerTestClassProcessorFactory processorFactory, JavaForkOptions options, Iterable<File> classPath, Action<WorkerProcessBuilder> buildConfigAction, ModuleRegistry moduleRegistry, @Nullable TestClassProcessedListener processedListener) {
         this.currentWorkerLease = parentWorkerLease;
         this.workerFactory = workerFactory;
         this.processorFactory = processorFactory;
@@ -55,6 +69,7 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
         this.classPath = classPath;
         this.buildConfigAction = buildConfigAction;
         this.moduleRegistry = moduleRegistry;
+        this.processedTestClasses = new ProcessedTestClasses(processedListener);
     }
 
     @Override
@@ -69,11 +84,13 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
             remoteProcessor = forkProcess();
         }
 
-        remoteProcessor.processTestClass(testClass);
+        if (processedTestClasses.dispatched(testClass.getTestClassName())) {
+            remoteProcessor.processTestClass(testClass);
+        }
     }
 
     RemoteTestClassProcessor forkProcess() {
-        WorkerProcessBuilder builder = workerFactory.create(new TestWorker(processorFactory));
+        WorkerProcessBuilder builder = workerFactory.create(new TestWorker(processorFactory, processedTestClasses.isEnabled()));
         builder.setBaseName("Gradle Test Executor");
         builder.setImplementationClasspath(getTestWorkerImplementationClasspath());
         builder.applicationClasspath(classPath);
@@ -87,6 +104,7 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
         ObjectConnection connection = workerProcess.getConnection();
         connection.useParameterSerializers(TestEventSerializer.create());
         connection.addIncoming(TestResultProcessor.class, resultProcessor);
+        connection.addIncoming(TestClassProcessedListener.class, processedTestClasses);
         RemoteTestClassProcessor remoteProcessor = connection.addOutgoing(RemoteTestClassProcessor.class);
         connection.connect();
         remoteProcessor.startProcessing();
@@ -125,4 +143,80 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
             }
         }
     }
+
+    /**
+     * Keeps track of the test classes that have been sent to the worker process, so that those it will never finish with can be abandoned
+     * when the connection ends early.
+     */
+    private static class ProcessedTestClasses implements TestClassProcessedListener, StreamCompletion {
+        private final TestClassProcessedListener listener;
+        private final Set<String> inProgress = new LinkedHashSet<String>();
+        private boolean ended;
+
+        ProcessedTestClasses(@Nullable TestClassProcessedListener listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * Returns true when the worker process should notify this object when it has finished with each test class.
+         */
+        boolean isEnabled() {
+            return listener != null;
+        }
+
+        /**
+         * Returns false when the test class cannot be sent to the worker process, as the connection to it has ended.
+         */
+        boolean dispatched(String testClassName) {
+            if (listener == null) {
+                return true;
+            }
+            synchronized (this) {
+                if (!ended) {
+                    inProgress.add(testClassName);
+                    return true;
+                }
+            }
+            listener.testClassAbandoned(testClassName);
+            return false;
+        }
+
+        @Override
+        public void testClassProcessed(String testClassName) {
+            if (listener == null) {
+                return;
+            }
+            synchronized (this) {
+                inProgress.remove(testClassName);
+            }
+            listener.testClassProcessed(testClassName);
+        }
+
+        @Override
+        public void testClassAbandoned(String testClassName) {
+            if (listener == null) {
+                return;
+            }
+            synchronized (this) {
+                inProgress.remove(testClassName);
+            }
+            listener.testClassAbandoned(testClassName);
+        }
+
+        @Override
+        public void endStream() {
+            if (listener == null) {
+                return;
+            }
+            List<String> abandoned;
+            synchronized (this) {
+                ended = true;
+                abandoned = new ArrayList<String>(inProgress);
+                inProgress.clear();
+            }
+            for (String testClassName : abandoned) {
+                listener.testClassAbandoned(testClassName);
+            }
+        }
+    }
 }
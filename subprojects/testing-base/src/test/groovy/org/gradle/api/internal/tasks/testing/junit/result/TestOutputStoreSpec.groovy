@@ -19,6 +19,7 @@ import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent
 import org.gradle.api.internal.tasks.testing.TestDescriptorInternal
 import org.gradle.api.tasks.testing.TestOutputEvent
 import org.gradle.test.fixtures.file.WorkspaceTest
+import spock.lang.Unroll
 
 import static org.gradle.api.tasks.testing.TestOutputEvent.Destination.StdErr
 import static org.gradle.api.tasks.testing.TestOutputEvent.Destination.StdOut
@@ -98,6 +99,63 @@ class TestOutputStoreSpec extends WorkspaceTest {
         reader.close()
     }
 
+    @Unroll
+    def "reads output of a class interleaved with the output of other classes when memory mapped is #memoryMapped"() {
+        def store = new TestOutputStore(testDirectory, memoryMapped)
+        def large = "x" * 100000
+
+        when:
+        def writer = store.writer()
+        writer.onOutput(1, output(StdOut, "[out-1]"))
+        1000.times {
+            writer.onOutput(2, it, output(StdOut, "[other-$it]"))
+            writer.onOutput(1, 1, output(StdOut, "[out-2-$it]"))
+        }
+        writer.onOutput(1, 2, output(StdOut, large))
+        writer.onOutput(1, output(StdOut, "[out-3]"))
+        writer.close()
+        def reader = store.reader()
+
+        then:
+        collectAllOutput(reader, 1, StdOut) == "[out-1]" + (0..<1000).collect { "[out-2-$it]" }.join("") + large + "[out-3]"
+        collectOutput(reader, 1, StdOut) == "[out-1][out-3]"
+        collectOutput(reader, 1, 2, StdOut) == large
+        collectOutput(reader, 2, 999, StdOut) == "[other-999]"
+
+        cleanup:
+        reader?.close()
+
+        where:
+        memoryMapped << [true, false]
+    }
+
+    def "reader can be shared by several threads"() {
+        when:
+        def writer = output.writer()
+        100.times { classId ->
+            10.times { testId ->
+                writer.onOutput(classId, testId + 1, output(StdOut, "[$classId-$testId]"))
+            }
+        }
+        writer.close()
+        def reader = output.reader()
+        def results = Collections.synchronizedMap([:])
+        (0..<4).collect { thread ->
+            Thread.start {
+                100.times { classId ->
+                    results[classId] = collectAllOutput(reader, classId, StdOut)
+                }
+            }
+        }*.join()
+
+        then:
+        results.size() == 100
+        results.every { classId, output -> output == (0..<10).collect { "[$classId-$it]" }.join("") }
+
+        cleanup:
+        reader?.close()
+    }
+
     def DefaultTestOutputEvent output(TestOutputEvent.Destination destination, String msg) {
         new DefaultTestOutputEvent(destination, msg)
     }
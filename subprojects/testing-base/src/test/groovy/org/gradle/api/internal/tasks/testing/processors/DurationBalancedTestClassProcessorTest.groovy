@@ -0,0 +1,181 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.processors
+
+import org.gradle.api.Transformer
+import org.gradle.api.internal.tasks.testing.TestClassProcessedListener
+import org.gradle.api.internal.tasks.testing.TestClassProcessor
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.internal.actor.Actor
+import org.gradle.internal.actor.ActorFactory
+import org.gradle.internal.dispatch.MethodInvocation
+import org.gradle.test.fixtures.concurrent.ConcurrentSpec
+
+class DurationBalancedTestClassProcessorTest extends ConcurrentSpec {
+    def factory = Mock(Transformer)
+    def actorFactory = Stub(ActorFactory) {
+        createActor(_) >> { args -> new DirectActor(args[0]) }
+    }
+    def processor1 = Mock(TestClassProcessor)
+    def processor2 = Mock(TestClassProcessor)
+    def durations = [a: 10L, b: 50L, c: 30L]
+
+    def "hands each processor one test class at a time, longest first"() {
+        def processor = new DurationBalancedTestClassProcessor(2, factory as Transformer<TestClassProcessor, TestClassProcessedListener>, actorFactory, durations)
+        processor.startProcessing(Mock(TestResultProcessor))
+
+        when:
+        processor.processTestClass(test("a"))
+        processor.processTestClass(test("b"))
+        processor.processTestClass(test("c"))
+        processor.processTestClass(test("d"))
+        processor.processTestClass(test("e"))
+
+        then:
+        2 * factory.transform(processor) >>> [processor1, processor2]
+        1 * processor1.processTestClass({ it.testClassName == "a" })
+        1 * processor2.processTestClass({ it.testClassName == "b" })
+        0 * processor1.processTestClass(_)
+        0 * processor2.processTestClass(_)
+
+        when:
+        processor.testClassProcessed("b")
+
+        then:
+        1 * processor2.processTestClass({ it.testClassName == "c" })
+        0 * processor1.processTestClass(_)
+
+        when:
+        processor.testClassProcessed("a")
+        processor.testClassProcessed("c")
+
+        then:
+        1 * processor1.processTestClass({ it.testClassName == "d" })
+        1 * processor2.processTestClass({ it.testClassName == "e" })
+    }
+
+    def "prefers test classes that took longer in the previous run"() {
+        def processor = new DurationBalancedTestClassProcessor(1, factory as Transformer<TestClassProcessor, TestClassProcessedListener>, actorFactory, durations)
+        processor.startProcessing(Mock(TestResultProcessor))
+        factory.transform(processor) >> processor1
+        def received = []
+        processor1.processTestClass(_) >> { TestClassRunInfo testClass -> received << testClass.testClassName }
+
+        when:
+        ["first", "a", "b", "c", "d"].each { processor.processTestClass(test(it)) }
+        ["first", "b", "c", "d", "a"].each { processor.testClassProcessed(it) }
+
+        then:
+        received == ["first", "b", "c", "d", "a"]
+    }
+
+    def "stops processors once all test classes have been handed out"() {
+        def processor = new DurationBalancedTestClassProcessor(1, factory as Transformer<TestClassProcessor, TestClassProcessedListener>, actorFactory, durations)
+        processor.startProcessing(Mock(TestResultProcessor))
+        factory.transform(processor) >> processor1
+        processor.processTestClass(test("a"))
+        processor.processTestClass(test("b"))
+
+        when:
+        async {
+            start {
+                thread.block()
+                instant.processed
+                processor.testClassProcessed("a")
+            }
+            processor.stop()
+            instant.stopped
+        }
+
+        then:
+        instant.stopped > instant.processed
+        1 * processor1.processTestClass({ it.testClassName == "b" })
+        1 * processor1.stop()
+    }
+
+    def "does not wait for test classes that failed processors have abandoned"() {
+        def processor = new DurationBalancedTestClassProcessor(1, factory as Transformer<TestClassProcessor, TestClassProcessedListener>, actorFactory, durations)
+        processor.startProcessing(Mock(TestResultProcessor))
+        factory.transform(processor) >> processor1
+
+        when:
+        processor.processTestClass(test("a"))
+        processor.processTestClass(test("b"))
+        processor.testClassAbandoned("a")
+        processor.stop()
+
+        then:
+        1 * processor1.processTestClass({ it.testClassName == "a" })
+        0 * processor1.processTestClass(_)
+        1 * processor1.stop()
+    }
+
+    def "abandons test class that a processor fails to accept"() {
+        def processor = new DurationBalancedTestClassProcessor(1, factory as Transformer<TestClassProcessor, TestClassProcessedListener>, actorFactory, durations)
+        processor.startProcessing(Mock(TestResultProcessor))
+        factory.transform(processor) >> processor1
+        def failure = new RuntimeException("broken")
+
+        when:
+        processor.processTestClass(test("a"))
+
+        then:
+        1 * processor1.processTestClass(_) >> { throw failure }
+        def e = thrown(RuntimeException)
+        e == failure
+
+        when:
+        processor.processTestClass(test("b"))
+        processor.stop()
+
+        then:
+        0 * processor1.processTestClass(_)
+        1 * processor1.stop()
+    }
+
+    private TestClassRunInfo test(String name) {
+        return Stub(TestClassRunInfo) {
+            getTestClassName() >> name
+        }
+    }
+
+    /**
+     * Dispatches to the target in the calling thread.
+     */
+    private static class DirectActor implements Actor {
+        private final Object target
+
+        DirectActor(Object target) {
+            this.target = target
+        }
+
+        @Override
+        public <T> T getProxy(Class<T> type) {
+            return type.cast(target)
+        }
+
+        @Override
+        void dispatch(MethodInvocation message) {
+            throw new UnsupportedOperationException()
+        }
+
+        @Override
+        void stop() {
+        }
+    }
+}
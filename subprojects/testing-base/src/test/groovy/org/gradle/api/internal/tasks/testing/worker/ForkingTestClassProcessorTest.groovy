@@ -19,6 +19,7 @@ package org.gradle.api.internal.tasks.testing.worker
 import org.gradle.api.Action
 import org.gradle.api.internal.classpath.Module
 import org.gradle.api.internal.classpath.ModuleRegistry
+import org.gradle.api.internal.tasks.testing.TestClassProcessedListener
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory
 import org.gradle.internal.classpath.ClassPath
@@ -76,6 +77,68 @@ class ForkingTestClassProcessorTest extends Specification {
         1 * workerProcessBuilder.setImplementationClasspath(_) >> { assert it[0].size() == 16 }
     }
 
+    def "abandons test classes that the worker has not finished with when the connection ends"() {
+        def listener = Mock(TestClassProcessedListener)
+        def forkingProcessor = new ForkingTestClassProcessor(workerLease, workerProcessFactory, Mock(WorkerTestClassProcessorFactory), Mock(JavaForkOptions), [new File("classpath.jar")], Mock(Action), moduleRegistry, listener)
+        def remoteProcessor = Mock(RemoteTestClassProcessor)
+        def handler = null
+        workerProcessFactory.create(_) >> workerProcessBuilder
+        workerProcessBuilder.build() >> workerProcess
+        workerProcessBuilder.getJavaCommand() >> Stub(JavaExecHandleBuilder)
+        moduleRegistry.getModule(_) >> { module(it[0]) }
+        moduleRegistry.getExternalModule(_) >> { module(it[0]) }
+        workerProcess.getConnection() >> Stub(ObjectConnection) {
+            addOutgoing(RemoteTestClassProcessor) >> remoteProcessor
+            addIncoming(TestClassProcessedListener, _) >> { handler = it[1] }
+        }
+
+        when:
+        forkingProcessor.processTestClass(test("a"))
+        forkingProcessor.processTestClass(test("b"))
+        handler.testClassProcessed("a")
+        handler.endStream()
+        forkingProcessor.processTestClass(test("c"))
+
+        then:
+        1 * remoteProcessor.processTestClass({ it.testClassName == "a" })
+        1 * remoteProcessor.processTestClass({ it.testClassName == "b" })
+        0 * remoteProcessor.processTestClass(_)
+        1 * listener.testClassProcessed("a")
+        1 * listener.testClassAbandoned("b")
+        1 * listener.testClassAbandoned("c")
+        0 * listener._
+    }
+
+    def "forwards test classes abandoned by the worker"() {
+        def listener = Mock(TestClassProcessedListener)
+        def forkingProcessor = new ForkingTestClassProcessor(workerLease, workerProcessFactory, Mock(WorkerTestClassProcessorFactory), Mock(JavaForkOptions), [new File("classpath.jar")], Mock(Action), moduleRegistry, listener)
+        def handler = null
+        workerProcessFactory.create(_) >> workerProcessBuilder
+        workerProcessBuilder.build() >> workerProcess
+        workerProcessBuilder.getJavaCommand() >> Stub(JavaExecHandleBuilder)
+        moduleRegistry.getModule(_) >> { module(it[0]) }
+        moduleRegistry.getExternalModule(_) >> { module(it[0]) }
+        workerProcess.getConnection() >> Stub(ObjectConnection) {
+            addOutgoing(RemoteTestClassProcessor) >> Mock(RemoteTestClassProcessor)
+            addIncoming(TestClassProcessedListener, _) >> { handler = it[1] }
+        }
+
+        when:
+        forkingProcessor.processTestClass(test("a"))
+        handler.testClassAbandoned("a")
+        handler.endStream()
+
+        then:
+        1 * listener.testClassAbandoned("a")
+        0 * listener._
+    }
+
+    def test(String name) {
+        return Stub(TestClassRunInfo) {
+            getTestClassName() >> name
+        }
+    }
+
     def module(String module) {
         return Stub(Module) {
             _ * getImplementationClasspath() >> {
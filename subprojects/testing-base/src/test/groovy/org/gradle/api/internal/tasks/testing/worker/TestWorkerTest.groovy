@@ -17,6 +17,7 @@
 
 package org.gradle.api.internal.tasks.testing.worker
 
+import org.gradle.api.internal.tasks.testing.TestClassProcessedListener
 import org.gradle.api.internal.tasks.testing.TestClassProcessor
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo
 import org.gradle.api.internal.tasks.testing.TestResultProcessor
@@ -38,6 +39,7 @@ public class TestWorkerTest extends ConcurrentSpec {
     def processor = Mock(TestClassProcessor)
     def test = Mock(TestClassRunInfo)
     def resultProcessor = Mock(TestResultProcessor)
+    def processedListener = Mock(TestClassProcessedListener)
     def worker = new TestWorker(factory)
     def serviceRegistry = new DefaultServiceRegistry().add(Clock, Time.clock())
 
@@ -61,6 +63,7 @@ public class TestWorkerTest extends ConcurrentSpec {
         and:
         1 * factory.create(_) >> processor
         1 * connection.addOutgoing(TestResultProcessor) >> resultProcessor
+        0 * connection.addOutgoing(TestClassProcessedListener)
         1 * connection.addIncoming(RemoteTestClassProcessor, worker)
         1 * connection.useParameterSerializers(_)
         1 * connection.connect() >> {
@@ -76,4 +79,38 @@ public class TestWorkerTest extends ConcurrentSpec {
         1 * processor.processTestClass(test)
         1 * processor.stop()
     }
+
+    def "notifies the build process when it has finished with each test class"() {
+        def reportingWorker = new TestWorker(factory, true)
+
+        when:
+        async {
+            reportingWorker.execute(workerContext)
+            instant.completed
+        }
+
+        then:
+        instant.completed > instant.stopped
+        System.properties['org.gradle.test.worker'] == '<worker-id>'
+
+        and:
+        1 * factory.create(_) >> processor
+        1 * connection.addOutgoing(TestResultProcessor) >> resultProcessor
+        1 * connection.addOutgoing(TestClassProcessedListener) >> processedListener
+        1 * connection.addIncoming(RemoteTestClassProcessor, reportingWorker)
+        1 * connection.useParameterSerializers(_)
+        1 * connection.connect() >> {
+            start {
+                reportingWorker.startProcessing()
+                reportingWorker.processTestClass(test)
+                thread.block()
+                instant.stopped
+                reportingWorker.stop()
+            }
+        }
+        1 * processor.startProcessing(_)
+        1 * processor.processTestClass(test)
+        1 * processedListener.testClassProcessed(_)
+        1 * processor.stop()
+    }
 }
@@ -21,7 +21,9 @@ import org.gradle.api.file.FileTree;
 import org.gradle.process.JavaForkOptions;
 import org.gradle.util.Path;
 
+import javax.annotation.Nullable;
 import java.io.File;
+import java.util.Map;
 
 public class JvmTestExecutionSpec implements TestExecutionSpec {
     private final TestFramework testFramework;
@@ -34,8 +36,13 @@ public class JvmTestExecutionSpec implements TestExecutionSpec {
     private final long forkEvery;
     private final JavaForkOptions javaForkOptions;
     private final int maxParallelForks;
+    private final Map<String, Long> previousTestClassDurations;
 
     public JvmTestExecutionSpec(TestFramework testFramework, Iterable<? extends File> classpath, FileTree candidateClassFiles, boolean scanForTestClasses, FileCollection testClassesDirs, String path, Path identityPath, long forkEvery, JavaForkOptions javaForkOptions, int maxParallelForks) {
+        this(testFramework, classpath, candidateClassFiles, scanForTestClasses, testClassesDirs, path, identityPath, forkEvery, javaForkOptions, maxParallelForks, null);
+    }
+
+    public JvmTestExecutionSpec(TestFramework testFramework, Iterable<? extends File> classpath, FileTree candidateClassFiles, boolean scanForTestClasses, FileCollection testClassesDirs, String path, Path identityPath, long forkEvery, JavaForkOptions javaForkOptions, int maxParallelForks, @Nullable Map<String, Long> previousTestClassDurations) {
         this.testFramework = testFramework;
         this.classpath = classpath;
         this.candidateClassFiles = candidateClassFiles;
@@ -46,6 +53,7 @@ public class JvmTestExecutionSpec implements TestExecutionSpec {
         this.forkEvery = forkEvery;
         this.javaForkOptions = javaForkOptions;
         this.maxParallelForks = maxParallelForks;
+        this.previousTestClassDurations = previousTestClassDurations;
     }
 
     public TestFramework getTestFramework() {
@@ -87,4 +95,12 @@ public class JvmTestExecutionSpec implements TestExecutionSpec {
     public int getMaxParallelForks() {
         return maxParallelForks;
     }
+
+    /**
+     * Returns the durations in milliseconds of the test classes in the previous run, or null when test classes should not be distributed by duration.
+     */
+    @Nullable
+    public Map<String, Long> getPreviousTestClassDurations() {
+        return previousTestClassDurations;
+    }
 }
@@ -21,6 +21,8 @@ import org.apache.commons.lang.StringUtils;
 import org.gradle.api.GradleException;
 import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
+import org.gradle.internal.Factory;
+import org.gradle.internal.hash.FileHasher;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.Type;
 
@@ -30,6 +32,7 @@ import java.io.FileInputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -51,6 +54,10 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
     private Set<File> testClassesDirectories;
     private Set<File> testClasspath;
 
+    private TestClassDetectionCache detectionCache;
+    private FileHasher classFileHasher;
+    private final Set<File> libraryClassFiles = new HashSet<File>();
+
     protected AbstractTestFrameworkDetector(ClassFileExtractionManager classFileExtractionManager) {
         assert classFileExtractionManager != null;
         this.classFileExtractionManager = classFileExtractionManager;
@@ -85,7 +92,11 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
             return null;
         } else {
             // super test class file not in test class directories
-            return classFileExtractionManager.getLibraryClassFile(superClassName);
+            File libraryClassFile = classFileExtractionManager.getLibraryClassFile(superClassName);
+            if (libraryClassFile != null) {
+                libraryClassFiles.add(libraryClassFile);
+            }
+            return libraryClassFile;
         }
     }
 
@@ -120,9 +131,35 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
         this.testClasspath = testClasspath;
     }
 
+    @Override
+    public void setDetectionCache(TestClassDetectionCache detectionCache, FileHasher classFileHasher) {
+        this.detectionCache = detectionCache;
+        this.classFileHasher = classFileHasher;
+    }
+
+    /**
+     * Scans the given class file, or looks up what a previous scan of the same class file found. Class files extracted from library jars are always scanned,
+     * as they are extracted to a new temporary file for each build.
+     */
     protected TestClassVisitor classVisitor(final File testClassFile) {
-        final TestClassVisitor classVisitor = createClassVisitor();
+        if (detectionCache == null || libraryClassFiles.contains(testClassFile)) {
+            return scanClassFile(testClassFile);
+        }
+        final T classVisitor = createClassVisitor();
+        TestClassDetectionCache.DetectedClass detectedClass = detectionCache.get(classVisitor.getClass(), classFileHasher.hash(testClassFile), new Factory<TestClassDetectionCache.DetectedClass>() {
+            @Override
+            public TestClassDetectionCache.DetectedClass create() {
+                return new TestClassDetectionCache.DetectedClass(scanClassFile(testClassFile, classVisitor));
+            }
+        });
+        return new DetectedClassVisitor(this, detectedClass);
+    }
 
+    private TestClassVisitor scanClassFile(File testClassFile) {
+        return scanClassFile(testClassFile, createClassVisitor());
+    }
+
+    private TestClassVisitor scanClassFile(File testClassFile, TestClassVisitor classVisitor) {
         InputStream classStream = null;
         try {
             classStream = new BufferedInputStream(new FileInputStream(testClassFile));
@@ -186,6 +223,38 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
         }
     }
 
+    /**
+     * Replays what a previous scan found in a class file.
+     */
+    private static class DetectedClassVisitor extends TestClassVisitor {
+        private final TestClassDetectionCache.DetectedClass detectedClass;
+
+        DetectedClassVisitor(TestFrameworkDetector detector, TestClassDetectionCache.DetectedClass detectedClass) {
+            super(detector);
+            this.detectedClass = detectedClass;
+        }
+
+        @Override
+        public String getClassName() {
+            return detectedClass.getClassName();
+        }
+
+        @Override
+        public boolean isTest() {
+            return detectedClass.isTest();
+        }
+
+        @Override
+        public boolean isAbstract() {
+            return detectedClass.isAbstract();
+        }
+
+        @Override
+        public String getSuperClassName() {
+            return detectedClass.getSuperClassName();
+        }
+    }
+
     protected boolean isKnownTestCaseClassName(String testCaseClassName) {
         boolean isKnownTestCase = false;
 
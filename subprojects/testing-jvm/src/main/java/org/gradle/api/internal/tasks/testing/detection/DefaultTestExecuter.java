@@ -17,14 +17,17 @@
 package org.gradle.api.internal.tasks.testing.detection;
 
 import com.google.common.collect.ImmutableSet;
+import org.gradle.api.Transformer;
 import org.gradle.api.file.FileTree;
 import org.gradle.api.internal.classpath.ModuleRegistry;
 import org.gradle.api.internal.tasks.testing.JvmTestExecutionSpec;
+import org.gradle.api.internal.tasks.testing.TestClassProcessedListener;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestExecuter;
 import org.gradle.api.internal.tasks.testing.TestFramework;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
+import org.gradle.api.internal.tasks.testing.processors.DurationBalancedTestClassProcessor;
 import org.gradle.api.internal.tasks.testing.processors.MaxNParallelTestClassProcessor;
 import org.gradle.api.internal.tasks.testing.processors.RestartEveryNTestClassProcessor;
 import org.gradle.api.internal.tasks.testing.processors.TestMainAction;
@@ -33,12 +36,15 @@ import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.gradle.internal.Factory;
 import org.gradle.internal.actor.ActorFactory;
+import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.time.Clock;
 import org.gradle.internal.work.WorkerLeaseRegistry;
 import org.gradle.process.internal.worker.WorkerProcessFactory;
 
+import javax.annotation.Nullable;
 import java.io.File;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -55,10 +61,18 @@ public class DefaultTestExecuter implements TestExecuter<JvmTestExecutionSpec> {
     private final BuildOperationExecutor buildOperationExecutor;
     private final int maxWorkerCount;
     private final Clock clock;
+    private final TestClassDetectionCache detectionCache;
+    private final FileHasher classFileHasher;
 
     public DefaultTestExecuter(WorkerProcessFactory workerFactory, ActorFactory actorFactory, ModuleRegistry moduleRegistry,
                                WorkerLeaseRegistry workerLeaseRegistry, BuildOperationExecutor buildOperationExecutor, int maxWorkerCount,
                                Clock clock) {
+        this(workerFactory, actorFactory, moduleRegistry, workerLeaseRegistry, buildOperationExecutor, maxWorkerCount, clock, null, null);
+    }
+
+    public DefaultTestExecuter(WorkerProcessFactory workerFactory, ActorFactory actorFactory, ModuleRegistry moduleRegistry,
+                               WorkerLeaseRegistry workerLeaseRegistry, BuildOperationExecutor buildOperationExecutor, int maxWorkerCount,
+                               Clock clock, @Nullable TestClassDetectionCache detectionCache, @Nullable FileHasher classFileHasher) {
         this.workerFactory = workerFactory;
         this.actorFactory = actorFactory;
         this.moduleRegistry = moduleRegistry;
@@ -66,26 +80,34 @@ public class DefaultTestExecuter implements TestExecuter<JvmTestExecutionSpec> {
         this.buildOperationExecutor = buildOperationExecutor;
         this.maxWorkerCount = maxWorkerCount;
         this.clock = clock;
+        this.detectionCache = detectionCache;
+        this.classFileHasher = classFileHasher;
     }
 
     @Override
     public void execute(final JvmTestExecutionSpec testExecutionSpec, TestResultProcessor testResultProcessor) {
         final TestFramework testFramework = testExecutionSpec.getTestFramework();
-        final WorkerTestClassProcessorFactory testInstanceFactory = testFramework.getProcessorFactory();
-        final WorkerLeaseRegistry.WorkerLease currentWorkerLease = workerLeaseRegistry.getCurrentWorkerLease();
         final Set<File> classpath = ImmutableSet.copyOf(testExecutionSpec.getClasspath());
-        final Factory<TestClassProcessor> forkingProcessorFactory = new Factory<TestClassProcessor>() {
-            public TestClassProcessor create() {
-                return new ForkingTestClassProcessor(currentWorkerLease, workerFactory, testInstanceFactory, testExecutionSpec.getJavaForkOptions(),
-                    classpath, testFramework.getWorkerConfigurationAction(), moduleRegistry);
-            }
-        };
-        final Factory<TestClassProcessor> reforkingProcessorFactory = new Factory<TestClassProcessor>() {
-            public TestClassProcessor create() {
-                return new RestartEveryNTestClassProcessor(forkingProcessorFactory, testExecutionSpec.getForkEvery());
-            }
-        };
-        TestClassProcessor processor = new MaxNParallelTestClassProcessor(getMaxParallelForks(testExecutionSpec), reforkingProcessorFactory, actorFactory);
+        final WorkerLeaseRegistry.WorkerLease currentWorkerLease = workerLeaseRegistry.getCurrentWorkerLease();
+        int maxParallelForks = getMaxParallelForks(testExecutionSpec);
+        Map<String, Long> previousTestClassDurations = testExecutionSpec.getPreviousTestClassDurations();
+        TestClassProcessor processor;
+        if (previousTestClassDurations != null && maxParallelForks > 1) {
+            Transformer<TestClassProcessor, TestClassProcessedListener> reforkingProcessorFactory = new Transformer<TestClassProcessor, TestClassProcessedListener>() {
+                @Override
+                public TestClassProcessor transform(TestClassProcessedListener processedListener) {
+                    return createReforkingProcessor(testExecutionSpec, classpath, currentWorkerLease, processedListener);
+                }
+            };
+            processor = new DurationBalancedTestClassProcessor(maxParallelForks, reforkingProcessorFactory, actorFactory, previousTestClassDurations);
+        } else {
+            Factory<TestClassProcessor> reforkingProcessorFactory = new Factory<TestClassProcessor>() {
+                public TestClassProcessor create() {
+                    return createReforkingProcessor(testExecutionSpec, classpath, currentWorkerLease, null);
+                }
+            };
+            processor = new MaxNParallelTestClassProcessor(maxParallelForks, reforkingProcessorFactory, actorFactory);
+        }
 
         final FileTree testClassFiles = testExecutionSpec.getCandidateClassFiles();
 
@@ -94,6 +116,9 @@ public class DefaultTestExecuter implements TestExecuter<JvmTestExecutionSpec> {
             TestFrameworkDetector testFrameworkDetector = testFramework.getDetector();
             testFrameworkDetector.setTestClasses(testExecutionSpec.getTestClassesDirs().getFiles());
             testFrameworkDetector.setTestClasspath(classpath);
+            if (detectionCache != null) {
+                testFrameworkDetector.setDetectionCache(detectionCache, classFileHasher);
+            }
             detector = new DefaultTestClassScanner(testClassFiles, testFrameworkDetector, processor);
         } else {
             detector = new DefaultTestClassScanner(testClassFiles, null, processor);
@@ -104,6 +129,19 @@ public class DefaultTestExecuter implements TestExecuter<JvmTestExecutionSpec> {
         new TestMainAction(detector, processor, testResultProcessor, clock, testTaskOperationId, testExecutionSpec.getPath(), "Gradle Test Run " + testExecutionSpec.getIdentityPath()).run();
     }
 
+    private TestClassProcessor createReforkingProcessor(final JvmTestExecutionSpec testExecutionSpec, final Set<File> classpath, final WorkerLeaseRegistry.WorkerLease currentWorkerLease,
+                                                        @Nullable final TestClassProcessedListener processedListener) {
+        final TestFramework testFramework = testExecutionSpec.getTestFramework();
+        final WorkerTestClassProcessorFactory testInstanceFactory = testFramework.getProcessorFactory();
+        Factory<TestClassProcessor> forkingProcessorFactory = new Factory<TestClassProcessor>() {
+            public TestClassProcessor create() {
+                return new ForkingTestClassProcessor(currentWorkerLease, workerFactory, testInstanceFactory, testExecutionSpec.getJavaForkOptions(),
+                    classpath, testFramework.getWorkerConfigurationAction(), moduleRegistry, processedListener);
+            }
+        };
+        return new RestartEveryNTestClassProcessor(forkingProcessorFactory, testExecutionSpec.getForkEvery());
+    }
+
     private int getMaxParallelForks(JvmTestExecutionSpec testExecutionSpec) {
         int maxParallelForks = testExecutionSpec.getMaxParallelForks();
         if (maxParallelForks > maxWorkerCount) {
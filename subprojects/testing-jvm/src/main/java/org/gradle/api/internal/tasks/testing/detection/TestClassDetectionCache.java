@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.detection;
+
+import org.gradle.api.Transformer;
+import org.gradle.cache.internal.CrossBuildInMemoryCache;
+import org.gradle.cache.internal.CrossBuildInMemoryCacheFactory;
+import org.gradle.internal.Factory;
+import org.gradle.internal.hash.HashCode;
+
+/**
+ * Remembers what the test framework detectors found in class files across builds, keyed by the content hash of each class file,
+ * so that class files that have not changed do not need to be read and scanned again.
+ */
+public class TestClassDetectionCache {
+    private final CrossBuildInMemoryCache<Key, DetectedClass> cache;
+
+    public TestClassDetectionCache(CrossBuildInMemoryCacheFactory cacheFactory) {
+        this.cache = cacheFactory.newCache();
+    }
+
+    /**
+     * Returns what a class visitor of the given type found in a class file with the given content hash, using the given scanner to scan the class file when this is not known.
+     */
+    public DetectedClass get(Class<? extends TestClassVisitor> visitorType, HashCode classFileHash, final Factory<DetectedClass> scanner) {
+        return cache.get(new Key(visitorType, classFileHash), new Transformer<DetectedClass, Key>() {
+            @Override
+            public DetectedClass transform(Key key) {
+                return scanner.create();
+            }
+        });
+    }
+
+    /**
+     * What a {@link TestClassVisitor} found in a class file.
+     */
+    public static class DetectedClass {
+        private final String className;
+        private final String superClassName;
+        private final boolean test;
+        private final boolean isAbstract;
+
+        public DetectedClass(TestClassVisitor classVisitor) {
+            this.className = classVisitor.getClassName();
+            this.superClassName = classVisitor.getSuperClassName();
+            this.test = classVisitor.isTest();
+            this.isAbstract = classVisitor.isAbstract();
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public String getSuperClassName() {
+            return superClassName;
+        }
+
+        public boolean isTest() {
+            return test;
+        }
+
+        public boolean isAbstract() {
+            return isAbstract;
+        }
+    }
+
+    private static class Key {
+        private final Class<?> visitorType;
+        private final HashCode classFileHash;
+
+        Key(Class<?> visitorType, HashCode classFileHash) {
+            this.visitorType = visitorType;
+            this.classFileHash = classFileHash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != getClass()) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return visitorType.equals(other.visitorType) && classFileHash.equals(other.classFileHash);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * visitorType.hashCode() + classFileHash.hashCode();
+        }
+    }
+}
@@ -16,6 +16,7 @@
 package org.gradle.api.internal.tasks.testing.detection;
 
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
+import org.gradle.internal.hash.FileHasher;
 
 import java.io.File;
 import java.util.Set;
@@ -28,4 +29,9 @@ public interface TestFrameworkDetector {
     void setTestClasses(Set<File> testClasses);
 
     void setTestClasspath(Set<File> classpath);
+
+    /**
+     * Reuses what previous scans found in class files with the same content, hashing the class files with the given hasher.
+     */
+    void setDetectionCache(TestClassDetectionCache detectionCache, FileHasher classFileHasher);
 }
@@ -33,8 +33,12 @@ import org.gradle.api.internal.tasks.testing.NoMatchingTestsReporter;
 import org.gradle.api.internal.tasks.testing.TestExecuter;
 import org.gradle.api.internal.tasks.testing.TestFramework;
 import org.gradle.api.internal.tasks.testing.detection.DefaultTestExecuter;
+import org.gradle.api.internal.tasks.testing.detection.TestClassDetectionCache;
 import org.gradle.api.internal.tasks.testing.filter.DefaultTestFilter;
 import org.gradle.api.internal.tasks.testing.junit.JUnitTestFramework;
+import org.gradle.api.internal.tasks.testing.junit.result.TestClassResult;
+import org.gradle.api.internal.tasks.testing.junit.result.TestResultSerializer;
+import org.gradle.api.internal.tasks.testing.processors.DurationBalancedTestClassProcessor;
 import org.gradle.api.internal.tasks.testing.testng.TestNGTestFramework;
 import org.gradle.api.reporting.Reporting;
 import org.gradle.api.specs.Spec;
@@ -52,6 +56,7 @@ import org.gradle.api.tasks.util.PatternFilterable;
 import org.gradle.internal.Actions;
 import org.gradle.internal.Cast;
 import org.gradle.internal.actor.ActorFactory;
+import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.jvm.UnsupportedJavaRuntimeException;
 import org.gradle.internal.jvm.inspection.JvmVersionDetector;
 import org.gradle.internal.operations.BuildOperationExecutor;
@@ -68,6 +73,7 @@ import org.gradle.util.SingleMessageLogger;
 
 import javax.inject.Inject;
 import java.io.File;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -134,6 +140,7 @@ public class Test extends AbstractTestTask implements JavaForkOptions, PatternFi
     private long forkEvery;
     private int maxParallelForks = 1;
     private TestExecuter<JvmTestExecutionSpec> testExecuter;
+    private Map<String, Long> previousTestClassDurations;
 
     public Test() {
         patternSet = getFileResolver().getPatternSetFactory().create();
@@ -512,7 +519,7 @@ public class Test extends AbstractTestTask implements JavaForkOptions, PatternFi
      */
     @Override
     protected JvmTestExecutionSpec createTestExecutionSpec() {
-        return new JvmTestExecutionSpec(getTestFramework(), getClasspath(), getCandidateClassFiles(), isScanForTestClasses(), getTestClassesDirs(), getPath(), getIdentityPath(), getForkEvery(), this, getMaxParallelForks());
+        return new JvmTestExecutionSpec(getTestFramework(), getClasspath(), getCandidateClassFiles(), isScanForTestClasses(), getTestClassesDirs(), getPath(), getIdentityPath(), getForkEvery(), this, getMaxParallelForks(), previousTestClassDurations);
     }
 
     @TaskAction
@@ -527,11 +534,33 @@ public class Test extends AbstractTestTask implements JavaForkOptions, PatternFi
             addTestListener(new NoMatchingTestsReporter(createNoMatchingTestErrorMessage()));
         }
 
+        if (Boolean.getBoolean(DurationBalancedTestClassProcessor.ENABLED_PROPERTY)) {
+            // Read before the results of the previous run are deleted
+            previousTestClassDurations = readPreviousTestClassDurations();
+        }
+
         try {
             super.executeTests();
         } finally {
             testFramework = null;
+            previousTestClassDurations = null;
+        }
+    }
+
+    private Map<String, Long> readPreviousTestClassDurations() {
+        final Map<String, Long> durations = new HashMap<String, Long>();
+        try {
+            new TestResultSerializer(getBinResultsDir()).read(new Action<TestClassResult>() {
+                @Override
+                public void execute(TestClassResult result) {
+                    durations.put(result.getClassName(), result.getDuration());
+                }
+            });
+        } catch (RuntimeException e) {
+            getLogger().info("Could not read the test class durations of the previous run of {}.", getPath(), e);
+            durations.clear();
         }
+        return durations;
     }
 
     @Override
@@ -541,7 +570,9 @@ public class Test extends AbstractTestTask implements JavaForkOptions, PatternFi
                 getServices().get(WorkerLeaseRegistry.class),
                 getServices().get(BuildOperationExecutor.class),
                 getServices().get(StartParameter.class).getMaxWorkerCount(),
-                getServices().get(Clock.class));
+                getServices().get(Clock.class),
+                getServices().get(TestClassDetectionCache.class),
+                getServices().get(FileHasher.class));
         } else {
             return testExecuter;
         }
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.junit
+
+import org.gradle.api.GradleException
+import org.gradle.api.internal.tasks.testing.TestClassProcessor
+import org.gradle.api.internal.tasks.testing.detection.ClassFileExtractionManager
+import org.gradle.api.internal.tasks.testing.detection.TestClassDetectionCache
+import org.gradle.cache.internal.CrossBuildInMemoryCacheFactory
+import org.gradle.internal.Factory
+import org.gradle.internal.event.DefaultListenerManager
+import org.gradle.internal.hash.FileHasher
+import org.gradle.internal.hash.HashCode
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import org.junit.Test
+import spock.lang.Specification
+
+class JUnitDetectorTest extends Specification {
+    @Rule TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def processor = Mock(TestClassProcessor)
+    def fileHasher = Mock(FileHasher)
+    def detectionCache = new TestClassDetectionCache(new CrossBuildInMemoryCacheFactory(new DefaultListenerManager()))
+
+    def "detects test classes"() {
+        def detector = detector(false)
+        def classFile = classFile(ATest)
+
+        when:
+        detector.processTestClass(classFile)
+
+        then:
+        1 * processor.processTestClass({ it.testClassName == ATest.name })
+    }
+
+    def "reuses what was detected in a class file with the same content"() {
+        def classFile = classFile(ATest)
+        fileHasher.hash(classFile) >> HashCode.fromInt(1)
+
+        when:
+        detector().processTestClass(classFile)
+
+        then:
+        1 * processor.processTestClass({ it.testClassName == ATest.name })
+
+        when:
+        classFile.text = "not a class file"
+        detector().processTestClass(classFile)
+
+        then:
+        1 * processor.processTestClass({ it.testClassName == ATest.name })
+    }
+
+    def "scans a class file whose content has changed"() {
+        def classFile = classFile(ATest)
+        fileHasher.hash(classFile) >>> [HashCode.fromInt(1), HashCode.fromInt(2)]
+
+        when:
+        detector().processTestClass(classFile)
+        classFile.text = "not a class file"
+        detector().processTestClass(classFile)
+
+        then:
+        def e = thrown(GradleException)
+        e.message == "failed to read class file ${classFile.absolutePath}"
+    }
+
+    private JUnitDetector detector(boolean cached = true) {
+        def detector = new JUnitDetector(new ClassFileExtractionManager({ tmpDir.testDirectory } as Factory<File>))
+        if (cached) {
+            detector.setDetectionCache(detectionCache, fileHasher)
+        }
+        detector.startDetection(processor)
+        return detector
+    }
+
+    private File classFile(Class<?> type) {
+        def classFile = tmpDir.file(type.name.replace('.', '/') + ".class")
+        classFile.bytes = type.classLoader.getResource(type.name.replace('.', '/') + ".class").bytes
+        return classFile
+    }
+
+    static class ATest {
+        @Test
+        void ok() {
+        }
+    }
+}